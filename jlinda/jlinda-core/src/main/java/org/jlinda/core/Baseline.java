@@ -405,6 +405,19 @@ public class Baseline {
         return nearRange + drange_dp * pixel;
     }
 
+    /**
+     * Snapshot of the modeled baseline for evaluation over lines and grids of pixels
+     */
+    public BaselineSurface getSurface() {
+        if (!isInitialized) {
+            throw new IllegalStateException("baseline is not modeled");
+        }
+        return new BaselineSurface(bperpCoeffs.toArray(), bparCoeffs.toArray(),
+                thetaCoeffs.toArray(), thetaIncCoeffs.toArray(),
+                linMin, linMax, pixMin, pixMax, hMin, hMax,
+                masterWavelength, nearRange, drange_dp);
+    }
+
 
     /**
      * Polyval modeled quantities
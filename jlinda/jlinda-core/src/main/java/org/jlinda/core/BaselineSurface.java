@@ -0,0 +1,205 @@
+package org.jlinda.core;
+
+import org.apache.commons.math3.util.FastMath;
+
+import static org.jlinda.core.utils.PolyUtils.normalize2;
+
+/**
+ * Immutable snapshot of the modeled baseline of a {@link Baseline}, for evaluation over image grids.
+ * <p/>
+ * The model
+ * --- B(l,p,h) = a000 +
+ * a100*l   + a010*p   + a001*h   +
+ * a110*l*p + a101*l*h + a011*p*h +
+ * a200*l^2 + a020*p^2 + a002*h^2
+ * <p/>
+ * is a quadratic in p along an image line at constant height, so a line of pixels is evaluated by reducing
+ * the coefficients once per line and evaluating B(p) = a + b*p + c*p^2 into a primitive array. The
+ * coefficients are copied, so a surface can be shared between threads.
+ */
+public final class BaselineSurface {
+
+    private static final int NUM_COEFFS = 10;
+
+    private final double[] bperpCoeffs;
+    private final double[] bparCoeffs;
+    private final double[] thetaCoeffs;
+    private final double[] thetaIncCoeffs;
+
+    private final double linMin;
+    private final double linMax;
+    private final double pixMid;
+    private final double pixScale;
+    private final double hMin;
+    private final double hMax;
+
+    private final double masterWavelength;
+    private final double nearRange;
+    private final double drange_dp;
+
+    BaselineSurface(final double[] bperpCoeffs, final double[] bparCoeffs,
+                    final double[] thetaCoeffs, final double[] thetaIncCoeffs,
+                    final double linMin, final double linMax,
+                    final double pixMin, final double pixMax,
+                    final double hMin, final double hMax,
+                    final double masterWavelength, final double nearRange, final double drange_dp) {
+
+        this.bperpCoeffs = copyCoefficients(bperpCoeffs);
+        this.bparCoeffs = copyCoefficients(bparCoeffs);
+        this.thetaCoeffs = copyCoefficients(thetaCoeffs);
+        this.thetaIncCoeffs = copyCoefficients(thetaIncCoeffs);
+        this.linMin = linMin;
+        this.linMax = linMax;
+        this.pixMid = 0.5 * (pixMin + pixMax);
+        this.pixScale = 1.0 / (0.25 * (pixMax - pixMin));
+        this.hMin = hMin;
+        this.hMax = hMax;
+        this.masterWavelength = masterWavelength;
+        this.nearRange = nearRange;
+        this.drange_dp = drange_dp;
+    }
+
+    private static double[] copyCoefficients(final double[] coeffs) {
+        if (coeffs.length != NUM_COEFFS) {
+            throw new IllegalArgumentException("baseline model requires " + NUM_COEFFS + " coefficients");
+        }
+        return coeffs.clone();
+    }
+
+    // ----- Single points ---------
+
+    public double getBperp(final double line, final double pixel, final double height) {
+        return polyVal(bperpCoeffs, line, pixel, height);
+    }
+
+    public double getBpar(final double line, final double pixel, final double height) {
+        return polyVal(bparCoeffs, line, pixel, height);
+    }
+
+    public double getTheta(final double line, final double pixel, final double height) {
+        return polyVal(thetaCoeffs, line, pixel, height);
+    }
+
+    public double getThetaInc(final double line, final double pixel, final double height) {
+        return polyVal(thetaIncCoeffs, line, pixel, height);
+    }
+
+    public double getRange(final double pixel) {
+        return nearRange + drange_dp * pixel;
+    }
+
+    // ----- Image lines ---------
+
+    /**
+     * Perpendicular baseline of pixels x0 to x0 + width - 1 of a line
+     *
+     * @param out receives the values at out[offset] to out[offset + width - 1]
+     */
+    public void getBperp(final double line, final int x0, final int width, final double height,
+                         final double[] out, final int offset) {
+        evaluateLine(bperpCoeffs, line, x0, width, height, out, offset);
+    }
+
+    public void getBpar(final double line, final int x0, final int width, final double height,
+                        final double[] out, final int offset) {
+        evaluateLine(bparCoeffs, line, x0, width, height, out, offset);
+    }
+
+    public void getTheta(final double line, final int x0, final int width, final double height,
+                         final double[] out, final int offset) {
+        evaluateLine(thetaCoeffs, line, x0, width, height, out, offset);
+    }
+
+    public void getThetaInc(final double line, final int x0, final int width, final double height,
+                            final double[] out, final int offset) {
+        evaluateLine(thetaIncCoeffs, line, x0, width, height, out, offset);
+    }
+
+    /**
+     * Height ambiguity of pixels x0 to x0 + width - 1 of a line, +inf where Bperp is zero
+     */
+    public void getHamb(final double line, final int x0, final int width, final double height,
+                        final double[] out, final int offset) {
+
+        final double l = normalize2(line, linMin, linMax);
+        final double h = normalize2(height, hMin, hMax);
+        final double aPerp = constantTerm(bperpCoeffs, l, h);
+        final double bPerp = linearTerm(bperpCoeffs, l, h);
+        final double cPerp = bperpCoeffs[8];
+        final double aInc = constantTerm(thetaIncCoeffs, l, h);
+        final double bInc = linearTerm(thetaIncCoeffs, l, h);
+        final double cInc = thetaIncCoeffs[8];
+
+        for (int i = 0; i < width; i++) {
+            final int x = x0 + i;
+            final double p = (x - pixMid) * pixScale;
+            final double bperp = aPerp + p * (bPerp + cPerp * p);
+            final double thetaInc = aInc + p * (bInc + cInc * p);
+            out[offset + i] = (bperp == 0) ? Double.POSITIVE_INFINITY :
+                    -masterWavelength * getRange(x) * FastMath.sin(thetaInc) / (2.0 * bperp);
+        }
+    }
+
+    // ----- Image grids ---------
+
+    /**
+     * Perpendicular baseline of a grid of pixels
+     *
+     * @param out receives the values row by row, at least width * lines long
+     */
+    public void getBperp(final int x0, final int y0, final int width, final int lines, final double height,
+                         final double[] out) {
+        for (int j = 0; j < lines; j++) {
+            evaluateLine(bperpCoeffs, y0 + j, x0, width, height, out, j * width);
+        }
+    }
+
+    public void getBpar(final int x0, final int y0, final int width, final int lines, final double height,
+                        final double[] out) {
+        for (int j = 0; j < lines; j++) {
+            evaluateLine(bparCoeffs, y0 + j, x0, width, height, out, j * width);
+        }
+    }
+
+    public void getHamb(final int x0, final int y0, final int width, final int lines, final double height,
+                        final double[] out) {
+        for (int j = 0; j < lines; j++) {
+            getHamb(y0 + j, x0, width, height, out, j * width);
+        }
+    }
+
+    private void evaluateLine(final double[] c, final double line, final int x0, final int width,
+                              final double height, final double[] out, final int offset) {
+
+        final double l = normalize2(line, linMin, linMax);
+        final double h = normalize2(height, hMin, hMax);
+        final double a = constantTerm(c, l, h);
+        final double b = linearTerm(c, l, h);
+        final double c2 = c[8];
+
+        for (int i = 0; i < width; i++) {
+            final double p = (x0 + i - pixMid) * pixScale;
+            out[offset + i] = a + p * (b + c2 * p);
+        }
+    }
+
+    // terms of B(l,p,h) without p
+    private static double constantTerm(final double[] c, final double l, final double h) {
+        return c[0] + c[1] * l + c[3] * h + c[5] * l * h + c[7] * l * l + c[9] * h * h;
+    }
+
+    // terms of B(l,p,h) linear in p, divided by p
+    private static double linearTerm(final double[] c, final double l, final double h) {
+        return c[2] + c[4] * l + c[6] * h;
+    }
+
+    private double polyVal(final double[] c, final double line, final double pixel, final double height) {
+        final double l = normalize2(line, linMin, linMax);
+        final double p = (pixel - pixMid) * pixScale;
+        final double h = normalize2(height, hMin, hMax);
+        return c[0] +
+                c[1] * l + c[2] * p + c[3] * h +
+                c[4] * l * p + c[5] * l * h + c[6] * p * h +
+                c[7] * l * l + c[8] * p * p + c[9] * h * h;
+    }
+}
@@ -0,0 +1,365 @@
+package org.jlinda.core.delaunay;
+
+import java.util.Arrays;
+
+/**
+ * Delaunay triangulator working on primitive arrays.
+ * <p>
+ * Follows the sweep of {@link FastDelaunayTriangulator}: vertices are sorted by x and y, duplicates are
+ * dropped, and every vertex is connected to the visible part of the convex hull before the new triangles
+ * are made Delaunay by flipping. Triangles are kept as vertex indices in int arrays, so no geometry objects
+ * are created. The input order of the points is used to find presorted runs, which makes sorting of
+ * radar coded DEM grids almost linear.
+ */
+public final class IndexedDelaunayTriangulator {
+
+    private static final int HORIZON = -1;
+
+    private final double[] x;
+    private final double[] y;
+
+    // vertices A, B, C and neighbours BAO, CBO, ACO of every triangle
+    private int[] vertex;
+    private int[] neighbour;
+    private int numTriangles = 0;
+
+    private int currentExternalTriangle;
+    private int[] newTriangles = new int[16];
+
+    private IndexedDelaunayTriangulator(final double[] x, final double[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Triangulate points
+     *
+     * @param x x coordinates of the points
+     * @param y y coordinates of the points
+     * @param n number of points
+     * @return the vertex indices of the triangles, three per triangle in counterclockwise order, or null if
+     * there are less than three distinct points
+     */
+    public static int[] triangulate(final double[] x, final double[] y, final int n) {
+
+        final int[] order = sortUnique(x, y, n);
+        if (order.length < 3) {
+            return null;
+        }
+
+        final IndexedDelaunayTriangulator triangulator = new IndexedDelaunayTriangulator(x, y);
+        triangulator.vertex = new int[6 * order.length];
+        triangulator.neighbour = new int[6 * order.length];
+        triangulator.initTriangulation(order[0], order[1]);
+        for (int i = 2; i < order.length; i++) {
+            triangulator.addExternalVertex(order[i]);
+        }
+        return triangulator.getTriangles();
+    }
+
+    private int[] getTriangles() {
+        int count = 0;
+        for (int t = 0; t < numTriangles; t++) {
+            if (vertex[3 * t + 2] != HORIZON) {
+                count++;
+            }
+        }
+        final int[] triangles = new int[3 * count];
+        int k = 0;
+        for (int t = 0; t < numTriangles; t++) {
+            if (vertex[3 * t + 2] != HORIZON) {
+                triangles[k++] = vertex[3 * t];
+                triangles[k++] = vertex[3 * t + 1];
+                triangles[k++] = vertex[3 * t + 2];
+            }
+        }
+        return triangles;
+    }
+
+    private int newTriangle(final int a, final int b, final int c) {
+        final int t = numTriangles++;
+        vertex[3 * t] = a;
+        vertex[3 * t + 1] = b;
+        vertex[3 * t + 2] = c;
+        neighbour[3 * t] = neighbour[3 * t + 1] = neighbour[3 * t + 2] = -1;
+        return t;
+    }
+
+    private void initTriangulation(final int c0, final int c1) {
+        final int t0 = newTriangle(c0, c1, HORIZON);
+        final int t1 = newTriangle(c1, c0, HORIZON);
+        neighbour[3 * t0] = neighbour[3 * t0 + 1] = neighbour[3 * t0 + 2] = t1;
+        neighbour[3 * t1] = neighbour[3 * t1 + 1] = neighbour[3 * t1 + 2] = t0;
+        currentExternalTriangle = t1;
+    }
+
+    private void addExternalVertex(final int c) {
+        final int n = buildTrianglesBetweenNewVertexAndConvexHull(c);
+        for (int k = 0; k < n; k++) {
+            final int t = newTriangles[k];
+            if (vertex[3 * t + 2] != HORIZON) {
+                delaunay(t, 0);
+            }
+        }
+    }
+
+    private int buildTrianglesBetweenNewVertexAndConvexHull(final int c) {
+
+        int currentT = currentExternalTriangle;
+        int nextExternalTriangle = neighbour[3 * currentExternalTriangle + 2];
+
+        int lastCCW = ccw(currentT, c);
+        int currentCCW;
+        int beforeFirstVisibleT = currentExternalTriangle;
+        int firstVisibleT = -1;
+        int lastVisibleT = -1;
+        int afterLastVisibleT = nextExternalTriangle;
+        int numNew = 0;
+        boolean oneCycleCompleted = false;
+        while (true) {
+            currentT = neighbour[3 * currentT + 2];
+            currentCCW = ccw(currentT, c);
+            if (currentCCW > 0) {
+                if (lastCCW <= 0) {
+                    firstVisibleT = currentT;
+                    beforeFirstVisibleT = neighbour[3 * currentT + 1];
+                }
+                if (firstVisibleT != -1) {
+                    vertex[3 * currentT + 2] = c;
+                    if (numNew == newTriangles.length) {
+                        newTriangles = Arrays.copyOf(newTriangles, 2 * numNew);
+                    }
+                    newTriangles[numNew++] = currentT;
+                }
+            } else if (firstVisibleT != -1 && lastCCW > 0) {
+                lastVisibleT = neighbour[3 * currentT + 1];
+                afterLastVisibleT = currentT;
+            }
+            lastCCW = currentCCW;
+            if (firstVisibleT != -1 && lastVisibleT != -1) break;
+            if (oneCycleCompleted && firstVisibleT == -1 && lastVisibleT == -1) break;
+            if (currentT == currentExternalTriangle) oneCycleCompleted = true;
+        }
+
+        currentExternalTriangle = newTriangle(c, vertex[3 * beforeFirstVisibleT], HORIZON);
+        nextExternalTriangle = newTriangle(vertex[3 * afterLastVisibleT + 1], c, HORIZON);
+        linkExteriorTriangles(beforeFirstVisibleT, currentExternalTriangle);
+        if (firstVisibleT != -1 || lastVisibleT != -1) {
+            link(currentExternalTriangle, 0, firstVisibleT, 1);
+            link(nextExternalTriangle, 0, lastVisibleT, 2);
+        } else {
+            link(currentExternalTriangle, 0, nextExternalTriangle, 0);
+        }
+        linkExteriorTriangles(nextExternalTriangle, afterLastVisibleT);
+        linkExteriorTriangles(currentExternalTriangle, nextExternalTriangle);
+
+        return numNew;
+    }
+
+    private void linkExteriorTriangles(final int t1, final int t2) {
+        neighbour[3 * t1 + 2] = t2;
+        neighbour[3 * t2 + 1] = t1;
+    }
+
+    /**
+     * Flip the edge on the given side of a triangle if the opposite vertex lies in its circumcircle,
+     * and continue with the edges that changed.
+     */
+    private void delaunay(final int t, final int side) {
+
+        final int opp = neighbour[3 * t + side];
+        if (vertex[3 * opp + 2] == HORIZON) return;
+        final int i = getOppSide(opp, vertex[3 * t + side]);
+
+        if (inCircle(t, vertex[3 * opp + i]) > 0) {
+            flip(t, side, opp, (i + 1) % 3);
+            delaunay(t, 1);
+            delaunay(t, 2);
+            delaunay(opp, 0);
+            delaunay(opp, 1);
+        }
+    }
+
+    private int getOppSide(final int t, final int p) {
+        return vertex[3 * t] == p ? 1 : vertex[3 * t + 1] == p ? 2 : vertex[3 * t + 2] == p ? 0 : -1;
+    }
+
+    /**
+     * Replace triangles ABC and BAD sharing edge AB by DCA and DBC, see {@link FastDelaunayTriangulator}
+     */
+    private void flip(final int t0, final int side0, final int t1, final int side1) {
+        final int side0_1 = (side0 + 1) % 3;
+        final int side0_2 = (side0 + 2) % 3;
+        final int side1_1 = (side1 + 1) % 3;
+        final int side1_2 = (side1 + 2) % 3;
+
+        final int t0A = vertex[3 * t1 + side1_2];
+        final int t0B = vertex[3 * t0 + side0_2];
+        final int t1B = vertex[3 * t0 + side0_1];
+        final int t0C = vertex[3 * t0 + side0];
+
+        final int newt0N1 = neighbour[3 * t0 + side0_2];
+        final int newt0N2 = neighbour[3 * t1 + side1_1];
+        final int newt1N0 = neighbour[3 * t1 + side1_2];
+        final int newt1N1 = neighbour[3 * t0 + side0_1];
+
+        vertex[3 * t0] = t0A;
+        vertex[3 * t0 + 1] = t0B;
+        vertex[3 * t0 + 2] = t0C;
+        neighbour[3 * t0] = t1;
+        link(t0, 1, newt0N1);
+        link(t0, 2, newt0N2);
+
+        vertex[3 * t1] = t0A;
+        vertex[3 * t1 + 1] = t1B;
+        vertex[3 * t1 + 2] = t0B;
+        link(t1, 0, newt1N0);
+        link(t1, 1, newt1N1);
+        neighbour[3 * t1 + 2] = t0;
+    }
+
+    private void link(final int t1, final int side1, final int t2, final int side2) {
+        neighbour[3 * t1 + side1] = t2;
+        neighbour[3 * t2 + side2] = t1;
+    }
+
+    private void link(final int t1, final int side1, final int t2) {
+        final int p1 = vertex[3 * t1 + side1];
+        if (p1 == vertex[3 * t2 + side1]) {
+            neighbour[3 * t1 + side1] = t2;
+            neighbour[3 * t2 + (side1 + 2) % 3] = t1;
+        } else {
+            final int side2 = (side1 + 1) % 3;
+            if (p1 == vertex[3 * t2 + side2]) {
+                neighbour[3 * t1 + side1] = t2;
+                neighbour[3 * t2 + side1] = t1;
+            } else {
+                final int side3 = (side1 + 2) % 3;
+                if (p1 == vertex[3 * t2 + side3]) {
+                    neighbour[3 * t1 + side1] = t2;
+                    neighbour[3 * t2 + side2] = t1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 1 if c is on the left of edge AB of triangle t, -1 if on the right, 0 if aligned
+     */
+    private int ccw(final int t, final int c) {
+        final int a = vertex[3 * t];
+        final int b = vertex[3 * t + 1];
+        final double dx1dy2 = (x[b] - x[a]) * (y[c] - y[a]);
+        final double dy1dx2 = (y[b] - y[a]) * (x[c] - x[a]);
+        return dx1dy2 > dy1dx2 ? 1 : dx1dy2 < dy1dx2 ? -1 : 0;
+    }
+
+    /**
+     * @return a positive value if p lies inside the circumcircle of triangle t
+     */
+    private double inCircle(final int t, final int p) {
+        final int a = vertex[3 * t];
+        final int b = vertex[3 * t + 1];
+        final int c = vertex[3 * t + 2];
+
+        final double adx = x[a] - x[p];
+        final double ady = y[a] - y[p];
+        final double bdx = x[b] - x[p];
+        final double bdy = y[b] - y[p];
+        final double cdx = x[c] - x[p];
+        final double cdy = y[c] - y[p];
+
+        final double abdet = adx * bdy - bdx * ady;
+        final double bcdet = bdx * cdy - cdx * bdy;
+        final double cadet = cdx * ady - adx * cdy;
+        final double alift = adx * adx + ady * ady;
+        final double blift = bdx * bdx + bdy * bdy;
+        final double clift = cdx * cdx + cdy * cdy;
+
+        return alift * bcdet + blift * cadet + clift * abdet;
+    }
+
+    private static int compare(final double[] x, final double[] y, final int i, final int j) {
+        if (x[i] < x[j]) return -1;
+        if (x[i] > x[j]) return 1;
+        if (y[i] < y[j]) return -1;
+        if (y[i] > y[j]) return 1;
+        return 0;
+    }
+
+    /**
+     * Sort point indices by x and y with a stable natural merge sort and keep the first of equal points
+     */
+    static int[] sortUnique(final double[] x, final double[] y, final int n) {
+
+        int[] a = new int[n];
+        int[] b = new int[n];
+
+        // find runs, reversing strictly descending ones
+        int[] runStart = new int[16];
+        int numRuns = 0;
+        int i = 0;
+        while (i < n) {
+            final int start = i;
+            a[i] = i;
+            i++;
+            if (i < n && compare(x, y, i, i - 1) < 0) {
+                while (i < n && compare(x, y, i, i - 1) < 0) {
+                    a[i] = i;
+                    i++;
+                }
+                for (int lo = start, hi = i - 1; lo < hi; lo++, hi--) {
+                    final int tmp = a[lo];
+                    a[lo] = a[hi];
+                    a[hi] = tmp;
+                }
+            } else {
+                while (i < n && compare(x, y, i, i - 1) >= 0) {
+                    a[i] = i;
+                    i++;
+                }
+            }
+            if (numRuns + 1 >= runStart.length) {
+                runStart = Arrays.copyOf(runStart, 2 * runStart.length);
+            }
+            runStart[numRuns++] = start;
+        }
+        runStart[numRuns] = n;
+
+        // merge neighbouring runs until one is left
+        while (numRuns > 1) {
+            int r = 0;
+            int merged = 0;
+            for (; r + 1 < numRuns; r += 2) {
+                final int lo = runStart[r];
+                final int mid = runStart[r + 1];
+                final int hi = runStart[r + 2];
+                int p = lo, q = mid, k = lo;
+                while (p < mid && q < hi) {
+                    b[k++] = compare(x, y, a[q], a[p]) < 0 ? a[q++] : a[p++];
+                }
+                while (p < mid) b[k++] = a[p++];
+                while (q < hi) b[k++] = a[q++];
+                runStart[merged++] = lo;
+            }
+            if (r < numRuns) {
+                System.arraycopy(a, runStart[r], b, runStart[r], runStart[r + 1] - runStart[r]);
+                runStart[merged++] = runStart[r];
+            }
+            runStart[merged] = n;
+            numRuns = merged;
+            final int[] tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        // drop duplicates, the first of equal points is kept as the sort is stable
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            if (m == 0 || compare(x, y, a[k], a[m - 1]) != 0) {
+                a[m++] = a[k];
+            }
+        }
+        return m == n ? a : Arrays.copyOf(a, m);
+    }
+}
@@ -33,9 +33,27 @@ public class TriangleInterpolator {
                                       final Window window, final double xyRatio, final int xScale,
                                       final int yScale, final double invalidIndex, final int offset) throws Exception {
 
-        final FastDelaunayTriangulator FDT = triangulate(x_in, y_in, xyRatio, invalidIndex);
-        if(FDT != null) {
-            interpolate(xyRatio, window, xScale, yScale, offset, invalidIndex, FDT, zList);
+        // organize valid input points, the grid order is kept as it speeds up sorting
+        final int nCols = x_in[0].length;
+        final int size = x_in.length * nCols;
+        final double[] x = new double[size];
+        final double[] y = new double[size];
+        final int[] index = new int[size];
+        int n = 0;
+        for (int i = 0; i < x_in.length; i++) {
+            for (int j = 0; j < nCols; j++) {
+                if (x_in[i][j] == invalidIndex || y_in[i][j] == invalidIndex) {
+                    continue;
+                }
+                x[n] = x_in[i][j];
+                y[n] = y_in[i][j] * xyRatio;
+                index[n++] = i * nCols + j;
+            }
+        }
+
+        final int[] triangles = IndexedDelaunayTriangulator.triangulate(x, y, n);
+        if (triangles != null) {
+            interpolate(xyRatio, window, xScale, yScale, offset, invalidIndex, x, y, index, triangles, zList);
         }
     }
 
@@ -43,9 +61,22 @@ public class TriangleInterpolator {
                                       final Window window, final double xyRatio, final int xScale,
                                       final int yScale, final double invalidIndex, final int offset) throws Exception {
 
-        final FastDelaunayTriangulator FDT = triangulate(x_in, y_in, xyRatio, invalidIndex);
-        if(FDT != null) {
-            interpolate(xyRatio, window, xScale, yScale, offset, invalidIndex, FDT, zList);
+        final double[] x = new double[x_in.length];
+        final double[] y = new double[x_in.length];
+        final int[] index = new int[x_in.length];
+        int n = 0;
+        for (int i = 0; i < x_in.length; i++) {
+            if (x_in[i] == invalidIndex || y_in[i] == invalidIndex) {
+                continue;
+            }
+            x[n] = x_in[i];
+            y[n] = y_in[i] * xyRatio;
+            index[n++] = i;
+        }
+
+        final int[] triangles = IndexedDelaunayTriangulator.triangulate(x, y, n);
+        if (triangles != null) {
+            interpolate(xyRatio, window, xScale, yScale, offset, invalidIndex, x, y, index, triangles, zList);
         }
     }
 
@@ -117,24 +148,12 @@ public class TriangleInterpolator {
                                    final double offset, final double invalidIndex,
                                    final FastDelaunayTriangulator FDT, final ZData[] zList) {
 
-        final double x_min = tileWindow.linelo;
-        final double y_min = tileWindow.pixlo;
-
-        long i_min, i_max, j_min, j_max; // minimas/maximas
-        double xp, yp;
-        double xkj, ykj, xlj, ylj;
-        double f; // function
-
         // containers for xy coordinates of Triangles: p1-p2-p3-p1
         final double[] vx = new double[4];
         final double[] vy = new double[4];
         final double[] vz = new double[3];
 
-        final int nx = (int) tileWindow.lines();
-        final int ny = (int) tileWindow.pixels();
-
         //// interpolate: loop over triangles
-        //long t4 = System.currentTimeMillis();
         for (Triangle triangle : FDT.triangles) {
 
             // store triangle coordinates in local variables
@@ -147,88 +166,144 @@ public class TriangleInterpolator {
             vx[2] = triangle.getC().x;
             vy[2] = triangle.getC().y / xyRatio;
 
-            // skip invalid indices
-            if (vx[0] == invalidIndex || vx[1] == invalidIndex || vx[2] == invalidIndex ||
-                    vy[0] == invalidIndex || vy[1] == invalidIndex || vy[2] == invalidIndex) {
-                continue;
-            }
+            vz[0] = triangle.getA().z;
+            vz[1] = triangle.getB().z;
+            vz[2] = triangle.getC().z;
 
-            // Compute grid indices the current triangle may cover
-            xp = Math.min(Math.min(vx[0], vx[1]), vx[2]);
-            i_min = coordToIndex(xp, x_min, xScale, offset);
+            interpolateTriangle(vx, vy, vz, tileWindow, xScale, yScale, offset, invalidIndex, zList);
+        }
+    }
 
-            xp = Math.max(Math.max(vx[0], vx[1]), vx[2]);
-            i_max = coordToIndex(xp, x_min, xScale, offset);
+    /**
+     * Interpolate with triangles given as vertex indices
+     *
+     * @param x         x coordinates of the vertices
+     * @param y         y coordinates of the vertices, multiplied by xyRatio
+     * @param index     the index of every vertex in the z input
+     * @param triangles three vertex indices per triangle
+     */
+    private static void interpolate(final double xyRatio, final Window tileWindow,
+                                    final double xScale, final double yScale,
+                                    final double offset, final double invalidIndex,
+                                    final double[] x, final double[] y, final int[] index,
+                                    final int[] triangles, final ZData[] zList) {
 
-            yp = Math.min(Math.min(vy[0], vy[1]), vy[2]);
-            j_min = coordToIndex(yp, y_min, yScale, offset);
+        final double[] vx = new double[4];
+        final double[] vy = new double[4];
+        final double[] vz = new double[3];
 
-            yp = Math.max(Math.max(vy[0], vy[1]), vy[2]);
-            j_max = coordToIndex(yp, y_min, yScale, offset);
+        for (int t = 0; t < triangles.length; t += 3) {
+            final int a = triangles[t];
+            final int b = triangles[t + 1];
+            final int c = triangles[t + 2];
 
-            // skip triangle that is above or below the region
-            if ((i_max < 0) || (i_min >= nx)) {
-                continue;
-            }
+            vx[0] = vx[3] = x[a];
+            vy[0] = vy[3] = y[a] / xyRatio;
 
-            // skip triangle that is on the left or right of the region
-            if ((j_max < 0) || (j_min >= ny)) {
-                continue;
-            }
+            vx[1] = x[b];
+            vy[1] = y[b] / xyRatio;
 
-            // triangle covers the upper or lower boundary
-            if (i_min < 0) {
-                i_min = 0;
-            }
+            vx[2] = x[c];
+            vy[2] = y[c] / xyRatio;
 
-            if (i_max >= nx) {
-                i_max = nx - 1;
-            }
+            vz[0] = index[a];
+            vz[1] = index[b];
+            vz[2] = index[c];
 
-            // triangle covers left or right boundary
-            if (j_min < 0) {
-                j_min = 0;
-            }
+            interpolateTriangle(vx, vy, vz, tileWindow, xScale, yScale, offset, invalidIndex, zList);
+        }
+    }
 
-            if (j_max >= ny) {
-                j_max = ny - 1;
-            }
+    private static void interpolateTriangle(final double[] vx, final double[] vy, final double[] vz,
+                                            final Window tileWindow, final double xScale, final double yScale,
+                                            final double offset, final double invalidIndex, final ZData[] zList) {
 
-            // compute plane defined by the three vertices of the triangle: z = ax + by + c
-            xkj = vx[1] - vx[0];
-            ykj = vy[1] - vy[0];
-            xlj = vx[2] - vx[0];
-            ylj = vy[2] - vy[0];
+        final double x_min = tileWindow.linelo;
+        final double y_min = tileWindow.pixlo;
 
-            f = 1.0 / (xkj * ylj - ykj * xlj);
+        final int nx = (int) tileWindow.lines();
+        final int ny = (int) tileWindow.pixels();
 
-            vz[0] = triangle.getA().z;
-            vz[1] = triangle.getB().z;
-            vz[2] = triangle.getC().z;
+        long i_min, i_max, j_min, j_max; // minimas/maximas
+        double xp, yp;
+        double xkj, ykj, xlj, ylj;
+        double f; // function
 
-            for(ZData data : zList) {
-                getABC(vx, vy, vz, data, f, xkj, ykj, xlj, ylj);
-            }
+        // skip invalid indices
+        if (vx[0] == invalidIndex || vx[1] == invalidIndex || vx[2] == invalidIndex ||
+                vy[0] == invalidIndex || vy[1] == invalidIndex || vy[2] == invalidIndex) {
+            return;
+        }
+
+        // Compute grid indices the current triangle may cover
+        xp = Math.min(Math.min(vx[0], vx[1]), vx[2]);
+        i_min = coordToIndex(xp, x_min, xScale, offset);
 
-            final PointInTriangle pointInTriangle = new PointInTriangle(vx, vy);
+        xp = Math.max(Math.max(vx[0], vx[1]), vx[2]);
+        i_max = coordToIndex(xp, x_min, xScale, offset);
 
-            for (int i = (int)i_min; i <= i_max; i++) {
-                xp = x_min + i * xScale + offset;
-                for (int j = (int)j_min; j <= j_max; j++) {
-                    yp = y_min + j * yScale + offset;
+        yp = Math.min(Math.min(vy[0], vy[1]), vy[2]);
+        j_min = coordToIndex(yp, y_min, yScale, offset);
 
-                    if(!pointInTriangle.test(xp, yp)) {
-                        continue;
-                    }
+        yp = Math.max(Math.max(vy[0], vy[1]), vy[2]);
+        j_max = coordToIndex(yp, y_min, yScale, offset);
+
+        // skip triangle that is above or below the region
+        if ((i_max < 0) || (i_min >= nx)) {
+            return;
+        }
+
+        // skip triangle that is on the left or right of the region
+        if ((j_max < 0) || (j_min >= ny)) {
+            return;
+        }
+
+        // triangle covers the upper or lower boundary
+        if (i_min < 0) {
+            i_min = 0;
+        }
+
+        if (i_max >= nx) {
+            i_max = nx - 1;
+        }
+
+        // triangle covers left or right boundary
+        if (j_min < 0) {
+            j_min = 0;
+        }
+
+        if (j_max >= ny) {
+            j_max = ny - 1;
+        }
+
+        // compute plane defined by the three vertices of the triangle: z = ax + by + c
+        xkj = vx[1] - vx[0];
+        ykj = vy[1] - vy[0];
+        xlj = vx[2] - vx[0];
+        ylj = vy[2] - vy[0];
+
+        f = 1.0 / (xkj * ylj - ykj * xlj);
+
+        for(ZData data : zList) {
+            getABC(vx, vy, vz, data, f, xkj, ykj, xlj, ylj);
+        }
+
+        final PointInTriangle pointInTriangle = new PointInTriangle(vx, vy);
+
+        for (int i = (int)i_min; i <= i_max; i++) {
+            xp = x_min + i * xScale + offset;
+            for (int j = (int)j_min; j <= j_max; j++) {
+                yp = y_min + j * yScale + offset;
+
+                if(!pointInTriangle.test(xp, yp)) {
+                    continue;
+                }
 
-                    for(ZData d : zList) {
-                        d.z_out[i][j] = d.a * xp + d.b * yp + d.c;
-                    }
+                for(ZData d : zList) {
+                    d.z_out[i][j] = d.a * xp + d.b * yp + d.c;
                 }
             }
         }
-        //long t5 = System.currentTimeMillis();
-        //SystemUtils.LOG.info("Data set interpolated in " + (0.001 * (t5 - t4)) + " sec");
     }
 
     private static void getABC(
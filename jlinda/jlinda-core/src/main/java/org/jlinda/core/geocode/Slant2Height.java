@@ -315,22 +315,24 @@ public class Slant2Height {
         }
 
         // Evaluate h=f(l,p,phi) for all points in grid in BUFFER
-        double[] coeffThisPoint = new double[degree1D + 1]; //DoubleMatrix(degree1D + 1, 1);
-
-        for (int line = 0; line < mlLines; line++) {
-            for (int pixel = 0; pixel < mlPixels; pixel++) {
-                // Check if unwrapped ok, else compute h
-                if (tile.get(line, pixel) != Double.NaN) // else leave NaN
-                {
-                    for (int k = 0; k < degree1D + 1; k++) {
-                        coeffThisPoint[k] = pntALPHA[k].get(line, pixel);
-                    }
-                    double data = tile.get(line, pixel);
-                    double x = PolyUtils.normalize2(data, minPhi, maxPhi);
-                    double value = PolyUtils.polyVal1D(x, coeffThisPoint);
-                    tile.put(line, pixel, value);
+        //  .....Horner scheme over whole columns of the column major data, NaN phase gives NaN height
+        final double[] data = tile.data;
+        final double[] phi = new double[mlLines];
+        final double[] value = new double[mlLines];
+        for (int pixel = 0; pixel < mlPixels; pixel++) {
+            final int offset = pixel * tile.rows;
+            final int alphaOffset = pixel * mlLines;
+            for (int line = 0; line < mlLines; line++) {
+                phi[line] = PolyUtils.normalize2(data[offset + line], minPhi, maxPhi);
+                value[line] = 0.0;
+            }
+            for (int k = degree1D; k >= 0; k--) {
+                final double[] alpha = pntALPHA[k].data;
+                for (int line = 0; line < mlLines; line++) {
+                    value[line] = value[line] * phi[line] + alpha[alphaOffset + line];
                 }
             }
+            System.arraycopy(value, 0, data, offset, mlLines);
         }
 
     }
@@ -0,0 +1,273 @@
+package org.jlinda.core.unwrapping.qualityguided;
+
+import java.util.Arrays;
+
+/**
+ * Quality guided phase unwrapping of a single block of wrapped phase.
+ * <p>
+ * Pixels are unwrapped in order of decreasing quality, each one relative to its best already unwrapped
+ * neighbour, so that phase errors in noisy areas do not propagate into good areas.
+ * Pixels with NaN phase are not unwrapped; areas separated by them form independent regions
+ * whose relative 2*PI offsets are unknown.
+ */
+public class QualityGuidedUnwrapper {
+
+    private static final double TWO_PI = 2.0 * Math.PI;
+
+    public static final class Result {
+
+        private final float[] unwrapped;
+        private final int[] regions;
+        private final int numRegions;
+
+        Result(final float[] unwrapped, final int[] regions, final int numRegions) {
+            this.unwrapped = unwrapped;
+            this.regions = regions;
+            this.numRegions = numRegions;
+        }
+
+        /**
+         * @return the unwrapped phase, NaN where the input phase is NaN
+         */
+        public float[] getUnwrapped() {
+            return unwrapped;
+        }
+
+        /**
+         * @return the region index of each pixel, -1 where the input phase is NaN
+         */
+        public int[] getRegions() {
+            return regions;
+        }
+
+        public int getNumRegions() {
+            return numRegions;
+        }
+    }
+
+    private QualityGuidedUnwrapper() {
+    }
+
+    /**
+     * Unwraps a block of phase
+     *
+     * @param phase   wrapped phase in radians, row major, NaN for no-data
+     * @param quality quality of each pixel, higher is better, e.g. coherence. If null the phase derivative
+     *                variance is used.
+     * @param width   block width
+     * @param height  block height
+     * @return the unwrapped phase and the regions
+     */
+    public static Result unwrap(final float[] phase, float[] quality, final int width, final int height) {
+
+        final int size = width * height;
+        if (quality == null) {
+            quality = computePhaseDerivativeQuality(phase, width, height);
+        }
+
+        final float[] unwrapped = new float[size];
+        final int[] regions = new int[size];
+        Arrays.fill(regions, -1);
+        final boolean[] queued = new boolean[size];
+
+        // seeds in order of decreasing quality so that each region starts at its best pixel
+        final IndexHeap seeds = new IndexHeap(quality, size);
+        for (int i = 0; i < size; ++i) {
+            if (Float.isNaN(phase[i])) {
+                unwrapped[i] = Float.NaN;
+            } else {
+                seeds.push(i);
+            }
+        }
+
+        final IndexHeap front = new IndexHeap(quality, 1024);
+        int numRegions = 0;
+        while (!seeds.isEmpty()) {
+            final int seed = seeds.pop();
+            if (queued[seed]) {
+                continue;
+            }
+
+            final int region = numRegions++;
+            queued[seed] = true;
+            unwrapped[seed] = phase[seed];
+            regions[seed] = region;
+            addNeighbours(seed, width, height, phase, queued, front);
+
+            while (!front.isEmpty()) {
+                final int idx = front.pop();
+                final int ref = getBestUnwrappedNeighbour(idx, width, height, quality, regions);
+
+                unwrapped[idx] = unwrapped[ref] + (float) wrap(phase[idx] - phase[ref]);
+                regions[idx] = region;
+                addNeighbours(idx, width, height, phase, queued, front);
+            }
+        }
+
+        return new Result(unwrapped, regions, numRegions);
+    }
+
+    private static void addNeighbours(final int idx, final int width, final int height, final float[] phase,
+                                      final boolean[] queued, final IndexHeap front) {
+        final int x = idx % width;
+        final int y = idx / width;
+        if (x > 0) {
+            enqueue(idx - 1, phase, queued, front);
+        }
+        if (x < width - 1) {
+            enqueue(idx + 1, phase, queued, front);
+        }
+        if (y > 0) {
+            enqueue(idx - width, phase, queued, front);
+        }
+        if (y < height - 1) {
+            enqueue(idx + width, phase, queued, front);
+        }
+    }
+
+    private static void enqueue(final int idx, final float[] phase, final boolean[] queued, final IndexHeap front) {
+        if (!queued[idx] && !Float.isNaN(phase[idx])) {
+            queued[idx] = true;
+            front.push(idx);
+        }
+    }
+
+    private static int getBestUnwrappedNeighbour(final int idx, final int width, final int height,
+                                                 final float[] quality, final int[] regions) {
+        final int x = idx % width;
+        final int y = idx / width;
+        int best = -1;
+        if (x > 0 && regions[idx - 1] >= 0) {
+            best = idx - 1;
+        }
+        if (x < width - 1 && regions[idx + 1] >= 0 && (best < 0 || quality[idx + 1] > quality[best])) {
+            best = idx + 1;
+        }
+        if (y > 0 && regions[idx - width] >= 0 && (best < 0 || quality[idx - width] > quality[best])) {
+            best = idx - width;
+        }
+        if (y < height - 1 && regions[idx + width] >= 0 && (best < 0 || quality[idx + width] > quality[best])) {
+            best = idx + width;
+        }
+        return best;
+    }
+
+    /**
+     * Wraps a phase difference into [-PI, PI)
+     */
+    public static double wrap(final double phase) {
+        return phase - TWO_PI * Math.floor((phase + Math.PI) / TWO_PI);
+    }
+
+    /**
+     * Quality from the phase derivative variance in a 3x3 window: the negated sum of the standard deviations
+     * of the wrapped horizontal and vertical phase gradients.
+     */
+    static float[] computePhaseDerivativeQuality(final float[] phase, final int width, final int height) {
+
+        final int size = width * height;
+        final float[] dx = new float[size];
+        final float[] dy = new float[size];
+        for (int y = 0; y < height; ++y) {
+            final int row = y * width;
+            for (int x = 0; x < width; ++x) {
+                final int idx = row + x;
+                dx[idx] = x < width - 1 ? (float) wrap(phase[idx + 1] - phase[idx]) : Float.NaN;
+                dy[idx] = y < height - 1 ? (float) wrap(phase[idx + width] - phase[idx]) : Float.NaN;
+            }
+        }
+
+        final float[] quality = new float[size];
+        for (int y = 0; y < height; ++y) {
+            final int y0 = Math.max(0, y - 1), y1 = Math.min(height - 1, y + 1);
+            for (int x = 0; x < width; ++x) {
+                final int x0 = Math.max(0, x - 1), x1 = Math.min(width - 1, x + 1);
+                quality[y * width + x] = -(float) (stdDev(dx, width, x0, x1, y0, y1) +
+                        stdDev(dy, width, x0, x1, y0, y1));
+            }
+        }
+        return quality;
+    }
+
+    private static double stdDev(final float[] d, final int width, final int x0, final int x1,
+                                 final int y0, final int y1) {
+        double sum = 0, sum2 = 0;
+        int cnt = 0;
+        for (int y = y0; y <= y1; ++y) {
+            for (int x = x0; x <= x1; ++x) {
+                final float v = d[y * width + x];
+                if (!Float.isNaN(v)) {
+                    sum += v;
+                    sum2 += v * v;
+                    ++cnt;
+                }
+            }
+        }
+        if (cnt == 0) {
+            return Math.PI;
+        }
+        final double mean = sum / cnt;
+        return Math.sqrt(Math.max(0, sum2 / cnt - mean * mean));
+    }
+
+    /**
+     * Binary max-heap of pixel indices ordered by quality
+     */
+    private static final class IndexHeap {
+
+        private final float[] key;
+        private int[] heap;
+        private int size = 0;
+
+        IndexHeap(final float[] key, final int capacity) {
+            this.key = key;
+            this.heap = new int[Math.max(16, capacity)];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(final int idx) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, heap.length * 2);
+            }
+            int pos = size++;
+            final float k = key[idx];
+            while (pos > 0) {
+                final int parent = (pos - 1) >>> 1;
+                if (key[heap[parent]] >= k) {
+                    break;
+                }
+                heap[pos] = heap[parent];
+                pos = parent;
+            }
+            heap[pos] = idx;
+        }
+
+        int pop() {
+            final int top = heap[0];
+            final int last = heap[--size];
+            if (size > 0) {
+                final float k = key[last];
+                int pos = 0;
+                while (true) {
+                    int child = 2 * pos + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && key[heap[child + 1]] > key[heap[child]]) {
+                        ++child;
+                    }
+                    if (key[heap[child]] <= k) {
+                        break;
+                    }
+                    heap[pos] = heap[child];
+                    pos = child;
+                }
+                heap[pos] = last;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package org.jlinda.core.unwrapping.qualityguided;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unwrapping of a scene in overlapping tiles.
+ * <p>
+ * The scene is divided into a grid of core tiles, each extended by an overlap on all sides.
+ * In a first pass the tiles are unwrapped independently, in any order and from any thread, with
+ * {@link #unwrapTile}. Only the number of regions of each tile and the overlap statistics are kept: the overlap
+ * of a tile is held until its neighbour has been unwrapped and both have voted on the integer number of cycles
+ * between their regions. {@link #reconcile()} then integrates these offsets along a maximum spanning tree, so
+ * that the most consistent overlaps decide the offsets.
+ * In a second pass each tile is unwrapped again on demand with {@link #getUnwrapped}, which applies the offsets
+ * of its regions. The unwrapping is deterministic, so the regions are the same as in the first pass.
+ */
+public class TiledUnwrapping {
+
+    private static final double TWO_PI = 2.0 * Math.PI;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int overlap;
+    private final int numTilesX;
+    private final int numTilesY;
+    private final Rectangle[] tileRectangles;
+
+    // first pass state, guarded by this
+    private final int[] tileNumRegions;
+    private final Map<Long, Edge> pendingEdges = new HashMap<>();
+    private final List<Link> links = new ArrayList<>();
+
+    // offsets, set by reconcile
+    private volatile int[] regionBase = null;
+    private volatile int[] cycles = null;
+
+    public TiledUnwrapping(final int width, final int height, final int tileSize, final int overlap) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+        this.numTilesX = (width + tileSize - 1) / tileSize;
+        this.numTilesY = (height + tileSize - 1) / tileSize;
+
+        final Rectangle scene = new Rectangle(0, 0, width, height);
+        tileRectangles = new Rectangle[numTilesX * numTilesY];
+        for (int ty = 0; ty < numTilesY; ++ty) {
+            for (int tx = 0; tx < numTilesX; ++tx) {
+                final Rectangle rect = new Rectangle(tx * tileSize - overlap, ty * tileSize - overlap,
+                                                     tileSize + 2 * overlap, tileSize + 2 * overlap);
+                tileRectangles[ty * numTilesX + tx] = rect.intersection(scene);
+            }
+        }
+        tileNumRegions = new int[tileRectangles.length];
+        Arrays.fill(tileNumRegions, -1);
+    }
+
+    public int getNumTiles() {
+        return tileRectangles.length;
+    }
+
+    /**
+     * @return the tile rectangle including its overlap
+     */
+    public Rectangle getTileRectangle(final int tileIndex) {
+        return new Rectangle(tileRectangles[tileIndex]);
+    }
+
+    /**
+     * @return the core of the tile, the part of the scene whose pixels are taken from this tile
+     */
+    public Rectangle getCoreRectangle(final int tileIndex) {
+        final int tx = tileIndex % numTilesX;
+        final int ty = tileIndex / numTilesX;
+        return new Rectangle(tx * tileSize, ty * tileSize, tileSize, tileSize)
+                .intersection(new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * @return the indices of the tiles whose cores intersect the scene rectangle
+     */
+    public int[] getTileIndices(final Rectangle rect) {
+        final int tx0 = rect.x / tileSize, tx1 = (rect.x + rect.width - 1) / tileSize;
+        final int ty0 = rect.y / tileSize, ty1 = (rect.y + rect.height - 1) / tileSize;
+        final int[] indices = new int[(tx1 - tx0 + 1) * (ty1 - ty0 + 1)];
+        int k = 0;
+        for (int ty = ty0; ty <= ty1; ++ty) {
+            for (int tx = tx0; tx <= tx1; ++tx) {
+                indices[k++] = ty * numTilesX + tx;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * First pass: unwraps one tile and votes on the cycle offsets with the neighbours unwrapped so far.
+     * Can be called concurrently for different tiles.
+     *
+     * @param tileIndex the tile
+     * @param phase     the wrapped phase of the tile rectangle, NaN for no-data
+     * @param quality   the quality of the tile rectangle or null
+     */
+    public void unwrapTile(final int tileIndex, final float[] phase, final float[] quality) {
+        final Rectangle rect = tileRectangles[tileIndex];
+        final QualityGuidedUnwrapper.Result result =
+                QualityGuidedUnwrapper.unwrap(phase, quality, rect.width, rect.height);
+
+        final int tx = tileIndex % numTilesX;
+        final int ty = tileIndex / numTilesX;
+        final List<Integer> neighbours = new ArrayList<>(4);
+        if (tx > 0) {
+            neighbours.add(tileIndex - 1);
+        }
+        if (tx + 1 < numTilesX) {
+            neighbours.add(tileIndex + 1);
+        }
+        if (ty > 0) {
+            neighbours.add(tileIndex - numTilesX);
+        }
+        if (ty + 1 < numTilesY) {
+            neighbours.add(tileIndex + numTilesX);
+        }
+
+        for (int neighbour : neighbours) {
+            final Edge edge = new Edge(tileIndex, result, rect, rect.intersection(tileRectangles[neighbour]));
+            final Edge other;
+            synchronized (this) {
+                other = pendingEdges.remove(edgeKey(neighbour, tileIndex));
+                if (other == null) {
+                    pendingEdges.put(edgeKey(tileIndex, neighbour), edge);
+                }
+            }
+            if (other != null) {
+                final List<Link> pairLinks = tileIndex < neighbour ? vote(edge, other) : vote(other, edge);
+                synchronized (this) {
+                    links.addAll(pairLinks);
+                }
+            }
+        }
+        synchronized (this) {
+            tileNumRegions[tileIndex] = result.getNumRegions();
+        }
+    }
+
+    private long edgeKey(final int tile, final int neighbour) {
+        return (long) tile * tileRectangles.length + neighbour;
+    }
+
+    /**
+     * Determines the cycle offsets between all tile regions.
+     * All tiles must have been unwrapped with {@link #unwrapTile}.
+     */
+    public synchronized void reconcile() {
+        if (cycles != null) {
+            return;
+        }
+
+        final int[] base = new int[tileNumRegions.length + 1];
+        for (int i = 0; i < tileNumRegions.length; ++i) {
+            if (tileNumRegions[i] < 0) {
+                throw new IllegalStateException("Tile " + i + " has not been unwrapped");
+            }
+            base[i + 1] = base[i] + tileNumRegions[i];
+        }
+
+        regionBase = base;
+        cycles = solveCycles(links, base);
+        links.clear();
+        pendingEdges.clear();
+    }
+
+    /**
+     * Counts, for every pair of overlapping regions of two tiles, how many overlap pixels agree on
+     * each integer cycle difference and keeps the most frequent difference as link.
+     *
+     * @param edgeA the overlap of the tile with the lower index
+     * @param edgeB the overlap of the tile with the higher index
+     */
+    private static List<Link> vote(final Edge edgeA, final Edge edgeB) {
+        final Map<Long, Map<Integer, int[]>> votes = new HashMap<>();
+        for (int i = 0; i < edgeA.regions.length; ++i) {
+            final int regA = edgeA.regions[i];
+            final int regB = edgeB.regions[i];
+            if (regA < 0 || regB < 0) {
+                continue;
+            }
+            final int diff = (int) Math.round((edgeA.unwrapped[i] - edgeB.unwrapped[i]) / TWO_PI);
+            final long key = ((long) regA << 32) | regB;
+            votes.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(diff, k -> new int[1])[0]++;
+        }
+
+        final List<Link> pairLinks = new ArrayList<>(votes.size());
+        for (Map.Entry<Long, Map<Integer, int[]>> entry : votes.entrySet()) {
+            int bestDiff = 0, bestCount = -1;
+            for (Map.Entry<Integer, int[]> vote : entry.getValue().entrySet()) {
+                if (vote.getValue()[0] > bestCount ||
+                        (vote.getValue()[0] == bestCount && vote.getKey() < bestDiff)) {
+                    bestCount = vote.getValue()[0];
+                    bestDiff = vote.getKey();
+                }
+            }
+            final long key = entry.getKey();
+            pairLinks.add(new Link(edgeA.tile, (int) (key >>> 32), edgeB.tile, (int) key, bestDiff, bestCount));
+        }
+        return pairLinks;
+    }
+
+    /**
+     * Kruskal maximum spanning forest over the links, using a union-find that keeps the cycle offset of
+     * each region relative to its parent.
+     *
+     * @return the number of cycles to add to each region
+     */
+    private static int[] solveCycles(final List<Link> links, final int[] regionBase) {
+        // tiles are unwrapped in any order, so ties are broken by the regions to keep the result reproducible
+        links.sort(Comparator.comparingInt((Link l) -> -l.weight)
+                           .thenComparingInt(l -> l.tileA).thenComparingInt(l -> l.regionA)
+                           .thenComparingInt(l -> l.tileB).thenComparingInt(l -> l.regionB));
+
+        final int numRegions = regionBase[regionBase.length - 1];
+        final int[] parent = new int[numRegions];
+        final int[] offset = new int[numRegions];
+        for (int i = 0; i < numRegions; ++i) {
+            parent[i] = i;
+        }
+
+        for (Link link : links) {
+            final int regionA = regionBase[link.tileA] + link.regionA;
+            final int regionB = regionBase[link.tileB] + link.regionB;
+            final int rootA = find(regionA, parent, offset);
+            final int rootB = find(regionB, parent, offset);
+            if (rootA != rootB) {
+                // cycles(B) - cycles(A) must equal diff so that A and B agree in the overlap
+                parent[rootB] = rootA;
+                offset[rootB] = link.diff + offset[regionA] - offset[regionB];
+            }
+        }
+
+        final int[] cycles = new int[numRegions];
+        for (int i = 0; i < numRegions; ++i) {
+            find(i, parent, offset);
+            cycles[i] = offset[i];
+        }
+        return cycles;
+    }
+
+    /**
+     * @return the root of the region; afterwards parent[region] is the root and offset[region] is
+     * relative to the root
+     */
+    private static int find(final int region, final int[] parent, final int[] offset) {
+        int root = region;
+        int total = 0;
+        while (parent[root] != root) {
+            total += offset[root];
+            root = parent[root];
+        }
+        // path compression
+        int node = region;
+        while (parent[node] != node) {
+            final int next = parent[node];
+            final int nodeOffset = offset[node];
+            offset[node] = total;
+            parent[node] = root;
+            total -= nodeOffset;
+            node = next;
+        }
+        return root;
+    }
+
+    /**
+     * Second pass: unwraps one tile again and copies its part of a scene rectangle with the cycle offsets applied.
+     * Can be called concurrently once the offsets have been reconciled.
+     *
+     * @param tileIndex the tile, whose core intersects the rectangle
+     * @param phase     the wrapped phase of the tile rectangle, NaN for no-data
+     * @param quality   the quality of the tile rectangle or null
+     * @param rect      the scene rectangle
+     * @param out       the unwrapped phase of the rectangle, row major, NaN for no-data. Only the pixels in the
+     *                  core of the tile are set.
+     */
+    public void getUnwrapped(final int tileIndex, final float[] phase, final float[] quality,
+                             final Rectangle rect, final float[] out) {
+        if (cycles == null) {
+            reconcile();
+        }
+        final Rectangle tileRect = tileRectangles[tileIndex];
+        final QualityGuidedUnwrapper.Result result =
+                QualityGuidedUnwrapper.unwrap(phase, quality, tileRect.width, tileRect.height);
+        if (result.getNumRegions() != tileNumRegions[tileIndex]) {
+            throw new IllegalStateException("Tile " + tileIndex + " differs from the first pass");
+        }
+        final float[] unwrapped = result.getUnwrapped();
+        final int[] regions = result.getRegions();
+        final int base = regionBase[tileIndex];
+
+        final Rectangle part = getCoreRectangle(tileIndex).intersection(rect);
+        for (int y = part.y; y < part.y + part.height; ++y) {
+            final int src = (y - tileRect.y) * tileRect.width - tileRect.x;
+            final int dst = (y - rect.y) * rect.width - rect.x;
+            for (int x = part.x; x < part.x + part.width; ++x) {
+                final int region = regions[src + x];
+                out[dst + x] = region < 0 ? Float.NaN :
+                        unwrapped[src + x] + (float) (TWO_PI * cycles[base + region]);
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    /**
+     * The unwrapped phase and regions of a tile within its overlap with a neighbour
+     */
+    private static final class Edge {
+        final int tile;
+        final float[] unwrapped;
+        final int[] regions;
+
+        Edge(final int tile, final QualityGuidedUnwrapper.Result result, final Rectangle rect,
+             final Rectangle common) {
+            this.tile = tile;
+            unwrapped = new float[common.width * common.height];
+            regions = new int[common.width * common.height];
+
+            int k = 0;
+            for (int y = common.y; y < common.y + common.height; ++y) {
+                final int row = (y - rect.y) * rect.width - rect.x;
+                for (int x = common.x; x < common.x + common.width; ++x) {
+                    unwrapped[k] = result.getUnwrapped()[row + x];
+                    regions[k++] = result.getRegions()[row + x];
+                }
+            }
+        }
+    }
+
+    private static final class Link {
+        final int tileA;
+        final int regionA;
+        final int tileB;
+        final int regionB;
+        final int diff;
+        final int weight;
+
+        Link(final int tileA, final int regionA, final int tileB, final int regionB, final int diff,
+             final int weight) {
+            this.tileA = tileA;
+            this.regionA = regionA;
+            this.tileB = tileB;
+            this.regionB = regionB;
+            this.diff = diff;
+            this.weight = weight;
+        }
+    }
+}
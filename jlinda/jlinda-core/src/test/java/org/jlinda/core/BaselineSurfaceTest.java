@@ -0,0 +1,116 @@
+package org.jlinda.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.jlinda.core.utils.PolyUtils.normalize2;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the line and grid evaluation of the baseline model with the evaluation point by point
+ */
+public class BaselineSurfaceTest {
+
+    private static final double LIN_MAX = 25000.0;
+    private static final double PIX_MAX = 5000.0;
+    private static final double H_MAX = 5000.0;
+    private static final double WAVELENGTH = 0.0555;
+    private static final double NEAR_RANGE = 830000.0;
+    private static final double DRANGE_DP = 2.33;
+
+    private static final double DELTA = 1E-9;
+
+    private final Random random = new Random(7);
+    private final double[] bperpCoeffs = createCoefficients(200.0);
+    private final double[] bparCoeffs = createCoefficients(80.0);
+    private final double[] thetaCoeffs = createCoefficients(0.4);
+    private final double[] thetaIncCoeffs = createCoefficients(0.4);
+
+    private final BaselineSurface surface = new BaselineSurface(bperpCoeffs, bparCoeffs, thetaCoeffs, thetaIncCoeffs,
+            0.0, LIN_MAX, 0.0, PIX_MAX, 0.0, H_MAX, WAVELENGTH, NEAR_RANGE, DRANGE_DP);
+
+    private double[] createCoefficients(final double scale) {
+        final double[] coeffs = new double[10];
+        coeffs[0] = scale;
+        for (int i = 1; i < coeffs.length; i++) {
+            coeffs[i] = scale * 0.1 * random.nextGaussian();
+        }
+        return coeffs;
+    }
+
+    // --- B(l,p,h) as modeled by Baseline
+    private static double polyVal(final double[] c, final double line, final double pixel, final double height) {
+        final double l = normalize2(line, 0.0, LIN_MAX);
+        final double p = normalize2(pixel, 0.0, PIX_MAX);
+        final double h = normalize2(height, 0.0, H_MAX);
+        return c[0] +
+                c[1] * l + c[2] * p + c[3] * h +
+                c[4] * l * p + c[5] * l * h + c[6] * p * h +
+                c[7] * l * l + c[8] * p * p + c[9] * h * h;
+    }
+
+    @Test
+    public void testPoint() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final double line = random.nextDouble() * LIN_MAX;
+            final double pixel = random.nextDouble() * PIX_MAX;
+            final double height = random.nextDouble() * H_MAX;
+            assertEquals(polyVal(bperpCoeffs, line, pixel, height), surface.getBperp(line, pixel, height), DELTA);
+            assertEquals(polyVal(bparCoeffs, line, pixel, height), surface.getBpar(line, pixel, height), DELTA);
+            assertEquals(polyVal(thetaCoeffs, line, pixel, height), surface.getTheta(line, pixel, height), DELTA);
+            assertEquals(polyVal(thetaIncCoeffs, line, pixel, height), surface.getThetaInc(line, pixel, height), DELTA);
+        }
+    }
+
+    @Test
+    public void testLine() throws Exception {
+        final int x0 = 1234;
+        final int width = 300;
+        final int offset = 5;
+        final double[] bperp = new double[offset + width];
+        final double[] bpar = new double[offset + width];
+        final double[] hamb = new double[offset + width];
+        for (double height : new double[]{0.0, 1500.0}) {
+            final double line = 17001;
+            surface.getBperp(line, x0, width, height, bperp, offset);
+            surface.getBpar(line, x0, width, height, bpar, offset);
+            surface.getHamb(line, x0, width, height, hamb, offset);
+            for (int i = 0; i < width; i++) {
+                final int x = x0 + i;
+                final double expectedBperp = polyVal(bperpCoeffs, line, x, height);
+                assertEquals(expectedBperp, bperp[offset + i], DELTA);
+                assertEquals(polyVal(bparCoeffs, line, x, height), bpar[offset + i], DELTA);
+
+                final double expectedHamb = -WAVELENGTH * (NEAR_RANGE + DRANGE_DP * x) *
+                        Math.sin(polyVal(thetaIncCoeffs, line, x, height)) / (2.0 * expectedBperp);
+                assertEquals(expectedHamb, hamb[offset + i], Math.abs(expectedHamb) * DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testGrid() throws Exception {
+        final int x0 = 10;
+        final int y0 = 20000;
+        final int width = 64;
+        final int lines = 48;
+        final double height = 250.0;
+        final double[] bperp = new double[width * lines];
+        final double[] bpar = new double[width * lines];
+        surface.getBperp(x0, y0, width, lines, height, bperp);
+        surface.getBpar(x0, y0, width, lines, height, bpar);
+        for (int j = 0; j < lines; j++) {
+            for (int i = 0; i < width; i++) {
+                assertEquals(polyVal(bperpCoeffs, y0 + j, x0 + i, height), bperp[j * width + i], DELTA);
+                assertEquals(polyVal(bparCoeffs, y0 + j, x0 + i, height), bpar[j * width + i], DELTA);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCoefficientCount() throws Exception {
+        new BaselineSurface(new double[9], bparCoeffs, thetaCoeffs, thetaIncCoeffs,
+                0.0, LIN_MAX, 0.0, PIX_MAX, 0.0, H_MAX, WAVELENGTH, NEAR_RANGE, DRANGE_DP);
+    }
+}
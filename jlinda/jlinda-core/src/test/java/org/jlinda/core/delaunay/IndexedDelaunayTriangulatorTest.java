@@ -0,0 +1,95 @@
+package org.jlinda.core.delaunay;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class IndexedDelaunayTriangulatorTest {
+
+    @Test
+    public void testSortUnique() {
+        final double[] x = {3, 1, 2, 2, 1, 0, 3};
+        final double[] y = {0, 1, 5, 4, 1, 9, 0};
+        final int[] order = IndexedDelaunayTriangulator.sortUnique(x, y, x.length);
+        Assert.assertArrayEquals(new int[]{5, 1, 3, 2, 0}, order);
+    }
+
+    @Test
+    public void testRandomPoints() throws Exception {
+        final Random random = new Random(42);
+        final int n = 2000;
+        final double[] x = new double[n];
+        final double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = random.nextDouble() * 100;
+            y[i] = random.nextDouble() * 100;
+        }
+        compareWithFastDelaunayTriangulator(x, y);
+    }
+
+    @Test
+    public void testRadarCodedGrid() throws Exception {
+        // rotated and distorted DEM grid with repeated points
+        final Random random = new Random(7);
+        final int rows = 40, cols = 50;
+        final double[] x = new double[rows * cols];
+        final double[] y = new double[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                final int k = i * cols + j;
+                final double h = random.nextDouble() * 0.4;
+                x[k] = 1000 - 2.0 * i + 0.3 * j;
+                y[k] = 500 + 0.4 * i + 2.5 * j - h;
+            }
+        }
+        x[10] = x[11];
+        y[10] = y[11];
+        compareWithFastDelaunayTriangulator(x, y);
+    }
+
+    @Test
+    public void testTooFewPoints() {
+        Assert.assertNull(IndexedDelaunayTriangulator.triangulate(new double[]{1, 1, 2}, new double[]{1, 1, 2}, 3));
+    }
+
+    private static void compareWithFastDelaunayTriangulator(final double[] x, final double[] y) throws Exception {
+        final List<Geometry> list = new ArrayList<>();
+        final GeometryFactory gf = new GeometryFactory();
+        for (int i = 0; i < x.length; i++) {
+            list.add(gf.createPoint(new Coordinate(x[i], y[i], i)));
+        }
+        final FastDelaunayTriangulator FDT = new FastDelaunayTriangulator();
+        FDT.triangulate(list.iterator());
+
+        final List<String> expected = new ArrayList<>();
+        for (Triangle t : FDT.triangles) {
+            expected.add(toKey((int) t.getA().z, (int) t.getB().z, (int) t.getC().z));
+        }
+
+        final int[] triangles = IndexedDelaunayTriangulator.triangulate(x, y, x.length);
+        final List<String> actual = new ArrayList<>();
+        for (int t = 0; t < triangles.length; t += 3) {
+            actual.add(toKey(triangles[t], triangles[t + 1], triangles[t + 2]));
+        }
+
+        final String[] e = expected.toArray(new String[0]);
+        final String[] a = actual.toArray(new String[0]);
+        Arrays.sort(e);
+        Arrays.sort(a);
+        Assert.assertArrayEquals(e, a);
+    }
+
+    // the same triangle in any rotation of its counterclockwise vertices
+    private static String toKey(final int a, final int b, final int c) {
+        if (a < b && a < c) return a + "," + b + "," + c;
+        if (b < c) return b + "," + c + "," + a;
+        return c + "," + a + "," + b;
+    }
+}
@@ -0,0 +1,121 @@
+package org.jlinda.core.unwrapping.qualityguided;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TiledUnwrappingTest {
+
+    private static final double DELTA = 1e-3;
+
+    private static float[] createTruePhase(final int width, final int height) {
+        final float[] phase = new float[width * height];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                // ramp plus a bump, several cycles over the scene
+                final double dx = x - width / 2.0, dy = y - height / 2.0;
+                phase[y * width + x] = (float) (0.15 * x + 0.05 * y + 20.0 * Math.exp(-(dx * dx + dy * dy) / 800.0));
+            }
+        }
+        return phase;
+    }
+
+    private static float[] subset(final float[] data, final int width, final Rectangle rect, final boolean wrap) {
+        final float[] out = new float[rect.width * rect.height];
+        int k = 0;
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                final float v = data[y * width + x];
+                out[k++] = wrap && !Float.isNaN(v) ? (float) QualityGuidedUnwrapper.wrap(v) : v;
+            }
+        }
+        return out;
+    }
+
+    private static void assertUnwrapped(final float[] truth, final float[] unwrapped) {
+        int ref = 0;
+        while (Float.isNaN(truth[ref])) {
+            ++ref;
+        }
+        final double offset = unwrapped[ref] - truth[ref];
+        assertEquals(0.0, Math.IEEEremainder(offset, 2.0 * Math.PI), DELTA);
+        for (int i = 0; i < truth.length; ++i) {
+            if (Float.isNaN(truth[i])) {
+                assertTrue(Float.isNaN(unwrapped[i]));
+            } else {
+                assertEquals(truth[i] + offset, unwrapped[i], DELTA);
+            }
+        }
+    }
+
+    /**
+     * Runs the first pass over all tiles, then unwraps the tiles covering the rectangle on demand
+     */
+    private static float[] unwrap(final TiledUnwrapping unwrapping, final float[] truth, final int width,
+                                  final Rectangle rect) {
+        for (int i = 0; i < unwrapping.getNumTiles(); ++i) {
+            final Rectangle tileRect = unwrapping.getTileRectangle(i);
+            unwrapping.unwrapTile(i, subset(truth, width, tileRect, true), null);
+        }
+        unwrapping.reconcile();
+
+        final float[] unwrapped = new float[rect.width * rect.height];
+        for (int i : unwrapping.getTileIndices(rect)) {
+            final Rectangle tileRect = unwrapping.getTileRectangle(i);
+            unwrapping.getUnwrapped(i, subset(truth, width, tileRect, true), null, rect, unwrapped);
+        }
+        return unwrapped;
+    }
+
+    @Test
+    public void testSingleBlock() {
+        final int width = 80, height = 60;
+        final float[] truth = createTruePhase(width, height);
+        final float[] wrapped = subset(truth, width, new Rectangle(0, 0, width, height), true);
+
+        final QualityGuidedUnwrapper.Result result = QualityGuidedUnwrapper.unwrap(wrapped, null, width, height);
+        assertEquals(1, result.getNumRegions());
+        assertUnwrapped(truth, result.getUnwrapped());
+    }
+
+    @Test
+    public void testTiles() {
+        final int width = 150, height = 110;
+        final float[] truth = createTruePhase(width, height);
+
+        final TiledUnwrapping unwrapping = new TiledUnwrapping(width, height, 32, 8);
+        final float[] unwrapped = unwrap(unwrapping, truth, width, new Rectangle(0, 0, width, height));
+        assertUnwrapped(truth, unwrapped);
+    }
+
+    @Test
+    public void testPartialRectangle() {
+        final int width = 150, height = 110;
+        final float[] truth = createTruePhase(width, height);
+        final Rectangle scene = new Rectangle(0, 0, width, height);
+        final float[] full = unwrap(new TiledUnwrapping(width, height, 32, 8), truth, width, scene);
+
+        // not aligned with the tiles, as requested by a single target tile
+        final Rectangle rect = new Rectangle(20, 40, 50, 45);
+        final float[] part = unwrap(new TiledUnwrapping(width, height, 32, 8), truth, width, rect);
+        assertArrayEquals(subset(full, width, rect, false), part, 0.0f);
+    }
+
+    @Test
+    public void testTilesWithNoData() {
+        final int width = 120, height = 90;
+        final float[] truth = createTruePhase(width, height);
+        // a no-data column cutting some tiles into two regions, bridged further down
+        for (int y = 0; y < 70; ++y) {
+            truth[y * width + 50] = Float.NaN;
+        }
+
+        final TiledUnwrapping unwrapping = new TiledUnwrapping(width, height, 40, 10);
+        final float[] unwrapped = unwrap(unwrapping, truth, width, new Rectangle(0, 0, width, height));
+        assertUnwrapped(truth, unwrapped);
+    }
+}
@@ -0,0 +1,278 @@
+package org.jlinda.nest.gpf;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.Operator;
+import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.gpf.OperatorSpi;
+import org.esa.snap.core.gpf.Tile;
+import org.esa.snap.core.gpf.annotations.OperatorMetadata;
+import org.esa.snap.core.gpf.annotations.Parameter;
+import org.esa.snap.core.gpf.annotations.SourceProduct;
+import org.esa.snap.core.gpf.annotations.TargetProduct;
+import org.esa.snap.core.util.ProductUtils;
+import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.core.util.ThreadExecutor;
+import org.esa.snap.core.util.ThreadRunnable;
+import org.esa.snap.engine_utilities.datamodel.Unit;
+import org.esa.snap.engine_utilities.gpf.OperatorUtils;
+import org.jlinda.core.unwrapping.qualityguided.TiledUnwrapping;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process phase unwrapping.
+ * <p>
+ * The wrapped phase is unwrapped with a quality guided path following algorithm on overlapping tiles in
+ * parallel, using the coherence as quality. The cycle offsets between the tiles are reconciled from the
+ * overlaps in a first pass over the band, which keeps only the offsets. Each target tile is then unwrapped
+ * again on demand with its offsets applied. The unwrapped phase band can be used directly by PhaseToElevation
+ * or PhaseToDisplacement without exporting to and importing from SNAPHU.
+ */
+@OperatorMetadata(alias = "PhaseUnwrapping",
+        category = "Radar/Interferometric/Unwrapping",
+        authors = "Jun Lu, Luis Veci",
+        version = "1.0",
+        copyright = "Copyright (C) 2020 by SkyWatch Space Applications Inc.",
+        description = "Unwrap the interferometric phase with a tiled quality guided unwrapper")
+public class PhaseUnwrappingOp extends Operator {
+
+    @SourceProduct(description = "Source product with wrapped phase and coherence")
+    private Product sourceProduct;
+
+    @TargetProduct
+    private Product targetProduct;
+
+    @Parameter(description = "Size of the tiles unwrapped in parallel",
+            defaultValue = "512", interval = "[64, 8192]", label = "Tile size")
+    private int tileSize = 512;
+
+    @Parameter(description = "Overlap between neighbouring tiles used to reconcile their offsets",
+            defaultValue = "64", interval = "[4, 1024]", label = "Tile overlap")
+    private int tileOverlap = 64;
+
+    @Parameter(defaultValue = "false", label = "Do NOT save Wrapped interferogram in the target product")
+    private boolean doNotKeepWrapped = false;
+
+    private final Map<Band, Band> phaseBandMap = new HashMap<>();
+    private final Map<Band, Band> coherenceBandMap = new HashMap<>();
+    private final Map<Band, TiledUnwrapping> unwrappingMap = new HashMap<>();
+
+    private static final String UNW_PREFIX = "Unw_";
+
+    @Override
+    public void initialize() throws OperatorException {
+
+        try {
+            targetProduct = new Product(sourceProduct.getName(),
+                    sourceProduct.getProductType(),
+                    sourceProduct.getSceneRasterWidth(),
+                    sourceProduct.getSceneRasterHeight());
+
+            ProductUtils.copyProductNodes(sourceProduct, targetProduct);
+            // target tiles match the unwrapping tiles so that each one is unwrapped once in the second pass
+            targetProduct.setPreferredTileSize(tileSize, tileSize);
+
+            final List<Band> phaseBands = new ArrayList<>();
+            final List<Band> coherenceBands = new ArrayList<>();
+            for (Band srcBand : sourceProduct.getBands()) {
+                final String unit = srcBand.getUnit();
+                if (unit != null && unit.contains(Unit.COHERENCE)) {
+                    coherenceBands.add(srcBand);
+                } else if (unit != null && unit.equals(Unit.PHASE) &&
+                        !srcBand.getName().toLowerCase().contains("topo")) {
+                    phaseBands.add(srcBand);
+                }
+            }
+            if (phaseBands.isEmpty()) {
+                throw new OperatorException("Wrapped phase band required");
+            }
+
+            if (!doNotKeepWrapped) {
+                for (Band srcBand : sourceProduct.getBands()) {
+                    ProductUtils.copyBand(srcBand.getName(), sourceProduct, targetProduct, true);
+                }
+            }
+
+            for (Band phaseBand : phaseBands) {
+                final Band targetBand = new Band(UNW_PREFIX + phaseBand.getName(), ProductData.TYPE_FLOAT32,
+                        sourceProduct.getSceneRasterWidth(), sourceProduct.getSceneRasterHeight());
+                targetBand.setUnit(Unit.ABS_PHASE);
+                targetBand.setNoDataValue(phaseBand.getNoDataValue());
+                targetBand.setNoDataValueUsed(true);
+                targetBand.setDescription("Unwrapped phase");
+                targetProduct.addBand(targetBand);
+                targetProduct.setQuicklookBandName(targetBand.getName());
+
+                phaseBandMap.put(targetBand, phaseBand);
+                final Band coherenceBand = findCoherenceBand(phaseBand, coherenceBands);
+                if (coherenceBand != null) {
+                    coherenceBandMap.put(targetBand, coherenceBand);
+                } else {
+                    SystemUtils.LOG.warning("No coherence band found for " + phaseBand.getName() +
+                                                    ", using the phase derivative variance as quality");
+                }
+            }
+
+        } catch (Throwable e) {
+            OperatorUtils.catchOperatorException(getId(), e);
+        }
+    }
+
+    private static Band findCoherenceBand(final Band phaseBand, final List<Band> coherenceBands) {
+        if (coherenceBands.size() == 1) {
+            return coherenceBands.get(0);
+        }
+        // Phase_ifg_IW1_VV_03Jan2018_15Jan2018 belongs to coh_IW1_VV_03Jan2018_15Jan2018
+        final String name = phaseBand.getName();
+        final int idx = name.indexOf("ifg");
+        final String suffix = idx >= 0 ? name.substring(idx + 3) : name.substring(name.indexOf('_') + 1);
+        for (Band coherenceBand : coherenceBands) {
+            if (coherenceBand.getName().endsWith(suffix)) {
+                return coherenceBand;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+
+        try {
+            final TiledUnwrapping unwrapping = getUnwrapping(targetBand);
+            if (unwrapping == null) {
+                return;
+            }
+
+            final Band phaseBand = phaseBandMap.get(targetBand);
+            final Band coherenceBand = coherenceBandMap.get(targetBand);
+            final Rectangle rect = targetTile.getRectangle();
+            final float[] unwrapped = new float[rect.width * rect.height];
+            for (int tileIndex : unwrapping.getTileIndices(rect)) {
+                final Rectangle tileRect = unwrapping.getTileRectangle(tileIndex);
+                final float[] phase = getPhase(phaseBand, tileRect);
+                final float[] quality = coherenceBand != null ? getQuality(coherenceBand, tileRect, phase) : null;
+                unwrapping.getUnwrapped(tileIndex, phase, quality, rect, unwrapped);
+            }
+
+            final float noDataValue = (float) targetBand.getNoDataValue();
+            final ProductData trgData = targetTile.getDataBuffer();
+            int k = 0;
+            for (int y = rect.y; y < rect.y + rect.height; ++y) {
+                for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                    final float v = unwrapped[k++];
+                    trgData.setElemFloatAt(targetTile.getDataBufferIndex(x, y), Float.isNaN(v) ? noDataValue : v);
+                }
+            }
+
+        } catch (Throwable e) {
+            OperatorUtils.catchOperatorException(getId(), e);
+        }
+    }
+
+    /**
+     * The cycle offsets depend on the whole band: the first tile requested for a band runs the first pass over
+     * all tiles. Only the offsets are kept, the other tiles of the band wait for them.
+     */
+    private TiledUnwrapping getUnwrapping(final Band targetBand) throws Exception {
+        final Band phaseBand = phaseBandMap.get(targetBand);
+        if (phaseBand == null) {
+            return null;
+        }
+        synchronized (phaseBand) {
+            TiledUnwrapping unwrapping;
+            synchronized (unwrappingMap) {
+                unwrapping = unwrappingMap.get(targetBand);
+            }
+            if (unwrapping == null) {
+                unwrapping = unwrap(phaseBand, coherenceBandMap.get(targetBand));
+                synchronized (unwrappingMap) {
+                    unwrappingMap.put(targetBand, unwrapping);
+                }
+            }
+            return unwrapping;
+        }
+    }
+
+    private TiledUnwrapping unwrap(final Band phaseBand, final Band coherenceBand) throws Exception {
+
+        final TiledUnwrapping unwrapping = new TiledUnwrapping(sourceProduct.getSceneRasterWidth(),
+                sourceProduct.getSceneRasterHeight(), tileSize, tileOverlap);
+
+        final ThreadExecutor executor = new ThreadExecutor();
+        for (int i = 0; i < unwrapping.getNumTiles(); ++i) {
+            final int tileIndex = i;
+            final ThreadRunnable worker = new ThreadRunnable() {
+
+                @Override
+                public void process() {
+                    final Rectangle rect = unwrapping.getTileRectangle(tileIndex);
+                    final float[] phase = getPhase(phaseBand, rect);
+                    final float[] quality = coherenceBand != null ? getQuality(coherenceBand, rect, phase) : null;
+                    unwrapping.unwrapTile(tileIndex, phase, quality);
+                }
+            };
+            executor.execute(worker);
+        }
+        executor.complete();
+
+        unwrapping.reconcile();
+        return unwrapping;
+    }
+
+    private float[] getPhase(final Band phaseBand, final Rectangle rect) {
+        final Tile tile = getSourceTile(phaseBand, rect);
+        final ProductData data = tile.getDataBuffer();
+        final double noDataValue = phaseBand.getNoDataValue();
+        final boolean noDataValueUsed = phaseBand.isNoDataValueUsed();
+
+        final float[] phase = new float[rect.width * rect.height];
+        int k = 0;
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                final double v = data.getElemDoubleAt(tile.getDataBufferIndex(x, y));
+                phase[k++] = (noDataValueUsed && v == noDataValue) ? Float.NaN : (float) v;
+            }
+        }
+        return phase;
+    }
+
+    private float[] getQuality(final Band coherenceBand, final Rectangle rect, final float[] phase) {
+        final Tile tile = getSourceTile(coherenceBand, rect);
+        final ProductData data = tile.getDataBuffer();
+
+        final float[] quality = new float[rect.width * rect.height];
+        int k = 0;
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                final float v = (float) data.getElemDoubleAt(tile.getDataBufferIndex(x, y));
+                if (Float.isNaN(v)) {
+                    phase[k] = Float.NaN;
+                }
+                quality[k++] = Float.isNaN(v) ? 0 : v;
+            }
+        }
+        return quality;
+    }
+
+    /**
+     * The SPI is used to register this operator in the graph processing framework
+     * via the SPI configuration file
+     * {@code META-INF/services/org.esa.snap.core.gpf.OperatorSpi}.
+     * This class may also serve as a factory for new operator instances.
+     *
+     * @see OperatorSpi#createOperator()
+     * @see OperatorSpi#createOperator(java.util.Map, java.util.Map)
+     */
+    public static class Spi extends OperatorSpi {
+        public Spi() {
+            super(PhaseUnwrappingOp.class);
+        }
+    }
+}
@@ -49,9 +49,8 @@ public class NonLocal implements PolarimetricSpeckleFilter, DualPolProcessor, Qu
     private final int sourceImageHeight;
     private final int matrixSize; // D
     private final double gamma;
-    private final double matrixSizeTwoLog2;
 
-    private final static double TwoLog2 = 1.386294361119890572453527965990;
+    private final static int MAX_BLOCK_WEIGHTS = 1 << 21;
 
     public NonLocal(final PolarimetricSpeckleFilterOp op, final Product srcProduct, final Product trgProduct,
                     final PolBandUtils.MATRIX sourceProductType, final PolBandUtils.PolSourceBand[] srcBandList,
@@ -91,7 +90,6 @@ public class NonLocal implements PolarimetricSpeckleFilter, DualPolProcessor, Qu
         }
 
         gamma = Math.min((double)numLooks / (double)matrixSize, 1.0);
-        matrixSizeTwoLog2 = matrixSize * TwoLog2;
     }
 
 
@@ -130,43 +128,42 @@ public class NonLocal implements PolarimetricSpeckleFilter, DualPolProcessor, Qu
             final Covariance[][] preEstimatedMatrix = new Covariance[sh][sw];
             computePreEstimatedCovarianceMatrix(sx0, sy0, sxMax, syMax, originalMatrix, preEstimatedMatrix);
 
-            System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", computeWeightedEstimate start");
-            if (matrixSize == 3) {
-                for (int y = y0; y < yMax; ++y) {
-                    trgIndex.calculateStride(y);
-                    System.out.println(y + " of " + yMax);
-                    for (int x = x0; x < xMax; ++x) {
-                        final double[][] weight = computeWeights(x, y, sx0, sy0, preEstimatedMatrix);
-                        final double totalWeight = getTotalWeight(weight);
-                        final Covariance sigmaNL = computeWeightedEstimate(x, y, sx0, sy0, weight, totalWeight, originalMatrix);
-                        final double enlNL = computeENL(weight, totalWeight);
+            final NonLocalWeights nonLocalWeights = new NonLocalWeights(
+                    matrixSize, halfWindowSize, halfPatchSize, sourceImageWidth, sourceImageHeight);
+            nonLocalWeights.setPreEstimatedMatrix(preEstimatedMatrix, sx0, sy0);
 
-                        final Covariance sigmaNLBR = new CovarianceMatrix.C3();
-                        final double enlNLRB = performBiasReduction(
-                                x, y, sx0, sy0, weight, totalWeight, enlNL, originalMatrix, sigmaNL, sigmaNLBR);
+            // weights are computed for blocks of rows to bound the memory of the weights of all search offsets
+            final int numOffsets = nonLocalWeights.getNumOffsets();
+            final int blockRows = Math.max(1, Math.min(h, MAX_BLOCK_WEIGHTS / (w * numOffsets)));
+            final double[] blockWeights = new double[blockRows * w * numOffsets];
 
-                        saveC3(sigmaNLBR, trgIndex.getIndex(x), targetDataBuffers);
-                        //saveC3(sigmaNL, trgIndex.getIndex(x), targetDataBuffers);
-                    }
-                }
+            for (int by = y0; by < yMax; by += blockRows) {
+                final int bh = Math.min(blockRows, yMax - by);
+                nonLocalWeights.computeWeights(x0, by, w, bh, blockWeights);
 
-            } else if (matrixSize == 2) {
-                for (int y = y0; y < yMax; ++y) {
+                for (int y = by; y < by + bh; ++y) {
                     trgIndex.calculateStride(y);
                     for (int x = x0; x < xMax; ++x) {
-                        final double[][] weight = computeWeights(x, y, sx0, sy0, preEstimatedMatrix);
+                        final int weightOffset = ((y - by) * w + x - x0) * numOffsets;
+                        final double[][] weight = getWeights(x, y, blockWeights, weightOffset, nonLocalWeights);
                         final double totalWeight = getTotalWeight(weight);
-                        Covariance sigmaNL = computeWeightedEstimate(x, y, sx0, sy0, weight, totalWeight, originalMatrix);
+                        final Covariance sigmaNL = computeWeightedEstimate(x, y, sx0, sy0, weight, totalWeight, originalMatrix);
                         final double enlNL = computeENL(weight, totalWeight);
 
-                        final Covariance sigmaNLBR = new CovarianceMatrix.C2();
-                        final double enlNLRB = performBiasReduction(
-                                x, y, sx0, sy0, weight, totalWeight, enlNL, originalMatrix, sigmaNL, sigmaNLBR);
-                        saveC2(sigmaNLBR, trgIndex.getIndex(x), targetDataBuffers);
+                        if (matrixSize == 3) {
+                            final Covariance sigmaNLBR = new CovarianceMatrix.C3();
+                            performBiasReduction(
+                                    x, y, sx0, sy0, weight, totalWeight, enlNL, originalMatrix, sigmaNL, sigmaNLBR);
+                            saveC3(sigmaNLBR, trgIndex.getIndex(x), targetDataBuffers);
+                        } else {
+                            final Covariance sigmaNLBR = new CovarianceMatrix.C2();
+                            performBiasReduction(
+                                    x, y, sx0, sy0, weight, totalWeight, enlNL, originalMatrix, sigmaNL, sigmaNLBR);
+                            saveC2(sigmaNLBR, trgIndex.getIndex(x), targetDataBuffers);
+                        }
                     }
                 }
             }
-            System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", computeWeightedEstimate finished");
         }
     }
 
@@ -361,8 +358,11 @@ public class NonLocal implements PolarimetricSpeckleFilter, DualPolProcessor, Qu
         }
     }
 
-    private double[][] computeWeights(final int xc, final int yc, final int sx0, final int sy0,
-                                      final Covariance[][] preEstimatedMatrix) {
+    /**
+     * Weights of the search window of pixel (xc, yc), clipped to the image
+     */
+    private double[][] getWeights(final int xc, final int yc, final double[] blockWeights, final int weightOffset,
+                                  final NonLocalWeights nonLocalWeights) {
 
         final int xSt = Math.max(xc - halfWindowSize, 0);
         final int ySt = Math.max(yc - halfWindowSize, 0);
@@ -370,72 +370,15 @@ public class NonLocal implements PolarimetricSpeckleFilter, DualPolProcessor, Qu
         final int yEd = Math.min(yc + halfWindowSize, sourceImageHeight - 1);
 
         // No normalization is needed. We want w(x,x) = 1
-        final double h = 1.0 / 3.0; // filtering parameter
         final double[][] weight = new double[yEd - ySt + 1][xEd - xSt + 1];
         for (int y = ySt; y <= yEd; ++y) {
-            final int yy = y - ySt;
-            for (int x = xSt; x <= xEd; ++x) {
-                final int xx = x - xSt;
-                final double delta = computeDissimilarity(xc, yc, x, y, sx0, sy0, preEstimatedMatrix);
-                if (delta < 0.0) {
-                    weight[yy][xx] = 0.0;
-                } else {
-                    weight[yy][xx] = Math.exp(-delta / h);
-                }
-            }
+            final int rowOffset = weightOffset + nonLocalWeights.getOffsetIndex(xSt - xc, y - yc);
+            System.arraycopy(blockWeights, rowOffset, weight[y - ySt], 0, xEd - xSt + 1);
         }
 
         return weight;
     }
 
-    private double computeDissimilarity(
-            final int xc1, final int yc1, final int xc2, final int yc2, final int sx0, final int sy0,
-            final Covariance[][] preEstimatedMatrix) {
-
-        double dissimilarity = 0.0;
-        boolean validPixel = false;
-        for (int i = 0; i < patchSize; ++i) {
-            final int y1 = yc1 - halfPatchSize + i;
-            final int y2 = yc2 - halfPatchSize + i;
-            if (y1 < 0 || y1 >= sourceImageHeight || y2 < 0 || y2 >= sourceImageHeight) {
-                continue;
-            }
-            final int dy1 = y1 - sy0;
-            final int dy2 = y2 - sy0;
-
-            for (int j = 0; j < patchSize; ++j) {
-                final int x1 = xc1 - halfPatchSize + j;
-                final int x2 = xc2 - halfPatchSize + j;
-                if (x1 < 0 || x1 >= sourceImageWidth || x2 < 0 || x2 >= sourceImageWidth) {
-                    continue;
-                }
-                final int dx1 = x1 - sx0;
-                final int dx2 = x2 - sx0;
-
-                final Covariance C12 = preEstimatedMatrix[dy1][dx1].clone();
-
-                C12.addCovarianceMatrix(preEstimatedMatrix[dy2][dx2]);
-
-                final double detC12 = C12.getDeterminant();
-                final double detC1 = preEstimatedMatrix[dy1][dx1].getDeterminant();
-                final double detC2 = preEstimatedMatrix[dy2][dx2].getDeterminant();
-
-                if (detC12*detC1*detC2 <= 0.0) {
-                    continue;
-                }
-
-                dissimilarity += -Math.log(detC1*detC2/(detC12*detC12)) - matrixSizeTwoLog2;
-                validPixel = true;
-            }
-        }
-
-        if (validPixel) {
-            return dissimilarity;
-        } else {
-            return -1.0;
-        }
-    }
-
     private Covariance computeWeightedEstimate(
             final int xc, final int yc, final int sx0, final int sy0, final double[][] weight, final double totalWeight,
             final Covariance[][] originalMatrix) {
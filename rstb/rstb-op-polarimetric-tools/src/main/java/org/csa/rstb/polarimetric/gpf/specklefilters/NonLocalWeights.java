@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.csa.rstb.polarimetric.gpf.specklefilters;
+
+import org.csa.rstb.polarimetric.gpf.specklefilters.covariance.Covariance;
+import org.csa.rstb.polarimetric.gpf.specklefilters.covariance.CovarianceMatrix;
+
+/**
+ * Patch similarity weights of the Non-Local filter for a block of target pixels.
+ * <p>
+ * The dissimilarity of two patches is the sum over the patch of a per-pixel term that only depends on the two
+ * pre-estimated covariance matrices. For one search window offset the term is therefore computed once per pixel and
+ * the patch sums of all pixels of the block are read from a summed-area table of the terms, instead of being
+ * recomputed for each patch. The cost per offset no longer depends on the patch size.
+ */
+final class NonLocalWeights {
+
+    private static final double TwoLog2 = 1.386294361119890572453527965990;
+    private static final double H = 1.0 / 3.0; // filtering parameter
+
+    private final int matrixSize;
+    private final int numElements;
+    private final int halfWindowSize, windowSize;
+    private final int halfPatchSize;
+    private final int imageWidth, imageHeight;
+    private final double matrixSizeTwoLog2;
+
+    // upper triangles and determinants of the pre-estimated matrices of the source rectangle
+    private int sx0, sy0, sw;
+    private double[] elements;
+    private double[] det;
+
+    private double[] termSums;
+    private int[] termCounts;
+
+    NonLocalWeights(final int matrixSize, final int halfWindowSize, final int halfPatchSize,
+                    final int imageWidth, final int imageHeight) {
+        this.matrixSize = matrixSize;
+        this.numElements = matrixSize == 3 ? 9 : 4;
+        this.halfWindowSize = halfWindowSize;
+        this.windowSize = 2 * halfWindowSize + 1;
+        this.halfPatchSize = halfPatchSize;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.matrixSizeTwoLog2 = matrixSize * TwoLog2;
+    }
+
+    /**
+     * @return the number of weights per target pixel, one for each offset of the search window
+     */
+    int getNumOffsets() {
+        return windowSize * windowSize;
+    }
+
+    /**
+     * Index of the weight of offset (dx, dy) among the weights of one target pixel
+     */
+    int getOffsetIndex(final int dx, final int dy) {
+        return (dy + halfWindowSize) * windowSize + dx + halfWindowSize;
+    }
+
+    void setPreEstimatedMatrix(final Covariance[][] preEstimatedMatrix, final int sx0, final int sy0) {
+        this.sx0 = sx0;
+        this.sy0 = sy0;
+        this.sw = preEstimatedMatrix[0].length;
+        final int sh = preEstimatedMatrix.length;
+
+        elements = new double[sw * sh * numElements];
+        det = new double[sw * sh];
+        for (int yy = 0; yy < sh; ++yy) {
+            for (int xx = 0; xx < sw; ++xx) {
+                final int idx = yy * sw + xx;
+                final double[][] Cr = preEstimatedMatrix[yy][xx].getRealCovarianceMatrix();
+                final double[][] Ci = preEstimatedMatrix[yy][xx].getImagCovarianceMatrix();
+                final int e = idx * numElements;
+                if (matrixSize == 3) {
+                    elements[e] = Cr[0][0];
+                    elements[e + 1] = Cr[0][1];
+                    elements[e + 2] = Cr[0][2];
+                    elements[e + 3] = Cr[1][1];
+                    elements[e + 4] = Cr[1][2];
+                    elements[e + 5] = Cr[2][2];
+                    elements[e + 6] = Ci[0][1];
+                    elements[e + 7] = Ci[0][2];
+                    elements[e + 8] = Ci[1][2];
+                } else {
+                    elements[e] = Cr[0][0];
+                    elements[e + 1] = Cr[0][1];
+                    elements[e + 2] = Cr[1][1];
+                    elements[e + 3] = Ci[0][1];
+                }
+                det[idx] = preEstimatedMatrix[yy][xx].getDeterminant();
+            }
+        }
+    }
+
+    /**
+     * Compute the weights of all search window offsets for the target pixels of a block
+     *
+     * @param x0      the first column of the block
+     * @param y0      the first row of the block
+     * @param w       the block width
+     * @param h       the block height
+     * @param weights receives getNumOffsets() weights per pixel, pixel by pixel in row order. Offsets outside the
+     *                image are given weight 0
+     */
+    void computeWeights(final int x0, final int y0, final int w, final int h, final double[] weights) {
+
+        // pixels of the patches centred in the block
+        final int rx0 = Math.max(x0 - halfPatchSize, 0);
+        final int ry0 = Math.max(y0 - halfPatchSize, 0);
+        final int rw = Math.min(x0 + w - 1 + halfPatchSize, imageWidth - 1) - rx0 + 1;
+        final int rh = Math.min(y0 + h - 1 + halfPatchSize, imageHeight - 1) - ry0 + 1;
+        final int stride = rw + 1;
+
+        final int tableSize = stride * (rh + 1);
+        if (termSums == null || termSums.length < tableSize) {
+            termSums = new double[tableSize];
+            termCounts = new int[tableSize];
+        }
+
+        final int numOffsets = getNumOffsets();
+        for (int dy = -halfWindowSize; dy <= halfWindowSize; ++dy) {
+            for (int dx = -halfWindowSize; dx <= halfWindowSize; ++dx) {
+                computeSummedTerms(rx0, ry0, rw, rh, dx, dy);
+
+                final int offset = getOffsetIndex(dx, dy);
+                for (int yy = 0; yy < h; ++yy) {
+                    final int yc = y0 + yy;
+                    final int top = (Math.max(yc - halfPatchSize, 0) - ry0) * stride;
+                    final int bottom = (Math.min(yc + halfPatchSize, imageHeight - 1) - ry0 + 1) * stride;
+                    for (int xx = 0; xx < w; ++xx) {
+                        final int xc = x0 + xx;
+                        final int left = Math.max(xc - halfPatchSize, 0) - rx0;
+                        final int right = Math.min(xc + halfPatchSize, imageWidth - 1) - rx0 + 1;
+
+                        final int count = termCounts[bottom + right] - termCounts[top + right] -
+                                termCounts[bottom + left] + termCounts[top + left];
+
+                        final double weight;
+                        if (count == 0) {
+                            // no valid term
+                            weight = 0.0;
+                        } else {
+                            // the dissimilarity is not negative, but rounding in the table can make a zero one so
+                            final double delta = termSums[bottom + right] - termSums[top + right] -
+                                    termSums[bottom + left] + termSums[top + left];
+                            weight = Math.exp(-Math.max(delta, 0.0) / H);
+                        }
+                        weights[(yy * w + xx) * numOffsets + offset] = weight;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Summed-area tables of the dissimilarity terms between the pixels of the region and the pixels at offset
+     * (dx, dy), and of the number of valid terms
+     */
+    private void computeSummedTerms(final int rx0, final int ry0, final int rw, final int rh,
+                                    final int dx, final int dy) {
+
+        final int stride = rw + 1;
+        for (int c = 0; c <= rw; ++c) {
+            termSums[c] = 0.0;
+            termCounts[c] = 0;
+        }
+
+        for (int r = 0; r < rh; ++r) {
+            final int y1 = ry0 + r;
+            final int y2 = y1 + dy;
+            final boolean rowInside = y2 >= 0 && y2 < imageHeight;
+            final int prev = r * stride;
+            final int cur = prev + stride;
+            termSums[cur] = 0.0;
+            termCounts[cur] = 0;
+
+            double rowSum = 0.0;
+            int rowCount = 0;
+            for (int c = 0; c < rw; ++c) {
+                final int x1 = rx0 + c;
+                final int x2 = x1 + dx;
+                if (rowInside && x2 >= 0 && x2 < imageWidth) {
+                    final int i1 = (y1 - sy0) * sw + x1 - sx0;
+                    final int i2 = (y2 - sy0) * sw + x2 - sx0;
+                    final double detC12 = getDeterminantOfSum(i1, i2);
+                    final double detC1 = det[i1];
+                    final double detC2 = det[i2];
+                    if (!(detC12 * detC1 * detC2 <= 0.0)) {
+                        rowSum += -Math.log(detC1 * detC2 / (detC12 * detC12)) - matrixSizeTwoLog2;
+                        ++rowCount;
+                    }
+                }
+                termSums[cur + c + 1] = termSums[prev + c + 1] + rowSum;
+                termCounts[cur + c + 1] = termCounts[prev + c + 1] + rowCount;
+            }
+        }
+    }
+
+    private double getDeterminantOfSum(final int i1, final int i2) {
+        final double[] e = elements;
+        final int a = i1 * numElements;
+        final int b = i2 * numElements;
+        if (matrixSize == 3) {
+            return CovarianceMatrix.getDeterminantC3(e[a] + e[b], e[a + 1] + e[b + 1], e[a + 2] + e[b + 2],
+                    e[a + 3] + e[b + 3], e[a + 4] + e[b + 4], e[a + 5] + e[b + 5],
+                    e[a + 6] + e[b + 6], e[a + 7] + e[b + 7], e[a + 8] + e[b + 8]);
+        }
+        return CovarianceMatrix.getDeterminantC2(e[a] + e[b], e[a + 1] + e[b + 1], e[a + 2] + e[b + 2],
+                e[a + 3] + e[b + 3]);
+    }
+}
@@ -177,16 +177,32 @@ public class CovarianceMatrix {
         }
 
         if (d == 2) {
-            det = Math.abs(Cr00 * Cr11 - Cr01 * Cr01 - Ci01 * Ci01);
+            det = getDeterminantC2(Cr00, Cr01, Cr11, Ci01);
         } else if (d == 3) {
-            det = Math.abs(Cr00 * Cr11 * Cr22 - Cr00 * (Cr12 * Cr12 + Ci12 * Ci12) - Cr11 * (Cr02 * Cr02 + Ci02 * Ci02) -
-                    Cr22 * (Cr01 * Cr01 + Ci01 * Ci01) + 2.0 * (Cr12 * (Cr01 * Cr02 + Ci01 * Ci02) + Ci12 * (Cr01 * Ci02 -
-                    Ci01 * Cr02)));
+            det = getDeterminantC3(Cr00, Cr01, Cr02, Cr11, Cr12, Cr22, Ci01, Ci02, Ci12);
         }
 
         return det;
     }
 
+    /**
+     * Absolute determinant of a 2x2 Hermitian matrix given by its upper triangle
+     */
+    public static double getDeterminantC2(final double Cr00, final double Cr01, final double Cr11, final double Ci01) {
+        return Math.abs(Cr00 * Cr11 - Cr01 * Cr01 - Ci01 * Ci01);
+    }
+
+    /**
+     * Absolute determinant of a 3x3 Hermitian matrix given by its upper triangle
+     */
+    public static double getDeterminantC3(final double Cr00, final double Cr01, final double Cr02,
+                                          final double Cr11, final double Cr12, final double Cr22,
+                                          final double Ci01, final double Ci02, final double Ci12) {
+        return Math.abs(Cr00 * Cr11 * Cr22 - Cr00 * (Cr12 * Cr12 + Ci12 * Ci12) - Cr11 * (Cr02 * Cr02 + Ci02 * Ci02) -
+                Cr22 * (Cr01 * Cr01 + Ci01 * Ci01) + 2.0 * (Cr12 * (Cr01 * Cr02 + Ci01 * Ci02) + Ci12 * (Cr01 * Ci02 -
+                Ci01 * Cr02)));
+    }
+
     public double[] getDiagonalElements() {
 
         final double[] diagonal = new double[d];
@@ -277,7 +293,7 @@ public class CovarianceMatrix {
                 return det;
             }
 
-            det = Math.abs(Cr[0][0] * Cr[1][1] - Cr[0][1] * Cr[0][1] - Ci[0][1] * Ci[0][1]);
+            det = getDeterminantC2(Cr[0][0], Cr[0][1], Cr[1][1], Ci[0][1]);
 
             return det;
         }
@@ -384,9 +400,8 @@ public class CovarianceMatrix {
                 return det;
             }
 
-            det = Math.abs(Cr[0][0] * Cr[1][1] * Cr[2][2] - Cr[0][0] * (Cr[1][2] * Cr[1][2] + Ci[1][2] * Ci[1][2]) - Cr[1][1] * (Cr[0][2] * Cr[0][2] + Ci[0][2] * Ci[0][2]) -
-                        Cr[2][2] * (Cr[0][1] * Cr[0][1] + Ci[0][1] * Ci[0][1]) + 2.0 * (Cr[1][2] * (Cr[0][1] * Cr[0][2] + Ci[0][1] * Ci[0][2]) + Ci[1][2] * (Cr[0][1] * Ci[0][2] -
-                        Ci[0][1] * Cr[0][2])));
+            det = getDeterminantC3(Cr[0][0], Cr[0][1], Cr[0][2], Cr[1][1], Cr[1][2], Cr[2][2],
+                    Ci[0][1], Ci[0][2], Ci[1][2]);
 
             return det;
         }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.csa.rstb.polarimetric.gpf.specklefilters;
+
+import org.csa.rstb.polarimetric.gpf.specklefilters.covariance.Covariance;
+import org.csa.rstb.polarimetric.gpf.specklefilters.covariance.CovarianceMatrix;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the block weights of the Non-Local filter with the patch by patch dissimilarities
+ */
+public class TestNonLocalWeights {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 29;
+    private static final double TwoLog2 = 1.386294361119890572453527965990;
+
+    @Test
+    public void testC3() {
+        compareWeights(3, 3, 1);
+        compareWeights(3, 5, 2);
+    }
+
+    @Test
+    public void testC2() {
+        compareWeights(2, 3, 1);
+        compareWeights(2, 4, 2);
+    }
+
+    @Test
+    public void testConstantRegion() {
+        checkConstantRegion(3);
+        checkConstantRegion(2);
+    }
+
+    /**
+     * Identical patches have a zero dissimilarity, which rounding in the summed-area table can make slightly
+     * negative. They must still get the full weight. The constant region is right of a random one, so that the
+     * table sums subtracted for its patches are large.
+     */
+    private static void checkConstantRegion(final int matrixSize) {
+        final Random random = new Random(matrixSize);
+        final Covariance c = matrixSize == 3 ? new CovarianceMatrix.C3() : new CovarianceMatrix.C2();
+        final double[][] Cr = c.getRealCovarianceMatrix();
+        final double[][] Ci = c.getImagCovarianceMatrix();
+        for (int i = 0; i < matrixSize; ++i) {
+            Cr[i][i] = 1.0 + 10.0 * random.nextDouble();
+            for (int j = i + 1; j < matrixSize; ++j) {
+                Cr[i][j] = 0.3 * random.nextGaussian();
+                Ci[i][j] = 0.3 * random.nextGaussian();
+            }
+        }
+        c.rescaleMatrix(1.0);
+
+        final int constantX0 = WIDTH / 3;
+        final Covariance[][] matrix = createMatrices(matrixSize, random);
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = constantX0; x < WIDTH; ++x) {
+                matrix[y][x] = c;
+            }
+        }
+
+        final int halfWindowSize = 3, halfPatchSize = 2;
+        final NonLocalWeights nonLocalWeights =
+                new NonLocalWeights(matrixSize, halfWindowSize, halfPatchSize, WIDTH, HEIGHT);
+        nonLocalWeights.setPreEstimatedMatrix(matrix, 0, 0);
+
+        final int numOffsets = nonLocalWeights.getNumOffsets();
+        final double[] weights = new double[WIDTH * HEIGHT * numOffsets];
+        nonLocalWeights.computeWeights(0, 0, WIDTH, HEIGHT, weights);
+
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                for (int dy = -halfWindowSize; dy <= halfWindowSize; ++dy) {
+                    for (int dx = -halfWindowSize; dx <= halfWindowSize; ++dx) {
+                        // both patches in the constant region
+                        if (Math.min(x, x + dx) - halfPatchSize < constantX0 || x + dx >= WIDTH ||
+                                y + dy < 0 || y + dy >= HEIGHT) {
+                            continue;
+                        }
+                        final double weight = weights[(y * WIDTH + x) * numOffsets +
+                                nonLocalWeights.getOffsetIndex(dx, dy)];
+                        assertEquals(1.0, weight, 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void compareWeights(final int matrixSize, final int halfWindowSize, final int halfPatchSize) {
+        final Covariance[][] matrix = createMatrices(matrixSize, new Random(matrixSize * 100 + halfWindowSize));
+
+        // source rectangle of a tile in the middle of the image and a block touching the image border
+        final int sx0 = 2, sy0 = 0;
+        final Covariance[][] source = new Covariance[HEIGHT - sy0][WIDTH - sx0];
+        for (int y = sy0; y < HEIGHT; ++y) {
+            System.arraycopy(matrix[y], sx0, source[y - sy0], 0, WIDTH - sx0);
+        }
+
+        final NonLocalWeights nonLocalWeights =
+                new NonLocalWeights(matrixSize, halfWindowSize, halfPatchSize, WIDTH, HEIGHT);
+        nonLocalWeights.setPreEstimatedMatrix(source, sx0, sy0);
+
+        final int x0 = halfWindowSize + halfPatchSize + sx0, y0 = 0;
+        final int w = WIDTH - x0 - 1, h = 9;
+        final int numOffsets = nonLocalWeights.getNumOffsets();
+        final double[] weights = new double[w * h * numOffsets];
+        nonLocalWeights.computeWeights(x0, y0, w, h, weights);
+
+        for (int y = y0; y < y0 + h; ++y) {
+            for (int x = x0; x < x0 + w; ++x) {
+                for (int dy = -halfWindowSize; dy <= halfWindowSize; ++dy) {
+                    for (int dx = -halfWindowSize; dx <= halfWindowSize; ++dx) {
+                        if (x + dx < 0 || x + dx >= WIDTH || y + dy < 0 || y + dy >= HEIGHT) {
+                            continue;
+                        }
+                        final double delta = computeDissimilarity(
+                                matrix, matrixSize, halfPatchSize, x, y, x + dx, y + dy);
+                        final double expected = Double.isNaN(delta) ? 0.0 : Math.exp(-3.0 * Math.max(delta, 0.0));
+                        final double actual = weights[((y - y0) * w + x - x0) * numOffsets +
+                                nonLocalWeights.getOffsetIndex(dx, dy)];
+                        assertEquals(expected, actual, 1e-9 * expected + 1e-300);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Covariance[][] createMatrices(final int matrixSize, final Random random) {
+        final Covariance[][] matrix = new Covariance[HEIGHT][WIDTH];
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                final Covariance c = matrixSize == 3 ? new CovarianceMatrix.C3() : new CovarianceMatrix.C2();
+                // a few zero matrices give invalid dissimilarity terms
+                if (random.nextInt(20) != 0) {
+                    final double[][] Cr = c.getRealCovarianceMatrix();
+                    final double[][] Ci = c.getImagCovarianceMatrix();
+                    final double scale = x < WIDTH / 2 ? 1.0 : 5.0;
+                    for (int i = 0; i < matrixSize; ++i) {
+                        Cr[i][i] = scale * (1.0 + random.nextDouble());
+                        for (int j = i + 1; j < matrixSize; ++j) {
+                            Cr[i][j] = 0.3 * scale * random.nextGaussian();
+                            Ci[i][j] = 0.3 * scale * random.nextGaussian();
+                        }
+                    }
+                }
+                c.rescaleMatrix(1.0);
+                matrix[y][x] = c;
+            }
+        }
+        return matrix;
+    }
+
+    private static double computeDissimilarity(final Covariance[][] matrix, final int matrixSize,
+                                               final int halfPatchSize,
+                                               final int xc1, final int yc1, final int xc2, final int yc2) {
+        double dissimilarity = 0.0;
+        boolean validPixel = false;
+        for (int i = -halfPatchSize; i <= halfPatchSize; ++i) {
+            final int y1 = yc1 + i, y2 = yc2 + i;
+            if (y1 < 0 || y1 >= HEIGHT || y2 < 0 || y2 >= HEIGHT) {
+                continue;
+            }
+            for (int j = -halfPatchSize; j <= halfPatchSize; ++j) {
+                final int x1 = xc1 + j, x2 = xc2 + j;
+                if (x1 < 0 || x1 >= WIDTH || x2 < 0 || x2 >= WIDTH) {
+                    continue;
+                }
+                final Covariance C12 = matrix[y1][x1].clone();
+                C12.addCovarianceMatrix(matrix[y2][x2]);
+                final double detC12 = C12.getDeterminant();
+                final double detC1 = matrix[y1][x1].getDeterminant();
+                final double detC2 = matrix[y2][x2].getDeterminant();
+                if (detC12 * detC1 * detC2 <= 0.0) {
+                    continue;
+                }
+                dissimilarity += -Math.log(detC1 * detC2 / (detC12 * detC12)) - matrixSize * TwoLog2;
+                validPixel = true;
+            }
+        }
+        return validPixel ? dissimilarity : Double.NaN;
+    }
+}
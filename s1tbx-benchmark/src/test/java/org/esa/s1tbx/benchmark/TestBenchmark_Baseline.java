@@ -0,0 +1,145 @@
+package org.esa.s1tbx.benchmark;
+
+import org.esa.s1tbx.commons.test.TestData;
+import org.esa.snap.core.datamodel.MetadataElement;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
+import org.jlinda.core.Baseline;
+import org.jlinda.core.BaselineSurface;
+import org.jlinda.core.Orbit;
+import org.jlinda.core.SLCImage;
+import org.junit.Test;
+
+/**
+ * Evaluates the baseline model of a coregistered stack point by point with Baseline and line by line with
+ * BaselineSurface, as PhaseToElevation and Slant2Height do over their tiles
+ */
+public class TestBenchmark_Baseline extends BaseBenchmarks {
+
+    private final static int tileSize = 512;
+
+    @Test
+    public void testStack_PhaseToElevation_Baseline() throws Exception {
+        phaseToElevation("PhaseToElevation Baseline", false);
+    }
+
+    @Test
+    public void testStack_PhaseToElevation_BaselineSurface() throws Exception {
+        phaseToElevation("PhaseToElevation BaselineSurface", true);
+    }
+
+    @Test
+    public void testStack_Slant2Height_Baseline() throws Exception {
+        slant2Height("Slant2Height Baseline", false);
+    }
+
+    @Test
+    public void testStack_Slant2Height_BaselineSurface() throws Exception {
+        slant2Height("Slant2Height BaselineSurface", true);
+    }
+
+    /**
+     * Perpendicular and parallel baseline at zero height, for the flat earth angle of each pixel
+     */
+    private void phaseToElevation(final String name, final boolean useSurface) throws Exception {
+        final Product srcProduct = read(TestData.inputStackIMS);
+        final Baseline baseline = createBaseline(srcProduct);
+        final int width = Math.min(srcProduct.getSceneRasterWidth(), rect.width);
+        final int height = Math.min(srcProduct.getSceneRasterHeight(), rect.height);
+        srcProduct.dispose();
+
+        Benchmark b = new Benchmark(name) {
+            @Override
+            protected void execute() throws Exception {
+                final BaselineSurface surface = baseline.getSurface();
+                final double[] bn = new double[tileSize];
+                final double[] bp = new double[tileSize];
+                double sum = 0;
+                for (int y0 = 0; y0 < height; y0 += tileSize) {
+                    for (int x0 = 0; x0 < width; x0 += tileSize) {
+                        final int w = Math.min(tileSize, width - x0);
+                        final int h = Math.min(tileSize, height - y0);
+                        for (int y = y0; y < y0 + h; y++) {
+                            if (useSurface) {
+                                surface.getBperp(y, x0, w, 0, bn, 0);
+                                surface.getBpar(y, x0, w, 0, bp, 0);
+                            } else {
+                                for (int i = 0; i < w; i++) {
+                                    bn[i] = baseline.getBperp(y, x0 + i);
+                                    bp[i] = baseline.getBpar(y, x0 + i);
+                                }
+                            }
+                            for (int i = 0; i < w; i++) {
+                                sum += bn[i] + bp[i];
+                            }
+                        }
+                    }
+                }
+                check(sum);
+            }
+        };
+        b.run();
+    }
+
+    /**
+     * Height ambiguity of each pixel of a tile, converting unwrapped phase to height
+     */
+    private void slant2Height(final String name, final boolean useSurface) throws Exception {
+        final Product srcProduct = read(TestData.inputStackIMS);
+        final Baseline baseline = createBaseline(srcProduct);
+        final int width = Math.min(srcProduct.getSceneRasterWidth(), rect.width);
+        final int height = Math.min(srcProduct.getSceneRasterHeight(), rect.height);
+        srcProduct.dispose();
+
+        Benchmark b = new Benchmark(name) {
+            @Override
+            protected void execute() throws Exception {
+                final BaselineSurface surface = baseline.getSurface();
+                final double[] hamb = new double[tileSize * tileSize];
+                double sum = 0;
+                for (int y0 = 0; y0 < height; y0 += tileSize) {
+                    for (int x0 = 0; x0 < width; x0 += tileSize) {
+                        final int w = Math.min(tileSize, width - x0);
+                        final int h = Math.min(tileSize, height - y0);
+                        if (useSurface) {
+                            surface.getHamb(x0, y0, w, h, 0, hamb);
+                        } else {
+                            for (int j = 0; j < h; j++) {
+                                for (int i = 0; i < w; i++) {
+                                    hamb[j * w + i] = baseline.getHamb(y0 + j, x0 + i, 0);
+                                }
+                            }
+                        }
+                        for (int k = 0; k < w * h; k++) {
+                            sum += hamb[k];
+                        }
+                    }
+                }
+                check(sum);
+            }
+        };
+        b.run();
+    }
+
+    private static Baseline createBaseline(final Product srcProduct) throws Exception {
+        final MetadataElement masterMeta = AbstractMetadata.getAbstractedMetadata(srcProduct);
+        final SLCImage masterMetaData = new SLCImage(masterMeta, srcProduct);
+        final Orbit masterOrbit = new Orbit(masterMeta, 3);
+
+        final MetadataElement[] slaveRoot = srcProduct.getMetadataRoot().
+                getElement(AbstractMetadata.SLAVE_METADATA_ROOT).getElements();
+        final SLCImage slaveMetaData = new SLCImage(slaveRoot[0], srcProduct);
+        final Orbit slaveOrbit = new Orbit(slaveRoot[0], 3);
+
+        final Baseline baseline = new Baseline();
+        baseline.model(masterMetaData, slaveMetaData, masterOrbit, slaveOrbit);
+        return baseline;
+    }
+
+    // keeps the evaluation from being optimised away
+    private static void check(final double sum) {
+        if (Double.isNaN(sum)) {
+            throw new IllegalStateException("invalid baseline");
+        }
+    }
+}
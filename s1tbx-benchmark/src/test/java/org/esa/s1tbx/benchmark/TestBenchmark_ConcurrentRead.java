@@ -0,0 +1,86 @@
+package org.esa.s1tbx.benchmark;
+
+import org.esa.s1tbx.commons.test.S1TBXTests;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.VirtualBand;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the tiles of NetCDF/HDF5 based products with one thread and with a thread per processor
+ */
+public class TestBenchmark_ConcurrentRead extends BaseBenchmarks {
+
+    private final static File cskFile = new File(S1TBXTests.inputSAR + "Cosmo/level1B/hdf5/EL20100624_102783_1129476.6.2/CSKS2_SCS_B_S2_01_VV_RA_SF_20100623045532_20100623045540.h5");
+    private final static File k5File = new File(S1TBXTests.inputSAR + "K5/HDF/K5_20170125111222_000000_18823_A_UH28_HH_SCS_B_L1A/K5_20170125111222_000000_18823_A_UH28_HH_SCS_B_L1A_Aux.xml");
+
+    private final static int tileSize = 512;
+    private final static int numThreads = Runtime.getRuntime().availableProcessors();
+
+    @Test
+    public void testCSK_read_1thread() throws Exception {
+        readTiles("CSK read 1 thread", cskFile, 1);
+    }
+
+    @Test
+    public void testCSK_read_Nthreads() throws Exception {
+        readTiles("CSK read " + numThreads + " threads", cskFile, numThreads);
+    }
+
+    @Test
+    public void testK5_read_1thread() throws Exception {
+        readTiles("K5 read 1 thread", k5File, 1);
+    }
+
+    @Test
+    public void testK5_read_Nthreads() throws Exception {
+        readTiles("K5 read " + numThreads + " threads", k5File, numThreads);
+    }
+
+    private void readTiles(final String name, final File file, final int threads) throws Exception {
+        Benchmark b = new Benchmark(name) {
+            @Override
+            protected void execute() throws Exception {
+                final Product srcProduct = read(file);
+                final ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    final List<Future<?>> futures = new ArrayList<>();
+                    for (Band band : srcProduct.getBands()) {
+                        if (band instanceof VirtualBand) {
+                            continue;
+                        }
+                        final int width = Math.min(band.getRasterWidth(), rect.width);
+                        final int height = Math.min(band.getRasterHeight(), rect.height);
+                        for (int y = 0; y < height; y += tileSize) {
+                            for (int x = 0; x < width; x += tileSize) {
+                                final int tileX = x, tileY = y;
+                                final int w = Math.min(tileSize, width - x);
+                                final int h = Math.min(tileSize, height - y);
+                                futures.add(executor.submit(() -> {
+                                    final ProductData data = band.createCompatibleRasterData(w, h);
+                                    band.readRasterData(tileX, tileY, w, h, data);
+                                    return null;
+                                }));
+                            }
+                        }
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } finally {
+                    executor.shutdown();
+                    srcProduct.dispose();
+                }
+            }
+        };
+        b.run();
+    }
+}
@@ -37,6 +37,8 @@ public final class SARGeocoding {
     public static final double NonValidZeroDopplerTime = -99999.0;
     public static final double NonValidIncidenceAngle = -99999.0;
 
+    private static final int MAX_ZERO_DOPPLER_SEARCH_STEPS = 16;
+
     public static final String USE_PROJECTED_INCIDENCE_ANGLE_FROM_DEM = "Use projected local incidence angle from DEM";
     public static final String USE_LOCAL_INCIDENCE_ANGLE_FROM_DEM = "Use local incidence angle from DEM";
     public static final String USE_INCIDENCE_ANGLE_FROM_ELLIPSOID = "Use incidence angle from Ellipsoid";
@@ -108,6 +110,76 @@ public final class SARGeocoding {
         return firstLineUTC + y0 * lineTimeInterval;
     }
 
+    /**
+     * Compute zero Doppler time for given earth point starting from a predicted range line, e.g. the line
+     * found for the same point in another acquisition of the same track. The Doppler frequency is followed
+     * from the predicted line until it changes sign, which takes a few steps for a close prediction.
+     * Falls back to the bisection method if the sign change is not found nearby.
+     *
+     * @param firstLineUTC     The zero Doppler time for the first range line.
+     * @param lineTimeInterval The line time interval.
+     * @param wavelength       The radar wavelength.
+     * @param earthPoint       The earth point in xyz coordinate.
+     * @param sensorPosition   Array of sensor positions for all range lines.
+     * @param sensorVelocity   Array of sensor velocities for all range lines.
+     * @param predictedLine    The predicted range line.
+     * @return The zero Doppler time in days if it is found, NonValidZeroDopplerTime otherwise.
+     * @throws OperatorException The operator exception.
+     */
+    public static double getEarthPointZeroDopplerTime(final double firstLineUTC,
+                                                      final double lineTimeInterval, final double wavelength,
+                                                      final PosVector earthPoint, final PosVector[] sensorPosition,
+                                                      final PosVector[] sensorVelocity, final double predictedLine)
+            throws OperatorException {
+
+        final int lastLine = sensorPosition.length - 1;
+        if (!(predictedLine >= 0 && predictedLine <= lastLine) || lastLine < 1) {
+            return getEarthPointZeroDopplerTime(firstLineUTC, lineTimeInterval, wavelength, earthPoint,
+                                                sensorPosition, sensorVelocity);
+        }
+
+        int lowerBound = Math.min((int) predictedLine, lastLine - 1);
+        int upperBound = lowerBound + 1;
+        double lowerBoundFreq = getDopplerFrequency(
+                earthPoint, sensorPosition[lowerBound], sensorVelocity[lowerBound], wavelength);
+        double upperBoundFreq = getDopplerFrequency(
+                earthPoint, sensorPosition[upperBound], sensorVelocity[upperBound], wavelength);
+
+        // walk towards the smaller Doppler frequency
+        int steps = 0;
+        while (lowerBoundFreq * upperBoundFreq > 0.0) {
+            if (++steps > MAX_ZERO_DOPPLER_SEARCH_STEPS) {
+                return getEarthPointZeroDopplerTime(firstLineUTC, lineTimeInterval, wavelength, earthPoint,
+                                                    sensorPosition, sensorVelocity);
+            }
+            if (Math.abs(upperBoundFreq) < Math.abs(lowerBoundFreq)) {
+                if (upperBound == lastLine) {
+                    return NonValidZeroDopplerTime;
+                }
+                lowerBound = upperBound;
+                lowerBoundFreq = upperBoundFreq;
+                ++upperBound;
+                upperBoundFreq = getDopplerFrequency(
+                        earthPoint, sensorPosition[upperBound], sensorVelocity[upperBound], wavelength);
+            } else {
+                if (lowerBound == 0) {
+                    return NonValidZeroDopplerTime;
+                }
+                upperBound = lowerBound;
+                upperBoundFreq = lowerBoundFreq;
+                --lowerBound;
+                lowerBoundFreq = getDopplerFrequency(
+                        earthPoint, sensorPosition[lowerBound], sensorVelocity[lowerBound], wavelength);
+            }
+        }
+
+        if (lowerBoundFreq == upperBoundFreq) {
+            return firstLineUTC + lowerBound * lineTimeInterval;
+        }
+        final double y0 = lowerBound - lowerBoundFreq * (upperBound - lowerBound) / (upperBoundFreq - lowerBoundFreq);
+        return firstLineUTC + y0 * lineTimeInterval;
+    }
+
     public static double getEarthPointZeroDopplerTimeNewton(
             final double lineTimeInterval, final double wavelength,
             final PosVector earthPoint, final OrbitStateVectors orbit) throws OperatorException {
@@ -0,0 +1,580 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons;
+
+import org.esa.snap.core.dataio.ProductReader;
+import org.esa.snap.core.datamodel.MetadataAttribute;
+import org.esa.snap.core.datamodel.MetadataElement;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.runtime.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the parsed Sentinel-1 annotation so that it is decoded once per acquisition rather than once per
+ * operator. Annotation read from a product file is keyed by the file and its modification time. Annotation of
+ * products built in memory, such as operator targets which may have removed bursts or lines, is keyed by a
+ * digest of its whole content. Keys are computed once per element instance.
+ * Sub-swath parameters can optionally be persisted as binary side-car files in the SNAP cache folder
+ * so that later runs skip parsing entirely. The content digest is stored with them and checked on loading.
+ */
+public final class Sentinel1AnnotationCache {
+
+    public static final String PREF_PERSIST = "s1tbx.sentinel1.persistAnnotation";
+
+    private static final boolean persist = Config.instance().preferences().getBoolean(PREF_PERSIST, false);
+
+    private static final int MAGIC = 0x53314153; // S1AS
+    private static final int VERSION = 3;
+    private static final int MAX_ENTRIES = 128;
+
+    private static final Map<MetadataElement, String> keys = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Map<String, Object> cache = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private Sentinel1AnnotationCache() {
+    }
+
+    /**
+     * Fills the sub-swath parameters from the cache, parsing the annotation only on the first request.
+     *
+     * @param subSwathMetadata the annotation element of the sub-swath
+     * @param subSwath         the SubSwathInfo to fill
+     * @param parser           parses the annotation into the given SubSwathInfo
+     */
+    static void getSubSwathParameters(final MetadataElement subSwathMetadata,
+                                      final Sentinel1Utils.SubSwathInfo subSwath,
+                                      final Runnable parser) {
+
+        final String key = "swath:" + getKey(subSwathMetadata);
+        SubSwathSnapshot snapshot = (SubSwathSnapshot) get(key);
+        if (snapshot == null && persist) {
+            snapshot = SubSwathSnapshot.read(getSideCarFile(key), key, subSwathMetadata);
+            if (snapshot != null) {
+                put(key, snapshot);
+            }
+        }
+
+        if (snapshot != null) {
+            snapshot.copyTo(subSwath);
+            return;
+        }
+
+        parser.run();
+        snapshot = new SubSwathSnapshot(key, subSwath);
+        put(key, snapshot);
+        if (persist) {
+            snapshot.write(getSideCarFile(key), createDigest(subSwathMetadata));
+        }
+    }
+
+    /**
+     * Returns the vectors decoded from a noise or calibration vector list, decoding them on the first request.
+     * The returned vectors are shared and must not be modified.
+     *
+     * @param vectorListElem the noise or calibration vector list element
+     * @param variant        distinguishes decodings of the same element with different options
+     * @param parser         decodes the vector list
+     * @return the decoded vectors
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T getVectors(final MetadataElement vectorListElem, final String variant, final Supplier<T> parser) {
+
+        final String key = "vectors:" + variant + ':' + getKey(vectorListElem);
+        T vectors = (T) get(key);
+        if (vectors == null) {
+            vectors = parser.get();
+            put(key, vectors);
+        }
+        return vectors;
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        keys.clear();
+    }
+
+    private static Object get(final String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private static void put(final String key, final Object value) {
+        synchronized (cache) {
+            cache.put(key, value);
+        }
+    }
+
+    /**
+     * Returns the cache key of the given element, computing it on the first request for this instance.
+     */
+    static String getKey(final MetadataElement elem) {
+        String key = keys.get(elem);
+        if (key == null) {
+            key = createFileKey(elem);
+            if (key == null) {
+                key = "digest:" + createDigest(elem);
+            }
+            keys.put(elem, key);
+        }
+        return key;
+    }
+
+    /**
+     * Builds a key from the file the product was read from, its modification time and the path of the element
+     * in the metadata. Only products opened by a reader plug-in qualify, as the metadata of operator targets and
+     * subsets is derived in memory and may differ from the file.
+     *
+     * @return the key or null if the element does not come from a product file
+     */
+    static String createFileKey(final MetadataElement elem) {
+        final Product product = elem.getProduct();
+        if (product == null || product.getFileLocation() == null) {
+            return null;
+        }
+        final ProductReader reader = product.getProductReader();
+        if (reader == null || reader.getReaderPlugIn() == null) {
+            return null;
+        }
+        final File file = product.getFileLocation();
+        final long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            return null;
+        }
+
+        final StringBuilder path = new StringBuilder();
+        for (MetadataElement e = elem; e != null; e = e.getParentElement()) {
+            path.insert(0, '/' + e.getName());
+        }
+        return "file:" + file.getAbsolutePath() + '@' + lastModified + path;
+    }
+
+    /**
+     * Builds the SHA-256 digest of the names and values of all elements and attributes under the given element,
+     * which covers everything the parsers read. Copies of the same annotation give the same digest, while any
+     * change, such as removed bursts or lines, gives a different one.
+     */
+    static String createDigest(final MetadataElement elem) {
+        final MessageDigest digest = createMessageDigest();
+        update(digest, elem);
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void update(final MessageDigest digest, final MetadataElement elem) {
+        update(digest, elem.getName());
+        final int numAttributes = elem.getNumAttributes();
+        for (int i = 0; i < numAttributes; ++i) {
+            final MetadataAttribute attribute = elem.getAttributeAt(i);
+            update(digest, attribute.getName());
+            final ProductData data = attribute.getData();
+            if (data instanceof ProductData.ASCII || data instanceof ProductData.UTC) {
+                update(digest, data.getElemString());
+            } else {
+                for (int k = 0; k < data.getNumElems(); ++k) {
+                    update(digest, data.getElemStringAt(k));
+                }
+            }
+        }
+        final int numElements = elem.getNumElements();
+        for (int i = 0; i < numElements; ++i) {
+            update(digest, elem.getElementAt(i));
+        }
+        // closes the element, so that moving a sub-element to another parent changes the digest
+        digest.update((byte) 1);
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static File getSideCarFile(final String key) {
+        final File folder = new File(SystemUtils.getCacheDir(), "s1tbx" + File.separator + "annotation");
+        final byte[] name = createMessageDigest().digest(key.getBytes(StandardCharsets.UTF_8));
+        return new File(folder, toHex(name) + ".bin");
+    }
+
+    /**
+     * Immutable copy of the annotation derived sub-swath parameters.
+     * Values are copied in and out so that operators adjusting their SubSwathInfo cannot alter the cached state.
+     */
+    private static final class SubSwathSnapshot {
+
+        private final String key;
+        private final Sentinel1Utils.SubSwathInfo info = new Sentinel1Utils.SubSwathInfo();
+
+        private SubSwathSnapshot(final String key) {
+            this.key = key;
+        }
+
+        SubSwathSnapshot(final String key, final Sentinel1Utils.SubSwathInfo subSwath) {
+            this.key = key;
+            copy(subSwath, info);
+        }
+
+        void copyTo(final Sentinel1Utils.SubSwathInfo subSwath) {
+            copy(info, subSwath);
+        }
+
+        private static void copy(final Sentinel1Utils.SubSwathInfo src, final Sentinel1Utils.SubSwathInfo dst) {
+            dst.numOfLines = src.numOfLines;
+            dst.numOfSamples = src.numOfSamples;
+            dst.firstLineTime = src.firstLineTime;
+            dst.lastLineTime = src.lastLineTime;
+            dst.firstValidLineTime = src.firstValidLineTime;
+            dst.lastValidLineTime = src.lastValidLineTime;
+            dst.slrTimeToFirstPixel = src.slrTimeToFirstPixel;
+            dst.slrTimeToLastPixel = src.slrTimeToLastPixel;
+            dst.slrTimeToFirstValidPixel = src.slrTimeToFirstValidPixel;
+            dst.slrTimeToLastValidPixel = src.slrTimeToLastValidPixel;
+            dst.azimuthTimeInterval = src.azimuthTimeInterval;
+            dst.rangePixelSpacing = src.rangePixelSpacing;
+            dst.azimuthPixelSpacing = src.azimuthPixelSpacing;
+            dst.radarFrequency = src.radarFrequency;
+            dst.rangeSamplingRate = src.rangeSamplingRate;
+            dst.azimuthSteeringRate = src.azimuthSteeringRate;
+            dst.ascendingNodeTime = src.ascendingNodeTime;
+            dst.firstValidPixel = src.firstValidPixel;
+            dst.lastValidPixel = src.lastValidPixel;
+
+            dst.numOfBursts = src.numOfBursts;
+            dst.linesPerBurst = src.linesPerBurst;
+            dst.samplesPerBurst = src.samplesPerBurst;
+            dst.burstFirstLineTime = clone(src.burstFirstLineTime);
+            dst.burstLastLineTime = clone(src.burstLastLineTime);
+            dst.burstFirstValidLineTime = clone(src.burstFirstValidLineTime);
+            dst.burstLastValidLineTime = clone(src.burstLastValidLineTime);
+            dst.firstValidSample = clone(src.firstValidSample);
+            dst.lastValidSample = clone(src.lastValidSample);
+            dst.firstValidLine = clone(src.firstValidLine);
+            dst.lastValidLine = clone(src.lastValidLine);
+
+            dst.apSlantRangeTime = clone(src.apSlantRangeTime);
+            dst.apElevationAngle = clone(src.apElevationAngle);
+
+            dst.numOfGeoLines = src.numOfGeoLines;
+            dst.numOfGeoPointsPerLine = src.numOfGeoPointsPerLine;
+            dst.azimuthTime = clone(src.azimuthTime);
+            dst.slantRangeTime = clone(src.slantRangeTime);
+            dst.latitude = clone(src.latitude);
+            dst.longitude = clone(src.longitude);
+            dst.incidenceAngle = clone(src.incidenceAngle);
+        }
+
+        void write(final File file, final String digest) {
+            final File folder = file.getParentFile();
+            if (!folder.exists() && !folder.mkdirs()) {
+                SystemUtils.LOG.warning("Unable to create " + folder);
+                return;
+            }
+            final File tmpFile = new File(folder, file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeUTF(digest);
+
+                out.writeInt(info.numOfLines);
+                out.writeInt(info.numOfSamples);
+                out.writeDouble(info.firstLineTime);
+                out.writeDouble(info.lastLineTime);
+                out.writeDouble(info.firstValidLineTime);
+                out.writeDouble(info.lastValidLineTime);
+                out.writeDouble(info.slrTimeToFirstPixel);
+                out.writeDouble(info.slrTimeToLastPixel);
+                out.writeDouble(info.slrTimeToFirstValidPixel);
+                out.writeDouble(info.slrTimeToLastValidPixel);
+                out.writeDouble(info.azimuthTimeInterval);
+                out.writeDouble(info.rangePixelSpacing);
+                out.writeDouble(info.azimuthPixelSpacing);
+                out.writeDouble(info.radarFrequency);
+                out.writeDouble(info.rangeSamplingRate);
+                out.writeDouble(info.azimuthSteeringRate);
+                out.writeDouble(info.ascendingNodeTime);
+                out.writeInt(info.firstValidPixel);
+                out.writeInt(info.lastValidPixel);
+
+                out.writeInt(info.numOfBursts);
+                out.writeInt(info.linesPerBurst);
+                out.writeInt(info.samplesPerBurst);
+                write(out, info.burstFirstLineTime);
+                write(out, info.burstLastLineTime);
+                write(out, info.burstFirstValidLineTime);
+                write(out, info.burstLastValidLineTime);
+                write(out, info.firstValidSample);
+                write(out, info.lastValidSample);
+                write(out, info.firstValidLine);
+                write(out, info.lastValidLine);
+
+                write(out, info.apSlantRangeTime);
+                write(out, info.apElevationAngle);
+
+                out.writeInt(info.numOfGeoLines);
+                out.writeInt(info.numOfGeoPointsPerLine);
+                write(out, info.azimuthTime);
+                write(out, info.slantRangeTime);
+                write(out, info.latitude);
+                write(out, info.longitude);
+                write(out, info.incidenceAngle);
+            } catch (IOException e) {
+                SystemUtils.LOG.warning("Unable to write annotation side-car " + file + ": " + e.getMessage());
+                tmpFile.delete();
+                return;
+            }
+            try {
+                try {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                               StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                SystemUtils.LOG.warning("Unable to write annotation side-car " + file + ": " + e.getMessage());
+                tmpFile.delete();
+            }
+        }
+
+        static SubSwathSnapshot read(final File file, final String key, final MetadataElement subSwathMetadata) {
+            if (!file.exists()) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                    return null;
+                }
+                // the side-car outlives the product file, so its content must still match the annotation
+                if (!createDigest(subSwathMetadata).equals(in.readUTF())) {
+                    return null;
+                }
+                final SubSwathSnapshot snapshot = new SubSwathSnapshot(key);
+                final Sentinel1Utils.SubSwathInfo info = snapshot.info;
+
+                info.numOfLines = in.readInt();
+                info.numOfSamples = in.readInt();
+                info.firstLineTime = in.readDouble();
+                info.lastLineTime = in.readDouble();
+                info.firstValidLineTime = in.readDouble();
+                info.lastValidLineTime = in.readDouble();
+                info.slrTimeToFirstPixel = in.readDouble();
+                info.slrTimeToLastPixel = in.readDouble();
+                info.slrTimeToFirstValidPixel = in.readDouble();
+                info.slrTimeToLastValidPixel = in.readDouble();
+                info.azimuthTimeInterval = in.readDouble();
+                info.rangePixelSpacing = in.readDouble();
+                info.azimuthPixelSpacing = in.readDouble();
+                info.radarFrequency = in.readDouble();
+                info.rangeSamplingRate = in.readDouble();
+                info.azimuthSteeringRate = in.readDouble();
+                info.ascendingNodeTime = in.readDouble();
+                info.firstValidPixel = in.readInt();
+                info.lastValidPixel = in.readInt();
+
+                info.numOfBursts = in.readInt();
+                info.linesPerBurst = in.readInt();
+                info.samplesPerBurst = in.readInt();
+                info.burstFirstLineTime = readDoubles(in);
+                info.burstLastLineTime = readDoubles(in);
+                info.burstFirstValidLineTime = readDoubles(in);
+                info.burstLastValidLineTime = readDoubles(in);
+                info.firstValidSample = readIntArrays(in);
+                info.lastValidSample = readIntArrays(in);
+                info.firstValidLine = readInts(in);
+                info.lastValidLine = readInts(in);
+
+                info.apSlantRangeTime = readDoubleArrays(in);
+                info.apElevationAngle = readDoubleArrays(in);
+
+                info.numOfGeoLines = in.readInt();
+                info.numOfGeoPointsPerLine = in.readInt();
+                info.azimuthTime = readDoubleArrays(in);
+                info.slantRangeTime = readDoubleArrays(in);
+                info.latitude = readDoubleArrays(in);
+                info.longitude = readDoubleArrays(in);
+                info.incidenceAngle = readDoubleArrays(in);
+                return snapshot;
+            } catch (IOException e) {
+                SystemUtils.LOG.warning("Unable to read annotation side-car " + file + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        private static void write(final DataOutputStream out, final int[] array) throws IOException {
+            if (array == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(array.length);
+            for (int v : array) {
+                out.writeInt(v);
+            }
+        }
+
+        private static void write(final DataOutputStream out, final double[] array) throws IOException {
+            if (array == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(array.length);
+            for (double v : array) {
+                out.writeDouble(v);
+            }
+        }
+
+        private static void write(final DataOutputStream out, final int[][] array) throws IOException {
+            if (array == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(array.length);
+            for (int[] a : array) {
+                write(out, a);
+            }
+        }
+
+        private static void write(final DataOutputStream out, final double[][] array) throws IOException {
+            if (array == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(array.length);
+            for (double[] a : array) {
+                write(out, a);
+            }
+        }
+
+        private static int[] readInts(final DataInputStream in) throws IOException {
+            final int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            final int[] array = new int[length];
+            for (int i = 0; i < length; ++i) {
+                array[i] = in.readInt();
+            }
+            return array;
+        }
+
+        private static double[] readDoubles(final DataInputStream in) throws IOException {
+            final int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            final double[] array = new double[length];
+            for (int i = 0; i < length; ++i) {
+                array[i] = in.readDouble();
+            }
+            return array;
+        }
+
+        private static int[][] readIntArrays(final DataInputStream in) throws IOException {
+            final int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            final int[][] array = new int[length][];
+            for (int i = 0; i < length; ++i) {
+                array[i] = readInts(in);
+            }
+            return array;
+        }
+
+        private static double[][] readDoubleArrays(final DataInputStream in) throws IOException {
+            final int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            final double[][] array = new double[length][];
+            for (int i = 0; i < length; ++i) {
+                array[i] = readDoubles(in);
+            }
+            return array;
+        }
+
+        private static int[] clone(final int[] array) {
+            return array == null ? null : array.clone();
+        }
+
+        private static double[] clone(final double[] array) {
+            return array == null ? null : array.clone();
+        }
+
+        private static int[][] clone(final int[][] array) {
+            if (array == null) {
+                return null;
+            }
+            final int[][] copy = new int[array.length][];
+            for (int i = 0; i < array.length; ++i) {
+                copy[i] = clone(array[i]);
+            }
+            return copy;
+        }
+
+        private static double[][] clone(final double[][] array) {
+            if (array == null) {
+                return null;
+            }
+            final double[][] copy = new double[array.length][];
+            for (int i = 0; i < array.length; ++i) {
+                copy[i] = clone(array[i]);
+            }
+            return copy;
+        }
+    }
+}
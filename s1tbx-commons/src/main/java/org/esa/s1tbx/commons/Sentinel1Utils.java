@@ -233,7 +233,9 @@ public final class Sentinel1Utils {
             subSwath[i] = new SubSwathInfo();
 			subSwath[i].subSwathName = subSwathNames[i];
             final MetadataElement subSwathMetadata = getSubSwathMetadata(subSwath[i].subSwathName);
-            getSubSwathParameters(subSwathMetadata, subSwath[i]);
+            final SubSwathInfo info = subSwath[i];
+            Sentinel1AnnotationCache.getSubSwathParameters(subSwathMetadata, info,
+                    () -> getSubSwathParameters(subSwathMetadata, info));
         }
     }
 
@@ -513,15 +515,13 @@ public final class Sentinel1Utils {
             final int line = Integer.parseInt(noiseVectorElem.getAttributeString("line"));
 
             final MetadataElement pixelElem = noiseVectorElem.getElement("pixel");
-            final String pixel = pixelElem.getAttributeString("pixel");
             final int count = Integer.parseInt(pixelElem.getAttributeString("count"));
             final MetadataElement noiseLutElem = noiseVectorElem.getElement("noiseLut");
-            final String noiseLUT = noiseLutElem.getAttributeString("noiseLut");
 
             final int[] pixelArray = new int[count];
             final float[] noiseLUTArray = new float[count];
-            addToArray(pixelArray, 0, pixel, " ");
-            addToArray(noiseLUTArray, 0, noiseLUT, " ");
+            addToArray(pixelArray, pixelElem, "pixel");
+            addToArray(noiseLUTArray, noiseLutElem, "noiseLut");
 
             noiseVectorList.add(new NoiseVector(time, line, pixelArray, noiseLUTArray));
         }
@@ -564,41 +564,36 @@ public final class Sentinel1Utils {
             final int line = Integer.parseInt(calibrationVectorElem.getAttributeString("line"));
 
             final MetadataElement pixelElem = calibrationVectorElem.getElement("pixel");
-            final String pixel = pixelElem.getAttributeString("pixel");
             final int count = Integer.parseInt(pixelElem.getAttributeString("count"));
             final int[] pixelArray = new int[count];
-            addToArray(pixelArray, 0, pixel, " ");
+            addToArray(pixelArray, pixelElem, "pixel");
 
             float[] sigmaNoughtArray = null;
             if (outputSigmaBand) {
                 final MetadataElement sigmaNoughtElem = calibrationVectorElem.getElement("sigmaNought");
-                final String sigmaNought = sigmaNoughtElem.getAttributeString("sigmaNought");
                 sigmaNoughtArray = new float[count];
-                addToArray(sigmaNoughtArray, 0, sigmaNought, " ");
+                addToArray(sigmaNoughtArray, sigmaNoughtElem, "sigmaNought");
             }
 
             float[] betaNoughtArray = null;
             if (outputBetaBand) {
                 final MetadataElement betaNoughtElem = calibrationVectorElem.getElement("betaNought");
-                final String betaNought = betaNoughtElem.getAttributeString("betaNought");
                 betaNoughtArray = new float[count];
-                addToArray(betaNoughtArray, 0, betaNought, " ");
+                addToArray(betaNoughtArray, betaNoughtElem, "betaNought");
             }
 
             float[] gammaArray = null;
             if (outputGammaBand) {
                 final MetadataElement gammaElem = calibrationVectorElem.getElement("gamma");
-                final String gamma = gammaElem.getAttributeString("gamma");
                 gammaArray = new float[count];
-                addToArray(gammaArray, 0, gamma, " ");
+                addToArray(gammaArray, gammaElem, "gamma");
             }
 
             float[] dnArray = null;
             if (outputDNBand) {
                 final MetadataElement dnElem = calibrationVectorElem.getElement("dn");
-                final String dn = dnElem.getAttributeString("dn");
                 dnArray = new float[count];
-                addToArray(dnArray, 0, dn, " ");
+                addToArray(dnArray, dnElem, "dn");
             }
 
             calibrationVectorList.add(new CalibrationVector(
@@ -944,10 +939,9 @@ public final class Sentinel1Utils {
         final MetadataElement calibrationVectorListElem = getCalibrationVectorList(subSwathIndex, polarization);
         final MetadataElement[] list = calibrationVectorListElem.getElements();
         final MetadataElement vectorElem = list[vectorIndex].getElement(vectorName);
-        final String vectorStr = vectorElem.getAttributeString(vectorName);
         final int count = Integer.parseInt(vectorElem.getAttributeString("count"));
         float[] vectorArray = new float[count];
-        addToArray(vectorArray, 0, vectorStr, " ");
+        addToArray(vectorArray, vectorElem, vectorName);
 
         return vectorArray;
     }
@@ -958,10 +952,9 @@ public final class Sentinel1Utils {
         final MetadataElement calibrationVectorListElem = getCalibrationVectorList(subSwathIndex, polarization);
         final MetadataElement[] list = calibrationVectorListElem.getElements();
         final MetadataElement pixelElem = list[vectorIndex].getElement("pixel");
-        final String pixel = pixelElem.getAttributeString("pixel");
         final int count = Integer.parseInt(pixelElem.getAttributeString("count"));
         final int[] pixelArray = new int[count];
-        addToArray(pixelArray, 0, pixel, " ");
+        addToArray(pixelArray, pixelElem, "pixel");
 
         return pixelArray;
     }
@@ -969,6 +962,12 @@ public final class Sentinel1Utils {
     //todo: This function is currently used by Sentinel1RemoveThermalNoiseOp and should be replaced later by the function above.
     public static NoiseVector[] getNoiseVector(final MetadataElement noiseVectorListElem) {
 
+        return Sentinel1AnnotationCache.getVectors(noiseVectorListElem, "noise",
+                () -> decodeNoiseVector(noiseVectorListElem));
+    }
+
+    private static NoiseVector[] decodeNoiseVector(final MetadataElement noiseVectorListElem) {
+
         final MetadataElement[] list = noiseVectorListElem.getElements();
 
         final List<NoiseVector> noiseVectorList = new ArrayList<>(5);
@@ -977,7 +976,6 @@ public final class Sentinel1Utils {
             final int line = Integer.parseInt(noiseVectorElem.getAttributeString("line"));
 
             final MetadataElement pixelElem = noiseVectorElem.getElement("pixel");
-            final String pixel = pixelElem.getAttributeString("pixel");
             final int count = Integer.parseInt(pixelElem.getAttributeString("count"));
             MetadataElement noiseLutElem = noiseVectorElem.getElement("noiseLut");
             if (noiseLutElem == null) {
@@ -990,11 +988,10 @@ public final class Sentinel1Utils {
                 // After IPF 2.9.0
                 attribute = noiseLutElem.getAttribute("noiseRangeLut");
             }
-            final String noiseLUT = attribute.getData().getElemString();
             final int[] pixelArray = new int[count];
             final float[] noiseLUTArray = new float[count];
-            addToArray(pixelArray, 0, pixel, " ");
-            addToArray(noiseLUTArray, 0, noiseLUT, " ");
+            addToArray(pixelArray, pixelElem, "pixel");
+            addToArray(noiseLUTArray, attribute);
 
             noiseVectorList.add(new NoiseVector(time, line, pixelArray, noiseLUTArray));
         }
@@ -1010,15 +1007,13 @@ public final class Sentinel1Utils {
         for (MetadataElement noiseVectorElem : list) {
 
             final MetadataElement lineElem = noiseVectorElem.getElement("line");
-            final String line = lineElem.getAttributeString("line");
             final int count = Integer.parseInt(lineElem.getAttributeString("count"));
             MetadataElement noiseLutElem = noiseVectorElem.getElement("noiseAzimuthLut");
             MetadataAttribute attribute = noiseLutElem.getAttribute("noiseAzimuthLut");
-            final String noiseLUT = attribute.getData().getElemString();
             final int[] lineArray = new int[count];
             final float[] noiseLUTArray = new float[count];
-            addToArray(lineArray, 0, line, " ");
-            addToArray(noiseLUTArray, 0, noiseLUT, " ");
+            addToArray(lineArray, lineElem, "line");
+            addToArray(noiseLUTArray, attribute);
             //System.out.println("Sentinel1Utils.getAzimuthNoiseVector: count = " + count);
             /*for (int i = 0; i < count; i++) {
                  System.out.println("Sentinel1Utils.getAzimuthNoiseVector: " + lineArray[i] + " -> " + noiseLUTArray[i]);
@@ -1052,6 +1047,19 @@ public final class Sentinel1Utils {
                                                            final boolean outputGammaBand,
                                                            final boolean outputDNBand) {
 
+        final String variant = "calibration" + (outputSigmaBand ? 's' : '-') + (outputBetaBand ? 'b' : '-') +
+                (outputGammaBand ? 'g' : '-') + (outputDNBand ? 'd' : '-');
+        return Sentinel1AnnotationCache.getVectors(calibrationVectorListElem, variant,
+                () -> decodeCalibrationVector(calibrationVectorListElem,
+                                              outputSigmaBand, outputBetaBand, outputGammaBand, outputDNBand));
+    }
+
+    private static CalibrationVector[] decodeCalibrationVector(final MetadataElement calibrationVectorListElem,
+                                                               final boolean outputSigmaBand,
+                                                               final boolean outputBetaBand,
+                                                               final boolean outputGammaBand,
+                                                               final boolean outputDNBand) {
+
         final MetadataElement[] list = calibrationVectorListElem.getElements();
 
         final List<CalibrationVector> calibrationVectorList = new ArrayList<>(5);
@@ -1060,41 +1068,36 @@ public final class Sentinel1Utils {
             final int line = Integer.parseInt(calibrationVectorElem.getAttributeString("line"));
 
             final MetadataElement pixelElem = calibrationVectorElem.getElement("pixel");
-            final String pixel = pixelElem.getAttributeString("pixel");
             final int count = Integer.parseInt(pixelElem.getAttributeString("count"));
             final int[] pixelArray = new int[count];
-            addToArray(pixelArray, 0, pixel, " ");
+            addToArray(pixelArray, pixelElem, "pixel");
 
             float[] sigmaNoughtArray = null;
             if (outputSigmaBand) {
                 final MetadataElement sigmaNoughtElem = calibrationVectorElem.getElement("sigmaNought");
-                final String sigmaNought = sigmaNoughtElem.getAttributeString("sigmaNought");
                 sigmaNoughtArray = new float[count];
-                addToArray(sigmaNoughtArray, 0, sigmaNought, " ");
+                addToArray(sigmaNoughtArray, sigmaNoughtElem, "sigmaNought");
             }
 
             float[] betaNoughtArray = null;
             if (outputBetaBand) {
                 final MetadataElement betaNoughtElem = calibrationVectorElem.getElement("betaNought");
-                final String betaNought = betaNoughtElem.getAttributeString("betaNought");
                 betaNoughtArray = new float[count];
-                addToArray(betaNoughtArray, 0, betaNought, " ");
+                addToArray(betaNoughtArray, betaNoughtElem, "betaNought");
             }
 
             float[] gammaArray = null;
             if (outputGammaBand) {
                 final MetadataElement gammaElem = calibrationVectorElem.getElement("gamma");
-                final String gamma = gammaElem.getAttributeString("gamma");
                 gammaArray = new float[count];
-                addToArray(gammaArray, 0, gamma, " ");
+                addToArray(gammaArray, gammaElem, "gamma");
             }
 
             float[] dnArray = null;
             if (outputDNBand) {
                 final MetadataElement dnElem = calibrationVectorElem.getElement("dn");
-                final String dn = dnElem.getAttributeString("dn");
                 dnArray = new float[count];
-                addToArray(dnArray, 0, dn, " ");
+                addToArray(dnArray, dnElem, "dn");
             }
 
             calibrationVectorList.add(new CalibrationVector(
@@ -1461,6 +1464,15 @@ public final class Sentinel1Utils {
             throw new OperatorException(tag + " attribute not found");
         }
 
+        final double[] values = getVectorValues(attribute);
+        if (values != null) {
+            final int[] array = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                array[i] = (int) values[i];
+            }
+            return array;
+        }
+
         int[] array = null;
         if (attribute.getDataType() == ProductData.TYPE_ASCII) {
             final String dataStr = attribute.getData().getElemString();
@@ -1485,6 +1497,11 @@ public final class Sentinel1Utils {
             throw new OperatorException(tag + " attribute not found");
         }
 
+        final double[] values = getVectorValues(attribute);
+        if (values != null) {
+            return values.clone();
+        }
+
         double[] array = null;
         if (attribute.getData() instanceof ProductData.ASCII) {
             final String dataStr = attribute.getData().getElemString();
@@ -1502,6 +1519,51 @@ public final class Sentinel1Utils {
         return array;
     }
 
+    /**
+     * @return the numbers decoded by the product reader or null if the attribute holds only text
+     */
+    private static double[] getVectorValues(final MetadataAttribute attribute) {
+        return attribute instanceof VectorAttribute ? ((VectorAttribute) attribute).getValues() : null;
+    }
+
+    private static void addToArray(final int[] array, final MetadataElement elem, final String name) {
+        addToArray(array, getVectorAttribute(elem, name));
+    }
+
+    private static void addToArray(final float[] array, final MetadataElement elem, final String name) {
+        addToArray(array, getVectorAttribute(elem, name));
+    }
+
+    private static MetadataAttribute getVectorAttribute(final MetadataElement elem, final String name) {
+        final MetadataAttribute attribute = elem.getAttribute(name);
+        if (attribute == null) {
+            throw new OperatorException(name + " attribute not found");
+        }
+        return attribute;
+    }
+
+    private static void addToArray(final int[] array, final MetadataAttribute attribute) {
+        final double[] values = getVectorValues(attribute);
+        if (values != null && values.length == array.length) {
+            for (int i = 0; i < values.length; i++) {
+                array[i] = (int) values[i];
+            }
+        } else {
+            addToArray(array, 0, attribute.getData().getElemString(), " ");
+        }
+    }
+
+    private static void addToArray(final float[] array, final MetadataAttribute attribute) {
+        final double[] values = getVectorValues(attribute);
+        if (values != null && values.length == array.length) {
+            for (int i = 0; i < values.length; i++) {
+                array[i] = (float) values[i];
+            }
+        } else {
+            addToArray(array, 0, attribute.getData().getElemString(), " ");
+        }
+    }
+
     private static int addToArray(final int[] array, int index, final String csvString, final String delim) {
         final StringTokenizer tokenizer = new StringTokenizer(csvString, delim);
         while (tokenizer.hasMoreTokens()) {
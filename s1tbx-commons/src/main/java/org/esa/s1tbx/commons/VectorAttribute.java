@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons;
+
+import org.esa.snap.core.datamodel.MetadataAttribute;
+import org.esa.snap.core.datamodel.ProductData;
+
+/**
+ * A metadata attribute holding a vector of numbers, such as a calibration or noise LUT.
+ * The value stays the space separated text of the annotation so that the metadata view, the product writers
+ * and the operators reading it as a string are unaffected. The numbers decoded by the reader are kept
+ * alongside, so that Sentinel1Utils does not parse the text again. They are dropped when the value changes.
+ */
+public class VectorAttribute extends MetadataAttribute {
+
+    private volatile double[] values;
+    private final int textLength;
+
+    public VectorAttribute(final String name, final ProductData data, final boolean readOnly,
+                           final double[] values) {
+        super(name, data, readOnly);
+        this.values = values;
+        this.textLength = data.getNumElems();
+    }
+
+    /**
+     * Decodes a vector
+     *
+     * @param text  the space separated numbers
+     * @param count the expected number of values
+     * @return the values or null if the text does not hold count numbers
+     */
+    public static double[] decode(final String text, final int count) {
+        final double[] values = new double[count];
+        final int length = text.length();
+        int n = 0;
+        int pos = 0;
+        while (pos < length) {
+            while (pos < length && Character.isWhitespace(text.charAt(pos))) {
+                ++pos;
+            }
+            if (pos == length) {
+                break;
+            }
+            int end = pos;
+            while (end < length && !Character.isWhitespace(text.charAt(end))) {
+                ++end;
+            }
+            if (n == count) {
+                return null;
+            }
+            try {
+                values[n++] = Double.parseDouble(text.substring(pos, end));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            pos = end;
+        }
+        return n == count ? values : null;
+    }
+
+    /**
+     * @return the decoded values, which must not be modified, or null if the value has changed since decoding
+     */
+    public double[] getValues() {
+        final double[] values = this.values;
+        if (values == null || getData().getNumElems() != textLength) {
+            return null;
+        }
+        return values;
+    }
+
+    @Override
+    public void fireProductNodeDataChanged() {
+        values = null;
+        super.fireProductNodeDataChanged();
+    }
+
+    @Override
+    public MetadataAttribute createDeepClone() {
+        final VectorAttribute clone = new VectorAttribute(getName(), getData().createDeepClone(), isReadOnly(),
+                                                          getValues());
+        clone.setDescription(getDescription());
+        clone.setSynthetic(isSynthetic());
+        clone.setUnit(getUnit());
+        return clone;
+    }
+}
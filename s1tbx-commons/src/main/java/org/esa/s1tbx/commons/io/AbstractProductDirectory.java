@@ -25,7 +25,9 @@ import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
 import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
 import org.esa.snap.engine_utilities.util.ZipUtils;
+import org.esa.snap.runtime.Config;
 
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -52,6 +54,9 @@ public abstract class AbstractProductDirectory {
     protected transient final Map<String, ImageIOFile> bandImageFileMap = new TreeMap<>();
     protected transient final Map<Band, ImageIOFile.BandInfo> bandMap = new HashMap<>(3);
 
+    private static final boolean useZipEntryStream =
+            Config.instance().preferences().getBoolean("s1tbx.readers.useZipEntryStream", true);
+
     protected AbstractProductDirectory(final File inputFile) {
         Guardian.assertNotNull("inputFile", inputFile);
         this.productInputFile = inputFile;
@@ -280,6 +285,26 @@ public abstract class AbstractProductDirectory {
         return inStream;
     }
 
+    /**
+     * Create an ImageInputStream of an image of the product. Images in a zipped product are read directly
+     * from their zip entry instead of being cached by ImageIOFile.createImageInputStream.
+     *
+     * @param path           the path of the image in the product
+     * @param inStream       the open input stream of the image, closed if it is not used
+     * @param bandDimensions the raster size of the image
+     */
+    protected ImageInputStream createImageInputStream(final String path, final InputStream inStream,
+                                                      final Dimension bandDimensions) throws IOException {
+        if (useZipEntryStream && isCompressed() && baseDir.isFile()) {
+            final ImageInputStream entryStream = ZipEntryImageInputStream.create(baseDir, path);
+            if (entryStream != null) {
+                inStream.close();
+                return entryStream;
+            }
+        }
+        return ImageIOFile.createImageInputStream(inStream, bandDimensions);
+    }
+
     protected File getBaseDir() {
         return baseDir;
     }
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.io;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.dataio.ProductWriter;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.util.SystemUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes band data to several output products at once.
+ * Each output has its own bounded write queue. The queues are drained in order by a pool of at most
+ * maxThreads workers shared by all outputs, so writing one output never waits on another. When a queue
+ * is full the submitting GPF thread blocks until a worker catches up, which throttles tile computation
+ * to the speed of the slowest disk.
+ * Data passed to an output must not be modified until the output has been flushed.
+ * close must be called once writing is done; idle workers also end on their own after a few seconds.
+ */
+public class ProductFanOutWriter {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    private static final long KEEP_ALIVE_SECONDS = 5;
+    private static final AtomicInteger poolCount = new AtomicInteger();
+
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final List<Output> outputs = new ArrayList<>();
+
+    public ProductFanOutWriter() {
+        this(DEFAULT_QUEUE_CAPACITY, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ProductFanOutWriter(final int queueCapacity, final int maxThreads) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+
+        final String poolName = "s1tbx-writer-" + poolCount.incrementAndGet() + '-';
+        final AtomicInteger threadCount = new AtomicInteger();
+        final int numThreads = Math.max(1, maxThreads);
+        this.executor = new ThreadPoolExecutor(numThreads, numThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                               new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, poolName + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Adds an output
+     *
+     * @param name          name used for error messages and metrics
+     * @param productWriter the writer of the output product. writeProductNodes must have been called or must be
+     *                      called through execute before any band data is written.
+     * @return the output handle
+     */
+    public synchronized Output addOutput(final String name, final ProductWriter productWriter) {
+        if (executor.isShutdown()) {
+            throw new IllegalStateException("ProductFanOutWriter is closed");
+        }
+        final Output output = new Output(name, productWriter, queueCapacity, executor);
+        outputs.add(output);
+        return output;
+    }
+
+    public synchronized List<Output> getOutputs() {
+        return new ArrayList<>(outputs);
+    }
+
+    /**
+     * Waits until all writes queued so far have completed
+     *
+     * @throws IOException if a write failed
+     */
+    public void flush() throws IOException {
+        for (Output output : getOutputs()) {
+            output.flush();
+        }
+    }
+
+    /**
+     * Completes all queued writes, closes the product writers and stops the workers
+     *
+     * @throws IOException if a write failed or a writer could not be closed
+     */
+    public void close() throws IOException {
+        IOException error = null;
+        for (Output output : getOutputs()) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            SystemUtils.LOG.fine(output.toString());
+        }
+        synchronized (this) {
+            outputs.clear();
+            executor.shutdown();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    public interface WriteTask {
+        void write(ProductWriter productWriter) throws IOException;
+    }
+
+    /**
+     * A single output product with its own write queue
+     */
+    public static class Output {
+
+        private final String name;
+        private final ProductWriter productWriter;
+        private final BlockingQueue<WriteTask> queue;
+        private final int queueCapacity;
+        private final Executor executor;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private volatile IOException error = null;
+        private volatile boolean closed = false;
+
+        private long numBytesWritten = 0;
+        private long numTilesWritten = 0;
+        private long writeNanos = 0;
+
+        private Output(final String name, final ProductWriter productWriter, final int queueCapacity,
+                       final Executor executor) {
+            this.name = name;
+            this.productWriter = productWriter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.queueCapacity = queueCapacity;
+            this.executor = executor;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ProductWriter getProductWriter() {
+            return productWriter;
+        }
+
+        /**
+         * Queues band data for writing. Blocks while the queue of this output is full.
+         */
+        public void writeBandRasterData(final Band band, final int x, final int y, final int width, final int height,
+                                        final ProductData data) throws IOException {
+            final long numBytes = (long) data.getNumElems() * data.getElemSize();
+            put(productWriter -> {
+                final long start = System.nanoTime();
+                productWriter.writeBandRasterData(band, x, y, width, height, data, ProgressMonitor.NULL);
+                synchronized (this) {
+                    writeNanos += System.nanoTime() - start;
+                    numBytesWritten += numBytes;
+                    ++numTilesWritten;
+                }
+            });
+        }
+
+        /**
+         * Queues an arbitrary writer call, executed in order with the band data of this output
+         */
+        public void execute(final WriteTask task) throws IOException {
+            put(task);
+        }
+
+        public synchronized long getNumBytesWritten() {
+            return numBytesWritten;
+        }
+
+        public synchronized long getNumTilesWritten() {
+            return numTilesWritten;
+        }
+
+        /**
+         * @return the write throughput in MB/s measured over the time spent inside the product writer
+         */
+        public synchronized double getThroughput() {
+            if (writeNanos == 0) {
+                return 0;
+            }
+            return (numBytesWritten / (1024.0 * 1024.0)) / (writeNanos / 1.0e9);
+        }
+
+        /**
+         * Waits until all writes queued so far on this output have completed
+         *
+         * @throws IOException if a write failed
+         */
+        public void flush() throws IOException {
+            if (closed) {
+                checkError();
+                return;
+            }
+            awaitQueued();
+            checkError();
+        }
+
+        private void awaitQueued() throws IOException {
+            final CountDownLatch latch = new CountDownLatch(1);
+            put(productWriter -> latch.countDown());
+            while (error == null) {
+                try {
+                    if (latch.await(100, TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for " + name, e);
+                }
+            }
+        }
+
+        private void close() throws IOException {
+            if (!closed) {
+                try {
+                    awaitQueued();
+                } catch (IOException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+                closed = true;
+            }
+            try {
+                productWriter.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            checkError();
+        }
+
+        private void put(final WriteTask task) throws IOException {
+            checkError();
+            if (closed) {
+                throw new IOException("Output " + name + " is closed");
+            }
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while queuing data for " + name, e);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void checkError() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * Runs the queued tasks in order. At most one drain of an output is scheduled at a time, and a drain
+         * gives its worker back after one queue length so that a busy output cannot starve the others.
+         */
+        private void drain() {
+            try {
+                for (int i = 0; i < queueCapacity; ++i) {
+                    final WriteTask task = queue.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    if (error != null) {
+                        // keep draining so that producers are not blocked after a failure
+                        continue;
+                    }
+                    try {
+                        task.write(productWriter);
+                    } catch (IOException e) {
+                        error = e;
+                    } catch (Throwable t) {
+                        error = new IOException(t);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // a task queued while the flag was still set would otherwise wait for the next put
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s: %d tiles, %.1f MB written at %.1f MB/s", name, numTilesWritten,
+                                 numBytesWritten / (1024.0 * 1024.0), getThroughput());
+        }
+    }
+}
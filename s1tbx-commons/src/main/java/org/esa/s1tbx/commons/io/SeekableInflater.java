@@ -0,0 +1,543 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Inflater of a raw deflate stream in a file that supports reading from any uncompressed position.
+ * <p>
+ * java.util.zip.Inflater cannot be positioned inside a stream, so the deflate format (RFC 1951) is decoded
+ * here. While decoding, a checkpoint is kept at the first block boundary after every CHECKPOINT_SPACING
+ * bytes of output, holding the bit position of the block in the compressed data and the 32 KB window of
+ * preceding output. A read restarts from the nearest checkpoint before it instead of the start of the
+ * stream, so after the entry has been decoded once any position is reached by decoding at most about 1 MB.
+ * <p>
+ * The checkpoints take about 3% of the uncompressed size, but at most MAX_CHECKPOINTS windows (8 MB) per
+ * stream. When the limit is reached every other checkpoint is dropped and the spacing doubled, so for entries
+ * beyond 256 MB the heap stays bounded and a seek decodes up to about entry size / 128 bytes instead.
+ * <p>
+ * Not thread safe.
+ */
+final class SeekableInflater {
+
+    static final long CHECKPOINT_SPACING = 1024 * 1024;
+    static final int MAX_CHECKPOINTS = 256;
+
+    private static final int WINDOW_SIZE = 32768;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51,
+            59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4,
+            4, 5, 5, 5, 5, 0};
+    private static final int[] DISTANCE_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385,
+            513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DISTANCE_EXTRA = {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9,
+            10, 10, 11, 11, 12, 12, 13, 13};
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final Huffman FIXED_LITERALS;
+    private static final Huffman FIXED_DISTANCES;
+
+    static {
+        final int[] lengths = new int[288];
+        for (int i = 0; i < 288; ++i) {
+            lengths[i] = i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8;
+        }
+        FIXED_LITERALS = new Huffman(288);
+        FIXED_LITERALS.build(lengths, 0, 288);
+        for (int i = 0; i < 30; ++i) {
+            lengths[i] = 5;
+        }
+        FIXED_DISTANCES = new Huffman(30);
+        FIXED_DISTANCES.build(lengths, 0, 30);
+    }
+
+    private enum State {HEADER, STORED, HUFFMAN, DONE}
+
+    private final FileChannel channel;
+    private final long dataOffset;
+    private final long compressedSize;
+
+    // compressed input
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long inPos;          // compressed bytes moved into bitBuf
+    private long bitBuf;
+    private int bitCount;
+
+    // decoder state
+    private State state = State.HEADER;
+    private boolean lastBlock;
+    private int storedRemaining;
+    private int copyLength;
+    private int copyDistance;
+    private Huffman literals;
+    private Huffman distances;
+    private final Huffman dynamicLiterals = new Huffman(288);
+    private final Huffman dynamicDistances = new Huffman(30);
+    private final Huffman codeLengths = new Huffman(19);
+    private final int[] lengths = new int[288 + 30];
+
+    // output
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private long outPos;
+
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private final int maxCheckpoints;
+    private long checkpointSpacing;
+
+    /**
+     * @param channel        the file
+     * @param dataOffset     the file position of the deflate stream
+     * @param compressedSize the length of the deflate stream
+     */
+    SeekableInflater(final FileChannel channel, final long dataOffset, final long compressedSize) {
+        this(channel, dataOffset, compressedSize, CHECKPOINT_SPACING, MAX_CHECKPOINTS);
+    }
+
+    SeekableInflater(final FileChannel channel, final long dataOffset, final long compressedSize,
+                     final long checkpointSpacing, final int maxCheckpoints) {
+        this.channel = channel;
+        this.dataOffset = dataOffset;
+        this.compressedSize = compressedSize;
+        this.checkpointSpacing = checkpointSpacing;
+        this.maxCheckpoints = maxCheckpoints;
+        buffer.limit(0);
+    }
+
+    /**
+     * @return the number of checkpoints kept
+     */
+    int getNumCheckpoints() {
+        return checkpoints.size();
+    }
+
+    /**
+     * Read uncompressed bytes
+     *
+     * @param pos the uncompressed position of b[off]
+     * @return the number of bytes read, less than len only at the end of the stream
+     */
+    int read(final long pos, final byte[] b, final int off, final int len) throws IOException {
+        position(pos);
+        return inflate(b, off, len);
+    }
+
+    private void position(final long pos) throws IOException {
+        final Checkpoint checkpoint = findCheckpoint(pos);
+        final long checkpointPos = checkpoint != null ? checkpoint.outPos : 0;
+        if (pos < outPos || checkpointPos > outPos) {
+            restore(checkpoint);
+        }
+        while (outPos < pos) {
+            if (inflate(null, 0, (int) Math.min(pos - outPos, Integer.MAX_VALUE)) == 0) {
+                throw new EOFException("Position " + pos + " is beyond the end of the deflate stream");
+            }
+        }
+    }
+
+    /**
+     * @return the last checkpoint at or before pos or null
+     */
+    private Checkpoint findCheckpoint(final long pos) {
+        int lo = 0;
+        int hi = checkpoints.size() - 1;
+        Checkpoint found = null;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final Checkpoint checkpoint = checkpoints.get(mid);
+            if (checkpoint.outPos <= pos) {
+                found = checkpoint;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private void restore(final Checkpoint checkpoint) throws IOException {
+        state = State.HEADER;
+        lastBlock = false;
+        copyLength = 0;
+        if (checkpoint == null) {
+            outPos = 0;
+            seekBits(0);
+        } else {
+            outPos = checkpoint.outPos;
+            System.arraycopy(checkpoint.window, 0, window, 0, WINDOW_SIZE);
+            seekBits(checkpoint.bitPos);
+        }
+    }
+
+    private void seekBits(final long bitPos) throws IOException {
+        inPos = bitPos >>> 3;
+        bitBuf = 0;
+        bitCount = 0;
+        buffer.limit(0);
+        final int skip = (int) (bitPos & 7);
+        if (skip > 0) {
+            needBits(skip);
+            dropBits(skip);
+        }
+    }
+
+    private void addCheckpoint() {
+        final long last = checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).outPos;
+        if (outPos - last < checkpointSpacing) {
+            return;
+        }
+        if (checkpoints.size() >= maxCheckpoints) {
+            // keep the odd checkpoints, which are about twice the spacing apart, and reuse a dropped window
+            final byte[] spare = checkpoints.get(0).window;
+            int kept = 0;
+            for (int i = 1; i < checkpoints.size(); i += 2) {
+                checkpoints.set(kept++, checkpoints.get(i));
+            }
+            checkpoints.subList(kept, checkpoints.size()).clear();
+            checkpointSpacing *= 2;
+            final long lastKept = checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).outPos;
+            if (outPos - lastKept < checkpointSpacing) {
+                return;
+            }
+            System.arraycopy(window, 0, spare, 0, WINDOW_SIZE);
+            checkpoints.add(new Checkpoint((inPos << 3) - bitCount, outPos, spare));
+            return;
+        }
+        checkpoints.add(new Checkpoint((inPos << 3) - bitCount, outPos, window.clone()));
+    }
+
+    /**
+     * Decode up to len bytes into b, or skip them if b is null
+     *
+     * @return the number of bytes decoded, less than len only at the end of the stream
+     */
+    private int inflate(final byte[] b, final int off, final int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            if (copyLength > 0) {
+                final int count = Math.min(copyLength, len - n);
+                for (int i = 0; i < count; ++i) {
+                    final byte v = window[(int) ((outPos - copyDistance) & WINDOW_MASK)];
+                    window[(int) (outPos & WINDOW_MASK)] = v;
+                    if (b != null) {
+                        b[off + n + i] = v;
+                    }
+                    ++outPos;
+                }
+                copyLength -= count;
+                n += count;
+                continue;
+            }
+
+            switch (state) {
+                case HEADER:
+                    if (lastBlock) {
+                        state = State.DONE;
+                        break;
+                    }
+                    addCheckpoint();
+                    readBlockHeader();
+                    break;
+                case STORED: {
+                    final int count = Math.min(storedRemaining, len - n);
+                    for (int i = 0; i < count; ++i) {
+                        needBits(8);
+                        final byte v = (byte) bitBuf;
+                        dropBits(8);
+                        window[(int) (outPos & WINDOW_MASK)] = v;
+                        if (b != null) {
+                            b[off + n + i] = v;
+                        }
+                        ++outPos;
+                    }
+                    storedRemaining -= count;
+                    n += count;
+                    if (storedRemaining == 0) {
+                        state = State.HEADER;
+                    }
+                    break;
+                }
+                case HUFFMAN: {
+                    final int symbol = decode(literals);
+                    if (symbol < 256) {
+                        window[(int) (outPos & WINDOW_MASK)] = (byte) symbol;
+                        if (b != null) {
+                            b[off + n] = (byte) symbol;
+                        }
+                        ++outPos;
+                        ++n;
+                    } else if (symbol == 256) {
+                        state = State.HEADER;
+                    } else {
+                        final int lengthCode = symbol - 257;
+                        if (lengthCode >= LENGTH_BASE.length) {
+                            throw new ZipException("Invalid deflate length code");
+                        }
+                        copyLength = LENGTH_BASE[lengthCode] + readBits(LENGTH_EXTRA[lengthCode]);
+                        final int distanceCode = decode(distances);
+                        if (distanceCode >= DISTANCE_BASE.length) {
+                            throw new ZipException("Invalid deflate distance code");
+                        }
+                        copyDistance = DISTANCE_BASE[distanceCode] + readBits(DISTANCE_EXTRA[distanceCode]);
+                        if (copyDistance > outPos) {
+                            throw new ZipException("Invalid deflate distance");
+                        }
+                    }
+                    break;
+                }
+                case DONE:
+                    return n;
+            }
+        }
+        return n;
+    }
+
+    private void readBlockHeader() throws IOException {
+        lastBlock = readBits(1) == 1;
+        final int type = readBits(2);
+        switch (type) {
+            case 0: {
+                dropBits(bitCount & 7);
+                final int length = readBits(16);
+                final int complement = readBits(16);
+                if (length != (~complement & 0xFFFF)) {
+                    throw new ZipException("Invalid stored block length");
+                }
+                storedRemaining = length;
+                state = length > 0 ? State.STORED : State.HEADER;
+                break;
+            }
+            case 1:
+                literals = FIXED_LITERALS;
+                distances = FIXED_DISTANCES;
+                state = State.HUFFMAN;
+                break;
+            case 2:
+                readDynamicTables();
+                literals = dynamicLiterals;
+                distances = dynamicDistances;
+                state = State.HUFFMAN;
+                break;
+            default:
+                throw new ZipException("Invalid deflate block type");
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        final int numLiterals = readBits(5) + 257;
+        final int numDistances = readBits(5) + 1;
+        final int numCodeLengths = readBits(4) + 4;
+        if (numLiterals > 286 || numDistances > 30) {
+            throw new ZipException("Invalid deflate table size");
+        }
+
+        for (int i = 0; i < 19; ++i) {
+            lengths[CODE_LENGTH_ORDER[i]] = i < numCodeLengths ? readBits(3) : 0;
+        }
+        codeLengths.build(lengths, 0, 19);
+
+        int i = 0;
+        while (i < numLiterals + numDistances) {
+            final int symbol = decode(codeLengths);
+            if (symbol < 16) {
+                lengths[i++] = symbol;
+                continue;
+            }
+            int value = 0;
+            final int repeat;
+            if (symbol == 16) {
+                if (i == 0) {
+                    throw new ZipException("Invalid deflate code length repeat");
+                }
+                value = lengths[i - 1];
+                repeat = 3 + readBits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + readBits(3);
+            } else {
+                repeat = 11 + readBits(7);
+            }
+            if (i + repeat > numLiterals + numDistances) {
+                throw new ZipException("Invalid deflate code lengths");
+            }
+            for (int k = 0; k < repeat; ++k) {
+                lengths[i++] = value;
+            }
+        }
+        if (lengths[256] == 0) {
+            throw new ZipException("Missing deflate end of block code");
+        }
+        dynamicLiterals.build(lengths, 0, numLiterals);
+        dynamicDistances.build(lengths, numLiterals, numDistances);
+    }
+
+    private int decode(final Huffman huffman) throws IOException {
+        fillBits();
+        final int entry = huffman.fast[(int) (bitBuf & Huffman.FAST_MASK)];
+        final int length = entry >>> 16;
+        if (length != 0 && length <= bitCount) {
+            dropBits(length);
+            return entry & 0xFFFF;
+        }
+
+        // codes longer than FAST_BITS, bit by bit
+        int code = 0;
+        int first = 0;
+        int index = 0;
+        for (int len = 1; len <= Huffman.MAX_BITS; ++len) {
+            code |= readBits(1);
+            final int count = huffman.count[len];
+            if (code - count < first) {
+                return huffman.symbol[index + (code - first)];
+            }
+            index += count;
+            first += count;
+            first <<= 1;
+            code <<= 1;
+        }
+        throw new ZipException("Invalid deflate code");
+    }
+
+    private int readBits(final int n) throws IOException {
+        if (n == 0) {
+            return 0;
+        }
+        needBits(n);
+        final int value = (int) (bitBuf & ((1L << n) - 1));
+        dropBits(n);
+        return value;
+    }
+
+    private void dropBits(final int n) {
+        bitBuf >>>= n;
+        bitCount -= n;
+    }
+
+    private void needBits(final int n) throws IOException {
+        if (bitCount < n) {
+            fillBits();
+            if (bitCount < n) {
+                throw new EOFException("Unexpected end of deflate stream");
+            }
+        }
+    }
+
+    private void fillBits() throws IOException {
+        while (bitCount <= 56) {
+            if (!buffer.hasRemaining() && !fillBuffer()) {
+                return;
+            }
+            bitBuf |= (buffer.get() & 0xFFL) << bitCount;
+            bitCount += 8;
+            ++inPos;
+        }
+    }
+
+    private boolean fillBuffer() throws IOException {
+        final long remaining = compressedSize - inPos;
+        if (remaining <= 0) {
+            return false;
+        }
+        buffer.clear();
+        buffer.limit((int) Math.min(BUFFER_SIZE, remaining));
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, dataOffset + inPos + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private static final class Checkpoint {
+        final long bitPos;
+        final long outPos;
+        final byte[] window;
+
+        Checkpoint(final long bitPos, final long outPos, final byte[] window) {
+            this.bitPos = bitPos;
+            this.outPos = outPos;
+            this.window = window;
+        }
+    }
+
+    /**
+     * Canonical Huffman code with a lookup table for codes of up to FAST_BITS bits
+     */
+    private static final class Huffman {
+
+        static final int MAX_BITS = 15;
+        static final int FAST_BITS = 10;
+        static final int FAST_MASK = (1 << FAST_BITS) - 1;
+
+        final int[] count = new int[MAX_BITS + 1];
+        final int[] symbol;
+        /** code length << 16 | symbol, indexed by the next FAST_BITS bits of input, 0 for longer codes */
+        final int[] fast = new int[1 << FAST_BITS];
+        private final int[] offsets = new int[MAX_BITS + 2];
+
+        Huffman(final int maxSymbols) {
+            symbol = new int[maxSymbols];
+        }
+
+        void build(final int[] lengths, final int offset, final int n) {
+            Arrays.fill(count, 0);
+            Arrays.fill(fast, 0);
+            for (int i = 0; i < n; ++i) {
+                count[lengths[offset + i]]++;
+            }
+            count[0] = 0;
+
+            offsets[1] = 0;
+            for (int len = 1; len <= MAX_BITS; ++len) {
+                offsets[len + 1] = offsets[len] + count[len];
+            }
+            for (int i = 0; i < n; ++i) {
+                final int len = lengths[offset + i];
+                if (len != 0) {
+                    symbol[offsets[len]++] = i;
+                }
+            }
+
+            // canonical codes in symbol order, bit reversed into the lookup table
+            int code = 0;
+            int index = 0;
+            for (int len = 1; len <= MAX_BITS; ++len) {
+                for (int k = 0; k < count[len]; ++k, ++index, ++code) {
+                    if (len > FAST_BITS) {
+                        continue;
+                    }
+                    final int reversed = Integer.reverse(code) >>> (32 - len);
+                    final int entry = len << 16 | symbol[index];
+                    for (int fill = reversed; fill < fast.length; fill += 1 << len) {
+                        fast[fill] = entry;
+                    }
+                }
+                code <<= 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.io;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipException;
+
+/**
+ * ImageInputStream over an entry of a zip file with random access.
+ * <p>
+ * STORED entries are read directly from the zip file. DEFLATED entries are read with a
+ * {@link SeekableInflater}, so a seek does not inflate and cache the whole entry up to the new position as
+ * FileCacheImageInputStream and MemoryCacheImageInputStream do.
+ */
+public final class ZipEntryImageInputStream extends ImageInputStreamImpl {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final FileChannel channel;
+    private final long dataOffset;
+    private final long length;
+    private final SeekableInflater inflater;
+    private final byte[] single = new byte[1];
+
+    private ZipEntryImageInputStream(final FileChannel channel, final Entry entry) throws IOException {
+        this.channel = channel;
+        this.dataOffset = getDataOffset(channel, entry.localHeaderOffset);
+        this.length = entry.size;
+        this.inflater = entry.method == DEFLATED ?
+                new SeekableInflater(channel, dataOffset, entry.compressedSize) : null;
+    }
+
+    /**
+     * Open an entry of a zip file
+     *
+     * @param zipFile   the zip file
+     * @param entryName the name of the entry
+     * @return the stream or null if the entry is not found or not STORED or DEFLATED
+     * @throws IOException if the zip file cannot be read
+     */
+    public static ZipEntryImageInputStream create(final File zipFile, final String entryName) throws IOException {
+        final FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ);
+        try {
+            final Entry entry = findEntry(channel, entryName);
+            if (entry == null || (entry.method != STORED && entry.method != DEFLATED)) {
+                channel.close();
+                return null;
+            }
+            return new ZipEntryImageInputStream(channel, entry);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == 1 ? single[0] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= length) {
+            return -1;
+        }
+
+        final int n = (int) Math.min(len, length - streamPos);
+        final int count;
+        if (inflater != null) {
+            count = inflater.read(streamPos, b, off, n);
+            if (count < n) {
+                throw new EOFException("Unexpected end of zip entry");
+            }
+        } else {
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, n);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, dataOffset + streamPos + buffer.position() - off) < 0) {
+                    throw new EOFException("Unexpected end of zip file");
+                }
+            }
+            count = n;
+        }
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        channel.close();
+    }
+
+    private static long getDataOffset(final FileChannel channel, final long localHeaderOffset) throws IOException {
+        final ByteBuffer header = read(channel, localHeaderOffset, 30);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header");
+        }
+        final int nameLength = header.getShort(26) & 0xFFFF;
+        final int extraLength = header.getShort(28) & 0xFFFF;
+        return localHeaderOffset + 30 + nameLength + extraLength;
+    }
+
+    /**
+     * Look up an entry in the central directory, with ZIP64 extensions for large products
+     */
+    private static Entry findEntry(final FileChannel channel, final String entryName) throws IOException {
+        final long fileSize = channel.size();
+        final int tailSize = (int) Math.min(fileSize, END_SIZE + MAX_COMMENT_SIZE);
+        final ByteBuffer tail = read(channel, fileSize - tailSize, tailSize);
+
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; --i) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if (directoryOffset == 0xFFFFFFFFL || directorySize == 0xFFFFFFFFL) {
+            final long locatorPos = fileSize - tailSize + end - 20;
+            final ByteBuffer locator = read(channel, locatorPos, 20);
+            if (locator.getInt(0) != ZIP64_LOCATOR_SIGNATURE) {
+                throw new ZipException("ZIP64 end of central directory locator not found");
+            }
+            final ByteBuffer zip64End = read(channel, locator.getLong(8), 56);
+            if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                throw new ZipException("ZIP64 end of central directory not found");
+            }
+            directorySize = zip64End.getLong(40);
+            directoryOffset = zip64End.getLong(48);
+        }
+        if (directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large");
+        }
+
+        final byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+        int pos = 0;
+        while (pos + 46 <= directorySize && directory.getInt(pos) == CENTRAL_HEADER_SIGNATURE) {
+            final int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+            final int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+            final int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+            if (nameLength == name.length && nameEquals(directory, pos + 46, name)) {
+                final Entry entry = new Entry();
+                entry.method = directory.getShort(pos + 10) & 0xFFFF;
+                entry.compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+                entry.size = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+                entry.localHeaderOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+                readZip64Extra(directory, pos + 46 + nameLength, extraLength, entry);
+                return entry;
+            }
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return null;
+    }
+
+    /**
+     * Replace the sizes and offset that do not fit into 32 bits by their ZIP64 values, which follow in this order
+     */
+    private static void readZip64Extra(final ByteBuffer directory, final int extraPos, final int extraLength,
+                                       final Entry entry) {
+        int pos = extraPos;
+        while (pos + 4 <= extraPos + extraLength) {
+            final int id = directory.getShort(pos) & 0xFFFF;
+            final int size = directory.getShort(pos + 2) & 0xFFFF;
+            if (id == ZIP64_EXTRA_ID) {
+                int field = pos + 4;
+                if (entry.size == 0xFFFFFFFFL) {
+                    entry.size = directory.getLong(field);
+                    field += 8;
+                }
+                if (entry.compressedSize == 0xFFFFFFFFL) {
+                    entry.compressedSize = directory.getLong(field);
+                    field += 8;
+                }
+                if (entry.localHeaderOffset == 0xFFFFFFFFL) {
+                    entry.localHeaderOffset = directory.getLong(field);
+                }
+                return;
+            }
+            pos += 4 + size;
+        }
+    }
+
+    private static boolean nameEquals(final ByteBuffer directory, final int pos, final byte[] name) {
+        for (int i = 0; i < name.length; ++i) {
+            if (directory.get(pos + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer read(final FileChannel channel, final long position, final int size)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static final class Entry {
+        int method;
+        long compressedSize;
+        long size;
+        long localHeaderOffset;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons;
+
+import org.esa.snap.core.datamodel.MetadataElement;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Keys and digests of the annotation cache
+ */
+public class TestSentinel1AnnotationCache {
+
+    private static MetadataElement createAnnotation() {
+        final MetadataElement annotation = new MetadataElement("s1a-iw1-slc-vv-20200101t000000.xml");
+        final MetadataElement product = new MetadataElement("product");
+        annotation.addElement(product);
+
+        final MetadataElement imageInformation = new MetadataElement("imageInformation");
+        imageInformation.setAttributeString("productFirstLineUtcTime", "2020-01-01T00:00:00.000000");
+        imageInformation.setAttributeString("numberOfLines", "13473");
+        final MetadataElement imageAnnotation = new MetadataElement("imageAnnotation");
+        imageAnnotation.addElement(imageInformation);
+        product.addElement(imageAnnotation);
+
+        final MetadataElement burstList = new MetadataElement("burstList");
+        burstList.setAttributeString("count", "3");
+        for (int i = 0; i < 3; ++i) {
+            final MetadataElement burst = new MetadataElement("burst");
+            burst.setAttributeString("azimuthTime", "2020-01-01T00:00:0" + (3 * i) + ".000000");
+            burst.setAttributeString("firstValidSample", "-1 -1 120 120 -1");
+            burstList.addElement(burst);
+        }
+        final MetadataElement swathTiming = new MetadataElement("swathTiming");
+        swathTiming.addElement(burstList);
+        product.addElement(swathTiming);
+        return annotation;
+    }
+
+    @Test
+    public void testCopiesGiveSameDigest() {
+        final MetadataElement annotation = createAnnotation();
+        final String digest = Sentinel1AnnotationCache.createDigest(annotation);
+        assertEquals(digest, Sentinel1AnnotationCache.createDigest(annotation.createDeepClone()));
+        assertEquals(digest, Sentinel1AnnotationCache.createDigest(createAnnotation()));
+    }
+
+    @Test
+    public void testInnerBurstChangesDigest() {
+        final MetadataElement annotation = createAnnotation();
+        final String digest = Sentinel1AnnotationCache.createDigest(annotation);
+
+        // neither the first nor the last burst, nor any count
+        final MetadataElement burst = annotation.getElement("product").getElement("swathTiming")
+                .getElement("burstList").getElementAt(1);
+        burst.setAttributeString("firstValidSample", "-1 -1 121 120 -1");
+        assertFalse(digest.equals(Sentinel1AnnotationCache.createDigest(annotation)));
+    }
+
+    @Test
+    public void testStructureChangesDigest() {
+        final MetadataElement a = new MetadataElement("list");
+        a.setAttributeString("ab", "c");
+        final MetadataElement b = new MetadataElement("list");
+        b.setAttributeString("a", "bc");
+        assertFalse(Sentinel1AnnotationCache.createDigest(a).equals(Sentinel1AnnotationCache.createDigest(b)));
+
+        final MetadataElement nested = new MetadataElement("list");
+        final MetadataElement inner = new MetadataElement("item");
+        inner.addElement(new MetadataElement("value"));
+        nested.addElement(inner);
+        final MetadataElement flat = new MetadataElement("list");
+        flat.addElement(new MetadataElement("item"));
+        flat.addElement(new MetadataElement("value"));
+        assertFalse(Sentinel1AnnotationCache.createDigest(nested).equals(Sentinel1AnnotationCache.createDigest(flat)));
+    }
+
+    @Test
+    public void testInMemoryAnnotationKeyedByDigest() {
+        final MetadataElement annotation = createAnnotation();
+        assertNull(Sentinel1AnnotationCache.createFileKey(annotation));
+
+        final String key = Sentinel1AnnotationCache.getKey(annotation);
+        assertEquals("digest:" + Sentinel1AnnotationCache.createDigest(annotation), key);
+        assertEquals(key, Sentinel1AnnotationCache.getKey(annotation.createDeepClone()));
+
+        // computed once per instance
+        assertSame(key, Sentinel1AnnotationCache.getKey(annotation));
+    }
+}
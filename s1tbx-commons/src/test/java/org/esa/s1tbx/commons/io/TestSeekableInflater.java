@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips of java.util.zip.Deflater output through the seekable inflater
+ */
+public class TestSeekableInflater {
+
+    private static final int PREFIX = 17;
+    private static final long SPACING = 16 * 1024;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("inflater", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Text, runs and random bytes, so that deflate uses matches, literals and stored blocks
+     */
+    static byte[] createData(final int size, final long seed) {
+        final Random random = new Random(seed);
+        final byte[] data = new byte[size];
+        final byte[] text = "VV polarisation, slant range time 0.005331, azimuth time interval 0.002055 "
+                .getBytes(StandardCharsets.US_ASCII);
+        int pos = 0;
+        while (pos < size) {
+            final int len = Math.min(size - pos, 1000 + random.nextInt(20000));
+            switch (random.nextInt(3)) {
+                case 0:
+                    for (int i = 0; i < len; ++i) {
+                        data[pos + i] = text[(i + random.nextInt(2)) % text.length];
+                    }
+                    break;
+                case 1:
+                    Arrays.fill(data, pos, pos + len, (byte) random.nextInt(256));
+                    break;
+                default:
+                    for (int i = 0; i < len; ++i) {
+                        data[pos + i] = (byte) random.nextInt(256);
+                    }
+            }
+            pos += len;
+        }
+        return data;
+    }
+
+    static byte[] deflate(final byte[] data, final int level) {
+        final Deflater deflater = new Deflater(level, true);
+        deflater.setInput(data);
+        deflater.finish();
+        final byte[] buffer = new byte[data.length + data.length / 100 + 1024];
+        int n = 0;
+        while (!deflater.finished()) {
+            n += deflater.deflate(buffer, n, buffer.length - n);
+        }
+        deflater.end();
+        return Arrays.copyOf(buffer, n);
+    }
+
+    private SeekableInflater open(final FileChannel channel, final byte[] compressed, final int maxCheckpoints)
+            throws IOException {
+        final byte[] content = new byte[PREFIX + compressed.length + 5];
+        System.arraycopy(compressed, 0, content, PREFIX, compressed.length);
+        Files.write(file.toPath(), content);
+        return new SeekableInflater(channel, PREFIX, compressed.length, SPACING, maxCheckpoints);
+    }
+
+    private void checkLevel(final byte[] data, final int level) throws IOException {
+        final byte[] compressed = deflate(data, level);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final SeekableInflater inflater = open(channel, compressed, Integer.MAX_VALUE);
+
+            final byte[] all = new byte[data.length];
+            assertEquals(data.length, inflater.read(0, all, 0, all.length));
+            assertArrayEquals("level " + level, data, all);
+
+            // nothing after the end of the stream
+            assertEquals(0, inflater.read(data.length, new byte[10], 0, 10));
+
+            checkRandomReads(inflater, data, new Random(level));
+        }
+    }
+
+    private static void checkRandomReads(final SeekableInflater inflater, final byte[] data, final Random random)
+            throws IOException {
+        final byte[] b = new byte[3 * (int) SPACING];
+        for (int i = 0; i < 200; ++i) {
+            final int pos = random.nextInt(data.length);
+            final int len = Math.min(random.nextInt(b.length), data.length - pos);
+            final int off = random.nextInt(b.length - len + 1);
+            assertEquals(len, inflater.read(pos, b, off, len));
+            for (int k = 0; k < len; ++k) {
+                if (b[off + k] != data[pos + k]) {
+                    throw new AssertionError("mismatch at " + (pos + k));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStored() throws IOException {
+        checkLevel(createData(300000, 1), Deflater.NO_COMPRESSION);
+    }
+
+    @Test
+    public void testFastest() throws IOException {
+        checkLevel(createData(600000, 2), Deflater.BEST_SPEED);
+    }
+
+    @Test
+    public void testDefault() throws IOException {
+        checkLevel(createData(600000, 3), 6);
+    }
+
+    @Test
+    public void testBest() throws IOException {
+        checkLevel(createData(600000, 4), Deflater.BEST_COMPRESSION);
+    }
+
+    @Test
+    public void testFixedBlock() throws IOException {
+        // short input is written as a single block with the fixed codes
+        checkLevel("hello hello hello sentinel".getBytes(StandardCharsets.US_ASCII), 9);
+    }
+
+    @Test
+    public void testBackwardSeeks() throws IOException {
+        final byte[] data = createData(1200000, 5);
+        final byte[] compressed = deflate(data, 6);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final SeekableInflater inflater = open(channel, compressed, Integer.MAX_VALUE);
+
+            // from the end to the start, each read straddling a checkpoint spacing boundary
+            final byte[] b = new byte[1000];
+            for (long pos = data.length - b.length; pos > 0; pos -= SPACING - 300) {
+                assertEquals(b.length, inflater.read(pos, b, 0, b.length));
+                assertArrayEquals(Arrays.copyOfRange(data, (int) pos, (int) pos + b.length), b);
+            }
+            assertTrue(inflater.getNumCheckpoints() > 10);
+        }
+    }
+
+    @Test
+    public void testBoundedCheckpoints() throws IOException {
+        final byte[] data = createData(800000, 6);
+        final byte[] compressed = deflate(data, 6);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final SeekableInflater inflater = open(channel, compressed, 8);
+
+            final byte[] all = new byte[data.length];
+            assertEquals(data.length, inflater.read(0, all, 0, all.length));
+            assertArrayEquals(data, all);
+            assertTrue(inflater.getNumCheckpoints() <= 8);
+
+            checkRandomReads(inflater, data, new Random(6));
+        }
+    }
+}
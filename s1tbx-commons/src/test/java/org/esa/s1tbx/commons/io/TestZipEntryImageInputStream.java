@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Reads entries of archives written by java.util.zip and of a hand written ZIP64 archive
+ */
+public class TestZipEntryImageInputStream {
+
+    private static final String MEASUREMENT = "S1A_IW_SLC/measurement/s1a-iw1-slc-vv.tiff";
+    private static final String ANNOTATION = "S1A_IW_SLC/annotation/s1a-iw1-slc-vv.xml";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("entry", ".zip");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void writeZip(final byte[] deflated, final byte[] stored) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry("S1A_IW_SLC/manifest.safe"));
+            zip.write("<manifest/>".getBytes(StandardCharsets.US_ASCII));
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry(MEASUREMENT));
+            zip.write(deflated);
+            zip.closeEntry();
+
+            final ZipEntry entry = new ZipEntry(ANNOTATION);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            final CRC32 crc = new CRC32();
+            crc.update(stored);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(stored);
+            zip.closeEntry();
+        }
+    }
+
+    private static void checkSeeks(final ZipEntryImageInputStream stream, final byte[] data) throws IOException {
+        assertEquals(data.length, stream.length());
+
+        final byte[] all = new byte[data.length];
+        stream.readFully(all);
+        assertArrayEquals(data, all);
+        assertEquals(-1, stream.read());
+
+        final Random random = new Random(7);
+        final byte[] b = new byte[50000];
+        for (int i = 0; i < 100; ++i) {
+            final int pos = random.nextInt(data.length);
+            final int len = Math.min(random.nextInt(b.length), data.length - pos);
+            stream.seek(pos);
+            stream.readFully(b, 0, len);
+            assertArrayEquals(Arrays.copyOfRange(data, pos, pos + len), Arrays.copyOf(b, len));
+            if (pos + len < data.length) {
+                assertEquals(data[pos + len] & 0xFF, stream.read());
+            }
+        }
+    }
+
+    @Test
+    public void testDeflatedEntry() throws IOException {
+        final byte[] deflated = TestSeekableInflater.createData(1500000, 11);
+        writeZip(deflated, TestSeekableInflater.createData(5000, 12));
+
+        try (ZipEntryImageInputStream stream = ZipEntryImageInputStream.create(file, MEASUREMENT)) {
+            assertNotNull(stream);
+            checkSeeks(stream, deflated);
+        }
+    }
+
+    @Test
+    public void testStoredEntry() throws IOException {
+        final byte[] stored = TestSeekableInflater.createData(200000, 13);
+        writeZip(TestSeekableInflater.createData(5000, 14), stored);
+
+        try (ZipEntryImageInputStream stream = ZipEntryImageInputStream.create(file, ANNOTATION)) {
+            assertNotNull(stream);
+            checkSeeks(stream, stored);
+        }
+    }
+
+    @Test
+    public void testMissingEntry() throws IOException {
+        writeZip(new byte[100], new byte[100]);
+        assertNull(ZipEntryImageInputStream.create(file, "S1A_IW_SLC/measurement/missing.tiff"));
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        final byte[] data = TestSeekableInflater.createData(300000, 15);
+        final byte[] compressed = TestSeekableInflater.deflate(data, 6);
+        writeZip64(MEASUREMENT, data, compressed);
+
+        // the archive is valid for java.util.zip
+        try (ZipFile zipFile = new ZipFile(file)) {
+            final ZipEntry entry = zipFile.getEntry(MEASUREMENT);
+            assertEquals(data.length, entry.getSize());
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] b = new byte[8192];
+                for (int n; (n = in.read(b)) > 0; ) {
+                    out.write(b, 0, n);
+                }
+                assertArrayEquals(data, out.toByteArray());
+            }
+        }
+
+        try (ZipEntryImageInputStream stream = ZipEntryImageInputStream.create(file, MEASUREMENT)) {
+            assertNotNull(stream);
+            checkSeeks(stream, data);
+        }
+    }
+
+    /**
+     * A single DEFLATED entry whose sizes and offset are only given in ZIP64 extra fields, with the ZIP64 end of
+     * central directory record and locator, as written for products beyond 4 GB
+     */
+    private void writeZip64(final String entryName, final byte[] data, final byte[] compressed)
+            throws IOException {
+        final byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        final int prefix = 100;
+
+        final ByteBuffer buf = ByteBuffer.allocate(prefix + compressed.length + 1024 + 3 * name.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(prefix);
+
+        // local header
+        final long localHeaderOffset = buf.position();
+        buf.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 8);
+        buf.putInt(0).putInt((int) crc.getValue()).putInt(-1).putInt(-1);
+        buf.putShort((short) name.length).putShort((short) 20).put(name);
+        buf.putShort((short) 1).putShort((short) 16).putLong(data.length).putLong(compressed.length);
+        buf.put(compressed);
+
+        // central directory
+        final long directoryOffset = buf.position();
+        buf.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) 8);
+        buf.putInt(0).putInt((int) crc.getValue()).putInt(-1).putInt(-1);
+        buf.putShort((short) name.length).putShort((short) 28).putShort((short) 0);
+        buf.putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(name);
+        buf.putShort((short) 1).putShort((short) 24);
+        buf.putLong(data.length).putLong(compressed.length).putLong(localHeaderOffset);
+        final long directorySize = buf.position() - directoryOffset;
+
+        // ZIP64 end of central directory and locator
+        final long zip64EndOffset = buf.position();
+        buf.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0);
+        buf.putLong(1).putLong(1).putLong(directorySize).putLong(directoryOffset);
+        buf.putInt(0x07064b50).putInt(0).putLong(zip64EndOffset).putInt(1);
+
+        // end of central directory
+        buf.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 1);
+        buf.putInt(-1).putInt(-1).putShort((short) 0);
+
+        Files.write(file.toPath(), Arrays.copyOf(buf.array(), buf.position()));
+    }
+}
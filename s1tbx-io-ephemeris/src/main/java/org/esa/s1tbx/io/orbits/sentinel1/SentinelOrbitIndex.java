@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.orbits.sentinel1;
+
+import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.engine_utilities.datamodel.Orbits;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local index of Sentinel-1 orbit files.
+ * The index records the mission, file type and validity period of every orbit file found under an orbit folder
+ * together with the location of its state vectors in a binary vector store. The vector store holds the decoded
+ * state vectors as packed doubles, of which the vectors of an entry are memory mapped on demand, so resolving
+ * and loading the orbit of a product needs neither a folder scan nor XML parsing.
+ * Both files are written to temporary files and moved into place, and carry the same build stamp, so an index
+ * left over from an interrupted build is rejected and the folder is scanned instead.
+ * The index is built offline from an existing orbit folder, e.g. with
+ * <pre>java org.esa.s1tbx.io.orbits.sentinel1.SentinelOrbitIndex [POEORB|RESORB] [orbitFolder]</pre>
+ */
+public class SentinelOrbitIndex {
+
+    static final String INDEX_FILE_NAME = "orbit_index.bin";
+    static final String VECTOR_FILE_NAME = "orbit_vectors.bin";
+
+    private static final int MAGIC = 0x53314F49; // S1OI
+    private static final int VERSION = 2;
+    private static final int DOUBLES_PER_VECTOR = 7;
+    private static final int BYTES_PER_VECTOR = DOUBLES_PER_VECTOR * Double.BYTES;
+    private static final int VECTOR_HEADER_SIZE = 16; // magic, version, build stamp
+
+    private static final Map<String, SentinelOrbitIndex> indexMap = new HashMap<>();
+
+    private final File rootFolder;
+    private final Entry[] entries;
+    private final double maxValidityDuration;
+    private final File vectorFile;
+
+    private SentinelOrbitIndex(final File rootFolder, final Entry[] entries, final File vectorFile) {
+        this.rootFolder = rootFolder;
+        this.entries = entries;
+        this.vectorFile = vectorFile;
+
+        double maxDuration = 0;
+        for (Entry entry : entries) {
+            maxDuration = Math.max(maxDuration, entry.validityStopMJD - entry.validityStartMJD);
+        }
+        this.maxValidityDuration = maxDuration;
+    }
+
+    /**
+     * Returns the index of the configured orbit folder for an orbit type
+     *
+     * @param orbitType SentinelPODOrbitFile.PRECISE or SentinelPODOrbitFile.RESTITUTED
+     * @return the index or null if no index has been built for the folder
+     */
+    static SentinelOrbitIndex getIndex(final String orbitType) {
+        final File rootFolder = new File(SentinelPODOrbitFile.getOrbitRootPath(orbitType));
+        synchronized (indexMap) {
+            final String key = rootFolder.getAbsolutePath();
+            if (!indexMap.containsKey(key)) {
+                SentinelOrbitIndex index = null;
+                try {
+                    index = open(rootFolder);
+                } catch (IOException | RuntimeException e) {
+                    SystemUtils.LOG.warning("Unable to open orbit index in " + rootFolder + ": " + e.getMessage());
+                }
+                indexMap.put(key, index);
+            }
+            return indexMap.get(key);
+        }
+    }
+
+    /**
+     * Opens the index of an orbit folder
+     *
+     * @param rootFolder the orbit folder
+     * @return the index or null if the folder has no index
+     * @throws IOException on read errors
+     */
+    public static SentinelOrbitIndex open(final File rootFolder) throws IOException {
+        final File indexFile = new File(rootFolder, INDEX_FILE_NAME);
+        final File vectorFile = new File(rootFolder, VECTOR_FILE_NAME);
+        if (!indexFile.exists() || !vectorFile.exists()) {
+            return null;
+        }
+
+        final Entry[] entries;
+        final long stamp;
+        long numVectors = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported orbit index " + indexFile);
+            }
+            stamp = in.readLong();
+            final int numEntries = in.readInt();
+            entries = new Entry[numEntries];
+            for (int i = 0; i < numEntries; ++i) {
+                entries[i] = new Entry(rootFolder, in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                                       in.readDouble(), in.readDouble(), in.readLong(), in.readInt(), in.readUTF());
+                numVectors = Math.max(numVectors, entries[i].vectorOffset + entries[i].numVectors);
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(vectorFile))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != stamp) {
+                throw new IOException("Orbit vector store " + vectorFile + " does not belong to " + indexFile);
+            }
+        }
+        if (vectorFile.length() < VECTOR_HEADER_SIZE + numVectors * BYTES_PER_VECTOR) {
+            throw new IOException("Orbit vector store " + vectorFile + " is truncated");
+        }
+        return new SentinelOrbitIndex(rootFolder, entries, vectorFile);
+    }
+
+    /**
+     * Scans an orbit folder recursively and writes the index and vector store into it
+     *
+     * @param rootFolder the orbit folder
+     * @return the number of indexed orbit files
+     * @throws IOException on write errors
+     */
+    public static int build(final File rootFolder) throws IOException {
+        final List<File> orbitFiles = new ArrayList<>();
+        collectOrbitFiles(rootFolder, orbitFiles);
+
+        final List<Entry> entryList = new ArrayList<>(orbitFiles.size());
+        final long stamp = System.currentTimeMillis() ^ System.nanoTime();
+        final File vectorFile = new File(rootFolder, VECTOR_FILE_NAME);
+        final File tmpVectorFile = new File(rootFolder, VECTOR_FILE_NAME + ".tmp");
+        long vectorOffset = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpVectorFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            for (File file : orbitFiles) {
+                final SentinelPODOrbitFile.OrbitFileContent content;
+                try {
+                    content = SentinelPODOrbitFile.parseOrbitFile(file);
+                } catch (Exception e) {
+                    SystemUtils.LOG.warning("Skipping orbit file " + file + ": " + e.getMessage());
+                    continue;
+                }
+                final SentinelPODOrbitFile.FixedHeader header = content.fixedHeader;
+                if (header == null || content.osvList.isEmpty()) {
+                    continue;
+                }
+                final double startMJD, stopMJD;
+                try {
+                    startMJD = SentinelPODOrbitFile.toUTC(header.validityStart).getMJD();
+                    stopMJD = SentinelPODOrbitFile.toUTC(header.validityStop).getMJD();
+                } catch (Exception e) {
+                    SystemUtils.LOG.warning("Skipping orbit file " + file + ": " + e.getMessage());
+                    continue;
+                }
+
+                for (Orbits.OrbitVector osv : content.osvList) {
+                    out.writeDouble(osv.utcMJD);
+                    out.writeDouble(osv.xPos);
+                    out.writeDouble(osv.yPos);
+                    out.writeDouble(osv.zPos);
+                    out.writeDouble(osv.xVel);
+                    out.writeDouble(osv.yVel);
+                    out.writeDouble(osv.zVel);
+                }
+
+                final String relativePath = rootFolder.toPath().relativize(file.toPath()).toString();
+                entryList.add(new Entry(rootFolder, SentinelPODOrbitFile.getMissionIDFromFilename(file.getName()),
+                                        header.mission, header.fileType, header.validityStart, header.validityStop,
+                                        startMJD, stopMJD, vectorOffset, content.osvList.size(), relativePath));
+                vectorOffset += content.osvList.size();
+            }
+        }
+        entryList.sort(Comparator.comparingDouble(e -> e.validityStartMJD));
+
+        final File indexFile = new File(rootFolder, INDEX_FILE_NAME);
+        final File tmpIndexFile = new File(rootFolder, INDEX_FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIndexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            out.writeInt(entryList.size());
+            for (Entry entry : entryList) {
+                out.writeUTF(entry.missionPrefix);
+                out.writeUTF(entry.mission);
+                out.writeUTF(entry.fileType);
+                out.writeUTF(entry.validityStart);
+                out.writeUTF(entry.validityStop);
+                out.writeDouble(entry.validityStartMJD);
+                out.writeDouble(entry.validityStopMJD);
+                out.writeLong(entry.vectorOffset);
+                out.writeInt(entry.numVectors);
+                out.writeUTF(entry.relativePath);
+            }
+        }
+
+        // until both are moved the stamps differ and the index is rejected
+        moveIntoPlace(tmpVectorFile, vectorFile);
+        moveIntoPlace(tmpIndexFile, indexFile);
+
+        synchronized (indexMap) {
+            indexMap.remove(rootFolder.getAbsolutePath());
+        }
+        return entryList.size();
+    }
+
+    private static void moveIntoPlace(final File source, final File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void collectOrbitFiles(final File folder, final List<File> orbitFiles) {
+        final File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectOrbitFiles(file, orbitFiles);
+            } else {
+                final String name = file.getName().toUpperCase();
+                if (name.startsWith("S1") && name.contains("_OPER_AUX_") &&
+                        (name.endsWith(".EOF") || name.endsWith(".EOF.ZIP") || name.endsWith(".ZIP"))) {
+                    orbitFiles.add(file);
+                }
+            }
+        }
+    }
+
+    public int getNumEntries() {
+        return entries.length;
+    }
+
+    /**
+     * Finds the orbit file of a mission whose validity period contains the given time
+     *
+     * @param missionPrefix mission such as S1A
+     * @param utcMJD        the time in MJD
+     * @return the entry or null if none is found
+     */
+    public Entry find(final String missionPrefix, final double utcMJD) {
+        // entries are sorted by validity start, find the last entry starting before the time
+        int lo = 0, hi = entries.length - 1, last = -1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (entries[mid].validityStartMJD <= utcMJD) {
+                last = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        for (int i = last; i >= 0; --i) {
+            final Entry entry = entries[i];
+            if (entry.validityStartMJD < utcMJD - maxValidityDuration) {
+                break;
+            }
+            if (utcMJD < entry.validityStopMJD && entry.missionPrefix.equalsIgnoreCase(missionPrefix)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the state vectors of an entry from the vector store
+     *
+     * @param entry the entry
+     * @return the state vectors sorted by time
+     * @throws IOException if the vector store cannot be read
+     */
+    public List<Orbits.OrbitVector> getOrbitVectors(final Entry entry) throws IOException {
+        final DoubleBuffer vectors;
+        try (RandomAccessFile raf = new RandomAccessFile(vectorFile, "r"); FileChannel channel = raf.getChannel()) {
+            vectors = channel.map(FileChannel.MapMode.READ_ONLY,
+                                  VECTOR_HEADER_SIZE + entry.vectorOffset * BYTES_PER_VECTOR,
+                                  (long) entry.numVectors * BYTES_PER_VECTOR)
+                    .order(ByteOrder.BIG_ENDIAN).asDoubleBuffer();
+        }
+
+        final List<Orbits.OrbitVector> osvList = new ArrayList<>(entry.numVectors);
+        int pos = 0;
+        for (int i = 0; i < entry.numVectors; ++i) {
+            osvList.add(new Orbits.OrbitVector(vectors.get(pos), vectors.get(pos + 1), vectors.get(pos + 2),
+                                               vectors.get(pos + 3), vectors.get(pos + 4), vectors.get(pos + 5),
+                                               vectors.get(pos + 6)));
+            pos += DOUBLES_PER_VECTOR;
+        }
+        return osvList;
+    }
+
+    public File getRootFolder() {
+        return rootFolder;
+    }
+
+    /**
+     * An indexed orbit file
+     */
+    public static final class Entry {
+        private final File rootFolder;
+        final String missionPrefix;
+        final String mission;
+        final String fileType;
+        final String validityStart;
+        final String validityStop;
+        final double validityStartMJD;
+        final double validityStopMJD;
+        final long vectorOffset;
+        final int numVectors;
+        final String relativePath;
+
+        Entry(final File rootFolder, final String missionPrefix, final String mission, final String fileType,
+              final String validityStart, final String validityStop,
+              final double validityStartMJD, final double validityStopMJD,
+              final long vectorOffset, final int numVectors, final String relativePath) {
+            this.rootFolder = rootFolder;
+            this.missionPrefix = missionPrefix;
+            this.mission = mission;
+            this.fileType = fileType;
+            this.validityStart = validityStart;
+            this.validityStop = validityStop;
+            this.validityStartMJD = validityStartMJD;
+            this.validityStopMJD = validityStopMJD;
+            this.vectorOffset = vectorOffset;
+            this.numVectors = numVectors;
+            this.relativePath = relativePath;
+        }
+
+        public File getFile() {
+            return new File(rootFolder, relativePath);
+        }
+
+        public String getMissionPrefix() {
+            return missionPrefix;
+        }
+
+        public double getValidityStartMJD() {
+            return validityStartMJD;
+        }
+
+        public double getValidityStopMJD() {
+            return validityStopMJD;
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final String orbitType = args.length > 0 && args[0].equalsIgnoreCase("RESORB") ?
+                SentinelPODOrbitFile.RESTITUTED : SentinelPODOrbitFile.PRECISE;
+        final File rootFolder = args.length > 1 ? new File(args[1]) :
+                new File(SentinelPODOrbitFile.getOrbitRootPath(orbitType));
+
+        final long start = System.currentTimeMillis();
+        final int numFiles = build(rootFolder);
+        System.out.println("Indexed " + numFiles + " orbit files in " + rootFolder + " in " +
+                                   (System.currentTimeMillis() - start) / 1000.0 + " s");
+    }
+}
@@ -106,6 +106,26 @@ public class SentinelPODOrbitFile extends BaseOrbitFile implements OrbitFile {
         final int second = calendar.get(Calendar.SECOND);
         final String missionPrefix = getMissionPrefix(absRoot);
 
+        final SentinelOrbitIndex index = SentinelOrbitIndex.getIndex(orbitType);
+        if (index != null) {
+            final SentinelOrbitIndex.Entry entry = index.find(missionPrefix, stateVectorTime);
+            if (entry != null && entry.getFile().exists()) {
+                List<Orbits.OrbitVector> indexedVectors = null;
+                try {
+                    indexedVectors = index.getOrbitVectors(entry);
+                } catch (IOException e) {
+                    SystemUtils.LOG.warning("Unable to read orbit index in " + index.getRootFolder() + ": " + e.getMessage());
+                }
+                if (indexedVectors != null) {
+                    orbitFile = entry.getFile();
+                    fixedHeader = new FixedHeader(entry.mission, entry.fileType, entry.validityStart, entry.validityStop);
+                    osvList = indexedVectors;
+                    checkOrbitFileValidity();
+                    return orbitFile;
+                }
+            }
+        }
+
         orbitFile = findOrbitFile(missionPrefix, orbitType, stateVectorTime, year, month);
 
         if (orbitFile == null) {
@@ -258,15 +278,18 @@ public class SentinelPODOrbitFile extends BaseOrbitFile implements OrbitFile {
         return new NewDate(year, month);
     }
 
-    static File getDestFolder(final String missionPrefix, final String orbitType, final int year, final int month) {
-        final String prefOrbitPath;
+    static String getOrbitRootPath(final String orbitType) {
         if (orbitType.startsWith(RESTITUTED)) {
             String def = SystemUtils.getAuxDataPath().resolve("Orbits").resolve("Sentinel-1").resolve("RESORB").toString();
-            prefOrbitPath = Settings.instance().get("OrbitFiles.sentinel1RESOrbitPath", def);
+            return Settings.instance().get("OrbitFiles.sentinel1RESOrbitPath", def);
         } else {
             String def = SystemUtils.getAuxDataPath().resolve("Orbits").resolve("Sentinel-1").resolve("POEORB").toString();
-            prefOrbitPath = Settings.instance().get("OrbitFiles.sentinel1POEOrbitPath", def);
+            return Settings.instance().get("OrbitFiles.sentinel1POEOrbitPath", def);
         }
+    }
+
+    static File getDestFolder(final String missionPrefix, final String orbitType, final int year, final int month) {
+        final String prefOrbitPath = getOrbitRootPath(orbitType);
         final File destFolder = new File(prefOrbitPath +
                 File.separator + missionPrefix +
                 File.separator + year +
@@ -548,16 +571,35 @@ public class SentinelPODOrbitFile extends BaseOrbitFile implements OrbitFile {
             return;
         }
 
+        final OrbitFileContent content = parseOrbitFile(orbitFile);
+        fixedHeader = content.fixedHeader;
+        osvList = content.osvList;
+
+        checkOrbitFileValidity();
+
+        getCache().put(orbitFile, osvList);
+    }
+
+    /**
+     * Parses the fixed header and state vectors of an EOF orbit file, zipped or not
+     *
+     * @param orbitFile the orbit file
+     * @return the decoded content
+     * @throws Exception on parsing errors
+     */
+    static OrbitFileContent parseOrbitFile(final File orbitFile) throws Exception {
+
         final DocumentBuilderFactory documentFactory = DocumentBuilderFactory.newInstance();
         final DocumentBuilder documentBuilder = documentFactory.newDocumentBuilder();
 
         final Document doc;
         if (orbitFile.getName().toLowerCase().endsWith(".zip")) {
-            final ZipFile productZip = new ZipFile(orbitFile, ZipFile.OPEN_READ);
-            final Enumeration<? extends ZipEntry> entries = productZip.entries();
-            final ZipEntry zipEntry = entries.nextElement();
+            try (final ZipFile productZip = new ZipFile(orbitFile, ZipFile.OPEN_READ)) {
+                final Enumeration<? extends ZipEntry> entries = productZip.entries();
+                final ZipEntry zipEntry = entries.nextElement();
 
-            doc = documentBuilder.parse(productZip.getInputStream(zipEntry));
+                doc = documentBuilder.parse(productZip.getInputStream(zipEntry));
+            }
         } else {
             doc = documentBuilder.parse(orbitFile);
         }
@@ -566,7 +608,7 @@ public class SentinelPODOrbitFile extends BaseOrbitFile implements OrbitFile {
 
         final NodeList nodeList = doc.getElementsByTagName("Earth_Explorer_File");
         if (nodeList.getLength() != 1) {
-            throw new Exception("SentinelPODOrbitFile.readOrbitFile: ERROR found too many Earth_Explorer_File " + nodeList.getLength());
+            throw new Exception("SentinelPODOrbitFile.parseOrbitFile: ERROR found too many Earth_Explorer_File " + nodeList.getLength());
         }
 
         org.w3c.dom.Node fixedHeaderNode = null;
@@ -617,24 +659,23 @@ public class SentinelPODOrbitFile extends BaseOrbitFile implements OrbitFile {
             }
         }
 
+        final OrbitFileContent content = new OrbitFileContent();
         if (fixedHeaderNode != null) {
 
-            readFixedHeader(fixedHeaderNode);
+            content.fixedHeader = readFixedHeader(fixedHeaderNode);
         }
 
         // Don't need anything from Variable_Header.
 
         if (listOfOSVsNode != null) {
 
-            osvList = readOSVList(listOfOSVsNode);
+            content.osvList = readOSVList(listOfOSVsNode);
         }
 
-        checkOrbitFileValidity();
-
-        getCache().put(orbitFile, osvList);
+        return content;
     }
 
-    private void readFixedHeader(final org.w3c.dom.Node fixedHeaderNode) {
+    private static FixedHeader readFixedHeader(final org.w3c.dom.Node fixedHeaderNode) {
 
         final NodeList fixedHeaderChildNodes = fixedHeaderNode.getChildNodes();
 
@@ -680,10 +721,10 @@ public class SentinelPODOrbitFile extends BaseOrbitFile implements OrbitFile {
 
             if (mission != null && fileType != null && validityStart != null && validityStop != null) {
 
-                fixedHeader = new FixedHeader(mission, fileType, validityStart, validityStop);
-                break;
+                return new FixedHeader(mission, fileType, validityStart, validityStop);
             }
         }
+        return null;
     }
 
     private static List<Orbits.OrbitVector> readOSVList(final org.w3c.dom.Node listOfOSVsNode) throws Exception {
@@ -950,12 +991,17 @@ public class SentinelPODOrbitFile extends BaseOrbitFile implements OrbitFile {
                 );
     }
 
-    private static final class FixedHeader {
+    static final class OrbitFileContent {
+        FixedHeader fixedHeader = null;
+        List<Orbits.OrbitVector> osvList = new ArrayList<>();
+    }
+
+    static final class FixedHeader {
 
-        private final String mission;
-        private final String fileType;
-        private final String validityStart;
-        private final String validityStop;
+        final String mission;
+        final String fileType;
+        final String validityStart;
+        final String validityStop;
 
         FixedHeader(final String mission, final String fileType, final String validityStart, final String validityStop) {
 
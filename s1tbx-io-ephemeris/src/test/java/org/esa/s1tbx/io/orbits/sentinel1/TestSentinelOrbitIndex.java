@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.orbits.sentinel1;
+
+import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.engine_utilities.datamodel.Orbits;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * To test SentinelOrbitIndex
+ */
+public class TestSentinelOrbitIndex {
+
+    private File rootFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        rootFolder = Files.createTempDirectory("orbitIndex").toFile();
+        final File monthFolder = new File(rootFolder, "S1A" + File.separator + "2014" + File.separator + "05");
+        monthFolder.mkdirs();
+
+        writeOrbitFile(new File(monthFolder,
+                "S1A_OPER_AUX_RESORB_OPOD_20140611T152302_V20140525T151921_20140525T183641.EOF"),
+                "2014-05-25T15:19:21", "2014-05-25T18:36:41", "2014-05-25T15:19:21", 1000.0);
+        writeOrbitFile(new File(monthFolder,
+                "S1A_OPER_AUX_RESORB_OPOD_20140611T152302_V20140525T183641_20140525T215401.EOF"),
+                "2014-05-25T18:36:41", "2014-05-25T21:54:01", "2014-05-25T18:36:41", 2000.0);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteTree(rootFolder);
+    }
+
+    private static void writeOrbitFile(final File file, final String start, final String stop,
+                                       final String firstOSV, final double x) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("<?xml version=\"1.0\"?>\n<Earth_Explorer_File><Earth_Explorer_Header><Fixed_Header>" +
+                                 "<Mission>Sentinel-1A</Mission><File_Type>AUX_RESORB</File_Type>" +
+                                 "<Validity_Period><Validity_Start>UTC=" + start + "</Validity_Start>" +
+                                 "<Validity_Stop>UTC=" + stop + "</Validity_Stop></Validity_Period>" +
+                                 "</Fixed_Header><Variable_Header/></Earth_Explorer_Header>" +
+                                 "<Data_Block><List_of_OSVs count=\"2\">");
+            writer.write("<OSV><UTC>UTC=" + firstOSV + ".000000</UTC><X>" + x + "</X><Y>1.0</Y><Z>2.0</Z>" +
+                                 "<VX>3.0</VX><VY>4.0</VY><VZ>5.0</VZ></OSV>");
+            writer.write("<OSV><UTC>UTC=" + firstOSV.substring(0, 17) + "31.000000</UTC><X>" + (x + 1) +
+                                 "</X><Y>1.0</Y><Z>2.0</Z><VX>3.0</VX><VY>4.0</VY><VZ>5.0</VZ></OSV>");
+            writer.write("</List_of_OSVs></Data_Block></Earth_Explorer_File>");
+        }
+    }
+
+    @Test
+    public void testBuildAndFind() throws Exception {
+        assertEquals(2, SentinelOrbitIndex.build(rootFolder));
+
+        final SentinelOrbitIndex index = SentinelOrbitIndex.open(rootFolder);
+        assertNotNull(index);
+        assertEquals(2, index.getNumEntries());
+
+        final double time = SentinelPODOrbitFile.toUTC("UTC=2014-05-25T20:00:00").getMJD();
+        final SentinelOrbitIndex.Entry entry = index.find("S1A", time);
+        assertNotNull(entry);
+        assertEquals("S1A_OPER_AUX_RESORB_OPOD_20140611T152302_V20140525T183641_20140525T215401.EOF",
+                     entry.getFile().getName());
+
+        final List<Orbits.OrbitVector> osvList = index.getOrbitVectors(entry);
+        assertEquals(2, osvList.size());
+        assertEquals(2000.0, osvList.get(0).xPos, 0.0);
+        assertEquals(2001.0, osvList.get(1).xPos, 0.0);
+        assertEquals(5.0, osvList.get(1).zVel, 0.0);
+        assertEquals(SentinelPODOrbitFile.toUTC("UTC=2014-05-25T18:36:41").getMJD(), osvList.get(0).utcMJD, 1e-9);
+
+        assertNull(index.find("S1B", time));
+        assertNull(index.find("S1A", SentinelPODOrbitFile.toUTC("UTC=2014-05-26T00:00:00").getMJD()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testVectorStoreOfOtherBuild() throws Exception {
+        SentinelOrbitIndex.build(rootFolder);
+        final File vectorFile = new File(rootFolder, SentinelOrbitIndex.VECTOR_FILE_NAME);
+        final File otherVectorFile = new File(rootFolder, "other_vectors.bin");
+        Files.copy(vectorFile.toPath(), otherVectorFile.toPath());
+
+        // the index of one build with the vector store of another, as left by an interrupted build
+        SentinelOrbitIndex.build(rootFolder);
+        Files.move(otherVectorFile.toPath(), vectorFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        SentinelOrbitIndex.open(rootFolder);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedVectorStore() throws Exception {
+        SentinelOrbitIndex.build(rootFolder);
+        try (RandomAccessFile raf = new RandomAccessFile(new File(rootFolder, SentinelOrbitIndex.VECTOR_FILE_NAME), "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+
+        SentinelOrbitIndex.open(rootFolder);
+    }
+}
@@ -155,7 +155,7 @@ public class CapellaProductDirectory extends JSONProductDirectory {
                 final Dimension bandDimensions = new Dimension(width, height);
                 final InputStream inStream = getInputStream(imgPath);
                 if (inStream.available() > 0) {
-                    final ImageInputStream imgStream = ImageIOFile.createImageInputStream(inStream, bandDimensions);
+                    final ImageInputStream imgStream = createImageInputStream(imgPath, inStream, bandDimensions);
 
                     final ImageIOFile img = new ImageIOFile(name, imgStream, GeoTiffUtils.getTiffIIOReader(imgStream),
                             1, 1, ProductData.TYPE_INT32, productInputFile);
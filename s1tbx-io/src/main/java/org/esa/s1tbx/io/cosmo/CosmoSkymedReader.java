@@ -22,6 +22,7 @@ import org.esa.s1tbx.commons.io.SARReader;
 import org.esa.s1tbx.io.netcdf.NcAttributeMap;
 import org.esa.s1tbx.io.netcdf.NcRasterDim;
 import org.esa.s1tbx.io.netcdf.NcVariableMap;
+import org.esa.s1tbx.io.netcdf.NetCDFFilePool;
 import org.esa.s1tbx.io.netcdf.NetCDFReader;
 import org.esa.s1tbx.io.netcdf.NetCDFUtils;
 import org.esa.s1tbx.io.netcdf.NetcdfConstants;
@@ -63,6 +64,7 @@ import java.util.Map;
 public class CosmoSkymedReader extends SARReader {
 
     private NetcdfFile netcdfFile = null;
+    private NetCDFFilePool filePool = null;
     private Product product = null;
     private NcVariableMap variableMap = null;
     private boolean yFlipped = false;
@@ -124,6 +126,7 @@ public class CosmoSkymedReader extends SARReader {
             final Variable[] tiePointGridVariables = NetCDFUtils.getTiePointGridVariables(variableListMap, rasterVariables);
 
             this.netcdfFile = netcdfFile;
+            filePool = new NetCDFFilePool(netcdfFile);
             variableMap = new NcVariableMap(rasterVariables);
             yFlipped = false;
 
@@ -168,6 +171,8 @@ public class CosmoSkymedReader extends SARReader {
             product = null;
             variableMap.clear();
             variableMap = null;
+            filePool.close();
+            filePool = null;
             netcdfFile.close();
             netcdfFile = null;
         }
@@ -811,8 +816,9 @@ public class CosmoSkymedReader extends SARReader {
             shape[i] = 1;
             origin[i] = 0;
         }
-        shape[0] = 1;
+        shape[0] = destHeight;
         shape[1] = destWidth;
+        origin[0] = yFlipped ? y0 - (destHeight - 1) : y0;
         origin[1] = sourceOffsetX;
         if (isComplex && destBand.getUnit().equals(Unit.IMAGINARY)) {
             origin[2] = 1;
@@ -820,13 +826,11 @@ public class CosmoSkymedReader extends SARReader {
 
         pm.beginTask("Reading data from band " + destBand.getName(), destHeight);
         try {
+            final Array array = filePool.read(variable, origin, shape);
+            final Object storage = array.getStorage();
             for (int y = 0; y < destHeight; y++) {
-                origin[0] = yFlipped ? y0 - y : y0 + y;
-                final Array array;
-                synchronized (netcdfFile) {
-                    array = variable.read(origin, shape);
-                }
-                System.arraycopy(array.getStorage(), 0, destBuffer.getElems(), y * destWidth, destWidth);
+                final int row = yFlipped ? destHeight - 1 - y : y;
+                System.arraycopy(storage, row * destWidth, destBuffer.getElems(), y * destWidth, destWidth);
                 pm.worked(1);
             }
         } catch (InvalidRangeException e) {
@@ -22,6 +22,7 @@ import org.esa.s1tbx.io.binary.ArrayCopy;
 import org.esa.s1tbx.io.netcdf.NcAttributeMap;
 import org.esa.s1tbx.io.netcdf.NcRasterDim;
 import org.esa.s1tbx.io.netcdf.NcVariableMap;
+import org.esa.s1tbx.io.netcdf.NetCDFFilePool;
 import org.esa.s1tbx.io.netcdf.NetCDFReader;
 import org.esa.s1tbx.io.netcdf.NetCDFUtils;
 import org.esa.s1tbx.io.netcdf.NetcdfConstants;
@@ -62,6 +63,7 @@ public class K5HDF implements K5Format {
     private final Kompsat5Reader reader;
     private Product product = null;
     private NetcdfFile netcdfFile = null;
+    private NetCDFFilePool filePool = null;
     private NcVariableMap variableMap = null;
     private boolean yFlipped = false;
     private boolean useFloatBands = false;
@@ -97,6 +99,7 @@ public class K5HDF implements K5Format {
         final Variable[] tiePointGridVariables = NetCDFUtils.getTiePointGridVariables(variableListMap, rasterVariables);
 
         this.netcdfFile = netcdfFile;
+        filePool = new NetCDFFilePool(netcdfFile);
         variableMap = new NcVariableMap(rasterVariables);
         yFlipped = false;
 
@@ -129,6 +132,8 @@ public class K5HDF implements K5Format {
             product = null;
             variableMap.clear();
             variableMap = null;
+            filePool.close();
+            filePool = null;
             netcdfFile.close();
             netcdfFile = null;
         }
@@ -746,8 +751,9 @@ public class K5HDF implements K5Format {
             shape[i] = 1;
             origin[i] = 0;
         }
-        shape[0] = 1;
+        shape[0] = destHeight;
         shape[1] = destWidth;
+        origin[0] = yFlipped ? y0 - (destHeight - 1) : y0;
         origin[1] = sourceOffsetX;
         if (isComplex && destBand.getUnit().equals(Unit.IMAGINARY)) {
             origin[2] = 1;
@@ -755,19 +761,16 @@ public class K5HDF implements K5Format {
 
         pm.beginTask("Reading data from band " + destBand.getName(), destHeight);
         try {
+            final Array array = filePool.read(variable, origin, shape);
             for (int y = 0; y < destHeight; y++) {
-                origin[0] = yFlipped ? y0 - y : y0 + y;
-                final Array array;
-                synchronized (netcdfFile) {
-                    array = variable.read(origin, shape);
-                }
+                final int rowOffset = (yFlipped ? destHeight - 1 - y : y) * destWidth;
 
                 if (destBand.getDataType() == ProductData.TYPE_FLOAT32) {
                     for (int x = 0; x < destWidth; x++) {
-                        destBuffer.setElemFloatAt(y * destWidth + x, ArrayCopy.toFloat(array.getShort(x)));
+                        destBuffer.setElemFloatAt(y * destWidth + x, ArrayCopy.toFloat(array.getShort(rowOffset + x)));
                     }
                 } else {
-                    System.arraycopy(array.getStorage(), 0, destBuffer.getElems(), y * destWidth, destWidth);
+                    System.arraycopy(array.getStorage(), rowOffset, destBuffer.getElems(), y * destWidth, destWidth);
                 }
                 pm.worked(1);
             }
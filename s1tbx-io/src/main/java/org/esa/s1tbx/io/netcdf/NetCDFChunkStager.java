@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.netcdf;
+
+import org.esa.snap.core.datamodel.ProductData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects raster regions written in any order and from any thread into chunk sized buffers.
+ * A chunk is handed to the sink only once all of its pixels have been staged, so that every chunk
+ * of a chunked NetCDF4 variable is written and compressed exactly once. The staged pixels of a chunk are
+ * tracked in a bitmap, so overlapping or repeated regions do not complete a chunk early.
+ */
+class NetCDFChunkStager {
+
+    interface ChunkSink {
+        /**
+         * Writes a complete chunk
+         *
+         * @param varName the variable name
+         * @param x       chunk origin x
+         * @param y       chunk origin y
+         * @param width   chunk width
+         * @param height  chunk height
+         * @param data    chunk data in row major order
+         * @throws IOException on write failure
+         */
+        void writeChunk(String varName, int x, int y, int width, int height, ProductData data) throws IOException;
+    }
+
+    private final int sceneWidth;
+    private final int sceneHeight;
+    private final int chunkWidth;
+    private final int chunkHeight;
+    private final int numChunksX;
+    private final ChunkSink sink;
+    private final Map<String, Map<Integer, Chunk>> pendingChunks = new HashMap<>();
+
+    NetCDFChunkStager(final int sceneWidth, final int sceneHeight,
+                      final int chunkWidth, final int chunkHeight, final ChunkSink sink) {
+        this.sceneWidth = sceneWidth;
+        this.sceneHeight = sceneHeight;
+        this.chunkWidth = Math.min(chunkWidth, sceneWidth);
+        this.chunkHeight = Math.min(chunkHeight, sceneHeight);
+        this.numChunksX = (sceneWidth + this.chunkWidth - 1) / this.chunkWidth;
+        this.sink = sink;
+    }
+
+    int getChunkWidth() {
+        return chunkWidth;
+    }
+
+    int getChunkHeight() {
+        return chunkHeight;
+    }
+
+    /**
+     * Stages a region of a variable. Complete chunks are passed on to the sink before returning.
+     *
+     * @param varName      the variable name
+     * @param regionX      region origin x
+     * @param regionY      region origin y
+     * @param regionWidth  region width
+     * @param regionHeight region height
+     * @param regionData   the region data in row major order
+     * @throws IOException on write failure
+     */
+    void stage(final String varName, final int regionX, final int regionY,
+               final int regionWidth, final int regionHeight, final ProductData regionData) throws IOException {
+
+        final int cx0 = regionX / chunkWidth;
+        final int cy0 = regionY / chunkHeight;
+        final int cx1 = (regionX + regionWidth - 1) / chunkWidth;
+        final int cy1 = (regionY + regionHeight - 1) / chunkHeight;
+
+        for (int cy = cy0; cy <= cy1; ++cy) {
+            for (int cx = cx0; cx <= cx1; ++cx) {
+                final int x = cx * chunkWidth;
+                final int y = cy * chunkHeight;
+                final int w = Math.min(chunkWidth, sceneWidth - x);
+                final int h = Math.min(chunkHeight, sceneHeight - y);
+
+                if (x == regionX && y == regionY && w == regionWidth && h == regionHeight
+                        && !hasPendingChunk(varName, cy * numChunksX + cx)) {
+                    // region is exactly one chunk, no need to copy
+                    sink.writeChunk(varName, x, y, w, h, regionData);
+                    continue;
+                }
+
+                final Chunk chunk = getChunk(varName, cy * numChunksX + cx, x, y, w, h, regionData.getType());
+                final boolean complete;
+                synchronized (chunk) {
+                    complete = chunk.copyFrom(regionX, regionY, regionWidth, regionHeight, regionData);
+                }
+                if (complete) {
+                    removeChunk(varName, cy * numChunksX + cx);
+                    sink.writeChunk(varName, chunk.x, chunk.y, chunk.width, chunk.height, chunk.data);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all incomplete chunks. Pixels never staged keep their zero initial value.
+     *
+     * @throws IOException on write failure
+     */
+    void flush() throws IOException {
+        final Map<String, List<Chunk>> remaining = new HashMap<>();
+        synchronized (pendingChunks) {
+            for (Map.Entry<String, Map<Integer, Chunk>> entry : pendingChunks.entrySet()) {
+                remaining.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+            }
+            pendingChunks.clear();
+        }
+        for (Map.Entry<String, List<Chunk>> entry : remaining.entrySet()) {
+            for (Chunk chunk : entry.getValue()) {
+                sink.writeChunk(entry.getKey(), chunk.x, chunk.y, chunk.width, chunk.height, chunk.data);
+            }
+        }
+    }
+
+    int getNumPendingChunks() {
+        synchronized (pendingChunks) {
+            int cnt = 0;
+            for (Map<Integer, Chunk> chunks : pendingChunks.values()) {
+                cnt += chunks.size();
+            }
+            return cnt;
+        }
+    }
+
+    private boolean hasPendingChunk(final String varName, final int key) {
+        synchronized (pendingChunks) {
+            final Map<Integer, Chunk> chunks = pendingChunks.get(varName);
+            return chunks != null && chunks.containsKey(key);
+        }
+    }
+
+    private Chunk getChunk(final String varName, final int key,
+                           final int x, final int y, final int w, final int h, final int dataType) {
+        synchronized (pendingChunks) {
+            final Map<Integer, Chunk> chunks = pendingChunks.computeIfAbsent(varName, k -> new HashMap<>());
+            Chunk chunk = chunks.get(key);
+            if (chunk == null) {
+                chunk = new Chunk(x, y, w, h, ProductData.createInstance(dataType, w * h));
+                chunks.put(key, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    private void removeChunk(final String varName, final int key) {
+        synchronized (pendingChunks) {
+            final Map<Integer, Chunk> chunks = pendingChunks.get(varName);
+            if (chunks != null) {
+                chunks.remove(key);
+            }
+        }
+    }
+
+    private static class Chunk {
+        final int x, y, width, height;
+        final ProductData data;
+        final BitSet staged;
+        int numStaged = 0;
+
+        Chunk(final int x, final int y, final int width, final int height, final ProductData data) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.data = data;
+            this.staged = new BitSet(width * height);
+        }
+
+        /**
+         * Copies the overlapping part of a region into the chunk
+         *
+         * @return true if the chunk is complete
+         */
+        boolean copyFrom(final int regionX, final int regionY, final int regionWidth, final int regionHeight,
+                         final ProductData regionData) {
+            final int x0 = Math.max(x, regionX);
+            final int y0 = Math.max(y, regionY);
+            final int x1 = Math.min(x + width, regionX + regionWidth);
+            final int y1 = Math.min(y + height, regionY + regionHeight);
+            final int rowLength = x1 - x0;
+
+            final Object src = regionData.getElems();
+            final Object dst = data.getElems();
+            for (int yy = y0; yy < y1; ++yy) {
+                final int from = (yy - y) * width + (x0 - x);
+                final int to = from + rowLength;
+                System.arraycopy(src, (yy - regionY) * regionWidth + (x0 - regionX), dst, from, rowLength);
+
+                int numAlreadyStaged = 0;
+                for (int i = staged.nextSetBit(from); i >= 0 && i < to; i = staged.nextSetBit(i + 1)) {
+                    ++numAlreadyStaged;
+                }
+                staged.set(from, to);
+                numStaged += rowLength - numAlreadyStaged;
+            }
+            return numStaged == width * height;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.netcdf;
+
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool of NetcdfFile handles on the same file, so that several threads can read tiles at once.
+ * <p>
+ * A NetcdfFile reads through a single RandomAccessFile and must not be used by two threads at the same time.
+ * The pool starts with the handle the reader opened and opens further handles on the file when all are busy,
+ * up to the number of processors. The variables of the first handle are looked up by name in the others.
+ */
+public final class NetCDFFilePool implements Closeable {
+
+    private final String location;
+    private final NetcdfFile primaryFile;
+    private final Semaphore permits;
+    private final Deque<Handle> idleHandles = new ArrayDeque<>();
+    private final List<Handle> openedHandles = new ArrayList<>();
+    private boolean closed = false;
+
+    /**
+     * @param netcdfFile the open file, which stays owned by the caller
+     */
+    public NetCDFFilePool(final NetcdfFile netcdfFile) {
+        this(netcdfFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param netcdfFile the open file, which stays owned by the caller
+     * @param maxHandles the maximum number of handles on the file, including netcdfFile
+     */
+    public NetCDFFilePool(final NetcdfFile netcdfFile, final int maxHandles) {
+        this.location = netcdfFile.getLocation();
+        this.primaryFile = netcdfFile;
+        this.permits = new Semaphore(Math.max(1, maxHandles));
+        idleHandles.push(new Handle(netcdfFile));
+    }
+
+    /**
+     * Read a section of a variable of the file
+     *
+     * @param variable a variable of the file the pool was created with
+     * @param origin   the first index of the section
+     * @param shape    the size of the section
+     * @return the data of the section
+     * @throws IOException           if the data cannot be read
+     * @throws InvalidRangeException if the section is not inside the variable
+     */
+    public Array read(final Variable variable, final int[] origin, final int[] shape)
+            throws IOException, InvalidRangeException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + location);
+        }
+        Handle handle = null;
+        try {
+            handle = acquire();
+            return handle.getVariable(variable).read(origin, shape);
+        } finally {
+            if (handle != null) {
+                release(handle);
+            }
+            permits.release();
+        }
+    }
+
+    private Handle acquire() throws IOException {
+        synchronized (idleHandles) {
+            if (closed) {
+                throw new IOException(location + " is closed");
+            }
+            final Handle handle = idleHandles.poll();
+            if (handle != null) {
+                return handle;
+            }
+        }
+
+        final Handle handle = new Handle(NetcdfFile.open(location));
+        synchronized (idleHandles) {
+            if (closed) {
+                handle.file.close();
+                throw new IOException(location + " is closed");
+            }
+            openedHandles.add(handle);
+        }
+        return handle;
+    }
+
+    private void release(final Handle handle) {
+        synchronized (idleHandles) {
+            if (!closed) {
+                idleHandles.push(handle);
+            }
+        }
+    }
+
+    /**
+     * Close the handles opened by the pool. The file the pool was created with is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        final List<Handle> handles;
+        synchronized (idleHandles) {
+            closed = true;
+            idleHandles.clear();
+            handles = new ArrayList<>(openedHandles);
+            openedHandles.clear();
+        }
+        IOException exception = null;
+        for (Handle handle : handles) {
+            try {
+                handle.file.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private final class Handle {
+        final NetcdfFile file;
+        final Map<String, Variable> variables = new HashMap<>();
+
+        Handle(final NetcdfFile file) {
+            this.file = file;
+        }
+
+        Variable getVariable(final Variable variable) throws IOException {
+            if (file == primaryFile) {
+                return variable;
+            }
+            final String name = variable.getFullNameEscaped();
+            Variable found = variables.get(name);
+            if (found == null) {
+                found = file.findVariable(name);
+                if (found == null) {
+                    throw new IOException("Variable " + name + " not found in " + location);
+                }
+                variables.put(name, found);
+            }
+            return found;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import java.util.Map;
 public class NetCDFReader extends SARReader {
 
     private NetcdfFile netcdfFile = null;
+    private NetCDFFilePool filePool = null;
     private Product product = null;
     private NcVariableMap variableMap = null;
     private boolean yFlipped = false;
@@ -59,6 +60,7 @@ public class NetCDFReader extends SARReader {
     private void initReader() {
         product = null;
         netcdfFile = null;
+        filePool = null;
         variableMap = null;
     }
 
@@ -92,6 +94,7 @@ public class NetCDFReader extends SARReader {
         final Variable[] rasterVariables = NetCDFUtils.getRasterVariables(variableListMap, rasterDim);
         final Variable[] tiePointGridVariables = NetCDFUtils.getTiePointGridVariables(variableListMap, rasterVariables);
 
+        filePool = new NetCDFFilePool(netcdfFile);
         variableMap = new NcVariableMap(rasterVariables);
         yFlipped = false;
 
@@ -132,6 +135,8 @@ public class NetCDFReader extends SARReader {
             product = null;
             variableMap.clear();
             variableMap = null;
+            filePool.close();
+            filePool = null;
             netcdfFile.close();
             netcdfFile = null;
         }
@@ -253,7 +258,7 @@ public class NetCDFReader extends SARReader {
      * {@inheritDoc}
      */
     @Override
-    protected synchronized void readBandRasterDataImpl(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+    protected void readBandRasterDataImpl(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
                                                        int sourceStepX, int sourceStepY, Band destBand, int destOffsetX,
                                                        int destOffsetY, int destWidth, int destHeight, ProductData destBuffer,
                                                        ProgressMonitor pm) throws IOException {
@@ -284,19 +289,19 @@ public class NetCDFReader extends SARReader {
             shape[i] = 1;
             origin[i] = 0;
         }
-        shape[rank - 2] = 1;
+        shape[rank - 2] = destHeight;
         shape[rank - 1] = destWidth;
+        origin[rank - 2] = yFlipped ? y0 - (destHeight - 1) : y0;
         origin[rank - 1] = sourceOffsetX;
 
         pm.beginTask("Reading data from band " + destBand.getName(), destHeight);
         try {
+            // one read for the whole region, through a handle of the pool so other threads can read at the same time
+            final Array array = filePool.read(variable, origin, shape);
+            final Object storage = array.getStorage();
             for (int y = 0; y < destHeight; y++) {
-                origin[rank - 2] = yFlipped ? y0 - y : y0 + y;
-                final Array array;
-                synchronized (netcdfFile) {
-                    array = variable.read(origin, shape);
-                }
-                System.arraycopy(array.getStorage(), 0, destBuffer.getElems(), y * destWidth, destWidth);
+                final int row = yFlipped ? destHeight - 1 - y : y;
+                System.arraycopy(storage, row * destWidth, destBuffer.getElems(), y * destWidth, destWidth);
                 pm.worked(1);
                 if (pm.isCanceled()) {
                     throw new IOException("Process terminated by user."); /*I18N*/
@@ -17,6 +17,9 @@ package org.esa.s1tbx.io.netcdf;
 
 import com.bc.ceres.core.ProgressMonitor;
 import com.sun.tools.javac.util.List;
+import org.esa.snap.core.image.ImageManager;
+import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.runtime.Config;
 import org.esa.snap.core.dataio.AbstractProductWriter;
 import org.esa.snap.core.dataio.ProductWriterPlugIn;
 import org.esa.snap.core.datamodel.Band;
@@ -31,6 +34,7 @@ import org.esa.snap.core.datamodel.TiePointGrid;
 import org.esa.snap.core.datamodel.VirtualBand;
 import org.esa.snap.core.util.StringUtils;
 import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.dataio.netcdf.util.DataTypeUtils;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayDouble;
 import ucar.ma2.DataType;
@@ -40,6 +44,9 @@ import ucar.nc2.Attribute;
 import ucar.nc2.Dimension;
 import ucar.nc2.Group;
 import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.jni.netcdf.Nc4Iosp;
+import ucar.nc2.write.Nc4Chunking;
 
 import java.io.File;
 import java.io.IOException;
@@ -49,8 +56,15 @@ import java.util.Map;
 
 public class NetCDFWriter extends AbstractProductWriter {
 
+    private static final boolean writeChunked =
+            Config.instance().preferences().getBoolean(NetcdfConstants.PREF_WRITE_CHUNKED, false);
+    private static final int deflateLevel =
+            Config.instance().preferences().getInt(NetcdfConstants.PREF_DEFLATE_LEVEL, 5);
+
     private File outputFile = null;
     private NetcdfFileWriter netCDFWriteable = null;
+    private NetCDFChunkStager chunkStager = null;
+    private final Object writeLock = new Object();
 
     /**
      * Construct a new instance of a product writer for the given product writer plug-in.
@@ -114,7 +128,23 @@ public class NetCDFWriter extends AbstractProductWriter {
 
         final Product product = getSourceProduct();
 
-        netCDFWriteable = NetcdfFileWriter.createNew(outputFile.getAbsolutePath(), true);
+        final boolean chunked = writeChunked && isNetCDF4Available();
+        if (chunked) {
+            java.awt.Dimension tileSize = product.getPreferredTileSize();
+            if (tileSize == null) {
+                tileSize = ImageManager.getPreferredTileSize(product);
+            }
+            chunkStager = new NetCDFChunkStager(product.getSceneRasterWidth(), product.getSceneRasterHeight(),
+                                                tileSize.width, tileSize.height, this::writeChunk);
+            netCDFWriteable = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf4,
+                                                         outputFile.getAbsolutePath(),
+                                                         new TileChunking(chunkStager.getChunkWidth(),
+                                                                          chunkStager.getChunkHeight(),
+                                                                          deflateLevel));
+        } else {
+            chunkStager = null;
+            netCDFWriteable = NetcdfFileWriter.createNew(outputFile.getAbsolutePath(), true);
+        }
 
 
         netCDFWriteable.addDimension(NetcdfConstants.LON_VAR_NAMES[0], product.getSceneRasterWidth());
@@ -129,8 +159,9 @@ public class NetCDFWriter extends AbstractProductWriter {
         netCDFWriteable.addVariableAttribute(NetcdfConstants.LON_VAR_NAMES[0], "units", "degrees_east (+E/-W)");
 
         for (Band band : product.getBands()) {
-            final String name = StringUtils.createValidName(band.getName(), new char[]{'_'}, '_');
-            netCDFWriteable.addVariable(name, DataType.DOUBLE,
+            final String name = getVariableName(band);
+            final DataType dataType = chunked ? DataTypeUtils.getNetcdfDataType(band.getDataType()) : DataType.DOUBLE;
+            netCDFWriteable.addVariable(name, dataType,
                     List.from(new Dimension[]{rootGroup.findDimension(NetcdfConstants.LAT_VAR_NAMES[0]),
                             rootGroup.findDimension(NetcdfConstants.LON_VAR_NAMES[0])}
             ));
@@ -203,6 +234,12 @@ public class NetCDFWriter extends AbstractProductWriter {
                                     final ProductData regionData,
                                     ProgressMonitor pm) throws IOException {
 
+        if (chunkStager != null) {
+            chunkStager.stage(getVariableName(sourceBand), regionX, regionY, regionWidth, regionHeight, regionData);
+            pm.worked(1);
+            return;
+        }
+
         final int[] origin = new int[2];
         origin[1] = regionX;
         origin[0] = regionY;
@@ -220,7 +257,9 @@ public class NetCDFWriter extends AbstractProductWriter {
                 }
             }
 
-            netCDFWriteable.write(sourceBand.getName(), origin, dataTemp);
+            synchronized (writeLock) {
+                netCDFWriteable.write(getVariableName(sourceBand), origin, dataTemp);
+            }
 
             pm.worked(1);
 
@@ -229,6 +268,31 @@ public class NetCDFWriter extends AbstractProductWriter {
         }
     }
 
+    private void writeChunk(final String varName, final int x, final int y, final int width, final int height,
+                            final ProductData data) throws IOException {
+        final DataType dataType = DataTypeUtils.getNetcdfDataType(data.getType());
+        final Array array = Array.factory(dataType, new int[]{height, width}, data.getElems());
+        try {
+            synchronized (writeLock) {
+                netCDFWriteable.write(netCDFWriteable.findVariable(varName), new int[]{y, x}, array);
+            }
+        } catch (InvalidRangeException e) {
+            throw new IOException("Unable to write chunk of " + varName, e);
+        }
+    }
+
+    private static String getVariableName(final Band band) {
+        return StringUtils.createValidName(band.getName(), new char[]{'_'}, '_');
+    }
+
+    private static boolean isNetCDF4Available() {
+        if (!Nc4Iosp.isClibraryPresent()) {
+            SystemUtils.LOG.warning("NetCDF-4 C library not found. Writing uncompressed NetCDF-3");
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Deletes the physically representation of the given product from the hard disk.
      */
@@ -244,7 +308,15 @@ public class NetCDFWriter extends AbstractProductWriter {
      * @throws java.io.IOException on failure
      */
     public void close() throws IOException {
+        if (netCDFWriteable == null) {
+            return;
+        }
+        if (chunkStager != null) {
+            chunkStager.flush();
+            chunkStager = null;
+        }
         netCDFWriteable.close();
+        netCDFWriteable = null;
     }
 
     /**
@@ -256,7 +328,9 @@ public class NetCDFWriter extends AbstractProductWriter {
         if (netCDFWriteable == null) {
             return;
         }
-        netCDFWriteable.flush();
+        synchronized (writeLock) {
+            netCDFWriteable.flush();
+        }
     }
 
     /**
@@ -361,4 +435,50 @@ public class NetCDFWriter extends AbstractProductWriter {
             }
         }
     }
+
+    /**
+     * Chunks raster variables with the GPF tile size and one dimensional variables along their length.
+     */
+    private static class TileChunking implements Nc4Chunking {
+
+        private final int chunkWidth;
+        private final int chunkHeight;
+        private final int deflateLevel;
+
+        TileChunking(final int chunkWidth, final int chunkHeight, final int deflateLevel) {
+            this.chunkWidth = chunkWidth;
+            this.chunkHeight = chunkHeight;
+            this.deflateLevel = Math.max(0, Math.min(9, deflateLevel));
+        }
+
+        @Override
+        public boolean isChunked(final Variable v) {
+            return v.getRank() > 0 && !v.isUnlimited();
+        }
+
+        @Override
+        public long[] computeChunking(final Variable v) {
+            final int[] shape = v.getShape();
+            final long[] chunks = new long[shape.length];
+            if (shape.length == 2) {
+                chunks[0] = Math.min(chunkHeight, shape[0]);
+                chunks[1] = Math.min(chunkWidth, shape[1]);
+            } else {
+                for (int i = 0; i < shape.length; ++i) {
+                    chunks[i] = Math.max(1, shape[i]);
+                }
+            }
+            return chunks;
+        }
+
+        @Override
+        public int getDeflateLevel(final Variable v) {
+            return deflateLevel;
+        }
+
+        @Override
+        public boolean isShuffle(final Variable v) {
+            return deflateLevel > 0;
+        }
+    }
 }
@@ -33,6 +33,10 @@ public interface NetcdfConstants extends Constants {
 
     final static String UTC_TYPE = "utc:";
 
+    // writer preferences for NetCDF-4 output chunked by tile size
+    final static String PREF_WRITE_CHUNKED = "s1tbx.writers.netcdf.chunked";
+    final static String PREF_DEFLATE_LEVEL = "s1tbx.writers.netcdf.deflateLevel";
+
     // CF convention lon
     // COARDS convention longitude
     // Enviview longs first_line_tie_points.longs
@@ -89,7 +89,7 @@ public class Risat1ProductDirectory extends PropertyMapProductDirectory {
         if (((name.endsWith("tif") || name.endsWith("tiff"))) && name.contains("imagery")) {
             final InputStream inStream = getInputStream(imgPath);
             if (inStream.available() > 0) {
-                final ImageInputStream imgStream = ImageIOFile.createImageInputStream(inStream, getBandDimensions(newRoot, name));
+                final ImageInputStream imgStream = createImageInputStream(imgPath, inStream, getBandDimensions(newRoot, name));
                 if (imgStream == null)
                     throw new IOException("Unable to open " + imgPath);
 
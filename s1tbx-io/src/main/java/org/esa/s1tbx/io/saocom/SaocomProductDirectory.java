@@ -354,7 +354,7 @@ public class SaocomProductDirectory extends XMLProductDirectory {
                 final Dimension bandDimensions = new Dimension(width, height);
                 final InputStream inStream = getInputStream(imgPath);
                 if (inStream.available() > 0) {
-                    final ImageInputStream imgStream = ImageIOFile.createImageInputStream(inStream, bandDimensions);
+                    final ImageInputStream imgStream = createImageInputStream(imgPath, inStream, bandDimensions);
 
                     final ImageIOFile img = new ImageIOFile(imgPath, imgStream, GeoTiffUtils.getTiffIIOReader(imgStream),
                             1, 1, ProductData.TYPE_FLOAT64, productInputFile);
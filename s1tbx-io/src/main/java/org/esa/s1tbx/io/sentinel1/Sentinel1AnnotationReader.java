@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.sentinel1;
+
+import org.esa.s1tbx.commons.VectorAttribute;
+import org.esa.snap.core.datamodel.MetadataAttribute;
+import org.esa.snap.core.datamodel.MetadataElement;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Streaming reader for the Sentinel-1 SAFE annotation, calibration and noise XML files.
+ * The XML is read with StAX straight into MetadataElements without building a DOM first.
+ * The resulting tree is the same as the one produced by AbstractMetadataIO.AddXMLMetadata, except that the
+ * values of vectors, elements with a count attribute holding that many numbers, are VectorAttributes carrying
+ * the decoded numbers.
+ */
+class Sentinel1AnnotationReader {
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private Sentinel1AnnotationReader() {
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Reads an XML document and adds its root element to the parent
+     *
+     * @param is     the XML stream
+     * @param parent the element to add the document to
+     * @throws IOException if the XML cannot be read
+     */
+    static void read(final InputStream is, final MetadataElement parent) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            synchronized (inputFactory) {
+                reader = inputFactory.createXMLStreamReader(is);
+            }
+            read(reader, parent);
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to parse XML: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static void read(final XMLStreamReader reader, final MetadataElement parent) throws XMLStreamException {
+        final Deque<Node> stack = new ArrayDeque<>();
+        stack.push(new Node(parent));
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    stack.peek().hasChildElements = true;
+                    stack.push(new Node(reader));
+                    break;
+                }
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE: {
+                    final Node node = stack.peek();
+                    if (node.text != null && !node.hasChildElements) {
+                        node.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                }
+                case XMLStreamConstants.END_ELEMENT: {
+                    final Node node = stack.pop();
+                    node.addTo(stack.peek().element);
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void addAttribute(final MetadataElement elem, final String name, final String value) {
+        elem.addAttribute(new MetadataAttribute(name, ProductData.createInstance(value.isEmpty() ? " " : value), false));
+    }
+
+    private static void addVectorAttribute(final MetadataElement elem, final String name, final String value,
+                                           final String count) {
+        double[] values = null;
+        try {
+            values = VectorAttribute.decode(value, Integer.parseInt(count.trim()));
+        } catch (NumberFormatException e) {
+            // not a vector
+        }
+        if (values == null) {
+            addAttribute(elem, name, value);
+        } else {
+            elem.addAttribute(new VectorAttribute(name, ProductData.createInstance(value), false, values));
+        }
+    }
+
+    /**
+     * An open XML element. Text is only kept until the first child element appears
+     * because the value of an element with children is not stored.
+     */
+    private static class Node {
+        final MetadataElement element;
+        final String[] attribNames;
+        final String[] attribValues;
+        final StringBuilder text;
+        boolean hasChildElements = false;
+
+        Node(final MetadataElement root) {
+            this.element = root;
+            this.attribNames = null;
+            this.attribValues = null;
+            this.text = null;
+        }
+
+        Node(final XMLStreamReader reader) {
+            this.element = new MetadataElement(reader.getLocalName());
+            final int numAttribs = reader.getAttributeCount();
+            this.attribNames = new String[numAttribs];
+            this.attribValues = new String[numAttribs];
+            for (int i = 0; i < numAttribs; ++i) {
+                attribNames[i] = reader.getAttributeLocalName(i);
+                attribValues[i] = reader.getAttributeValue(i);
+            }
+            this.text = new StringBuilder();
+        }
+
+        void addTo(final MetadataElement parent) {
+            if (!hasChildElements) {
+                final String value = text.toString();
+                if (attribNames.length == 0) {
+                    // a leaf becomes an attribute of its parent
+                    if (!value.isEmpty()) {
+                        addAttribute(parent, element.getName(), value);
+                    }
+                    return;
+                }
+                if (!value.isEmpty()) {
+                    final String count = getAttribValue("count");
+                    if (count != null) {
+                        addVectorAttribute(element, element.getName(), value, count);
+                    } else {
+                        addAttribute(element, element.getName(), value);
+                    }
+                }
+            }
+            for (int i = 0; i < attribNames.length; ++i) {
+                addAttribute(element, attribNames[i], attribValues[i]);
+            }
+            parent.addElement(element);
+        }
+
+        private String getAttribValue(final String name) {
+            for (int i = 0; i < attribNames.length; ++i) {
+                if (attribNames[i].equals(name)) {
+                    return attribValues[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * A metadata element whose content is only read from its XML file when it is first accessed.
+     * Until then only the name is held in memory. If the file cannot be read the access fails with an
+     * UncheckedIOException and the element stays unloaded, so that a later access reads it again.
+     */
+    static class LazyMetadataElement extends MetadataElement {
+
+        private final Source source;
+        private volatile boolean loaded = false;
+        private boolean loading = false;
+
+        LazyMetadataElement(final String name, final Source source) {
+            super(name);
+            this.source = source;
+        }
+
+        boolean isLoaded() {
+            return loaded;
+        }
+
+        private void ensureLoaded() {
+            if (!loaded) {
+                synchronized (this) {
+                    if (!loaded && !loading) {
+                        loading = true;
+                        try {
+                            load();
+                            loaded = true;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Unable to read metadata " + getName(), e);
+                        } finally {
+                            loading = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void load() throws IOException {
+            final MetadataElement content = new MetadataElement(getName());
+            try (final InputStream is = source.open()) {
+                read(is, content);
+            }
+
+            // reading metadata on demand is not a modification of the product
+            final Product product = getProduct();
+            final boolean productModified = product == null || product.isModified();
+            for (MetadataElement elem : content.getElements()) {
+                super.addElement(elem);
+            }
+            for (MetadataAttribute attrib : content.getAttributes()) {
+                super.addAttribute(attrib);
+            }
+            if (!productModified) {
+                product.setModified(false);
+            }
+        }
+
+        @Override
+        public void addElement(final MetadataElement element) {
+            ensureLoaded();
+            super.addElement(element);
+        }
+
+        @Override
+        public void addElementAt(final MetadataElement element, final int index) {
+            ensureLoaded();
+            super.addElementAt(element, index);
+        }
+
+        @Override
+        public boolean removeElement(final MetadataElement element) {
+            ensureLoaded();
+            return super.removeElement(element);
+        }
+
+        @Override
+        public int getNumElements() {
+            ensureLoaded();
+            return super.getNumElements();
+        }
+
+        @Override
+        public MetadataElement getElementAt(final int index) {
+            ensureLoaded();
+            return super.getElementAt(index);
+        }
+
+        @Override
+        public String[] getElementNames() {
+            ensureLoaded();
+            return super.getElementNames();
+        }
+
+        @Override
+        public MetadataElement[] getElements() {
+            ensureLoaded();
+            return super.getElements();
+        }
+
+        @Override
+        public MetadataElement getElement(final String name) {
+            ensureLoaded();
+            return super.getElement(name);
+        }
+
+        @Override
+        public boolean containsElement(final String name) {
+            ensureLoaded();
+            return super.containsElement(name);
+        }
+
+        @Override
+        public int getElementIndex(final MetadataElement element) {
+            ensureLoaded();
+            return super.getElementIndex(element);
+        }
+
+        @Override
+        public void addAttribute(final MetadataAttribute attribute) {
+            ensureLoaded();
+            super.addAttribute(attribute);
+        }
+
+        @Override
+        public boolean removeAttribute(final MetadataAttribute attribute) {
+            ensureLoaded();
+            return super.removeAttribute(attribute);
+        }
+
+        @Override
+        public int getNumAttributes() {
+            ensureLoaded();
+            return super.getNumAttributes();
+        }
+
+        @Override
+        public MetadataAttribute getAttributeAt(final int index) {
+            ensureLoaded();
+            return super.getAttributeAt(index);
+        }
+
+        @Override
+        public String[] getAttributeNames() {
+            ensureLoaded();
+            return super.getAttributeNames();
+        }
+
+        @Override
+        public MetadataAttribute[] getAttributes() {
+            ensureLoaded();
+            return super.getAttributes();
+        }
+
+        @Override
+        public MetadataAttribute getAttribute(final String name) {
+            ensureLoaded();
+            return super.getAttribute(name);
+        }
+
+        @Override
+        public boolean containsAttribute(final String name) {
+            ensureLoaded();
+            return super.containsAttribute(name);
+        }
+
+        @Override
+        public int getAttributeIndex(final MetadataAttribute attribute) {
+            ensureLoaded();
+            return super.getAttributeIndex(attribute);
+        }
+
+        @Override
+        public MetadataElement createDeepClone() {
+            ensureLoaded();
+            return super.createDeepClone();
+        }
+    }
+}
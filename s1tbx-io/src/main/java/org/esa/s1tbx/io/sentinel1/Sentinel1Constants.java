@@ -30,6 +30,9 @@ public class Sentinel1Constants {
     public final static String PRODUCT_HEADER_PREFIX = "MANIFEST";
     public final static String PRODUCT_HEADER_NAME = "manifest.safe";
 
+    // read calibration and noise metadata on first access
+    public final static String PREF_LAZY_METADATA = "s1tbx.readers.sentinel1.lazyMetadata";
+
     private final static String INDICATION_KEY = "SAFE";
 
     final static Class[] VALID_INPUT_TYPES = new Class[]{Path.class, File.class, String.class};
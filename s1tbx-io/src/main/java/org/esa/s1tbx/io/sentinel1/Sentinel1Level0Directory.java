@@ -567,7 +567,7 @@ public class Sentinel1Level0Directory extends XMLProductDirectory implements Sen
         return AbstractMetadata.parseUTC(start, sentinelDateFormat);
     }
 
-    private void addBinaryDataToProduct(final MetadataElement root) {
+    private void addBinaryDataToProduct(final MetadataElement root) throws IOException {
 
         final Sentinel1Level0Reader reader = new Sentinel1Level0Reader(getBaseDir(),
                                                                        AbstractMetadata.addOriginalProductMetadata(root));
@@ -15,28 +15,27 @@
  */
 package org.esa.s1tbx.io.sentinel1;
 
-import org.esa.s1tbx.commons.io.FileImageInputStreamExtImpl;
-import org.esa.s1tbx.io.binary.BinaryFileReader;
-import org.esa.s1tbx.io.binary.IllegalBinaryFormatException;
 import org.esa.snap.core.datamodel.MetadataAttribute;
 import org.esa.snap.core.datamodel.MetadataElement;
 import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.util.SystemUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
-import javax.imageio.stream.ImageInputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
-import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * TBD
@@ -122,17 +121,105 @@ public class Sentinel1Level0Reader {
     private ArrayList<DataElement> annotElemList = new ArrayList<>();
     private ArrayList<DataElement> indexElemList = new ArrayList<>();
 
+    private RecordLayout annotLayout;
+    private RecordLayout indexLayout;
+
+    // number of records decoded by one task
+    private static final int RECORDS_PER_TASK = 1024;
+
+    /**
+     * One value of a record at a fixed position, compiled from the data elements of the schema
+     */
+    private static final class Field {
+
+        private final String name;
+        private final String baseType;
+        private final int byteOffset;
+        private final int startBit; // applicable only if baseType == BIT_BASE_TYPE
+        private final int numBits; // applicable only if baseType == BIT_BASE_TYPE
+
+        Field(final String name, final String baseType, final int byteOffset, final int startBit, final int numBits) {
+
+            this.name = name;
+            this.baseType = baseType;
+            this.byteOffset = byteOffset;
+            this.startBit = startBit;
+            this.numBits = numBits;
+        }
+    }
+
+    /**
+     * The fields of a record with their byte offsets, so that any record can be decoded without reading the
+     * ones before it.
+     */
+    private final class RecordLayout {
+
+        private final Field[] fields;
+        private final int recordSize; // bytes read per record
+
+        RecordLayout(final List<DataElement> elemList) {
+
+            final List<Field> fieldList = new ArrayList<>();
+            int pos = 0;
+            int bitBytePos = 0;
+            DataElement prevDataElem = null;
+
+            for (DataElement elem : elemList) {
+
+                for (int j = 0; j < elem.numOccurrences; j++) {
+                    switch (elem.baseType) {
+                        case BOOLEAN_TAG_NAME:
+                        case UNSIGNED_BYTE_TAG_NAME:
+                            fieldList.add(new Field(elem.name, elem.baseType, pos, 0, 0));
+                            pos += 1;
+                            break;
+                        case UNSIGNED_SHORT_TAG_NAME:
+                            fieldList.add(new Field(elem.name, elem.baseType, pos, 0, 0));
+                            pos += 2;
+                            break;
+                        case UNSIGNED_INT_TAG_NAME:
+                            fieldList.add(new Field(elem.name, elem.baseType, pos, 0, 0));
+                            pos += 4;
+                            break;
+                        case UNSIGNED_LONG_TAG_NAME:
+                        case DOUBLE_TAG_NAME:
+                            fieldList.add(new Field(elem.name, elem.baseType, pos, 0, 0));
+                            pos += 8;
+                            break;
+                        case BIT_BASE_TYPE:
+                            // bit fields share a byte until one starts at bit 0
+                            if (prevDataElem == null || elem.startBit == 0) {
+                                bitBytePos = pos;
+                                pos += 1;
+                            }
+                            fieldList.add(new Field(elem.name, elem.baseType, bitBytePos, elem.startBit, elem.numBytes));
+                            break;
+                        default:
+                            if (j == 0) {
+                                SystemUtils.LOG.warning("Sentinel1Level0Reader: unknown baseType " + elem.baseType + " of " + elem.name);
+                            }
+                            break;
+                    }
+                    prevDataElem = elem;
+                }
+            }
+
+            this.fields = fieldList.toArray(new Field[0]);
+            this.recordSize = pos;
+        }
+    }
+
     private class DataComponent {
 
-        private final BinaryFileReader reader;
-        private final ArrayList<DataElement> elemList;
+        private final File file;
+        private final RecordLayout layout;
         private final MetadataElement parentMetadataElem;
         private final long numRecords;
 
-        DataComponent(final BinaryFileReader reader, final ArrayList<DataElement> elemList, final MetadataElement parentMetadataElem, final long numRecords) {
+        DataComponent(final File file, final RecordLayout layout, final MetadataElement parentMetadataElem, final long numRecords) {
 
-            this.reader = reader;
-            this.elemList = elemList;
+            this.file = file;
+            this.layout = layout;
             this.parentMetadataElem = parentMetadataElem;
             this.numRecords = numRecords;
         }
@@ -144,6 +231,8 @@ public class Sentinel1Level0Reader {
 
         readXMLSchema(buildSchemaFilename(baseDir, ANNOT_SCHEMA_FILENAME), ANNOT_RECORD_NAME, annotElemList);
         readXMLSchema(buildSchemaFilename(baseDir, INDEX_SCHEMA_FILENAME), INDEX_RECORD_NAME, indexElemList);
+        annotLayout = new RecordLayout(annotElemList);
+        indexLayout = new RecordLayout(indexElemList);
 
         //  Metadata > Original_Product_Metadata > XFDU > dataObjectSection >
         //       dataObject > byteStream > fileLocation
@@ -199,7 +288,7 @@ public class Sentinel1Level0Reader {
 
             if (dataFilename.contains(ANNOT_PREFIX) || dataFilename.contains(INDEX_PREFIX)) {
 
-                final long numRecs = createBinaryReader(baseDir, dataFilename, recordElem);
+                final long numRecs = createDataComponent(baseDir, dataFilename, recordElem);
                 numRecsAttr.getData().setElemUInt(numRecs);
             }
 
@@ -209,42 +298,29 @@ public class Sentinel1Level0Reader {
 
     }
 
-    private long createBinaryReader(final File baseDir, final String binDataFilename, MetadataElement metadataElement) {
+    private long createDataComponent(final File baseDir, final String binDataFilename, MetadataElement metadataElement) {
 
         final File binDataFile = new File(baseDir.getAbsolutePath() + binDataFilename);
 
         long numRecs = 0;
 
-        try {
-            ImageInputStream imageInputStream = FileImageInputStreamExtImpl.createInputStream(binDataFile);
+        DataComponent dataComponent = null;
 
-            final BinaryFileReader binaryReader = new BinaryFileReader(imageInputStream);
+        final long filesize = binDataFile.length(); // bytes
 
-            // According to Product Specs, binary data is stored in Big Endian format.
-            binaryReader.setByteOrder(ByteOrder.BIG_ENDIAN);
+        if (binDataFilename.contains(ANNOT_PREFIX)) {
 
-            DataComponent dataComponent = null;
+            numRecs = filesize / getTotalNumberOfBytes(annotElemList);
+            dataComponent = new DataComponent(binDataFile, annotLayout, metadataElement, numRecs);
 
-            final long filesize = binDataFile.length(); // bytes
+        } else if (binDataFilename.contains(INDEX_PREFIX)) {
 
-            if (binDataFilename.contains(ANNOT_PREFIX)) {
-
-                numRecs = filesize / getTotalNumberOfBytes(annotElemList);
-                dataComponent = new DataComponent(binaryReader, annotElemList, metadataElement, numRecs);
-
-            } else if (binDataFilename.contains(INDEX_PREFIX)) {
-
-                numRecs = filesize / getTotalNumberOfBytes(indexElemList);
-                dataComponent = new DataComponent(binaryReader, indexElemList, metadataElement, numRecs);
-            }
-
-            dataComponents.add(dataComponent);
-
-        } catch (IOException e) {
-
-            System.out.println("Sentinel1Level0Reader.createBinaryReader: IOException " + e.getMessage());
+            numRecs = filesize / getTotalNumberOfBytes(indexElemList);
+            dataComponent = new DataComponent(binDataFile, indexLayout, metadataElement, numRecs);
         }
 
+        dataComponents.add(dataComponent);
+
         return numRecs;
     }
 
@@ -585,7 +661,7 @@ public class Sentinel1Level0Reader {
         System.out.println("End of " + listName);
     }
 
-    public void readData() {
+    public void readData() throws IOException {
 
         //System.out.println("Sentinel1Level0Reader.readData: called");
 
@@ -596,133 +672,86 @@ public class Sentinel1Level0Reader {
         }
     }
 
-    private byte readOneBinaryElement(final BinaryFileReader reader,
-                                      final DataElement elem,
-                                      final DataElement prevElem,
-                                      final byte prevByte,
-                                      MetadataElement parentMetadataElem) {
+    private MetadataAttribute decodeField(final ByteBuffer data, final int recordPos, final Field field) {
 
-        //System.out.println("Sentinel1Level0Reader.readOneBinaryElement: read " + elem.name + " " + elem.baseType);
+        final int pos = recordPos + field.byteOffset;
+        final MetadataAttribute attr;
 
-        byte lastByteRead = 0;
-
-        try {
-            switch (elem.baseType) {
-                case BOOLEAN_TAG_NAME:
-                case UNSIGNED_BYTE_TAG_NAME: {
-                    final int val = reader.readUB1();
-                    //System.out.println(elem.name + " = " + val + "; " + elem.baseType + " (unsigned byte); pos = " + reader.getCurrentPos());
-                    MetadataAttribute attr = new MetadataAttribute(elem.name, ProductData.TYPE_UINT8);
-                    ProductData productData = attr.getData();
-                    productData.setElemInt(val);
-                    parentMetadataElem.addAttribute(attr);
-                }
+        switch (field.baseType) {
+            case BOOLEAN_TAG_NAME:
+            case UNSIGNED_BYTE_TAG_NAME:
+                attr = new MetadataAttribute(field.name, ProductData.TYPE_UINT8);
+                attr.getData().setElemInt(getInteger(data.get(pos)));
                 break;
-                case UNSIGNED_SHORT_TAG_NAME: {
-                    final int val = reader.readUB2();
-                    //System.out.println(elem.name + " = " + val + "; " + elem.baseType + " (unsigned short); pos = " + reader.getCurrentPos());
-                    MetadataAttribute attr = new MetadataAttribute(elem.name, ProductData.TYPE_UINT16);
-                    ProductData productData = attr.getData();
-                    productData.setElemInt(val);
-                    parentMetadataElem.addAttribute(attr);
-                }
+            case UNSIGNED_SHORT_TAG_NAME:
+                attr = new MetadataAttribute(field.name, ProductData.TYPE_UINT16);
+                attr.getData().setElemInt(data.getShort(pos) & 0xFFFF);
                 break;
-                case UNSIGNED_INT_TAG_NAME: {
-                    final long val = getUnsignedInt(reader.readB4());
-                    //System.out.println(elem.name + " = " + val + "; " + elem.baseType + " (unsigned int); pos = " + reader.getCurrentPos());
-                    MetadataAttribute attr = new MetadataAttribute(elem.name, ProductData.TYPE_UINT32);
-                    ProductData productData = attr.getData();
-                    productData.setElemUInt(val);
-                    parentMetadataElem.addAttribute(attr);
-                }
+            case UNSIGNED_INT_TAG_NAME:
+                attr = new MetadataAttribute(field.name, ProductData.TYPE_UINT32);
+                attr.getData().setElemUInt(getUnsignedInt(data.getInt(pos)));
                 break;
-                case UNSIGNED_LONG_TAG_NAME: {
-                    final byte[] bytes = new byte[8];
-                    reader.read(bytes);
-                    final BigInteger val = new BigInteger(bytes);
-                    final String valStr = String.valueOf(val);
-                    //System.out.println(elem.name + " = " + val + "; " + elem.baseType + " (unsigned long);  pos = " + reader.getCurrentPos());
-                    MetadataAttribute attr = new MetadataAttribute(elem.name, ProductData.TYPE_ASCII);
-                    ProductData productData = attr.getData();
-                    productData.setElems(valStr);
-                    parentMetadataElem.addAttribute(attr);
-                    // To get back the unsigned long value, one can get the String back and create a BigInteger with it.
-                    // Constructor of BigInteger takes a String.
-                }
+            case UNSIGNED_LONG_TAG_NAME:
+                // To get back the unsigned long value, one can get the String back and create a BigInteger with it.
+                attr = new MetadataAttribute(field.name, ProductData.TYPE_ASCII);
+                attr.getData().setElems(String.valueOf(data.getLong(pos)));
                 break;
-                case DOUBLE_TAG_NAME: {
-                    final double val = (double) reader.readB8();
-                    //System.out.println(elem.name + " = " + val + "; " + elem.baseType + " (double); pos" + reader.getCurrentPos());
-                    MetadataAttribute attr = new MetadataAttribute(elem.name, ProductData.TYPE_FLOAT64);
-                    ProductData productData = attr.getData();
-                    productData.setElemDouble(val);
-                    parentMetadataElem.addAttribute(attr);
-                }
+            case DOUBLE_TAG_NAME:
+                attr = new MetadataAttribute(field.name, ProductData.TYPE_FLOAT64);
+                attr.getData().setElemDouble((double) data.getLong(pos));
                 break;
-                case BIT_BASE_TYPE: {
-                    if (prevElem == null || elem.startBit == 0) {
-                        final byte[] oneByte = new byte[1];
-                        reader.read(oneByte);
-                        lastByteRead = oneByte[0];
-                        //System.out.println(elem.name + " = "  + Integer.toBinaryString(getInteger(lastByteRead)) + "; " + elem.baseType + " (unsigned int); pos = " + reader.getCurrentPos());
-                    } else {
-                        lastByteRead = prevByte;
-                    }
-
-                    final byte val = extract(lastByteRead, elem.startBit, elem.numBytes);
-
-                    MetadataAttribute attr = new MetadataAttribute(elem.name, ProductData.TYPE_UINT8);
-                    ProductData productData = attr.getData();
-                    productData.setElemInt(getInteger(val));
-                    parentMetadataElem.addAttribute(attr);
-                }
+            default: // BIT_BASE_TYPE
+                attr = new MetadataAttribute(field.name, ProductData.TYPE_UINT8);
+                attr.getData().setElemInt(getInteger(extract(data.get(pos), field.startBit, field.numBits)));
                 break;
-                default: {
-                    System.out.println("Sentinel1Level0Reader.readOneBinaryElement: ERROR Unknown baseType = " + elem.baseType);
-                }
-                break;
-            }
-
-        } catch (IOException e) {
-
-            System.out.println("Sentinel1Level0Reader.readOneBinaryElement: IOException " + e.getMessage());
-
-        } catch (IllegalBinaryFormatException e) {
-
-            System.out.println("Sentinel1Level0Reader.readOneBinaryElement: IllegalBinaryFormatException " + e.getMessage());
         }
 
-        return lastByteRead;
+        return attr;
     }
 
-    private void readBinaryData(DataComponent dataComponent) {
+    private void readBinaryData(DataComponent dataComponent) throws IOException {
 
-        final BinaryFileReader reader = dataComponent.reader;
-        final ArrayList<DataElement> elemList = dataComponent.elemList;
+        final RecordLayout layout = dataComponent.layout;
         final MetadataElement parentMetadataElem = dataComponent.parentMetadataElem;
+        final String parentName = parentMetadataElem.getName();
+        final String recordName = parentName.substring(0, parentName.length() - 1);
 
-        for (long i = 0; i < dataComponent.numRecords; i++) {
-
-            final String parentName = parentMetadataElem.getName();
-            final MetadataElement recMetaElem = new MetadataElement(parentName.substring(0, parentName.length() - 1) + i);
-            parentMetadataElem.addElement(recMetaElem);
-            /*
-            try {
-                System.out.println("readBinaryData: file pos = " + reader.getCurrentPos());
-            } catch (IOException e) {
-                System.out.println("readBinaryData: file pos = ERROR " + e.getMessage());
-            }
-            */
-            DataElement prevDataElem = null;
-            byte prevByte = 0;
-
-            for (DataElement elem : elemList) {
+        // According to Product Specs, binary data is stored in Big Endian format, which is the ByteBuffer default.
+        final ByteBuffer data;
+        try {
+            data = ByteBuffer.wrap(Files.readAllBytes(dataComponent.file.toPath()));
+        } catch (IOException e) {
+            SystemUtils.LOG.severe("Sentinel1Level0Reader: unable to read " + dataComponent.file + ": " + e.getMessage());
+            throw e;
+        }
 
-                for (int j = 0; j < elem.numOccurrences; j++) {
-                    prevByte = readOneBinaryElement(reader, elem, prevDataElem, prevByte, recMetaElem);
-                    prevDataElem = elem;
+        // records have a fixed size, so they are decoded in parallel and then added in order
+        final int numRecords = (int) dataComponent.numRecords;
+        final MetadataElement[] recMetaElems = new MetadataElement[numRecords];
+        final List<RecursiveAction> tasks = new ArrayList<>();
+        for (int first = 0; first < numRecords; first += RECORDS_PER_TASK) {
+            final int start = first;
+            final int end = Math.min(numRecords, first + RECORDS_PER_TASK);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int i = start; i < end; i++) {
+                        final MetadataElement recMetaElem = new MetadataElement(recordName + i);
+                        final long recordPos = (long) i * layout.recordSize;
+                        if (recordPos + layout.recordSize <= data.capacity()) {
+                            for (Field field : layout.fields) {
+                                recMetaElem.addAttribute(decodeField(data, (int) recordPos, field));
+                            }
+                        }
+                        recMetaElems[i] = recMetaElem;
+                    }
                 }
-            }
+            });
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        for (MetadataElement recMetaElem : recMetaElems) {
+            parentMetadataElem.addElement(recMetaElem);
         }
     }
 
@@ -29,7 +29,6 @@ import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.datamodel.TiePointGeoCoding;
 import org.esa.snap.core.datamodel.TiePointGrid;
-import org.esa.snap.core.dataop.downloadable.XMLSupport;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.core.util.io.FileUtils;
 import org.esa.snap.core.util.math.MathUtils;
@@ -39,8 +38,7 @@ import org.esa.snap.engine_utilities.datamodel.metadata.AbstractMetadataIO;
 import org.esa.snap.engine_utilities.eo.Constants;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
-import org.jdom2.Document;
-import org.jdom2.Element;
+import org.esa.snap.runtime.Config;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
@@ -62,6 +60,8 @@ public class Sentinel1Level1Directory extends XMLProductDirectory implements Sen
     private final Map<Band, TiePointGeoCoding> bandGeocodingMap = new HashMap<>(5);
     private final transient Map<String, String> imgBandMetadataMap = new HashMap<>(4);
     private String acqMode = "";
+    private final boolean lazyMetadata =
+            Config.instance().preferences().getBoolean(Sentinel1Constants.PREF_LAZY_METADATA, true);
 
     private final static Double NoDataValue = 0.0;//-9999.0;
 
@@ -84,7 +84,7 @@ public class Sentinel1Level1Directory extends XMLProductDirectory implements Sen
                 final Dimension bandDimensions = getBandDimensions(newRoot, imgBandMetadataMap.get(name));
                 final InputStream inStream = getInputStream(imgPath);
                 if(inStream.available() > 0) {
-                    final ImageInputStream imgStream = ImageIOFile.createImageInputStream(inStream, bandDimensions);
+                    final ImageInputStream imgStream = createImageInputStream(imgPath, inStream, bandDimensions);
 
                     final ImageIOFile img = new ImageIOFile(name, imgStream, GeoTiffUtils.getTiffIIOReader(imgStream),
                                 1, 1, ProductData.TYPE_INT32, productInputFile);
@@ -380,14 +380,11 @@ public class Sentinel1Level1Directory extends XMLProductDirectory implements Sen
         if (filenames != null) {
             for (String metadataFile : filenames) {
 
-                final Document xmlDoc;
+                final MetadataElement nameElem = new MetadataElement(metadataFile);
                 try (final InputStream is = getInputStream(annotFolder + '/' + metadataFile)) {
-                    xmlDoc = XMLSupport.LoadXML(is);
+                    Sentinel1AnnotationReader.read(is, nameElem);
                 }
-                final Element rootElement = xmlDoc.getRootElement();
-                final MetadataElement nameElem = new MetadataElement(metadataFile);
                 annotationElement.addElement(nameElem);
-                AbstractMetadataIO.AddXMLMetadata(rootElement, nameElem);
 
                 final MetadataElement prodElem = nameElem.getElement("product");
                 final MetadataElement adsHeader = prodElem.getElement("adsHeader");
@@ -533,15 +530,8 @@ public class Sentinel1Level1Directory extends XMLProductDirectory implements Sen
             for (String metadataFile : filenames) {
                 if (metadataFile.startsWith("calibration")) {
 
-                    final Document xmlDoc;
-                    try (final InputStream is = getInputStream(calibFolder + '/' + metadataFile)) {
-                        xmlDoc = XMLSupport.LoadXML(is);
-                    }
-                    final Element rootElement = xmlDoc.getRootElement();
                     final String name = metadataFile.replace("calibration-", "");
-                    final MetadataElement nameElem = new MetadataElement(name);
-                    calibrationElement.addElement(nameElem);
-                    AbstractMetadataIO.AddXMLMetadata(rootElement, nameElem);
+                    calibrationElement.addElement(createMetadataElement(name, calibFolder + '/' + metadataFile));
                 }
             }
         }
@@ -561,20 +551,28 @@ public class Sentinel1Level1Directory extends XMLProductDirectory implements Sen
             for (String metadataFile : filenames) {
                 if (metadataFile.startsWith("noise")) {
 
-                    final Document xmlDoc;
-                    try (final InputStream is = getInputStream(calibFolder + '/' + metadataFile)) {
-                        xmlDoc = XMLSupport.LoadXML(is);
-                    }
-                    final Element rootElement = xmlDoc.getRootElement();
                     final String name = metadataFile.replace("noise-", "");
-                    final MetadataElement nameElem = new MetadataElement(name);
-                    noiseElement.addElement(nameElem);
-                    AbstractMetadataIO.AddXMLMetadata(rootElement, nameElem);
+                    noiseElement.addElement(createMetadataElement(name, calibFolder + '/' + metadataFile));
                 }
             }
         }
     }
 
+    /**
+     * Calibration and noise vectors are large and only needed by a few operators,
+     * so by default their metadata is only read when it is first accessed.
+     */
+    private MetadataElement createMetadataElement(final String name, final String path) throws IOException {
+        if (lazyMetadata) {
+            return new Sentinel1AnnotationReader.LazyMetadataElement(name, () -> getInputStream(path));
+        }
+        final MetadataElement elem = new MetadataElement(name);
+        try (final InputStream is = getInputStream(path)) {
+            Sentinel1AnnotationReader.read(is, elem);
+        }
+        return elem;
+    }
+
     private static MetadataElement findElement(final MetadataElement elem, final String name) {
         final MetadataElement metadataWrap = elem.getElement("metadataWrap");
         final MetadataElement xmlData = metadataWrap.getElement("xmlData");
@@ -644,7 +644,7 @@ public class TerraSarXProductDirectory extends XMLProductDirectory {
                 final Dimension bandDimensions = getBandDimensions(newRoot, name);
                 final InputStream inStream = getInputStream(imgPath);
                 if(inStream.available() > 0) {
-                    final ImageInputStream imgStream = ImageIOFile.createImageInputStream(inStream, bandDimensions);
+                    final ImageInputStream imgStream = createImageInputStream(imgPath, inStream, bandDimensions);
                     if (imgStream == null)
                         throw new IOException("Unable to open " + imgPath);
 
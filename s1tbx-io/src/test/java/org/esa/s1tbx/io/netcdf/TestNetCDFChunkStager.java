@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.netcdf;
+
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestNetCDFChunkStager {
+
+    private static class RecordingSink implements NetCDFChunkStager.ChunkSink {
+        final List<int[]> chunks = new ArrayList<>();
+        final float[] scene;
+        final int sceneWidth;
+
+        RecordingSink(final int sceneWidth, final int sceneHeight) {
+            this.sceneWidth = sceneWidth;
+            this.scene = new float[sceneWidth * sceneHeight];
+        }
+
+        @Override
+        public synchronized void writeChunk(final String varName, final int x, final int y,
+                                            final int width, final int height, final ProductData data) {
+            chunks.add(new int[]{x, y, width, height});
+            for (int yy = 0; yy < height; ++yy) {
+                for (int xx = 0; xx < width; ++xx) {
+                    scene[(y + yy) * sceneWidth + x + xx] = data.getElemFloatAt(yy * width + xx);
+                }
+            }
+        }
+    }
+
+    private static ProductData createRegion(final int sceneWidth, final int x, final int y, final int w, final int h) {
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, w * h);
+        for (int yy = 0; yy < h; ++yy) {
+            for (int xx = 0; xx < w; ++xx) {
+                data.setElemFloatAt(yy * w + xx, (y + yy) * sceneWidth + x + xx);
+            }
+        }
+        return data;
+    }
+
+    @Test
+    public void testChunkAlignedRegions() throws IOException {
+        final RecordingSink sink = new RecordingSink(10, 8);
+        final NetCDFChunkStager stager = new NetCDFChunkStager(10, 8, 4, 4, sink);
+
+        // out of order, including the clipped chunks at the right border
+        final int[][] regions = {{8, 4, 2, 4}, {0, 0, 4, 4}, {4, 4, 4, 4}, {8, 0, 2, 4}, {4, 0, 4, 4}, {0, 4, 4, 4}};
+        for (int[] r : regions) {
+            stager.stage("band", r[0], r[1], r[2], r[3], createRegion(10, r[0], r[1], r[2], r[3]));
+        }
+
+        assertEquals(6, sink.chunks.size());
+        assertEquals(0, stager.getNumPendingChunks());
+        for (int i = 0; i < sink.scene.length; ++i) {
+            assertEquals(i, sink.scene[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void testRowStripRegions() throws IOException {
+        final RecordingSink sink = new RecordingSink(8, 8);
+        final NetCDFChunkStager stager = new NetCDFChunkStager(8, 8, 4, 4, sink);
+
+        for (int y = 7; y >= 0; --y) {
+            stager.stage("band", 0, y, 8, 1, createRegion(8, 0, y, 8, 1));
+            if (y == 4) {
+                // lower chunk row is complete
+                assertEquals(2, sink.chunks.size());
+            }
+        }
+
+        assertEquals(4, sink.chunks.size());
+        assertEquals(0, stager.getNumPendingChunks());
+        for (int i = 0; i < sink.scene.length; ++i) {
+            assertEquals(i, sink.scene[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void testOverlappingRegions() throws IOException {
+        final RecordingSink sink = new RecordingSink(8, 8);
+        final NetCDFChunkStager stager = new NetCDFChunkStager(8, 8, 4, 4, sink);
+
+        // as many pixels as the chunk has, but rows 0 and 1 twice and row 3 never
+        stager.stage("band", 0, 0, 4, 2, createRegion(8, 0, 0, 4, 2));
+        stager.stage("band", 0, 1, 4, 1, createRegion(8, 0, 1, 4, 1));
+        stager.stage("band", 0, 0, 4, 1, createRegion(8, 0, 0, 4, 1));
+        stager.stage("band", 0, 2, 4, 1, createRegion(8, 0, 2, 4, 1));
+        assertEquals(0, sink.chunks.size());
+        assertEquals(1, stager.getNumPendingChunks());
+
+        stager.stage("band", 0, 3, 4, 1, createRegion(8, 0, 3, 4, 1));
+        assertEquals(1, sink.chunks.size());
+        assertEquals(0, stager.getNumPendingChunks());
+        for (int y = 0; y < 4; ++y) {
+            for (int x = 0; x < 4; ++x) {
+                assertEquals(y * 8 + x, sink.scene[y * 8 + x], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testFlushIncompleteChunks() throws IOException {
+        final RecordingSink sink = new RecordingSink(8, 8);
+        final NetCDFChunkStager stager = new NetCDFChunkStager(8, 8, 4, 4, sink);
+
+        stager.stage("band", 0, 0, 2, 2, createRegion(8, 0, 0, 2, 2));
+        assertEquals(0, sink.chunks.size());
+        assertEquals(1, stager.getNumPendingChunks());
+
+        stager.flush();
+        assertEquals(1, sink.chunks.size());
+        assertEquals(0, stager.getNumPendingChunks());
+        assertEquals(9, sink.scene[9], 0.0f);
+    }
+}
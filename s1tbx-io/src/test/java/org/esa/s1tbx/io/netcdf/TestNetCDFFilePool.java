@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.netcdf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestNetCDFFilePool {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("pool", ".nc");
+        final NetcdfFileWriter writer = NetcdfFileWriter.createNew(file.getAbsolutePath(), false);
+        final Dimension rows = writer.addDimension("y", HEIGHT);
+        final Dimension cols = writer.addDimension("x", WIDTH);
+        writer.addVariable("band", DataType.FLOAT, Arrays.asList(rows, cols));
+        writer.create();
+
+        final float[] data = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = i;
+        }
+        writer.write(writer.findVariable("band"), Array.factory(DataType.FLOAT, new int[]{HEIGHT, WIDTH}, data));
+        writer.close();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        try (NetcdfFile netcdfFile = NetcdfFile.open(file.getAbsolutePath());
+             NetCDFFilePool pool = new NetCDFFilePool(netcdfFile, 4)) {
+
+            final Variable variable = netcdfFile.findVariable("band");
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<float[]>> futures = new ArrayList<>();
+                for (int y = 0; y < HEIGHT; y += 10) {
+                    final int[] origin = {y, 20};
+                    futures.add(executor.submit(() ->
+                            (float[]) pool.read(variable, origin, new int[]{10, 100}).getStorage()));
+                }
+
+                for (int t = 0; t < futures.size(); ++t) {
+                    final float[] data = futures.get(t).get();
+                    for (int yy = 0; yy < 10; ++yy) {
+                        for (int xx = 0; xx < 100; ++xx) {
+                            assertEquals((t * 10 + yy) * WIDTH + 20 + xx, data[yy * 100 + xx], 0.0f);
+                        }
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadAfterClose() throws Exception {
+        try (NetcdfFile netcdfFile = NetcdfFile.open(file.getAbsolutePath())) {
+            final NetCDFFilePool pool = new NetCDFFilePool(netcdfFile, 2);
+            pool.close();
+            pool.read(netcdfFile.findVariable("band"), new int[]{0, 0}, new int[]{1, 1});
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.sentinel1;
+
+import org.esa.s1tbx.commons.VectorAttribute;
+import org.esa.snap.core.datamodel.MetadataAttribute;
+import org.esa.snap.core.datamodel.MetadataElement;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * To test Sentinel1AnnotationReader
+ */
+public class TestSentinel1AnnotationReader {
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<calibration>\n" +
+            "  <adsHeader><polarisation>VV</polarisation><swath>IW1</swath></adsHeader>\n" +
+            "  <calibrationVectorList count=\"2\">\n" +
+            "    <calibrationVector>\n" +
+            "      <azimuthTime>2014-10-03T18:39:38.000000</azimuthTime><line>0</line>\n" +
+            "      <pixel count=\"3\">0 40 80</pixel>\n" +
+            "      <sigmaNought count=\"3\">1.0e+00 2.0e+00 3.0e+00</sigmaNought>\n" +
+            "      <empty/>\n" +
+            "    </calibrationVector>\n" +
+            "    <calibrationVector>\n" +
+            "      <azimuthTime>2014-10-03T18:39:39.000000</azimuthTime><line>100</line>\n" +
+            "      <pixel count=\"3\">0 40 80</pixel>\n" +
+            "      <sigmaNought count=\"3\">4.0e+00 5.0e+00 6.0e+00</sigmaNought>\n" +
+            "    </calibrationVector>\n" +
+            "  </calibrationVectorList>\n" +
+            "</calibration>";
+
+    private static InputStream createStream() {
+        return new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        final MetadataElement root = new MetadataElement("calibration-s1a-iw1-slc-vv.xml");
+        Sentinel1AnnotationReader.read(createStream(), root);
+
+        final MetadataElement calibration = root.getElement("calibration");
+        assertNotNull(calibration);
+
+        final MetadataElement adsHeader = calibration.getElement("adsHeader");
+        assertEquals(0, adsHeader.getNumElements());
+        assertEquals("VV", adsHeader.getAttributeString("polarisation"));
+        assertEquals("IW1", adsHeader.getAttributeString("swath"));
+
+        final MetadataElement list = calibration.getElement("calibrationVectorList");
+        assertEquals("2", list.getAttributeString("count"));
+        assertEquals(2, list.getNumElements());
+
+        final MetadataElement vector = list.getElementAt(1);
+        assertEquals("calibrationVector", vector.getName());
+        assertEquals("100", vector.getAttributeString("line"));
+        assertEquals("2014-10-03T18:39:39.000000", vector.getAttributeString("azimuthTime"));
+
+        final MetadataElement pixel = vector.getElement("pixel");
+        assertEquals("0 40 80", pixel.getAttributeString("pixel"));
+        assertEquals("3", pixel.getAttributeString("count"));
+        assertEquals("4.0e+00 5.0e+00 6.0e+00", vector.getElement("sigmaNought").getAttributeString("sigmaNought"));
+
+        // empty leaves are dropped
+        assertFalse(list.getElementAt(0).containsAttribute("empty"));
+        assertNull(list.getElementAt(0).getElement("empty"));
+    }
+
+    @Test
+    public void testVectors() throws Exception {
+        final MetadataElement root = new MetadataElement("calibration-s1a-iw1-slc-vv.xml");
+        Sentinel1AnnotationReader.read(createStream(), root);
+
+        final MetadataElement vector = root.getElement("calibration").getElement("calibrationVectorList")
+                .getElementAt(1);
+        final MetadataAttribute sigmaNought = vector.getElement("sigmaNought").getAttribute("sigmaNought");
+        assertTrue(sigmaNought instanceof VectorAttribute);
+        assertArrayEquals(new double[]{4.0, 5.0, 6.0}, ((VectorAttribute) sigmaNought).getValues(), 0.0);
+
+        final MetadataAttribute pixel = vector.getElement("pixel").getAttribute("pixel");
+        assertArrayEquals(new double[]{0, 40, 80}, ((VectorAttribute) pixel).getValues(), 0.0);
+
+        // the count attribute itself is not a vector
+        assertFalse(vector.getElement("pixel").getAttribute("count") instanceof VectorAttribute);
+
+        // text that does not hold count numbers is kept as text only
+        assertNull(VectorAttribute.decode("0 40", 3));
+        assertNull(VectorAttribute.decode("0 40 80 120", 3));
+        assertNull(VectorAttribute.decode("0 forty 80", 3));
+    }
+
+    @Test
+    public void testLazyElement() {
+        final AtomicInteger numOpened = new AtomicInteger();
+        final Sentinel1AnnotationReader.LazyMetadataElement lazyElem =
+                new Sentinel1AnnotationReader.LazyMetadataElement("s1a-iw1-slc-vv.xml", () -> {
+                    numOpened.incrementAndGet();
+                    return createStream();
+                });
+        final MetadataElement parent = new MetadataElement("calibration");
+        parent.addElement(lazyElem);
+
+        assertFalse(lazyElem.isLoaded());
+        assertEquals(0, numOpened.get());
+
+        final MetadataElement calibration = lazyElem.getElement("calibration");
+        assertTrue(lazyElem.isLoaded());
+        assertEquals(2, calibration.getElement("calibrationVectorList").getNumElements());
+
+        assertEquals(1, lazyElem.getNumElements());
+        assertEquals(1, numOpened.get());
+    }
+
+    @Test
+    public void testLazyElementReadFailure() {
+        final AtomicInteger numOpened = new AtomicInteger();
+        final Sentinel1AnnotationReader.LazyMetadataElement lazyElem =
+                new Sentinel1AnnotationReader.LazyMetadataElement("s1a-iw1-slc-vv.xml", () -> {
+                    if (numOpened.incrementAndGet() == 1) {
+                        throw new IOException("entry not found");
+                    }
+                    return createStream();
+                });
+
+        try {
+            lazyElem.getNumElements();
+            fail("UncheckedIOException expected");
+        } catch (UncheckedIOException e) {
+            assertFalse(lazyElem.isLoaded());
+        }
+
+        // the next access reads the file again
+        assertEquals(1, lazyElem.getNumElements());
+        assertTrue(lazyElem.isLoaded());
+        assertEquals(2, numOpened.get());
+    }
+}
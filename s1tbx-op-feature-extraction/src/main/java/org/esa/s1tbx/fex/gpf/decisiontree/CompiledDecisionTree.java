@@ -0,0 +1,177 @@
+package org.esa.s1tbx.fex.gpf.decisiontree;
+
+import org.esa.snap.core.dataop.barithm.BandArithmetic;
+import org.esa.snap.core.dataop.barithm.RasterDataEvalEnv;
+import org.esa.snap.core.dataop.barithm.RasterDataSymbol;
+import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.jexp.Namespace;
+import org.esa.snap.core.jexp.ParseException;
+import org.esa.snap.core.jexp.Parser;
+import org.esa.snap.core.jexp.Term;
+import org.esa.snap.core.jexp.impl.ParserImpl;
+import org.esa.snap.core.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decision tree with all expressions parsed once into a flat array of nodes.
+ * <p>
+ * The nodes are numbered breadth first, so every node comes after its parent. A row of pixels is
+ * classified by evaluating the nodes in order, each one only for the pixels which have reached it,
+ * instead of walking the tree separately for every pixel. Integer leaves are kept as constants.
+ * <p>
+ * The terms keep the data of their raster symbols, so an instance must only be used by one thread at a time.
+ */
+final class CompiledDecisionTree {
+
+    private final Term[] terms;
+    private final int[] trueNode;
+    private final int[] falseNode;
+    private final boolean[] constant;
+    private final double[] constantValue;
+    private final RasterDataSymbol[] symbols;
+
+    private CompiledDecisionTree(final List<DecisionTreeNode> nodes, final Map<DecisionTreeNode, Integer> index,
+                                 final Namespace namespace) {
+        final int numNodes = nodes.size();
+        terms = new Term[numNodes];
+        trueNode = new int[numNodes];
+        falseNode = new int[numNodes];
+        constant = new boolean[numNodes];
+        constantValue = new double[numNodes];
+
+        final Parser parser = new ParserImpl(namespace, false);
+        for (int i = 0; i < numNodes; ++i) {
+            final DecisionTreeNode n = nodes.get(i);
+            final String expression = n.getExpression();
+            if (expression == null || expression.isEmpty()) {
+                throw new OperatorException("Decision node cannot be empty");
+            }
+
+            if (n.isLeaf()) {
+                trueNode[i] = -1;
+                falseNode[i] = -1;
+                if (StringUtils.isIntegerString(expression.trim())) {
+                    constant[i] = true;
+                    constantValue[i] = Integer.parseInt(expression.trim());
+                    continue;
+                }
+            } else {
+                trueNode[i] = index.get(n.getTrueNode());
+                falseNode[i] = index.get(n.getFalseNode());
+            }
+
+            try {
+                terms[i] = parser.parse(expression);
+            } catch (ParseException e) {
+                throw new OperatorException("Could not parse expression: " + expression, e);
+            }
+            if (!n.isLeaf() && terms[i].getRetType() != Term.TYPE_B) {
+                throw new OperatorException("Node " + expression + " is not a boolean expression");
+            }
+        }
+
+        final List<Term> usedTerms = new ArrayList<>(numNodes);
+        for (Term term : terms) {
+            if (term != null) {
+                usedTerms.add(term);
+            }
+        }
+        symbols = BandArithmetic.getRefRasterDataSymbols(usedTerms.toArray(new Term[usedTerms.size()]));
+    }
+
+    /**
+     * Compile the tree below a root node
+     *
+     * @param root      the root of the tree
+     * @param namespace the namespace of the source products
+     * @return the compiled tree
+     */
+    static CompiledDecisionTree compile(final DecisionTreeNode root, final Namespace namespace) {
+        final List<DecisionTreeNode> nodes = new ArrayList<>();
+        final Map<DecisionTreeNode, Integer> index = new IdentityHashMap<>();
+        nodes.add(root);
+        index.put(root, 0);
+        for (int i = 0; i < nodes.size(); ++i) {
+            final DecisionTreeNode n = nodes.get(i);
+            if (!n.isLeaf()) {
+                for (DecisionTreeNode child : new DecisionTreeNode[]{n.getTrueNode(), n.getFalseNode()}) {
+                    if (child == null) {
+                        throw new OperatorException("Decision node " + n.getExpression() + " must have two branches");
+                    }
+                    if (index.containsKey(child)) {
+                        throw new OperatorException("Decision tree must not contain cycles or shared nodes");
+                    }
+                    index.put(child, nodes.size());
+                    nodes.add(child);
+                }
+            }
+        }
+        return new CompiledDecisionTree(nodes, index, namespace);
+    }
+
+    /**
+     * @return the raster symbols referenced by all expressions, to be given the source data of each tile
+     */
+    RasterDataSymbol[] getSymbols() {
+        return symbols;
+    }
+
+    int getNumNodes() {
+        return terms.length;
+    }
+
+    /**
+     * Classify a row of pixels
+     *
+     * @param env        the evaluation environment of the tile
+     * @param rowStart   the element index of the first pixel of the row
+     * @param width      the number of pixels
+     * @param nodeIndex  work array of at least width elements
+     * @param nodeCount  work array of at least getNumNodes() elements
+     * @param values     the leaf value of each pixel (output)
+     */
+    void evaluateRow(final RasterDataEvalEnv env, final int rowStart, final int width,
+                     final int[] nodeIndex, final int[] nodeCount, final double[] values) {
+
+        Arrays.fill(nodeIndex, 0, width, 0);
+        Arrays.fill(nodeCount, 0);
+        nodeCount[0] = width;
+
+        for (int n = 0; n < terms.length; ++n) {
+            if (trueNode[n] < 0 || nodeCount[n] == 0) {
+                continue;
+            }
+            final Term term = terms[n];
+            final int t = trueNode[n], f = falseNode[n];
+            int numTrue = 0;
+            for (int i = 0; i < width; ++i) {
+                if (nodeIndex[i] == n) {
+                    env.setElemIndex(rowStart + i);
+                    if (term.evalB(env)) {
+                        nodeIndex[i] = t;
+                        ++numTrue;
+                    } else {
+                        nodeIndex[i] = f;
+                    }
+                }
+            }
+            nodeCount[t] += numTrue;
+            nodeCount[f] += nodeCount[n] - numTrue;
+        }
+
+        for (int i = 0; i < width; ++i) {
+            final int n = nodeIndex[i];
+            if (constant[n]) {
+                values[i] = constantValue[n];
+            } else {
+                env.setElemIndex(rowStart + i);
+                values[i] = terms[n].evalD(env);
+            }
+        }
+    }
+}
@@ -9,7 +9,6 @@ import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.IndexCoding;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
-import org.esa.snap.core.dataop.barithm.BandArithmetic;
 import org.esa.snap.core.dataop.barithm.RasterDataEvalEnv;
 import org.esa.snap.core.dataop.barithm.RasterDataSymbol;
 import org.esa.snap.core.gpf.Operator;
@@ -21,18 +20,14 @@ import org.esa.snap.core.gpf.annotations.Parameter;
 import org.esa.snap.core.gpf.annotations.SourceProducts;
 import org.esa.snap.core.gpf.annotations.TargetProduct;
 import org.esa.snap.core.jexp.Namespace;
-import org.esa.snap.core.jexp.ParseException;
-import org.esa.snap.core.jexp.Parser;
-import org.esa.snap.core.jexp.Term;
-import org.esa.snap.core.jexp.impl.ParserImpl;
 import org.esa.snap.core.util.ProductUtils;
 import org.esa.snap.core.util.StringUtils;
+import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Perform decision tree classification of a given product
@@ -56,6 +51,11 @@ public final class DecisionTreeOp extends Operator {
     private Product[] availableProducts;
     private ProductSetNamespace namespaceManager;
 
+    // the terms hold the tile data of their symbols, so each thread uses its own compiled tree
+    private ThreadLocal<CompiledDecisionTree> compiledTree;
+    private final AtomicLong numPixelsEvaluated = new AtomicLong();
+    private final AtomicLong evaluationNanos = new AtomicLong();
+
     private String targetBandName = "classes";
 
     static {
@@ -90,6 +90,11 @@ public final class DecisionTreeOp extends Operator {
 
             namespaceManager = new ProductSetNamespace(availableProducts);
 
+            // compile once here to report invalid expressions before any tile is computed
+            final CompiledDecisionTree tree = compileTree();
+            compiledTree = ThreadLocal.withInitial(this::compileTree);
+            compiledTree.set(tree);
+
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
         }
@@ -177,25 +182,17 @@ public final class DecisionTreeOp extends Operator {
         final RasterDataEvalEnv env = new RasterDataEvalEnv(rect.x, rect.y, rect.width, rect.height);
 
         try {
-            final Map<DecisionTreeNode, Term> termMap = new HashMap<>();
-            for (DecisionTreeNode n : decisionTree) {
-                if (n.getExpression().isEmpty())
-                    throw new OperatorException("Decision node cannot be empty");
-
-                final Term term = createTerm(n.getExpression());
-                if (!n.isLeaf() && term.getRetType() != Term.TYPE_B) {
-                    throw new Exception("Node " + n.getExpression() + " is not a boolean expression");
-                }
-
-                final RasterDataSymbol[] refRasterDataSymbols = BandArithmetic.getRefRasterDataSymbols(term);
-                for (RasterDataSymbol symbol : refRasterDataSymbols) {
-                    final Tile tile = getSourceTile(symbol.getRaster(), rect);
-                    symbol.setData(tile.getRawSamples());
-                }
-
-                termMap.put(n, term);
+            final long start = System.nanoTime();
+            final CompiledDecisionTree tree = compiledTree.get();
+            for (RasterDataSymbol symbol : tree.getSymbols()) {
+                final Tile tile = getSourceTile(symbol.getRaster(), rect);
+                symbol.setData(tile.getRawSamples());
             }
-            final DecisionTreeNode treeRoot = decisionTree[0];
+
+            final ProductData trgData = targetTile.getDataBuffer();
+            final int[] nodeIndex = new int[rect.width];
+            final int[] nodeCount = new int[tree.getNumNodes()];
+            final double[] values = new double[rect.width];
 
             pm.beginTask("Evaluating expression", rect.height);
             int pixelIndex = 0;
@@ -203,28 +200,19 @@ public final class DecisionTreeOp extends Operator {
                 if (pm.isCanceled()) {
                     break;
                 }
-                for (int x = rect.x; x < rect.x + rect.width; x++) {
-                    env.setElemIndex(pixelIndex);
-
-                    DecisionTreeNode node = treeRoot;
-                    while (!node.isLeaf()) {
-                        final Term term = termMap.get(node);
-
-                        if (term.evalB(env)) {
-                            node = node.getTrueNode();
-                        } else {
-                            node = node.getFalseNode();
-                        }
-                    }
+                tree.evaluateRow(env, pixelIndex, rect.width, nodeIndex, nodeCount, values);
 
-                    final Term term = termMap.get(node);
-                    double val = term.evalD(env);
-                    targetTile.setSample(x, y, val);
-                    pixelIndex++;
+                final int rowIndex = targetTile.getDataBufferIndex(rect.x, y);
+                for (int i = 0; i < rect.width; i++) {
+                    trgData.setElemDoubleAt(rowIndex + i, values[i]);
                 }
+                pixelIndex += rect.width;
                 pm.worked(1);
             }
 
+            numPixelsEvaluated.addAndGet(pixelIndex);
+            evaluationNanos.addAndGet(System.nanoTime() - start);
+
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
         } finally {
@@ -232,16 +220,33 @@ public final class DecisionTreeOp extends Operator {
         }
     }
 
-    private Term createTerm(final String expression) {
+    private CompiledDecisionTree compileTree() {
         final Namespace namespace = namespaceManager.createNamespace(0);
-        final Term term;
-        try {
-            final Parser parser = new ParserImpl(namespace, false);
-            term = parser.parse(expression);
-        } catch (ParseException e) {
-            throw new OperatorException("Could not parse expression: " + expression, e);
+        return CompiledDecisionTree.compile(decisionTree[0], namespace);
+    }
+
+    /**
+     * @return the number of pixels classified so far
+     */
+    public long getNumPixelsEvaluated() {
+        return numPixelsEvaluated.get();
+    }
+
+    /**
+     * @return the number of pixels classified per second of tile computation, summed over all threads
+     */
+    public double getEvaluationRate() {
+        final long nanos = evaluationNanos.get();
+        return nanos == 0 ? 0.0 : numPixelsEvaluated.get() * 1.0e9 / nanos;
+    }
+
+    @Override
+    public void dispose() {
+        if (numPixelsEvaluated.get() > 0) {
+            SystemUtils.LOG.fine("DecisionTree: " + numPixelsEvaluated.get() + " pixels evaluated at " +
+                                         (long) getEvaluationRate() + " pixels/s");
         }
-        return term;
+        super.dispose();
     }
 
     public static class TreeNodeConverter implements Converter<DecisionTreeNode> {
@@ -44,6 +44,7 @@ import org.esa.snap.engine_utilities.gpf.TileIndex;
 import java.awt.Rectangle;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.math3.special.Gamma.*;
 
@@ -120,6 +121,8 @@ public class AdaptiveThresholdingOp extends Operator {
     private final static double MAX_SOURCE_VALUE = 2.0; // TODO: fine tune?
     private final static int MAX_EVAL = 2000; // TODO: fine tune?
     private final static double DESIRED_ACCURACY = 1.0e-15; // TODO: This should depend on pfa
+    private final static double K_DISTRIBUTION_STEPS = 100.0; // quantisation steps of log(mu) and log(nu)
+    private final Map<Long, Double> kDistributionThresholds = new ConcurrentHashMap<>();
 
     @Override
     public void initialize() throws OperatorException {
@@ -316,6 +319,7 @@ public class AdaptiveThresholdingOp extends Operator {
             final float[] data = sourceTile.getDataBufferFloat();
 
             final double noDataValue = sourceBand.getNoDataValue();
+            final SummedAreaTable sat = new SummedAreaTable(data, w, h, noDataValue);
 
             double backgroundThreshold = 0;
             if (estimateBackground) {
@@ -329,7 +333,7 @@ public class AdaptiveThresholdingOp extends Operator {
                 trgIndex.calculateStride(ty);
                 for (int tx = tx0; tx < maxx; tx++) {
                     //System.out.println("ty = " + ty + " tx = " + tx);
-                    final double targetMean = computeTargetMean(tx, ty, data, x0, y0, w, h, noDataValue);
+                    final double targetMean = computeTargetMean(tx, ty, data, sat, x0, y0, w, h, noDataValue);
                     if (noDataValue == targetMean) {
                         trgData.setElemIntAt(trgIndex.getIndex(tx), 0);
                         continue;
@@ -340,15 +344,9 @@ public class AdaptiveThresholdingOp extends Operator {
                             trgData.setElemIntAt(trgIndex.getIndex(tx), 0);
                             continue;
                         }
-                        backgroundThreshold = computeBackgroundThreshold(tx, ty, data, x0, y0, w, h, noDataValue);
-
-                        // DEBUG...
-                        /*
-                        double oldT = computeBackgroundThreshold(tx, ty, data, x0, y0, w, h, noDataValue);
-                        System.out.println("DEBUG: tx = " + tx + " ty = " + ty + ": backgroundThreshold = " + backgroundThreshold
-                                + " oldT = " + oldT + " targetMean = " + targetMean);
-                        */
-                        // ...DEBUG
+                        backgroundThreshold = doKDistribution ?
+                                computeBackgroundThreshold1(tx, ty, sat, x0, y0, w, h) :
+                                computeBackgroundThreshold(tx, ty, sat, x0, y0, w, h);
                     }
                     if (targetMean > backgroundThreshold) {
                         trgData.setElemIntAt(trgIndex.getIndex(tx), 1);
@@ -371,10 +369,11 @@ public class AdaptiveThresholdingOp extends Operator {
      * @param tx          The x coordinate of the central point of the target window.
      * @param ty          The y coordinate of the central point of the target window.
      * @param data        The source tile data array.
+     * @param sat         The summed-area tables of the source tile.
      * @param noDataValue
      * @return The mean value.
      */
-    private double computeTargetMean(final int tx, final int ty, final float[] data,
+    private double computeTargetMean(final int tx, final int ty, final float[] data, final SummedAreaTable sat,
                                      final int xx0, int yy0, int width, int height, final double noDataValue) {
 
         int index = ((ty - yy0) * width) + (tx - xx0);
@@ -389,89 +388,35 @@ public class AdaptiveThresholdingOp extends Operator {
 
         final int x0 = Math.max((tx - xx0) - halfTargetWindowSize, 0);
         final int y0 = Math.max((ty - yy0) - halfTargetWindowSize, 0);
-        final int w = Math.min((tx - xx0) + halfTargetWindowSize, width - 1) - x0 + 1;
-        final int h = Math.min((ty - yy0) + halfTargetWindowSize, height - 1) - y0 + 1;
+        final int x1 = Math.min((tx - xx0) + halfTargetWindowSize, width - 1);
+        final int y1 = Math.min((ty - yy0) + halfTargetWindowSize, height - 1);
 
-        double mean = 0.0;
-        int numPixels = 0;
-        int nodataCnt = 0;
-
-        final int maxy = y0 + h;
-        final int maxx = x0 + w;
-        for (int y = y0; y < maxy; y++) {
-            int yWidth = y * width;
-            for (int x = x0; x < maxx; x++) {
-                final double val = data[yWidth + x];
-
-                if (noDataValue == val) {
-                    nodataCnt++;
-                } else {
-                    mean += val;
-                    ++numPixels;
-                }
-            }
-        }
+        final int numPixels = sat.getCount(x0, y0, x1, y1);
+        final int nodataCnt = (x1 - x0 + 1) * (y1 - y0 + 1) - numPixels;
 
-        if(nodataCnt > (0.1 * w*h)) {
+        if(nodataCnt > (0.1 * (x1 - x0 + 1) * (y1 - y0 + 1))) {
             return noDataValue;
         }
-        return mean / numPixels;
+        return sat.getSum(x0, y0, x1, y1) / numPixels;
     }
 
     /**
-     * Compute the standard deviation value for pixels in the background window.
+     * Compute the threshold from the mean and standard deviation of the pixels in the background window.
      *
-     * @param tx          The x coordinate of the central point of the background window.
-     * @param ty          The y coordinate of the central point of the background window.
-     * @param noDataValue no data value
-     * @return The std value.
+     * @param tx  The x coordinate of the central point of the background window.
+     * @param ty  The y coordinate of the central point of the background window.
+     * @param sat The summed-area tables of the source tile.
+     * @return The threshold.
      */
-    private double computeBackgroundThreshold(final int tx, final int ty, final float[] data,
-                                              final int xx0, int yy0, int width, int height, final double noDataValue) {
-
-        final int x0 = Math.max((tx - xx0) - halfBackgroundWindowSize, 0);
-        final int y0 = Math.max((ty - yy0) - halfBackgroundWindowSize, 0);
-        final int w = Math.min((tx - xx0) + halfBackgroundWindowSize, width - 1) - x0 + 1;
-        final int h = Math.min((ty - yy0) + halfBackgroundWindowSize, height - 1) - y0 + 1;
-
-        // Compute the mean value for pixels in the background window.
-        double sum = 0.0;
-        double val;
-        final int maxy = y0 + h;
-        final int maxx = x0 + w;
-
-        final double[] dataArray = new double[w * h];
-        int numValues = 0;
-
-        for (int y = y0; y < maxy; y++) {
-            final int yy = y - (ty - yy0);
-            final int yWidth = y * width;
-            final boolean yGtrHalfGuard = ((yy < 0) ? -yy : yy) > halfGuardWindowSize;
-            for (int x = x0; x < maxx; x++) {
-                final int xx = x - (tx - xx0);
-                if (yGtrHalfGuard || ((xx < 0) ? -xx : xx) > halfGuardWindowSize) {
-                    val = data[yWidth + x];
-                    if (noDataValue != val) {// && val < backgroundThreshold) {
-                        sum += val;
-                        dataArray[numValues] = val;
-                        numValues++;
-                    }
-                }
-            }
-        }
-        final double mean = sum / numValues;
+    private double computeBackgroundThreshold(final int tx, final int ty, final SummedAreaTable sat,
+                                              final int xx0, int yy0, int width, int height) {
 
-        // Compute the standard deviation value for pixels in the background window.
-        double std = 0.0;
-        double tmp;
-        for (int i=0; i < numValues; ++i) {
-            tmp = dataArray[i] - mean;
-            std += tmp * tmp;
+        final double[] stats = new double[3]; // <x>, <x^2> and sigma
+        if (!computeBackgroundStatistics(tx, ty, sat, xx0, yy0, width, height, stats)) {
+            return Double.MAX_VALUE;
         }
 
-        final double backgroundSTD = Math.sqrt(std / numValues);
-
-        return mean + backgroundSTD * t;
+        return stats[0] + stats[2] * t;
     }
 
     private double computeBackgroundThreshold(final float[] data, final double noDataValue) {
@@ -576,74 +521,47 @@ public class AdaptiveThresholdingOp extends Operator {
 
     /**
      * Compute the mean, square mean and standard deviation values in the background window (ring).
+     * The ring is the background window without the guard window, evaluated from the summed-area tables.
      *
      * @param tx          The x coordinate of the central point of the target window.
      * @param ty          The y coordinate of the central point of the target window.
-     * @param data        The source tile data array.
+     * @param sat         The summed-area tables of the source tile.
      * @param xx0         The x coordinate of the top left pixel of the source tile.
      * @param yy0         The y coordinate of the top left pixel of the source tile.
      * @param width       The width of the source tile.
      * @param height      The height of the source tile.
-     * @param noDataValue Value representing no data available.
      * @param stats       The mean, mean of square and standard deviation values (output).
      * @return 'true' if successful
      */
-    private boolean computeBackgroundStatistics(final int tx, final int ty, final float[] data,
+    private boolean computeBackgroundStatistics(final int tx, final int ty, final SummedAreaTable sat,
                                                 final int xx0, int yy0, int width, int height,
-                                                final double noDataValue, final double[] stats) {
+                                                final double[] stats) {
 
         // stats[0] = mean = <x>
         // stats[1] = mean of x^2 = <x^2>
         // stats[2] = standard deviation sigma
 
-        final int x0 = Math.max((tx - xx0) - halfBackgroundWindowSize, 0);
-        final int y0 = Math.max((ty - yy0) - halfBackgroundWindowSize, 0);
-        final int w = Math.min((tx - xx0) + halfBackgroundWindowSize, width - 1) - x0 + 1;
-        final int h = Math.min((ty - yy0) + halfBackgroundWindowSize, height - 1) - y0 + 1;
+        final int xc = tx - xx0;
+        final int yc = ty - yy0;
+        final int x0 = Math.max(xc - halfBackgroundWindowSize, 0);
+        final int y0 = Math.max(yc - halfBackgroundWindowSize, 0);
+        final int x1 = Math.min(xc + halfBackgroundWindowSize, width - 1);
+        final int y1 = Math.min(yc + halfBackgroundWindowSize, height - 1);
 
-        // Compute the mean <x> and mean of square <x^2> values for pixels in the background window.
-        double sum = 0.0;
-        double sumsq = 0.0;
-        double val;
-        final int maxy = y0 + h;
-        final int maxx = x0 + w;
-
-        final double[] dataArray = new double[w * h];
-        int numValues = 0;
-
-        for (int y = y0; y < maxy; y++) {
-            final int yy = y - (ty - yy0);
-            final int yWidth = y * width;
-            final boolean yGtrHalfGuard = ((yy < 0) ? -yy : yy) > halfGuardWindowSize;
-            for (int x = x0; x < maxx; x++) {
-                final int xx = x - (tx - xx0);
-                if (yGtrHalfGuard || ((xx < 0) ? -xx : xx) > halfGuardWindowSize) {
-                    val = data[yWidth + x];
-                    if (noDataValue != val) {// && val < backgroundThreshold) {
-                        sum += val;
-                        sumsq += (val * val);
-                        dataArray[numValues] = val;
-                        numValues++;
-                    }
-                }
-            }
-        }
+        sat.getRingStatistics(x0, y0, x1, y1,
+                              xc - halfGuardWindowSize, yc - halfGuardWindowSize,
+                              xc + halfGuardWindowSize, yc + halfGuardWindowSize, stats);
 
+        final double numValues = stats[0];
         if (numValues == 0) {
             return false;
         }
 
-        final double mean = sum / numValues;
+        final double mean = stats[1] / numValues;
+        final double meanSq = stats[2] / numValues;
         stats[0] = mean;
-        stats[1] = sumsq / numValues;
-
-        double std = 0.0;
-        double tmp;
-        for (int i=0; i < numValues; ++i) {
-            tmp = dataArray[i] - mean;
-            std += tmp * tmp;
-        }
-        stats[2] = Math.sqrt(std / numValues);
+        stats[1] = meanSq;
+        stats[2] = Math.sqrt(Math.max(meanSq - mean * mean, 0.0));
 
         return true;
     }
@@ -838,15 +756,36 @@ public class AdaptiveThresholdingOp extends Operator {
         return spdf;
     }
 
-    private double computeBackgroundThreshold1(final int tx, final int ty, final float[] data,
-                                               final int xx0, int yy0, int width, int height, final double noDataValue) {
+    /**
+     * Get the threshold of the K-distribution for given mu and nu. The parameters are quantised
+     * on a logarithmic scale and the thresholds memoised, as neighbouring background windows give
+     * nearly the same distribution and each threshold needs many numerical integrations.
+     */
+    private double computeKDistributionThreshold(final double mu, final double nu, final int tx, final int ty) {
+
+        final long qMu = Math.round(Math.log(mu) * K_DISTRIBUTION_STEPS);
+        final long qNu = Math.round(Math.log(nu) * K_DISTRIBUTION_STEPS);
+        final Long key = (qMu << 32) ^ (qNu & 0xFFFFFFFFL);
+
+        Double threshold = kDistributionThresholds.get(key);
+        if (threshold == null) {
+            final KDistributionPDF pdf = getScaledKDistribution(Math.exp(qMu / K_DISTRIBUTION_STEPS),
+                                                                Math.exp(qNu / K_DISTRIBUTION_STEPS));
+            threshold = pdf == null ? Double.MAX_VALUE : computeT(pdf, tx, ty);
+            kDistributionThresholds.put(key, threshold);
+        }
+        return threshold;
+    }
+
+    private double computeBackgroundThreshold1(final int tx, final int ty, final SummedAreaTable sat,
+                                               final int xx0, int yy0, int width, int height) {
 
         // Estimate mu and nu
         // mu = <x>
         // (1 + 1/nu)(1 + 1/L) = <x^2> / <x>^2
         // L is numLooks
         final double[] stats = new double[3]; // <x>, <x^2> and sigma
-        final boolean ok = computeBackgroundStatistics(tx, ty, data, xx0, yy0, width, height, noDataValue, stats);
+        final boolean ok = computeBackgroundStatistics(tx, ty, sat, xx0, yy0, width, height, stats);
         if (!ok) {
             return Double.MAX_VALUE;
         }
@@ -857,14 +796,14 @@ public class AdaptiveThresholdingOp extends Operator {
         final double tmp2 = 1.0 + (1.0 / (double) numLooks);
         final double nu = 1.0 / ((tmp1 / tmp2) - 1.0);
 
-        final UnivariateFunction pdf = (nu < 0.0) ? new Chi2DistributionPDF((double) numLooks, stats[2]) :
-                                                    getScaledKDistribution(mu, nu);
-
-        if (pdf == null) {
+        if (nu < 0.0) {
+            return computeT(new Chi2DistributionPDF((double) numLooks, stats[2]), tx, ty);
+        }
+        if (mu <= 0.0 || Double.isInfinite(nu)) {
             return Double.MAX_VALUE;
         }
 
-        return computeT(pdf, tx, ty);
+        return computeKDistributionThreshold(mu, nu, tx, ty);
     }
 
 
@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.oceantools;
+
+import org.esa.snap.core.util.ThreadExecutor;
+import org.esa.snap.core.util.ThreadRunnable;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scene wide 8-connected component labelling of a binary mask.
+ * <p>
+ * Each tile of a regular grid is labelled independently and in parallel with a two-pass union-find.
+ * Only the statistics of the tile components and the labels along the tile borders are kept. The border
+ * equivalences are then merged into scene components, so an object crossing tile borders yields a single
+ * component. The pixel labels of a tile are recomputed on demand with {@link #labelRectangle}.
+ */
+public class ConnectedComponentLabelling {
+
+    /**
+     * Reads the mask of a rectangle, row major. Non-zero values are object pixels.
+     */
+    public interface MaskReader {
+        byte[] read(Rectangle rect) throws Exception;
+    }
+
+    /**
+     * Statistics of one component, accumulated while labelling
+     */
+    public static class Component {
+        public int numPixels = 0;
+        public int xMin = Integer.MAX_VALUE;
+        public int xMax = Integer.MIN_VALUE;
+        public int yMin = Integer.MAX_VALUE;
+        public int yMax = Integer.MIN_VALUE;
+        public double sumX = 0;
+        public double sumY = 0;
+
+        void add(final int x, final int y) {
+            ++numPixels;
+            if (x < xMin) xMin = x;
+            if (x > xMax) xMax = x;
+            if (y < yMin) yMin = y;
+            if (y > yMax) yMax = y;
+            sumX += x;
+            sumY += y;
+        }
+
+        void add(final Component c) {
+            numPixels += c.numPixels;
+            xMin = Math.min(xMin, c.xMin);
+            xMax = Math.max(xMax, c.xMax);
+            yMin = Math.min(yMin, c.yMin);
+            yMax = Math.max(yMax, c.yMax);
+            sumX += c.sumX;
+            sumY += c.sumY;
+        }
+
+        public double getCentreX() {
+            return sumX / numPixels;
+        }
+
+        public double getCentreY() {
+            return sumY / numPixels;
+        }
+    }
+
+    private static class TileLabels {
+        final Component[] components;
+        final int[] top, bottom, left, right;
+        int[] localToScene;
+
+        TileLabels(final Component[] components, final int[] labels, final int w, final int h) {
+            this.components = components;
+            top = new int[w];
+            bottom = new int[w];
+            left = new int[h];
+            right = new int[h];
+            System.arraycopy(labels, 0, top, 0, w);
+            System.arraycopy(labels, (h - 1) * w, bottom, 0, w);
+            for (int y = 0; y < h; ++y) {
+                left[y] = labels[y * w];
+                right[y] = labels[y * w + w - 1];
+            }
+        }
+    }
+
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int numTilesX;
+    private final int numTilesY;
+    private final Rectangle[] tileRectangles;
+    private final TileLabels[] tileLabels;
+    private final List<Component> components = new ArrayList<>();
+
+    public ConnectedComponentLabelling(final int width, final int height, final int tileWidth, final int tileHeight) {
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.numTilesX = (width + tileWidth - 1) / tileWidth;
+        this.numTilesY = (height + tileHeight - 1) / tileHeight;
+
+        final Rectangle scene = new Rectangle(0, 0, width, height);
+        tileRectangles = new Rectangle[numTilesX * numTilesY];
+        for (int ty = 0; ty < numTilesY; ++ty) {
+            for (int tx = 0; tx < numTilesX; ++tx) {
+                tileRectangles[ty * numTilesX + tx] =
+                        new Rectangle(tx * tileWidth, ty * tileHeight, tileWidth, tileHeight).intersection(scene);
+            }
+        }
+        tileLabels = new TileLabels[tileRectangles.length];
+    }
+
+    /**
+     * Labels the whole scene, reading and labelling the tiles in parallel
+     */
+    public void label(final MaskReader reader) throws Exception {
+
+        final Exception[] error = new Exception[1];
+        final ThreadExecutor executor = new ThreadExecutor();
+        for (int i = 0; i < tileRectangles.length; ++i) {
+            final int tileIndex = i;
+            final ThreadRunnable worker = new ThreadRunnable() {
+
+                @Override
+                public void process() {
+                    try {
+                        final Rectangle rect = tileRectangles[tileIndex];
+                        final int[] labels = new int[rect.width * rect.height];
+                        final Component[] tileComponents = labelTile(reader.read(rect), rect, labels);
+                        final TileLabels result = new TileLabels(tileComponents, labels, rect.width, rect.height);
+                        synchronized (tileLabels) {
+                            tileLabels[tileIndex] = result;
+                        }
+                    } catch (Exception e) {
+                        synchronized (error) {
+                            error[0] = e;
+                        }
+                    }
+                }
+            };
+            executor.execute(worker);
+        }
+        executor.complete();
+
+        synchronized (error) {
+            if (error[0] != null) {
+                throw error[0];
+            }
+        }
+        synchronized (tileLabels) {
+            mergeTiles();
+        }
+    }
+
+    /**
+     * @return one entry per connected object in the scene
+     */
+    public List<Component> getComponents() {
+        return Collections.unmodifiableList(components);
+    }
+
+    /**
+     * Labels a rectangle of the scene with the scene component indices. The tiles overlapping the
+     * rectangle are labelled again, so {@link #label} must have been called before.
+     *
+     * @param reader reader of the mask
+     * @param rect   the rectangle
+     * @param out    receives the index into {@link #getComponents()} or -1 for background, row major
+     */
+    public void labelRectangle(final MaskReader reader, final Rectangle rect, final int[] out) throws Exception {
+        final int tx0 = rect.x / tileWidth, tx1 = (rect.x + rect.width - 1) / tileWidth;
+        final int ty0 = rect.y / tileHeight, ty1 = (rect.y + rect.height - 1) / tileHeight;
+        for (int ty = ty0; ty <= ty1; ++ty) {
+            for (int tx = tx0; tx <= tx1; ++tx) {
+                final int tileIndex = ty * numTilesX + tx;
+                final Rectangle tileRect = tileRectangles[tileIndex];
+                final int[] labels = new int[tileRect.width * tileRect.height];
+                labelTile(reader.read(tileRect), tileRect, labels);
+
+                final int[] localToScene = tileLabels[tileIndex].localToScene;
+                final Rectangle common = tileRect.intersection(rect);
+                for (int y = common.y; y < common.y + common.height; ++y) {
+                    for (int x = common.x; x < common.x + common.width; ++x) {
+                        final int label = labels[(y - tileRect.y) * tileRect.width + x - tileRect.x];
+                        out[(y - rect.y) * rect.width + x - rect.x] = label < 0 ? -1 : localToScene[label];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Two-pass labelling of a single tile.
+     *
+     * @return the tile components, indexed by the dense labels written to labels
+     */
+    static Component[] labelTile(final byte[] mask, final Rectangle rect, final int[] labels) {
+        final int w = rect.width, h = rect.height;
+        int[] parent = new int[64];
+        int numLabels = 0;
+
+        // first pass: provisional labels from the already visited neighbours W, NW, N and NE
+        for (int y = 0; y < h; ++y) {
+            final int row = y * w;
+            for (int x = 0; x < w; ++x) {
+                final int idx = row + x;
+                if (mask[idx] == 0) {
+                    labels[idx] = -1;
+                    continue;
+                }
+                int label = -1;
+                if (x > 0) {
+                    label = join(label, labels[idx - 1], parent);
+                }
+                if (y > 0) {
+                    if (x > 0) {
+                        label = join(label, labels[idx - w - 1], parent);
+                    }
+                    label = join(label, labels[idx - w], parent);
+                    if (x < w - 1) {
+                        label = join(label, labels[idx - w + 1], parent);
+                    }
+                }
+                if (label < 0) {
+                    if (numLabels == parent.length) {
+                        parent = Arrays.copyOf(parent, parent.length * 2);
+                    }
+                    label = numLabels;
+                    parent[numLabels] = numLabels;
+                    ++numLabels;
+                }
+                labels[idx] = label;
+            }
+        }
+
+        // second pass: resolve to dense labels and accumulate the statistics
+        final int[] dense = new int[numLabels];
+        int numComponents = 0;
+        for (int i = 0; i < numLabels; ++i) {
+            final int root = find(i, parent);
+            dense[i] = root == i ? numComponents++ : -1;
+        }
+        final Component[] tileComponents = new Component[numComponents];
+        for (int i = 0; i < numComponents; ++i) {
+            tileComponents[i] = new Component();
+        }
+        for (int y = 0; y < h; ++y) {
+            final int row = y * w;
+            for (int x = 0; x < w; ++x) {
+                final int idx = row + x;
+                if (labels[idx] >= 0) {
+                    final int label = dense[find(labels[idx], parent)];
+                    labels[idx] = label;
+                    tileComponents[label].add(rect.x + x, rect.y + y);
+                }
+            }
+        }
+        return tileComponents;
+    }
+
+    private static int join(final int label, final int neighbour, final int[] parent) {
+        if (neighbour < 0) {
+            return label;
+        }
+        if (label < 0) {
+            return find(neighbour, parent);
+        }
+        return union(label, neighbour, parent);
+    }
+
+    private static int find(int i, final int[] parent) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * @return the common root, always the smaller one
+     */
+    private static int union(final int a, final int b, final int[] parent) {
+        final int rootA = find(a, parent);
+        final int rootB = find(b, parent);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+            return rootA;
+        }
+        parent[rootA] = rootB;
+        return rootB;
+    }
+
+    private void mergeTiles() {
+        final int[] base = new int[tileLabels.length + 1];
+        for (int i = 0; i < tileLabels.length; ++i) {
+            base[i + 1] = base[i] + tileLabels[i].components.length;
+        }
+        final int[] parent = new int[base[tileLabels.length]];
+        for (int i = 0; i < parent.length; ++i) {
+            parent[i] = i;
+        }
+
+        for (int ty = 0; ty < numTilesY; ++ty) {
+            for (int tx = 0; tx < numTilesX; ++tx) {
+                final int tile = ty * numTilesX + tx;
+                final TileLabels a = tileLabels[tile];
+                if (tx + 1 < numTilesX) {
+                    // right neighbour, 8-connected across the vertical border
+                    final TileLabels b = tileLabels[tile + 1];
+                    final int n = a.right.length;
+                    for (int y = 0; y < n; ++y) {
+                        if (a.right[y] < 0) {
+                            continue;
+                        }
+                        for (int dy = -1; dy <= 1; ++dy) {
+                            if (y + dy >= 0 && y + dy < n && b.left[y + dy] >= 0) {
+                                union(base[tile] + a.right[y], base[tile + 1] + b.left[y + dy], parent);
+                            }
+                        }
+                    }
+                }
+                if (ty + 1 < numTilesY) {
+                    // bottom neighbour, 8-connected across the horizontal border
+                    final int below = tile + numTilesX;
+                    final TileLabels b = tileLabels[below];
+                    final int n = a.bottom.length;
+                    for (int x = 0; x < n; ++x) {
+                        if (a.bottom[x] < 0) {
+                            continue;
+                        }
+                        for (int dx = -1; dx <= 1; ++dx) {
+                            if (x + dx >= 0 && x + dx < n && b.top[x + dx] >= 0) {
+                                union(base[tile] + a.bottom[x], base[below] + b.top[x + dx], parent);
+                            }
+                        }
+                    }
+                    // diagonal neighbours meeting at the tile corners
+                    if (tx + 1 < numTilesX) {
+                        final int l1 = a.bottom[n - 1], l2 = tileLabels[below + 1].top[0];
+                        if (l1 >= 0 && l2 >= 0) {
+                            union(base[tile] + l1, base[below + 1] + l2, parent);
+                        }
+                    }
+                    if (tx > 0) {
+                        final TileLabels c = tileLabels[below - 1];
+                        final int l1 = a.bottom[0], l2 = c.top[c.top.length - 1];
+                        if (l1 >= 0 && l2 >= 0) {
+                            union(base[tile] + l1, base[below - 1] + l2, parent);
+                        }
+                    }
+                }
+            }
+        }
+
+        // one scene component per root, statistics merged from all tile components
+        components.clear();
+        final int[] sceneIndex = new int[parent.length];
+        Arrays.fill(sceneIndex, -1);
+        for (int i = 0; i < parent.length; ++i) {
+            final int root = find(i, parent);
+            if (sceneIndex[root] < 0) {
+                sceneIndex[root] = components.size();
+                components.add(new Component());
+            }
+        }
+        for (int tile = 0; tile < tileLabels.length; ++tile) {
+            final TileLabels t = tileLabels[tile];
+            t.localToScene = new int[t.components.length];
+            for (int i = 0; i < t.components.length; ++i) {
+                final int index = sceneIndex[find(base[tile] + i, parent)];
+                t.localToScene[i] = index;
+                components.get(index).add(t.components[i]);
+            }
+        }
+    }
+}
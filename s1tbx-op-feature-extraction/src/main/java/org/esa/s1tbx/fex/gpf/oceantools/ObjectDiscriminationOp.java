@@ -51,6 +51,7 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 
+import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.io.File;
 import java.io.IOException;
@@ -201,49 +202,44 @@ public class ObjectDiscriminationOp extends Operator {
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         try {
             final Rectangle targetTileRectangle = targetTile.getRectangle();
-            final int tx0 = targetTileRectangle.x;
-            final int ty0 = targetTileRectangle.y;
-            final int tw = targetTileRectangle.width;
-            final int th = targetTileRectangle.height;
-            //System.out.println("tx0 = " + tx0 + ", ty0 = " + ty0 + ", tw = " + tw + ", th = " + th);
-
-            final int x0 = Math.max(tx0 - 10, 0);
-            final int y0 = Math.max(ty0 - 10, 0);
-            final int w = Math.min(tw + 20, sourceImageWidth);
-            final int h = Math.min(th + 20, sourceImageHeight);
-            final Rectangle sourceTileRectangle = new Rectangle(x0, y0, w, h);
-            //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
-
             final Band sourceBand = sourceProduct.getBand(targetBand.getName());
-            final int[][] pixelsScanned = new int[h][w];
-            final List<ShipRecord> clusterList = new ArrayList<>();
-
-            final Tile bitMaskTile = getSourceTile(sourceBand, sourceTileRectangle);
-            final ProductData bitMaskData = bitMaskTile.getDataBuffer();
 
-            final TileIndex srcIndex = new TileIndex(bitMaskTile);    // src and trg tile are different size
+            discriminate(sourceBand);
 
-            final int maxy = ty0 + th;
-            final int maxx = tx0 + tw;
-            for (int ty = ty0; ty < maxy; ty++) {
-                srcIndex.calculateStride(ty);
-                for (int tx = tx0; tx < maxx; tx++) {
+            targetTile.setRawSamples(getSourceTile(sourceBand, targetTileRectangle).getRawSamples());
+        } catch (Throwable e) {
+            OperatorUtils.catchOperatorException(getId(), e);
+        }
+    }
 
-                    if (pixelsScanned[ty - y0][tx - x0] == 0) {
+    /**
+     * Clusters the detected pixels of the whole band once. Targets crossing tile borders are merged,
+     * so each target gives exactly one ship record.
+     *
+     * @param sourceBand The bit mask band.
+     * @throws Exception The exceptions.
+     */
+    private void discriminate(final Band sourceBand) throws Exception {
 
-                        if (bitMaskData.getElemIntAt(srcIndex.getIndex(tx)) == 1) {
+        synchronized (sourceBand) {
+            synchronized (bandClusterLists) {
+                if (bandClusterLists.containsKey(sourceBand.getName())) {
+                    return;
+                }
+            }
 
-                            final List<PixelPos> clusterPixels = new ArrayList<>();
-                            clustering(tx, ty, x0, y0, w, h, bitMaskData, bitMaskTile, pixelsScanned, clusterPixels);
+            final Dimension tileSize = getTileSize();
+            final ConnectedComponentLabelling labelling = new ConnectedComponentLabelling(
+                    sourceImageWidth, sourceImageHeight, tileSize.width, tileSize.height);
+            labelling.label(rect -> readMask(sourceBand, rect));
 
-                            final ShipRecord record = generateRecord(x0, y0, w, h, clusterPixels);
+            final List<ShipRecord> clusterList = new ArrayList<>();
+            for (ConnectedComponentLabelling.Component cluster : labelling.getComponents()) {
+                final ShipRecord record = generateRecord(cluster);
 
-                            final double size = Math.sqrt(record.length * record.length + record.width * record.width);
-                            if (size >= minTargetSizeInMeter && size <= maxTargetSizeInMeter) {
-                                clusterList.add(record);
-                            }
-                        }
-                    }
+                final double size = Math.sqrt(record.length * record.length + record.width * record.width);
+                if (size >= minTargetSizeInMeter && size <= maxTargetSizeInMeter) {
+                    clusterList.add(record);
                 }
             }
 
@@ -251,97 +247,51 @@ public class ObjectDiscriminationOp extends Operator {
                 AddShipRecordsAsVectors(clusterList);
             }
 
-            List<ShipRecord> shipRecordList = bandClusterLists.get(targetBand.getName());
-            if (shipRecordList == null) {
-                shipRecordList = new ArrayList<>();
-                bandClusterLists.put(targetBand.getName(), shipRecordList);
+            synchronized (bandClusterLists) {
+                bandClusterLists.put(sourceBand.getName(), clusterList);
             }
-            shipRecordList.addAll(clusterList);
-
-            targetTile.setRawSamples(getSourceTile(sourceBand, targetTileRectangle).getRawSamples());
-
             clusteringPerformed = true;
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException(getId(), e);
         }
     }
 
+    private Dimension getTileSize() {
+        final Dimension tileSize = targetProduct.getPreferredTileSize();
+        return tileSize != null ? tileSize : new Dimension(512, 512);
+    }
+
     /**
-     * Find pixels detected as target in a 3x3 window centered at a given point.
-     *
-     * @param xc            The x coordinate of the given point.
-     * @param yc            The y coordinate of the given point.
-     * @param x0            The x coordinate for the upper left corner point of the source rectangle.
-     * @param y0            The y coordinate for the upper left corner point of the source rectangle.
-     * @param w             The width of the source rectangle.
-     * @param h             The height of the source rectangle.
-     * @param bitMaskData   The bit maks band data.
-     * @param bitMaskTile   The bit mask band tile.
-     * @param pixelsScanned The binary array indicating which pixel in the tile has been scaned.
-     * @param clusterPixels The list of pixels in the cluster.
+     * Read the bit mask of a rectangle, 1 for pixels detected as target.
      */
-    private static void clustering(final int xc, final int yc, final int x0, final int y0, final int w, final int h,
-                                   final ProductData bitMaskData, final Tile bitMaskTile,
-                                   final int[][] pixelsScanned, List<PixelPos> clusterPixels) {
-
-        pixelsScanned[yc - y0][xc - x0] = 1;
-        clusterPixels.add(new PixelPos(xc, yc));
-
-        final int[] x = {xc - 1, xc, xc + 1, xc - 1, xc + 1, xc - 1, xc, xc + 1};
-        final int[] y = {yc - 1, yc - 1, yc - 1, yc, yc, yc + 1, yc + 1, yc + 1};
-
-        for (int i = 0; i < 8; i++) {
-
-            if (x[i] >= x0 && x[i] < x0 + w && y[i] >= y0 && y[i] < y0 + h &&
-                    pixelsScanned[y[i] - y0][x[i] - x0] == 0 &&
-                    bitMaskData.getElemIntAt(bitMaskTile.getDataBufferIndex(x[i], y[i])) == 1) {
-
-                clustering(x[i], y[i], x0, y0, w, h, bitMaskData, bitMaskTile, pixelsScanned, clusterPixels);
+    private byte[] readMask(final Band sourceBand, final Rectangle rect) {
+        final Tile bitMaskTile = getSourceTile(sourceBand, rect);
+        final ProductData bitMaskData = bitMaskTile.getDataBuffer();
+        final TileIndex srcIndex = new TileIndex(bitMaskTile);
+
+        final byte[] mask = new byte[rect.width * rect.height];
+        int k = 0;
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            srcIndex.calculateStride(y);
+            for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                mask[k++] = (byte) (bitMaskData.getElemIntAt(srcIndex.getIndex(x)) == 1 ? 1 : 0);
             }
         }
+        return mask;
     }
 
     /**
      * Generate a ship record for the detected cluster.
      *
-     * @param x0            The x coordinate for the upper left corner point of the source rectangle.
-     * @param y0            The y coordinate for the upper left corner point of the source rectangle.
-     * @param w             The width of the source rectangle.
-     * @param h             The height of the source rectangle.
-     * @param clusterPixels The list of pixels in the cluster.
+     * @param cluster The statistics of the cluster.
      * @return ShipRecord
      */
-    private ShipRecord generateRecord(final int x0, final int y0, final int w, final int h,
-                                      List<PixelPos> clusterPixels) {
-        int xMin = x0 + w - 1;
-        int xMax = x0;
-        int yMin = y0 + h - 1;
-        int yMax = y0;
-
-        for (PixelPos pixel : clusterPixels) {
-            if (pixel.x < xMin) {
-                xMin = (int) pixel.x;
-            }
-
-            if (pixel.x > xMax) {
-                xMax = (int) pixel.x;
-            }
-
-            if (pixel.y < yMin) {
-                yMin = (int) pixel.y;
-            }
-
-            if (pixel.y > yMax) {
-                yMax = (int) pixel.y;
-            }
-        }
+    private ShipRecord generateRecord(final ConnectedComponentLabelling.Component cluster) {
 
-        final double xMid = (xMin + xMax) / 2.0;
-        final double yMid = (yMin + yMax) / 2.0;
+        final double xMid = (cluster.xMin + cluster.xMax) / 2.0;
+        final double yMid = (cluster.yMin + cluster.yMax) / 2.0;
         final GeoPos geoPos = targetProduct.getSceneGeoCoding().getGeoPos(new PixelPos(xMid, yMid), null);
 
-        final double width = (xMax - xMin + 1) * rangeSpacing;
-        final double length = (yMax - yMin + 1) * azimuthSpacing;
+        final double width = (cluster.xMax - cluster.xMin + 1) * rangeSpacing;
+        final double length = (cluster.yMax - cluster.yMin + 1) * azimuthSpacing;
 
         return new ShipRecord((int) xMid, (int) yMid, geoPos.lat, geoPos.lon, width, length);
     }
@@ -18,7 +18,6 @@ package org.esa.s1tbx.fex.gpf.oceantools;
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.MetadataElement;
-import org.esa.snap.core.datamodel.PixelPos;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.gpf.Operator;
@@ -37,7 +36,9 @@ import org.esa.snap.engine_utilities.gpf.TileIndex;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The oil spill clustering and discrimination operator. The pixels detected as oil spill area are first
@@ -65,6 +66,8 @@ public class OilSpillClusteringOp extends Operator {
 
     private MetadataElement absRoot = null;
 
+    private final Map<Band, ConnectedComponentLabelling> bandLabelling = new HashMap<>();
+
     @Override
     public void initialize() throws OperatorException {
         try {
@@ -164,44 +167,20 @@ public class OilSpillClusteringOp extends Operator {
             final int tw = targetTileRectangle.width;
             final int th = targetTileRectangle.height;
             final ProductData trgData = targetTile.getDataBuffer();
-            //System.out.println("tx0 = " + tx0 + ", ty0 = " + ty0 + ", tw = " + tw + ", th = " + th);
-
-            final int x0 = Math.max(tx0 - minClusterSizeInPixels, 0);
-            final int y0 = Math.max(ty0 - minClusterSizeInPixels, 0);
-            final int w = Math.min(tw + 2 * minClusterSizeInPixels, sourceImageWidth);
-            final int h = Math.min(th + 2 * minClusterSizeInPixels, sourceImageHeight);
-            final Rectangle sourceTileRectangle = new Rectangle(x0, y0, w, h);
-            //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
 
             final Band sourceBand = sourceProduct.getBand(targetBand.getName());
-            final Tile sourceTile = getSourceTile(sourceBand, sourceTileRectangle);
-            final ProductData srcData = sourceTile.getDataBuffer();
-            final int[][] pixelsScaned = new int[h][w];
-
-            final TileIndex srcIndex = new TileIndex(sourceTile);
-
-            final int maxy = ty0 + th;
-            final int maxx = tx0 + tw;
-            for (int ty = ty0; ty < maxy; ty++) {
-
-                srcIndex.calculateStride(ty);
-                for (int tx = tx0; tx < maxx; tx++) {
-
-                    if (pixelsScaned[ty - y0][tx - x0] == 0 && srcData.getElemIntAt(srcIndex.getIndex(tx)) == 1) {
-
-                        final List<PixelPos> clusterPixels = new ArrayList<>();
-
-                        clustering(tx, ty, x0, y0, w, h, srcData, sourceTile, pixelsScaned, clusterPixels);
-
-                        if (clusterPixels.size() >= minClusterSizeInPixels) {
-                            for (PixelPos pixel : clusterPixels) {
-                                final int x = (int) pixel.x;
-                                final int y = (int) pixel.y;
-                                if (x >= tx0 && x < tx0 + tw && y >= ty0 && y < ty0 + th) {
-                                    trgData.setElemIntAt(targetTile.getDataBufferIndex(x, y), 1);
-                                }
-                            }
-                        }
+            final ConnectedComponentLabelling labelling = getLabelling(sourceBand);
+            final List<ConnectedComponentLabelling.Component> clusters = labelling.getComponents();
+
+            final int[] labels = new int[tw * th];
+            labelling.labelRectangle(rect -> readMask(sourceBand, rect), targetTileRectangle, labels);
+
+            int k = 0;
+            for (int ty = ty0; ty < ty0 + th; ty++) {
+                for (int tx = tx0; tx < tx0 + tw; tx++) {
+                    final int label = labels[k++];
+                    if (label >= 0 && clusters.get(label).numPixels >= minClusterSizeInPixels) {
+                        trgData.setElemIntAt(targetTile.getDataBufferIndex(tx, ty), 1);
                     }
                 }
             }
@@ -211,58 +190,54 @@ public class OilSpillClusteringOp extends Operator {
     }
 
     /**
-     * Find pixels detected as target in a 3x3 window centered at a given point.
+     * Clusters the detected pixels of the whole band once, so that the size of a slick crossing
+     * tile borders is measured as a whole.
      *
-     * @param xc            The x coordinate of the given point.
-     * @param yc            The y coordinate of the given point.
-     * @param x0            The x coordinate for the upper left corner point of the source rectangle.
-     * @param y0            The y coordinate for the upper left corner point of the source rectangle.
-     * @param w             The width of the source rectangle.
-     * @param h             The height of the source rectangle.
-     * @param bitMaskData   The bit maks band data.
-     * @param bitMaskTile   The bit mask band tile.
-     * @param pixelsScaned  The binary array indicating which pixel in the tile has been scaned.
-     * @param clusterPixels The list of pixels in the cluster.
+     * @param sourceBand The oil spill mask band.
+     * @return the labelling of the band
+     * @throws Exception The exceptions.
      */
-    private static void clustering(final int xc, final int yc, final int x0, final int y0, final int w, final int h,
-                                   final ProductData bitMaskData, final Tile bitMaskTile,
-                                   final int[][] pixelsScaned, final List<PixelPos> clusterPixels) {
-
-        final List<PixelPos> seeds = new ArrayList<>();
-        seeds.add(new PixelPos(xc, yc));
-        pixelsScaned[yc - y0][xc - x0] = 1;
-        clusterPixels.add(new PixelPos(xc, yc));
-
-        while (seeds.size() > 0) {
-            final List<PixelPos> newSeeds = new ArrayList<>();
-            for (PixelPos pixel : seeds) {
-                searchNeighbourhood(pixel, x0, y0, w, h, bitMaskData, bitMaskTile, pixelsScaned, clusterPixels, newSeeds);
+    private ConnectedComponentLabelling getLabelling(final Band sourceBand) throws Exception {
+
+        synchronized (sourceBand) {
+            ConnectedComponentLabelling labelling;
+            synchronized (bandLabelling) {
+                labelling = bandLabelling.get(sourceBand);
             }
-            seeds.clear();
-            seeds.addAll(newSeeds);
+            if (labelling == null) {
+                Dimension tileSize = targetProduct.getPreferredTileSize();
+                if (tileSize == null) {
+                    tileSize = new Dimension(512, 512);
+                }
+                labelling = new ConnectedComponentLabelling(
+                        sourceImageWidth, sourceImageHeight, tileSize.width, tileSize.height);
+                labelling.label(rect -> readMask(sourceBand, rect));
+
+                synchronized (bandLabelling) {
+                    bandLabelling.put(sourceBand, labelling);
+                }
+            }
+            return labelling;
         }
     }
 
-    private static void searchNeighbourhood(final PixelPos pixel, final int x0, final int y0, final int w, final int h,
-                                            final ProductData bitMaskData, final Tile bitMaskTile,
-                                            final int[][] pixelsScaned, final List<PixelPos> clusterPixels,
-                                            final List<PixelPos> newSeeds) {
-
-        final int xc = (int) pixel.x;
-        final int yc = (int) pixel.y;
-        final int[] x = {xc - 1, xc, xc + 1, xc - 1, xc + 1, xc - 1, xc, xc + 1};
-        final int[] y = {yc - 1, yc - 1, yc - 1, yc, yc, yc + 1, yc + 1, yc + 1};
-
-        for (int i = 0; i < 8; i++) {
-            if (x[i] >= x0 && x[i] < x0 + w && y[i] >= y0 && y[i] < y0 + h &&
-                    pixelsScaned[y[i] - y0][x[i] - x0] == 0 &&
-                    bitMaskData.getElemIntAt(bitMaskTile.getDataBufferIndex(x[i], y[i])) == 1) {
-
-                pixelsScaned[y[i] - y0][x[i] - x0] = 1;
-                clusterPixels.add(new PixelPos(x[i], y[i]));
-                newSeeds.add(new PixelPos(x[i], y[i]));
+    /**
+     * Read the bit mask of a rectangle, 1 for pixels detected as oil spill.
+     */
+    private byte[] readMask(final Band sourceBand, final Rectangle rect) {
+        final Tile sourceTile = getSourceTile(sourceBand, rect);
+        final ProductData srcData = sourceTile.getDataBuffer();
+        final TileIndex srcIndex = new TileIndex(sourceTile);
+
+        final byte[] mask = new byte[rect.width * rect.height];
+        int k = 0;
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            srcIndex.calculateStride(y);
+            for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                mask[k++] = (byte) (srcData.getElemIntAt(srcIndex.getIndex(x)) == 1 ? 1 : 0);
             }
         }
+        return mask;
     }
 
     /**
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.oceantools;
+
+/**
+ * Summed-area tables of the sum, the sum of squares and the number of valid pixels of a tile.
+ * <p>
+ * After a single pass over the tile the statistics of any box, and of a box with a hole such as the
+ * CFAR background ring, are found with a few lookups independent of the box size.
+ * All coordinates are relative to the tile and the box bounds are inclusive.
+ */
+final class SummedAreaTable {
+
+    private final int stride;
+    private final double[] sum;
+    private final double[] sumSq;
+    private final int[] count;
+
+    /**
+     * @param data        the tile data, row major
+     * @param width       the tile width
+     * @param height      the tile height
+     * @param noDataValue pixels with this value are left out of all statistics
+     */
+    SummedAreaTable(final float[] data, final int width, final int height, final double noDataValue) {
+        stride = width + 1;
+        final int size = stride * (height + 1);
+        sum = new double[size];
+        sumSq = new double[size];
+        count = new int[size];
+
+        for (int y = 0; y < height; ++y) {
+            final int row = y * width;
+            final int above = y * stride;
+            final int current = above + stride;
+            double rowSum = 0.0, rowSumSq = 0.0;
+            int rowCount = 0;
+            for (int x = 0; x < width; ++x) {
+                final double v = data[row + x];
+                if (noDataValue != v) {
+                    rowSum += v;
+                    rowSumSq += v * v;
+                    ++rowCount;
+                }
+                sum[current + x + 1] = sum[above + x + 1] + rowSum;
+                sumSq[current + x + 1] = sumSq[above + x + 1] + rowSumSq;
+                count[current + x + 1] = count[above + x + 1] + rowCount;
+            }
+        }
+    }
+
+    int getCount(final int x0, final int y0, final int x1, final int y1) {
+        final int a = y0 * stride + x0, b = y0 * stride + x1 + 1;
+        final int c = (y1 + 1) * stride + x0, d = (y1 + 1) * stride + x1 + 1;
+        return count[d] - count[b] - count[c] + count[a];
+    }
+
+    double getSum(final int x0, final int y0, final int x1, final int y1) {
+        return box(sum, x0, y0, x1, y1);
+    }
+
+    double getSumSq(final int x0, final int y0, final int x1, final int y1) {
+        return box(sumSq, x0, y0, x1, y1);
+    }
+
+    private double box(final double[] table, final int x0, final int y0, final int x1, final int y1) {
+        final int a = y0 * stride + x0, b = y0 * stride + x1 + 1;
+        final int c = (y1 + 1) * stride + x0, d = (y1 + 1) * stride + x1 + 1;
+        return table[d] - table[b] - table[c] + table[a];
+    }
+
+    /**
+     * Compute the number of valid pixels, the sum and the sum of squares of an outer box without an inner box.
+     * The inner box is clipped to the outer box and may be empty.
+     *
+     * @param stats count, sum and sum of squares (output)
+     */
+    void getRingStatistics(final int x0, final int y0, final int x1, final int y1,
+                           final int ix0, final int iy0, final int ix1, final int iy1, final double[] stats) {
+
+        stats[0] = getCount(x0, y0, x1, y1);
+        stats[1] = getSum(x0, y0, x1, y1);
+        stats[2] = getSumSq(x0, y0, x1, y1);
+
+        final int gx0 = Math.max(ix0, x0), gy0 = Math.max(iy0, y0);
+        final int gx1 = Math.min(ix1, x1), gy1 = Math.min(iy1, y1);
+        if (gx0 <= gx1 && gy0 <= gy1) {
+            stats[0] -= getCount(gx0, gy0, gx1, gy1);
+            stats[1] -= getSum(gx0, gy0, gx1, gy1);
+            stats[2] -= getSumSq(gx0, gy0, gx1, gy1);
+        }
+    }
+}
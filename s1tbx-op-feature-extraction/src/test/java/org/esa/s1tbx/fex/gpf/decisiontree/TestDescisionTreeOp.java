@@ -1,6 +1,7 @@
 
 package org.esa.s1tbx.fex.gpf.decisiontree;
 
+import com.bc.ceres.core.ProgressMonitor;
 import junit.framework.TestCase;
 import org.esa.snap.core.datamodel.*;
 import org.esa.snap.core.gpf.OperatorSpi;
@@ -65,6 +66,38 @@ public class TestDescisionTreeOp extends TestCase {
         TestUtils.attributeEquals(abs, AbstractMetadata.first_line_time, "10-MAY-2008 20:32:46.890683");      */
     }
 
+    public void testClassification() throws Exception {
+
+        final Product sourceProduct = createTestProduct(16, 4);
+
+        final DecisionTreeNode root = DecisionTreeNode.createDefaultTree();
+        root.setExpression("band1 > 32");
+        root.getFalseNode().setExpression("1");
+        final DecisionTreeNode twig = root.getTrueNode();
+        twig.addBranch(new DecisionTreeNode(), new DecisionTreeNode());
+        twig.setExpression("band1 % 2 == 0");
+        twig.getTrueNode().setExpression("2");
+        twig.getFalseNode().setExpression("3");
+
+        final DecisionTreeOp op = (DecisionTreeOp) spi.createOperator();
+        op.setSourceProduct(sourceProduct);
+        op.setParameter("decisionTree", root.toArray());
+
+        final Product targetProduct = op.getTargetProduct();
+        final Band band = targetProduct.getBand("classes");
+        assertNotNull(band);
+
+        final int[] values = new int[16 * 4];
+        band.readPixels(0, 0, 16, 4, values, ProgressMonitor.NULL);
+
+        for (int i = 0; i < values.length; i++) {
+            final int v = i + 1;
+            final int expected = v <= 32 ? 1 : (v % 2 == 0 ? 2 : 3);
+            assertEquals(expected, values[i]);
+        }
+        assertEquals(16 * 4, op.getNumPixelsEvaluated());
+    }
+
     /**
      * Creates a 4-by-16 test product as shown below:
      * 1  2  3  4  5  6  7  8  9 10 11 12 13 14 15 16
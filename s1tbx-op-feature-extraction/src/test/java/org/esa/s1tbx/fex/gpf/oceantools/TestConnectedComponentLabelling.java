@@ -0,0 +1,107 @@
+package org.esa.s1tbx.fex.gpf.oceantools;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for ConnectedComponentLabelling.
+ */
+public class TestConnectedComponentLabelling {
+
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 15;
+
+    // a ring crossing four tiles, a diagonal line crossing a tile corner and a single pixel
+    private static byte[] createMask() {
+        final byte[] mask = new byte[WIDTH * HEIGHT];
+        for (int i = 2; i <= 9; ++i) {
+            mask[2 * WIDTH + i] = 1;
+            mask[9 * WIDTH + i] = 1;
+            mask[i * WIDTH + 2] = 1;
+            mask[i * WIDTH + 9] = 1;
+        }
+        for (int i = 0; i < 6; ++i) {
+            mask[(5 + i) * WIDTH + 12 + i] = 1;
+        }
+        mask[13 * WIDTH + 18] = 1;
+        return mask;
+    }
+
+    private static ConnectedComponentLabelling.MaskReader createReader(final byte[] mask) {
+        return rect -> {
+            final byte[] out = new byte[rect.width * rect.height];
+            int k = 0;
+            for (int y = rect.y; y < rect.y + rect.height; ++y) {
+                for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                    out[k++] = mask[y * WIDTH + x];
+                }
+            }
+            return out;
+        };
+    }
+
+    @Test
+    public void testComponentsAcrossTiles() throws Exception {
+        final byte[] mask = createMask();
+        final ConnectedComponentLabelling labelling = new ConnectedComponentLabelling(WIDTH, HEIGHT, 6, 7);
+        labelling.label(createReader(mask));
+
+        final List<ConnectedComponentLabelling.Component> components = labelling.getComponents();
+        assertEquals(3, components.size());
+
+        int ring = 0, line = 0, single = 0;
+        for (ConnectedComponentLabelling.Component c : components) {
+            if (c.numPixels == 28) {
+                ++ring;
+                assertEquals(2, c.xMin);
+                assertEquals(9, c.xMax);
+                assertEquals(2, c.yMin);
+                assertEquals(9, c.yMax);
+                assertEquals(5.5, c.getCentreX(), 1e-9);
+                assertEquals(5.5, c.getCentreY(), 1e-9);
+            } else if (c.numPixels == 6) {
+                ++line;
+                assertEquals(12, c.xMin);
+                assertEquals(17, c.xMax);
+            } else if (c.numPixels == 1) {
+                ++single;
+            }
+        }
+        assertEquals(1, ring);
+        assertEquals(1, line);
+        assertEquals(1, single);
+    }
+
+    @Test
+    public void testLabelRectangle() throws Exception {
+        final byte[] mask = createMask();
+        final ConnectedComponentLabelling.MaskReader reader = createReader(mask);
+        final ConnectedComponentLabelling labelling = new ConnectedComponentLabelling(WIDTH, HEIGHT, 6, 7);
+        labelling.label(reader);
+
+        final Rectangle rect = new Rectangle(1, 1, 17, 12);
+        final int[] labels = new int[rect.width * rect.height];
+        labelling.labelRectangle(reader, rect, labels);
+
+        final List<ConnectedComponentLabelling.Component> components = labelling.getComponents();
+        final int ringLabel = labels[(2 - rect.y) * rect.width + 2 - rect.x];
+        final int lineLabel = labels[(5 - rect.y) * rect.width + 12 - rect.x];
+        assertEquals(28, components.get(ringLabel).numPixels);
+        assertEquals(6, components.get(lineLabel).numPixels);
+
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            for (int x = rect.x; x < rect.x + rect.width; ++x) {
+                final int label = labels[(y - rect.y) * rect.width + x - rect.x];
+                if (mask[y * WIDTH + x] == 0) {
+                    assertEquals(-1, label);
+                } else {
+                    assertEquals(x > 10 ? lineLabel : ringLabel, label);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.esa.s1tbx.fex.gpf.oceantools;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for SummedAreaTable.
+ */
+public class TestSummedAreaTable {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 29;
+    private static final double NO_DATA = 0.0;
+
+    private static float[] createData() {
+        final Random random = new Random(42);
+        final float[] data = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = random.nextInt(10) == 0 ? (float) NO_DATA : random.nextFloat() * 5.0f;
+        }
+        return data;
+    }
+
+    @Test
+    public void testRingStatistics() {
+        final float[] data = createData();
+        final SummedAreaTable sat = new SummedAreaTable(data, WIDTH, HEIGHT, NO_DATA);
+        final double[] stats = new double[3];
+
+        final int halfBackground = 9, halfGuard = 4;
+        for (int yc = 0; yc < HEIGHT; yc += 3) {
+            for (int xc = 0; xc < WIDTH; xc += 2) {
+                final int x0 = Math.max(xc - halfBackground, 0), x1 = Math.min(xc + halfBackground, WIDTH - 1);
+                final int y0 = Math.max(yc - halfBackground, 0), y1 = Math.min(yc + halfBackground, HEIGHT - 1);
+                sat.getRingStatistics(x0, y0, x1, y1, xc - halfGuard, yc - halfGuard,
+                                      xc + halfGuard, yc + halfGuard, stats);
+
+                int count = 0;
+                double sum = 0.0, sumSq = 0.0;
+                for (int y = y0; y <= y1; ++y) {
+                    for (int x = x0; x <= x1; ++x) {
+                        final double v = data[y * WIDTH + x];
+                        if (v != NO_DATA && (Math.abs(x - xc) > halfGuard || Math.abs(y - yc) > halfGuard)) {
+                            ++count;
+                            sum += v;
+                            sumSq += v * v;
+                        }
+                    }
+                }
+                assertEquals(count, stats[0], 0.0);
+                assertEquals(sum, stats[1], 1e-9);
+                assertEquals(sumSq, stats[2], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testBox() {
+        final float[] data = createData();
+        final SummedAreaTable sat = new SummedAreaTable(data, WIDTH, HEIGHT, NO_DATA);
+
+        int count = 0;
+        double sum = 0.0;
+        for (int y = 3; y <= 20; ++y) {
+            for (int x = 5; x <= 7; ++x) {
+                final double v = data[y * WIDTH + x];
+                if (v != NO_DATA) {
+                    ++count;
+                    sum += v;
+                }
+            }
+        }
+        assertEquals(count, sat.getCount(5, 3, 7, 20));
+        assertEquals(sum, sat.getSum(5, 3, 7, 20), 1e-9);
+    }
+}
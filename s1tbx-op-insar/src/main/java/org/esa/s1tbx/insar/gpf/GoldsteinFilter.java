@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import org.apache.commons.math3.util.FastMath;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Goldstein phase filter of a tile.
+ * <p>
+ * Windows of FFTSize x FFTSize pixels slide over the source tile by a quarter of their size. The spectrum of
+ * each window is weighted by its smoothed magnitude raised to the power alpha, transformed back and added to
+ * the output with a triangular weight.
+ * <p>
+ * Windows on rows four steps apart do not overlap, so the window rows are filtered in four passes, each
+ * running its rows in parallel on the fork/join pool. All interferograms of a stack are filtered by the same
+ * task for a window, with the FFT plan and buffers of the thread.
+ */
+final class GoldsteinFilter {
+
+    private final int fftSize;
+    private final int stepSize;
+    private final int halfWindowSize;
+    private final double alpha;
+    private final double[] weight;
+    private final ThreadLocal<Workspace> workspace;
+
+    /**
+     * @param fftSize    the window size, a power of two of at least 4
+     * @param windowSize the size of the smoothing window of the power spectrum
+     * @param alpha      the filter exponent
+     */
+    GoldsteinFilter(final int fftSize, final int windowSize, final double alpha) {
+        this.fftSize = fftSize;
+        this.stepSize = fftSize / 4;
+        this.halfWindowSize = windowSize / 2;
+        this.alpha = alpha;
+
+        final int halfFFTSize = fftSize / 2;
+        weight = new double[fftSize];
+        for (int i = 0; i < fftSize; ++i) {
+            weight[i] = 1 - Math.abs(i - halfFFTSize + 0.5) / halfFFTSize;
+        }
+        workspace = ThreadLocal.withInitial(() -> new Workspace(fftSize));
+    }
+
+    /**
+     * Filter a tile of one or more interferograms
+     *
+     * @param interferograms  the source samples and filtered output of each interferogram
+     * @param sourceRectangle the area of the source samples
+     * @param targetRectangle the area of the filtered output
+     */
+    void filter(final Interferogram[] interferograms, final Rectangle sourceRectangle,
+                final Rectangle targetRectangle) {
+
+        if (sourceRectangle.width < fftSize || sourceRectangle.height < fftSize) {
+            return;
+        }
+        final int numRows = (sourceRectangle.height - fftSize) / stepSize + 1;
+
+        for (int pass = 0; pass < 4; ++pass) {
+            final List<RecursiveAction> tasks = new ArrayList<>();
+            for (int row = pass; row < numRows; row += 4) {
+                final int y = sourceRectangle.y + row * stepSize;
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        filterRow(interferograms, sourceRectangle, targetRectangle, y);
+                    }
+                });
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+    }
+
+    private void filterRow(final Interferogram[] interferograms, final Rectangle sourceRectangle,
+                           final Rectangle targetRectangle, final int y) {
+
+        final Workspace ws = workspace.get();
+        final int xMax = sourceRectangle.x + sourceRectangle.width - fftSize;
+        for (int x = sourceRectangle.x; x <= xMax; x += stepSize) {
+            for (Interferogram ifg : interferograms) {
+                if (!getComplexImagette(ifg, sourceRectangle, x, y, ws)) {
+                    continue;
+                }
+                perform2DFFT(ws, false);
+                getFilteredPowerSpectrum(ws, ifg.noDataValue);
+                applyFilter(ws);
+                perform2DFFT(ws, true);
+                updateFilteredBands(ifg, targetRectangle, x, y, ws);
+            }
+        }
+    }
+
+    /**
+     * Get the samples of a window as interleaved complex values
+     *
+     * @return false if the window holds no data
+     */
+    private boolean getComplexImagette(final Interferogram ifg, final Rectangle sourceRectangle,
+                                       final int x, final int y, final Workspace ws) {
+
+        final double[] spec = ws.spectrum;
+        final boolean[] mask = ws.mask;
+        boolean allNoData = true;
+        int k = 0;
+        for (int r = 0; r < fftSize; ++r) {
+            int idx = (y - sourceRectangle.y + r) * sourceRectangle.width + x - sourceRectangle.x;
+            for (int c = 0; c < fftSize; ++c, ++idx, ++k) {
+                final double i = ifg.i[idx];
+                spec[2 * k] = ifg.q[idx];
+                spec[2 * k + 1] = i;
+                mask[k] = i != ifg.noDataValue;
+                allNoData &= !mask[k];
+            }
+        }
+        return !allNoData;
+    }
+
+    /**
+     * Transform the rows and then the columns of the spectrum buffer, the inverse transform is not scaled
+     */
+    private void perform2DFFT(final Workspace ws, final boolean inverse) {
+
+        final double[] spec = ws.spectrum;
+        final double[] line = ws.line;
+        final int rowLength = 2 * fftSize;
+
+        for (int r = 0; r < fftSize; ++r) {
+            System.arraycopy(spec, r * rowLength, line, 0, rowLength);
+            if (inverse) {
+                ws.fft.complexInverse(line, false);
+            } else {
+                ws.fft.complexForward(line);
+            }
+            System.arraycopy(line, 0, spec, r * rowLength, rowLength);
+        }
+
+        for (int c = 0; c < fftSize; ++c) {
+            int k = 2 * c;
+            for (int r = 0; r < fftSize; ++r, k += rowLength) {
+                line[2 * r] = spec[k];
+                line[2 * r + 1] = spec[k + 1];
+            }
+            if (inverse) {
+                ws.fft.complexInverse(line, false);
+            } else {
+                ws.fft.complexForward(line);
+            }
+            k = 2 * c;
+            for (int r = 0; r < fftSize; ++r, k += rowLength) {
+                spec[k] = line[2 * r];
+                spec[k + 1] = line[2 * r + 1];
+            }
+        }
+    }
+
+    /**
+     * Smooth the magnitude of the spectrum with a box filter and raise it to the power alpha. The box sums
+     * are computed along rows and then along columns.
+     */
+    private void getFilteredPowerSpectrum(final Workspace ws, final double noDataValue) {
+
+        final double[] spec = ws.spectrum;
+        final double[] pwr = ws.power;
+        final double[] sum = ws.sum;
+        final int[] count = ws.count;
+        final int n = fftSize;
+
+        for (int k = 0; k < n * n; ++k) {
+            pwr[k] = Math.sqrt(spec[2 * k] * spec[2 * k] + spec[2 * k + 1] * spec[2 * k + 1]);
+        }
+
+        // along rows
+        for (int r = 0; r < n; ++r) {
+            final int offset = r * n;
+            for (int c = 0; c < n; ++c) {
+                final int iMin = Math.max(0, c - halfWindowSize);
+                final int iMax = Math.min(n - 1, c + halfWindowSize);
+                double s = 0;
+                int cnt = 0;
+                for (int i = iMin; i <= iMax; ++i) {
+                    final double v = pwr[offset + i];
+                    if (v != noDataValue) {
+                        s += v;
+                        ++cnt;
+                    }
+                }
+                sum[offset + c] = s;
+                count[offset + c] = cnt;
+            }
+        }
+
+        // along columns
+        final double[] colSum = ws.columnSum;
+        final int[] colCount = ws.columnCount;
+        for (int c = 0; c < n; ++c) {
+            for (int r = 0; r < n; ++r) {
+                final int jMin = Math.max(0, r - halfWindowSize);
+                final int jMax = Math.min(n - 1, r + halfWindowSize);
+                double s = 0;
+                int cnt = 0;
+                for (int j = jMin; j <= jMax; ++j) {
+                    s += sum[j * n + c];
+                    cnt += count[j * n + c];
+                }
+                colSum[r] = s;
+                colCount[r] = cnt;
+            }
+            for (int r = 0; r < n; ++r) {
+                pwr[r * n + c] = colCount[r] != 0 ? FastMath.pow(colSum[r] / colCount[r], alpha) : 0;
+            }
+        }
+    }
+
+    private void applyFilter(final Workspace ws) {
+        final double[] spec = ws.spectrum;
+        final double[] pwr = ws.power;
+        for (int k = 0; k < pwr.length; ++k) {
+            spec[2 * k] *= pwr[k];
+            spec[2 * k + 1] *= pwr[k];
+        }
+    }
+
+    /**
+     * Add the filtered window to the output with a triangular weight
+     */
+    private void updateFilteredBands(final Interferogram ifg, final Rectangle targetRectangle,
+                                     final int x, final int y, final Workspace ws) {
+
+        final double[] spec = ws.spectrum;
+        final boolean[] mask = ws.mask;
+        final int x0 = targetRectangle.x;
+        final int y0 = targetRectangle.y;
+        final int w = targetRectangle.width;
+        final int xSt = Math.max(x, x0);
+        final int ySt = Math.max(y, y0);
+        final int xEd = Math.min(x + fftSize, x0 + w);
+        final int yEd = Math.min(y + fftSize, y0 + targetRectangle.height);
+
+        for (int yy = ySt; yy < yEd; ++yy) {
+            final int yi = yy - y;
+            final double weightY = weight[yi];
+            final int yw = (yy - y0) * w - x0;
+            for (int xx = xSt; xx < xEd; ++xx) {
+                final int k = yi * fftSize + xx - x;
+                if (!mask[k]) {
+                    continue;
+                }
+                final double wgt = weight[xx - x] * weightY;
+                ifg.iFiltered[yw + xx] += spec[2 * k + 1] * wgt;
+                ifg.qFiltered[yw + xx] += spec[2 * k] * wgt;
+            }
+        }
+    }
+
+    /**
+     * Source samples and filtered output of an interferogram
+     */
+    static final class Interferogram {
+
+        /** source samples, row major over the source rectangle */
+        final double[] i;
+        final double[] q;
+        final double noDataValue;
+        /** filtered output, row major over the target rectangle */
+        final float[] iFiltered;
+        final float[] qFiltered;
+
+        Interferogram(final double[] i, final double[] q, final double noDataValue, final int targetSize) {
+            this.i = i;
+            this.q = q;
+            this.noDataValue = noDataValue;
+            this.iFiltered = new float[targetSize];
+            this.qFiltered = new float[targetSize];
+        }
+    }
+
+    /**
+     * FFT plan and buffers of a thread
+     */
+    private static final class Workspace {
+
+        final DoubleFFT_1D fft;
+        final double[] spectrum;
+        final double[] line;
+        final double[] power;
+        final double[] sum;
+        final int[] count;
+        final double[] columnSum;
+        final int[] columnCount;
+        final boolean[] mask;
+
+        Workspace(final int fftSize) {
+            fft = new DoubleFFT_1D(fftSize);
+            spectrum = new double[2 * fftSize * fftSize];
+            line = new double[2 * fftSize];
+            power = new double[fftSize * fftSize];
+            sum = new double[fftSize * fftSize];
+            count = new int[fftSize * fftSize];
+            columnSum = new double[fftSize];
+            columnCount = new int[fftSize];
+            mask = new boolean[fftSize * fftSize];
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.TileIndex;
 import org.esa.snap.engine_utilities.util.Maths;
 import org.jlinda.core.Baseline;
+import org.jlinda.core.BaselineSurface;
 import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
 
@@ -99,11 +100,13 @@ public final class PhaseToElevationOp extends Operator {
     private double refPhase = 0.0;
 
     private double demNoDataValue = 0; // no data value for DEM
-    private double[] lookAngles = null;
+    private double[] sinFlatAngles = null;
+    private double[] cosFlatAngles = null;
     private double firstLineUTC = 0.0; // in days
     private OrbitStateVector[] orbitStateVectors = null;
 
     private final Baseline baseline = new Baseline();
+    private BaselineSurface baselineSurface = null;
 
     private Band unwrappedPhaseBand;
     private static final String PRODUCT_SUFFIX = "_Hgt";
@@ -141,6 +144,8 @@ public final class PhaseToElevationOp extends Operator {
 
             getBaseline();
 
+            computeLookAngles();
+
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
         }
@@ -266,6 +271,7 @@ public final class PhaseToElevationOp extends Operator {
         final Orbit slaveOrbit = new Orbit(slaveRoot[0], 3);
 
         baseline.model(masterMetaData, slaveMetaData, masterOrbit, slaveOrbit);
+        baselineSurface = baseline.getSurface();
     }
 
     /**
@@ -297,7 +303,7 @@ public final class PhaseToElevationOp extends Operator {
             }
 
             if (!refHeightPhaseComputed) {
-                computeReferenceHeightAndPhase(sourceBand, baseline);
+                computeReferenceHeightAndPhase(sourceBand);
             }
 
             final int x0 = targetRectangle.x;
@@ -306,24 +312,30 @@ public final class PhaseToElevationOp extends Operator {
             final int h = targetRectangle.height;
             // System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
 
-            final int xc = sourceImageWidth / 2;
-            double phase, slantRange, incidenceAngle, bn, bp, alpha, height, flatAngle;
+            // per line arrays of the tile
+            final double[] bn = new double[w];
+            final double[] bp = new double[w];
+            final double[] slantRangeTime = new double[w];
+            final double[] incidenceAngle = new double[w];
+            final double[] alpha = new double[w];
+
             for (int y = y0; y < y0 + h; y++) {
+                baselineSurface.getBperp(y, x0, w, 0, bn, 0);
+                baselineSurface.getBpar(y, x0, w, 0, bp, 0);
+                slantRangeTimeTPG.getPixels(x0, y, w, 1, slantRangeTime, ProgressMonitor.NULL);
+                incidenceAngleTPG.getPixels(x0, y, w, 1, incidenceAngle, ProgressMonitor.NULL);
+
+                for (int i = 0; i < w; i++) {
+                    final double slantRange = slantRangeTime[i] / Constants.oneBillion * Constants.halfLightSpeed;
+                    alpha[i] = -slantRange * FastMath.sin(incidenceAngle[i] * MathUtils.DTOR) /
+                            (2 * waveNumber * (bp[i] * sinFlatAngles[x0 + i] + bn[i] * cosFlatAngles[x0 + i]));
+                }
+
                 srcIndex.calculateStride(y);
                 trgIndex.calculateStride(y);
-                for (int x = x0; x < x0 + w; x++) {
-
-                    phase = sourceData.getElemDoubleAt(srcIndex.getIndex(x));
-                    slantRange = slantRangeTimeTPG.getPixelDouble(x, y) / Constants.oneBillion * Constants.halfLightSpeed;
-                    incidenceAngle = incidenceAngleTPG.getPixelDouble(x, y) * MathUtils.DTOR;
-                    bn = baseline.getBperp(y, x);
-                    bp = baseline.getBpar(y, x);
-                    flatAngle = lookAngles[x] - lookAngles[xc];
-                    alpha = -slantRange * FastMath.sin(incidenceAngle) /
-                            (2 * waveNumber * (bp * FastMath.sin(flatAngle) + bn * FastMath.cos(flatAngle)));
-//                  alpha = -slantRange*FastMath.sin(incidenceAngle)/(2*waveNumber*bn);
-                    height = refHeight + alpha * (phase - refPhase);
-                    targetData.setElemDoubleAt(trgIndex.getIndex(x), height);
+                for (int i = 0; i < w; i++) {
+                    final double phase = sourceData.getElemDoubleAt(srcIndex.getIndex(x0 + i));
+                    targetData.setElemDoubleAt(trgIndex.getIndex(x0 + i), refHeight + alpha[i] * (phase - refPhase));
                 }
             }
 
@@ -367,15 +379,12 @@ public final class PhaseToElevationOp extends Operator {
         isElevationModelAvailable = true;
     }
 
-    private synchronized void computeReferenceHeightAndPhase(final Band unwrappedPhaseBand, final Baseline baseline)
-            throws Exception {
+    private synchronized void computeReferenceHeightAndPhase(final Band unwrappedPhaseBand) throws Exception {
 
         if (refHeightPhaseComputed) {
             return;
         }
 
-        computeLookAngles();
-
         // get initial 100x100 seeds and compute their slopes
         final int seedGridSize = 100;
         final int slopeCalRadius = 4;
@@ -426,19 +435,17 @@ public final class PhaseToElevationOp extends Operator {
         }
 
         // Compute reference (elevation, phase) using least square method
-        final int xc = sourceImageWidth / 2;
-        double phase, slantRange, incidenceAngle, bn, bp, alpha, flatAngle;
+        double phase, slantRange, incidenceAngle, bn, bp, alpha;
         double a = 0.0, b = 0.0, c = 0.0, d = 0.0, e = 0.0, f = 0.0;
         for (int i = 0; i < numSeeds; i++) {
             SeedRecord seed = finalSeedList[i];
             phase = phaseList[i];
             slantRange = slantRangeTimeTPG.getPixelDouble(seed.x, seed.y) / Constants.oneBillion * Constants.halfLightSpeed;
             incidenceAngle = incidenceAngleTPG.getPixelDouble(seed.x, seed.y) * MathUtils.DTOR;
-            bn = baseline.getBperp(seed.y, seed.x);
-            bp = baseline.getBpar(seed.y, seed.x);
-            flatAngle = lookAngles[seed.x] - lookAngles[xc];
+            bn = baselineSurface.getBperp(seed.y, seed.x, 0);
+            bp = baselineSurface.getBpar(seed.y, seed.x, 0);
             alpha = -slantRange * FastMath.sin(incidenceAngle) /
-                    (2 * waveNumber * (bp * FastMath.sin(flatAngle) + bn * FastMath.cos(flatAngle)));
+                    (2 * waveNumber * (bp * sinFlatAngles[seed.x] + bn * cosFlatAngles[seed.x]));
 //            alpha = -slantRange*Math.sin(incidenceAngle)/(2*waveNumber*bn);
             a += -alpha * alpha;
             b += alpha;
@@ -454,7 +461,11 @@ public final class PhaseToElevationOp extends Operator {
         refHeightPhaseComputed = true;
     }
 
-    private synchronized void computeLookAngles() {
+    /**
+     * Compute the look angle of each column and the sine and cosine of its flat earth angle, the look angle
+     * relative to the centre column
+     */
+    private void computeLookAngles() {
 
         double[] senPos = new double[3];
         getSensorPosition(firstLineUTC, senPos);
@@ -462,11 +473,20 @@ public final class PhaseToElevationOp extends Operator {
         final double ht = Math.sqrt(senPos[0] * senPos[0] + senPos[1] * senPos[1] + senPos[2] * senPos[2]); // satelliteHeight
         final double er = computeEarthRadius(senPos[2], ht);  // earthRadius
 
-        lookAngles = new double[sourceImageWidth];
+        final double[] lookAngles = new double[sourceImageWidth];
         for (int x = 0; x < sourceImageWidth; x++) {
             final double sr = slantRangeTimeTPG.getPixelDouble(x, 0) / Constants.oneBillion * Constants.halfLightSpeed;
             lookAngles[x] = FastMath.acos((sr * sr + ht * ht - er * er) / (2.0 * sr * ht));
         }
+
+        final int xc = sourceImageWidth / 2;
+        sinFlatAngles = new double[sourceImageWidth];
+        cosFlatAngles = new double[sourceImageWidth];
+        for (int x = 0; x < sourceImageWidth; x++) {
+            final double flatAngle = lookAngles[x] - lookAngles[xc];
+            sinFlatAngles[x] = FastMath.sin(flatAngle);
+            cosFlatAngles[x] = FastMath.cos(flatAngle);
+        }
     }
 
     private void getSensorPosition(final double time, double[] senPos) {
@@ -16,6 +16,7 @@
 package org.esa.s1tbx.insar.gpf;
 
 import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s1tbx.commons.io.ProductFanOutWriter;
 import org.esa.snap.core.dataio.ProductIO;
 import org.esa.snap.core.dataio.ProductSubsetBuilder;
 import org.esa.snap.core.dataio.ProductSubsetDef;
@@ -41,6 +42,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Split a stack product into individual products
@@ -68,6 +70,7 @@ public class StackSplitWriter extends Operator {
     private String formatName;
 
     private final Map<Band, SubsetInfo> bandMap = new HashMap<>();
+    private final ProductFanOutWriter fanOutWriter = new ProductFanOutWriter();
 
     public StackSplitWriter() {
         setRequiresAllBands(true);
@@ -165,6 +168,7 @@ public class StackSplitWriter extends Operator {
         subsetInfo.productWriter.setFormatName(formatName);
         subsetInfo.productWriter.setIncrementalMode(false);
         subsetInfo.subsetProduct.setProductWriter(subsetInfo.productWriter);
+        subsetInfo.output = fanOutWriter.addOutput(productName, subsetInfo.productWriter);
         for (String bandName : bandNames) {
             Band band = targetProduct.getBand(bandName);
             if (!(band instanceof VirtualBand)) {
@@ -179,15 +183,11 @@ public class StackSplitWriter extends Operator {
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         try {
             final SubsetInfo subsetInfo = bandMap.get(targetBand);
-            if(subsetInfo == null)
+            if(subsetInfo == null || !subsetInfo.written.compareAndSet(false, true))
                 return;
 
-            subsetInfo.productWriter.writeProductNodes(subsetInfo.subsetProduct, subsetInfo.file);
-
             final Rectangle trgRect = subsetInfo.subsetBuilder.getSubsetDef().getRegion();
-            if (!subsetInfo.written) {
-                writeTile(subsetInfo, trgRect);
-            }
+            writeTile(subsetInfo, trgRect);
         } catch (Exception e) {
             if (e instanceof OperatorException) {
                 throw (OperatorException) e;
@@ -197,32 +197,38 @@ public class StackSplitWriter extends Operator {
         }
     }
 
-    private synchronized void writeTile(final SubsetInfo info, final Rectangle trgRect)
-            throws IOException {
-        if (info.written) return;
+    /**
+     * Reads the bands of one split product and queues them on the writer of that product.
+     * Writing happens on the fan-out workers so that the bands of a product are written while the next ones
+     * are read and the products of a stack are written in parallel. The output is flushed before returning,
+     * as the source tiles may be reused once this method returns and write errors must fail the tile.
+     */
+    private void writeTile(final SubsetInfo info, final Rectangle trgRect) throws IOException {
+
+        info.output.execute(productWriter -> productWriter.writeProductNodes(info.subsetProduct, info.file));
 
         for(Band trgBand : info.subsetProduct.getBands()) {
+            if (trgBand instanceof VirtualBand)
+                continue;
             final String oldBandName = info.newBandNamingMap.get(trgBand.getName());
             final Tile sourceTile = getSourceTile(sourceProduct.getBand(oldBandName), trgRect);
             final ProductData rawSamples = sourceTile.getRawSamples();
 
-            //final String newBandName = StackUtils.getBandNameWithoutDate(bandName);
-            info.productWriter.writeBandRasterData(trgBand,
-                    0, 0, trgBand.getRasterWidth(), trgBand.getRasterHeight(), rawSamples, ProgressMonitor.NULL);
+            info.output.writeBandRasterData(trgBand,
+                    0, 0, trgBand.getRasterWidth(), trgBand.getRasterHeight(), rawSamples);
         }
-        info.written = true;
+        info.output.flush();
     }
 
     @Override
     public void dispose() {
         try {
-            for (Band band : bandMap.keySet()) {
-                SubsetInfo info = bandMap.get(band);
-                info.productWriter.close();
-            }
-        } catch (IOException ignore) {
+            fanOutWriter.close();
+        } catch (IOException e) {
+            throw new OperatorException("Unable to write split products: " + e.getMessage(), e);
+        } finally {
+            super.dispose();
         }
-        super.dispose();
     }
 
     private static class SubsetInfo {
@@ -230,7 +236,8 @@ public class StackSplitWriter extends Operator {
         ProductSubsetBuilder subsetBuilder;
         File file;
         ProductWriter productWriter;
-        boolean written = false;
+        ProductFanOutWriter.Output output;
+        final AtomicBoolean written = new AtomicBoolean(false);
         final Map<String, String> newBandNamingMap = new HashMap<>();
     }
 
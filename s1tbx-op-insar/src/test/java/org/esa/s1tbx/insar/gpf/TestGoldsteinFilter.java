@@ -0,0 +1,185 @@
+package org.esa.s1tbx.insar.gpf;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the Goldstein filter with a direct implementation of the sliding window filter
+ */
+public class TestGoldsteinFilter {
+
+    private static final int FFT_SIZE = 32;
+    private static final int WINDOW_SIZE = 3;
+    private static final double ALPHA = 0.8;
+    private static final double NO_DATA_VALUE = 0.0;
+
+    private static GoldsteinFilter.Interferogram createInterferogram(final Rectangle sourceRect,
+                                                                     final Rectangle targetRect, final long seed) {
+        final Random random = new Random(seed);
+        final double[] i = new double[sourceRect.width * sourceRect.height];
+        final double[] q = new double[i.length];
+        for (int y = 0; y < sourceRect.height; ++y) {
+            for (int x = 0; x < sourceRect.width; ++x) {
+                final int k = y * sourceRect.width + x;
+                if (x < 5 && y < 40) {
+                    continue; // no data
+                }
+                final double phase = 0.01 * x * x + 0.2 * y + random.nextGaussian() * 0.5;
+                i[k] = Math.cos(phase);
+                q[k] = Math.sin(phase);
+            }
+        }
+        return new GoldsteinFilter.Interferogram(i, q, NO_DATA_VALUE, targetRect.width * targetRect.height);
+    }
+
+    @Test
+    public void testFilter() {
+        final Rectangle sourceRect = new Rectangle(10, 20, 100, 90);
+        final Rectangle targetRect = new Rectangle(34, 44, 52, 42);
+        final GoldsteinFilter.Interferogram[] interferograms = {
+                createInterferogram(sourceRect, targetRect, 1), createInterferogram(sourceRect, targetRect, 2)};
+
+        new GoldsteinFilter(FFT_SIZE, WINDOW_SIZE, ALPHA).filter(interferograms, sourceRect, targetRect);
+
+        for (GoldsteinFilter.Interferogram ifg : interferograms) {
+            final float[] expectedI = new float[targetRect.width * targetRect.height];
+            final float[] expectedQ = new float[expectedI.length];
+            filterDirect(ifg, sourceRect, targetRect, expectedI, expectedQ);
+
+            double max = 0;
+            for (float v : expectedI) {
+                max = Math.max(max, Math.abs(v));
+            }
+            for (int k = 0; k < expectedI.length; ++k) {
+                assertEquals(expectedI[k], ifg.iFiltered[k], max * 1e-5);
+                assertEquals(expectedQ[k], ifg.qFiltered[k], max * 1e-5);
+            }
+        }
+    }
+
+    @Test
+    public void testSmallTile() {
+        final Rectangle sourceRect = new Rectangle(0, 0, FFT_SIZE - 1, 50);
+        final GoldsteinFilter.Interferogram[] interferograms = {createInterferogram(sourceRect, sourceRect, 3)};
+
+        new GoldsteinFilter(FFT_SIZE, WINDOW_SIZE, ALPHA).filter(interferograms, sourceRect, sourceRect);
+
+        for (float v : interferograms[0].iFiltered) {
+            assertEquals(0.0f, v, 0.0f);
+        }
+    }
+
+    private static void filterDirect(final GoldsteinFilter.Interferogram ifg, final Rectangle sourceRect,
+                                     final Rectangle targetRect, final float[] iFiltered, final float[] qFiltered) {
+        final int n = FFT_SIZE;
+        final int half = n / 2;
+        final double[][] I = new double[n][n];
+        final double[][] Q = new double[n][n];
+        final boolean[][] mask = new boolean[n][n];
+        for (int y = sourceRect.y; y <= sourceRect.y + sourceRect.height - n; y += n / 4) {
+            for (int x = sourceRect.x; x <= sourceRect.x + sourceRect.width - n; x += n / 4) {
+                boolean allNoData = true;
+                for (int r = 0; r < n; ++r) {
+                    for (int c = 0; c < n; ++c) {
+                        final int k = (y - sourceRect.y + r) * sourceRect.width + x - sourceRect.x + c;
+                        I[r][c] = ifg.i[k];
+                        Q[r][c] = ifg.q[k];
+                        mask[r][c] = I[r][c] != NO_DATA_VALUE;
+                        allNoData &= !mask[r][c];
+                    }
+                }
+                if (allNoData) {
+                    continue;
+                }
+
+                // spectrum of Q + jI
+                final double[][] re = new double[n][n];
+                final double[][] im = new double[n][n];
+                fft2D(Q, I, re, im, false);
+
+                final double[][] pwr = new double[n][n];
+                for (int r = 0; r < n; ++r) {
+                    for (int c = 0; c < n; ++c) {
+                        pwr[r][c] = Math.sqrt(re[r][c] * re[r][c] + im[r][c] * im[r][c]);
+                    }
+                }
+                final int hw = WINDOW_SIZE / 2;
+                for (int r = 0; r < n; ++r) {
+                    for (int c = 0; c < n; ++c) {
+                        double sum = 0;
+                        int cnt = 0;
+                        for (int j = Math.max(0, r - hw); j <= Math.min(n - 1, r + hw); ++j) {
+                            for (int i = Math.max(0, c - hw); i <= Math.min(n - 1, c + hw); ++i) {
+                                if (pwr[j][i] != NO_DATA_VALUE) {
+                                    sum += pwr[j][i];
+                                    cnt++;
+                                }
+                            }
+                        }
+                        final double flt = cnt != 0 ? Math.pow(sum / cnt, ALPHA) : 0;
+                        re[r][c] *= flt;
+                        im[r][c] *= flt;
+                    }
+                }
+                fft2D(re, im, Q, I, true);
+
+                for (int yy = Math.max(y, targetRect.y); yy < Math.min(y + n, targetRect.y + targetRect.height); ++yy) {
+                    for (int xx = Math.max(x, targetRect.x); xx < Math.min(x + n, targetRect.x + targetRect.width); ++xx) {
+                        if (!mask[yy - y][xx - x]) {
+                            continue;
+                        }
+                        final double weight = (1 - Math.abs(xx - x - half + 0.5) / half) *
+                                (1 - Math.abs(yy - y - half + 0.5) / half);
+                        final int k = (yy - targetRect.y) * targetRect.width + xx - targetRect.x;
+                        iFiltered[k] += I[yy - y][xx - x] * weight;
+                        qFiltered[k] += Q[yy - y][xx - x] * weight;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void fft2D(final double[][] inRe, final double[][] inIm,
+                              final double[][] outRe, final double[][] outIm, final boolean inverse) {
+        final int n = inRe.length;
+        final DoubleFFT_1D fft = new DoubleFFT_1D(n);
+        final double[][] tmpRe = new double[n][n];
+        final double[][] tmpIm = new double[n][n];
+        final double[] line = new double[2 * n];
+        for (int c = 0; c < n; ++c) {
+            for (int r = 0; r < n; ++r) {
+                line[2 * r] = inRe[r][c];
+                line[2 * r + 1] = inIm[r][c];
+            }
+            if (inverse) {
+                fft.complexInverse(line, false);
+            } else {
+                fft.complexForward(line);
+            }
+            for (int r = 0; r < n; ++r) {
+                tmpRe[r][c] = line[2 * r];
+                tmpIm[r][c] = line[2 * r + 1];
+            }
+        }
+        for (int r = 0; r < n; ++r) {
+            for (int c = 0; c < n; ++c) {
+                line[2 * c] = tmpRe[r][c];
+                line[2 * c + 1] = tmpIm[r][c];
+            }
+            if (inverse) {
+                fft.complexInverse(line, false);
+            } else {
+                fft.complexForward(line);
+            }
+            for (int c = 0; c < n; ++c) {
+                outRe[r][c] = line[2 * c];
+                outIm[r][c] = line[2 * c + 1];
+            }
+        }
+    }
+}
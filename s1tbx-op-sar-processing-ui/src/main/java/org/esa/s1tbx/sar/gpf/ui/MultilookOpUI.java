@@ -47,9 +47,11 @@ public class MultilookOpUI extends BaseOperatorUI {
     private final JCheckBox grSquarePixelCheckBox = new JCheckBox("GR Square Pixel");
     private final JCheckBox independentLooksCheckBox = new JCheckBox("Independent Looks");
     private final JCheckBox outputIntensityCheckBox = new JCheckBox("Output Intensity");
+    private final JCheckBox areaWeightedLooksCheckBox = new JCheckBox("Area Weighted Looks");
 
     private Boolean outputIntensity = false;
     private Boolean grSquarePixel = true;
+    private Boolean areaWeightedLooks = false;
     private final MultilookOp.DerivedParams param = new MultilookOp.DerivedParams();
 
     @Override
@@ -65,10 +67,17 @@ public class MultilookOpUI extends BaseOperatorUI {
             }
         });
 
+        areaWeightedLooksCheckBox.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                areaWeightedLooks = (e.getStateChange() == ItemEvent.SELECTED);
+            }
+        });
+
         grSquarePixelCheckBox.addItemListener(new ItemListener() {
             public void itemStateChanged(ItemEvent e) {
                 grSquarePixel = (e.getStateChange() == ItemEvent.SELECTED);
                 independentLooksCheckBox.setSelected(!grSquarePixel);
+                areaWeightedLooksCheckBox.setEnabled(grSquarePixel);
                 if (grSquarePixel) {
                     nAzLooks.setText("");
                     nAzLooks.setEditable(false);
@@ -124,6 +133,12 @@ public class MultilookOpUI extends BaseOperatorUI {
             } else {
                 nAzLooks.setEditable(true);
             }
+            areaWeightedLooksCheckBox.setEnabled(grSquarePixel);
+        }
+
+        areaWeightedLooks = (Boolean) paramMap.get("areaWeightedLooks");
+        if (areaWeightedLooks != null) {
+            areaWeightedLooksCheckBox.setSelected(areaWeightedLooks);
         }
 
         if (sourceProducts != null && sourceProducts.length > 0) {
@@ -178,6 +193,7 @@ public class MultilookOpUI extends BaseOperatorUI {
 
         paramMap.put("outputIntensity", outputIntensity);
         paramMap.put("grSquarePixel", grSquarePixel);
+        paramMap.put("areaWeightedLooks", areaWeightedLooks);
     }
 
     private JComponent createPanel() {
@@ -208,6 +224,9 @@ public class MultilookOpUI extends BaseOperatorUI {
         gbc.gridy++;
         DialogUtils.addComponent(contentPane, gbc, "Mean GR Square Pixel:", meanGRSqaurePixel);
 
+        gbc.gridy++;
+        contentPane.add(areaWeightedLooksCheckBox, gbc);
+
         nAzLooks.setEditable(false);
         meanGRSqaurePixel.setEditable(false);
         nRgLooks.setDocument(new RgLooksDocument());
@@ -80,6 +80,7 @@ public class RangeDopplerGeocodingOpUI extends BaseOperatorUI {
 
     final JCheckBox nodataValueAtSeaCheckBox = new JCheckBox("Mask out areas without elevation");
     final JCheckBox outputComplexCheckBox = new JCheckBox("Output complex data");
+    final JCheckBox reuseRadarGeometryCheckBox = new JCheckBox("Reuse cached radar geometry");
     final JCheckBox saveDEMCheckBox = new JCheckBox("DEM");
     final JCheckBox saveLatLonCheckBox = new JCheckBox("Latitude & Longitude");
     final JCheckBox saveIncidenceAngleFromEllipsoidCheckBox = new JCheckBox("Incidence angle from ellipsoid");
@@ -422,6 +423,9 @@ public class RangeDopplerGeocodingOpUI extends BaseOperatorUI {
             outputComplexCheckBox.setSelected(outputComplex);
         }
 
+        paramVal = (Boolean) paramMap.get("reuseRadarGeometry");
+        reuseRadarGeometryCheckBox.setSelected(paramVal != null && paramVal);
+
         paramVal = (Boolean) paramMap.get("saveDEM");
         if (paramVal != null) {
             saveDEM = paramVal;
@@ -597,6 +601,7 @@ public class RangeDopplerGeocodingOpUI extends BaseOperatorUI {
 
         paramMap.put("nodataValueAtSea", nodataValueAtSea);
         paramMap.put("outputComplex", outputComplex);
+        paramMap.put("reuseRadarGeometry", reuseRadarGeometryCheckBox.isSelected());
         paramMap.put("saveDEM", saveDEM);
         paramMap.put("saveLatLon", saveLatLon);
         paramMap.put("saveIncidenceAngleFromEllipsoid", saveIncidenceAngleFromEllipsoid);
@@ -663,6 +668,9 @@ public class RangeDopplerGeocodingOpUI extends BaseOperatorUI {
             contentPane.add(nodataValueAtSeaCheckBox, gbc);
             gbc.gridx = 1;
             contentPane.add(outputComplexCheckBox, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+            contentPane.add(reuseRadarGeometryCheckBox, gbc);
         }
 
         gbc.gridx = 0;
@@ -44,6 +44,7 @@ public class TerrainFlatteningOpUI extends BaseOperatorUI {
     private final JComboBox<String> demName = new JComboBox<>(DEMFactory.getDEMNameList());
     private static final String externalDEMStr = "External DEM";
     private final JCheckBox externalDEMApplyEGMCheckBox = new JCheckBox("External DEM Apply EGM");
+    private final JCheckBox reuseReferenceAreaCheckBox = new JCheckBox("Reuse Cached Reference Area");
 //    private final JCheckBox outputSimulatedImageCheckBox = new JCheckBox("Output Simulated Image");
 
     private final JComboBox<String> demResamplingMethod = new JComboBox<>(ResamplingFactory.resamplingNames);
@@ -135,6 +136,8 @@ public class TerrainFlatteningOpUI extends BaseOperatorUI {
         }
 
         externalDEMApplyEGMCheckBox.setSelected(externalDEMApplyEGM);
+        final Boolean reuseReferenceArea = (Boolean) paramMap.get("reuseReferenceArea");
+        reuseReferenceAreaCheckBox.setSelected(reuseReferenceArea != null && reuseReferenceArea);
 //        outputSimulatedImageCheckBox.setSelected(outputSimulatedImage);
 
         additionalOverlap.setText(String.valueOf(paramMap.get("additionalOverlap")));
@@ -162,6 +165,7 @@ public class TerrainFlatteningOpUI extends BaseOperatorUI {
         }
 
         paramMap.put("externalDEMApplyEGM", externalDEMApplyEGM);
+        paramMap.put("reuseReferenceArea", reuseReferenceAreaCheckBox.isSelected());
 //        paramMap.put("outputSimulatedImage", outputSimulatedImage);
 
         final String additionalOverlapStr = additionalOverlap.getText();
@@ -204,6 +208,8 @@ public class TerrainFlatteningOpUI extends BaseOperatorUI {
         gbc.gridy++;
         DialogUtils.addComponent(contentPane, gbc, "Oversampling Multiple:", oversamplingMultiple);
         gbc.gridy++;
+        contentPane.add(reuseReferenceAreaCheckBox, gbc);
+        gbc.gridy++;
 
         DialogUtils.fillPanel(contentPane, gbc);
 
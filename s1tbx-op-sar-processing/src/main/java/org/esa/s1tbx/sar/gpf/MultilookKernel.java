@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf;
+
+import java.awt.Rectangle;
+
+/**
+ * Separable block mean of the multilook operator.
+ * <p>
+ * Target pixel (tx, ty) covers the source interval [tx * rangeFactor, (tx + 1) * rangeFactor) in range and
+ * [ty * azimuthFactor, (ty + 1) * azimuthFactor) in azimuth. Each source pixel is weighted by the area it
+ * shares with the target pixel, so that non-integer look factors are supported. With integer factors all
+ * weights are one and rows are summed without weighting.
+ * <p>
+ * A target row is produced by adding the source rows it covers, each reduced to the target columns,
+ * into a column buffer and scaling the sums by the inverse target pixel area.
+ */
+final class MultilookKernel {
+
+    private final double rangeFactor;
+    private final double azimuthFactor;
+    private final int rangeLooks;
+    private final int azimuthLooks;
+    private final boolean integral;
+    private final double normalisation;
+
+    MultilookKernel(final double rangeFactor, final double azimuthFactor) {
+        if (rangeFactor < 1.0 || azimuthFactor < 1.0) {
+            throw new IllegalArgumentException("look factors must be at least 1");
+        }
+        this.rangeFactor = rangeFactor;
+        this.azimuthFactor = azimuthFactor;
+        this.rangeLooks = (int) rangeFactor;
+        this.azimuthLooks = (int) azimuthFactor;
+        this.integral = rangeLooks == rangeFactor && azimuthLooks == azimuthFactor;
+        this.normalisation = 1.0 / (rangeFactor * azimuthFactor);
+    }
+
+    boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * @return the number of target pixels that fit into the given number of source pixels in range
+     */
+    int getTargetWidth(final int sourceWidth) {
+        if (integral) {
+            return sourceWidth / rangeLooks;
+        }
+        int width = (int) Math.floor(sourceWidth / rangeFactor);
+        while (width > 0 && getLastSourceColumn(width - 1) >= sourceWidth) {
+            --width;
+        }
+        return width;
+    }
+
+    /**
+     * @return the number of target lines that fit into the given number of source lines
+     */
+    int getTargetHeight(final int sourceHeight) {
+        if (integral) {
+            return sourceHeight / azimuthLooks;
+        }
+        int height = (int) Math.floor(sourceHeight / azimuthFactor);
+        while (height > 0 && getLastSourceLine(height - 1) >= sourceHeight) {
+            --height;
+        }
+        return height;
+    }
+
+    int getFirstSourceColumn(final int tx) {
+        return integral ? tx * rangeLooks : (int) Math.floor(tx * rangeFactor);
+    }
+
+    /**
+     * @return the last source column, inclusive
+     */
+    int getLastSourceColumn(final int tx) {
+        return integral ? (tx + 1) * rangeLooks - 1 : (int) Math.ceil((tx + 1) * rangeFactor) - 1;
+    }
+
+    int getFirstSourceLine(final int ty) {
+        return integral ? ty * azimuthLooks : (int) Math.floor(ty * azimuthFactor);
+    }
+
+    /**
+     * @return the last source line, inclusive
+     */
+    int getLastSourceLine(final int ty) {
+        return integral ? (ty + 1) * azimuthLooks - 1 : (int) Math.ceil((ty + 1) * azimuthFactor) - 1;
+    }
+
+    /**
+     * @return the source area needed for a target area
+     */
+    Rectangle getSourceRectangle(final Rectangle targetRectangle) {
+        final int x0 = getFirstSourceColumn(targetRectangle.x);
+        final int y0 = getFirstSourceLine(targetRectangle.y);
+        final int x1 = getLastSourceColumn(targetRectangle.x + targetRectangle.width - 1);
+        final int y1 = getLastSourceLine(targetRectangle.y + targetRectangle.height - 1);
+        return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+    }
+
+    /**
+     * @return the fraction of source line y covered by target line ty
+     */
+    double getLineWeight(final int ty, final int y) {
+        if (integral) {
+            return 1.0;
+        }
+        final double start = ty * azimuthFactor;
+        final double end = (ty + 1) * azimuthFactor;
+        return Math.min(y + 1, end) - Math.max(y, start);
+    }
+
+    /**
+     * Reduce a source row to target columns and add it to the column sums
+     *
+     * @param row        the linear source values of the row
+     * @param rowX0      the source column of row[0]
+     * @param tx0        the first target column
+     * @param colSum     the column sums of target columns tx0 to tx0 + colSum.length - 1
+     * @param lineWeight the weight of the row from {@link #getLineWeight}
+     */
+    void accumulateRow(final double[] row, final int rowX0, final int tx0, final double[] colSum,
+                       final double lineWeight) {
+        final int tw = colSum.length;
+        if (integral) {
+            int i = tx0 * rangeLooks - rowX0;
+            for (int k = 0; k < tw; ++k) {
+                double sum = 0.0;
+                for (int j = 0; j < rangeLooks; ++j) {
+                    sum += row[i++];
+                }
+                colSum[k] += sum;
+            }
+            return;
+        }
+
+        for (int k = 0; k < tw; ++k) {
+            final double start = (tx0 + k) * rangeFactor;
+            final double end = (tx0 + k + 1) * rangeFactor;
+            final int xEnd = (int) Math.ceil(end);
+            double sum = 0.0;
+            for (int x = (int) Math.floor(start); x < xEnd; ++x) {
+                sum += (Math.min(x + 1, end) - Math.max(x, start)) * row[x - rowX0];
+            }
+            colSum[k] += lineWeight * sum;
+        }
+    }
+
+    /**
+     * Turn column sums into means, in place
+     */
+    void normalise(final double[] colSum) {
+        for (int k = 0; k < colSum.length; ++k) {
+            colSum[k] *= normalisation;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.TileIndex;
 
 import java.awt.*;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
@@ -85,6 +86,10 @@ public final class MultilookOp extends Operator {
     @Parameter(description = "Use ground square pixel", defaultValue = "true", label = "GR Square Pixel")
     private Boolean grSquarePixel = true;
 
+    @Parameter(description = "For ground square pixels use the exact, fractional number of looks and weight the source pixels by area",
+            defaultValue = "false", label = "Area Weighted Looks")
+    private Boolean areaWeightedLooks = false;
+
     private MetadataElement absRoot = null;
 
     private double azimuthLooks; // original azimuth_looks from metadata
@@ -98,6 +103,10 @@ public final class MultilookOp extends Operator {
     private double azimuthSpacing;
     private boolean isPolsar = false;
 
+    private double rangeLookFactor;
+    private double azimuthLookFactor;
+    private MultilookKernel kernel;
+
     private final HashMap<String, String[]> targetBandNameToSourceBandName = new HashMap<>();
     private static final String PRODUCT_SUFFIX = "_ML";
 
@@ -132,13 +141,21 @@ public final class MultilookOp extends Operator {
 
             getSourceImageDimension();
 
+            rangeLookFactor = nRgLooks;
+            azimuthLookFactor = nAzLooks;
             if(grSquarePixel != null && grSquarePixel) {
                 MultilookOp.DerivedParams param = new MultilookOp.DerivedParams();
                 param.nRgLooks = nRgLooks;
                 getDerivedParameters(sourceProduct, param);
                 setNumAzimuthLooks(param.nAzLooks);
+                azimuthLookFactor = nAzLooks;
+                if (areaWeightedLooks != null && areaWeightedLooks) {
+                    rangeLookFactor = param.rangeLookFactor;
+                    azimuthLookFactor = param.azimuthLookFactor;
+                }
             }
-            
+            kernel = new MultilookKernel(rangeLookFactor, azimuthLookFactor);
+
             createTargetProduct();
 
         } catch (Throwable e) {
@@ -164,14 +181,9 @@ public final class MultilookOp extends Operator {
         final int tw = targetTileRectangle.width;
         final int th = targetTileRectangle.height;
 
-        final int x0 = tx0 * nRgLooks;
-        final int y0 = ty0 * nAzLooks;
-        final int w = tw * nRgLooks;
-        final int h = th * nAzLooks;
-        final Rectangle sourceTileRectangle = new Rectangle(x0, y0, w, h);
+        final Rectangle sourceTileRectangle = kernel.getSourceRectangle(targetTileRectangle);
 
         //System.out.println(targetBand.getName()+ " tx0 = " + tx0 + ", ty0 = " + ty0 + ", tw = " + tw + ", th = " + th);
-        //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
 
         try {
             Tile sourceRaster1;
@@ -206,10 +218,9 @@ public final class MultilookOp extends Operator {
             final boolean isdB = bandUnit == Unit.UnitType.INTENSITY_DB || bandUnit == Unit.UnitType.AMPLITUDE_DB;
             final boolean isComplex = outputIntensity && (bandUnit == Unit.UnitType.REAL || bandUnit == Unit.UnitType.IMAGINARY);
 
-            double meanValue;
             final int maxy = ty0 + th;
             final int maxx = tx0 + tw;
-            if (nRgLooks == 1 && nAzLooks == 1) {
+            if (rangeLookFactor == 1.0 && azimuthLookFactor == 1.0) {
                 //no mean
                 if (!isComplex && targetTile.getDataBuffer().getType() == sourceRaster1.getDataBuffer().getType()) {
                     targetTile.setRawSamples(sourceRaster1.getRawSamples());
@@ -230,13 +241,39 @@ public final class MultilookOp extends Operator {
                     }
                 }
             } else {
+                final boolean toIntensity = isComplex && !isPolsar && srcData2 != null;
+                final int sx0 = sourceTileRectangle.x;
+                final double[] row = new double[sourceTileRectangle.width];
+                final double[] rowQ = toIntensity ? new double[sourceTileRectangle.width] : null;
+                final double[] colSum = new double[tw];
+
                 for (int ty = ty0; ty < maxy; ty++) {
-                    trgIndex.calculateStride(ty);
-                    for (int tx = tx0; tx < maxx; tx++) {
-                        meanValue = getMeanValue(
-                                tx, ty, srcData1, srcData2, srcIndex, nRgLooks, nAzLooks, isdB, isComplex, isPolsar);
-                        trgData.setElemDoubleAt(trgIndex.getIndex(tx), meanValue);
+                    Arrays.fill(colSum, 0.0);
+                    final int lastY = kernel.getLastSourceLine(ty);
+                    for (int y = kernel.getFirstSourceLine(ty); y <= lastY; y++) {
+                        final int start = sx0 - srcIndex.calculateStride(y);
+                        getRow(srcData1, start, row);
+                        if (isdB) {
+                            for (int i = 0; i < row.length; ++i) {
+                                row[i] = FastMath.pow(10, row[i] / 10.0); // dB to linear
+                            }
+                        } else if (toIntensity) {
+                            getRow(srcData2, start, rowQ);
+                            for (int i = 0; i < row.length; ++i) {
+                                row[i] = row[i] * row[i] + rowQ[i] * rowQ[i];
+                            }
+                        }
+                        kernel.accumulateRow(row, sx0, tx0, colSum, kernel.getLineWeight(ty, y));
                     }
+
+                    kernel.normalise(colSum);
+                    if (isdB) {
+                        for (int k = 0; k < tw; ++k) {
+                            colSum[k] = 10.0 * Math.log10(colSum[k]); // linear to dB
+                        }
+                    }
+                    trgIndex.calculateStride(ty);
+                    setRow(trgData, trgIndex.getIndex(tx0), colSum);
                 }
             }
         } catch (Throwable e) {
@@ -283,8 +320,8 @@ public final class MultilookOp extends Operator {
      */
     private void createTargetProduct() {
 
-        targetImageWidth = sourceImageWidth / nRgLooks;
-        targetImageHeight = sourceImageHeight / nAzLooks;
+        targetImageWidth = kernel.getTargetWidth(sourceImageWidth);
+        targetImageHeight = kernel.getTargetHeight(sourceImageHeight);
 
         targetProduct = new Product(sourceProduct.getName() + PRODUCT_SUFFIX,
                 sourceProduct.getProductType(),
@@ -339,11 +376,15 @@ public final class MultilookOp extends Operator {
         final float subSamplingY = targetImageHeight / (gridHeight - 1.0f);
         final PixelPos[] newTiePointPos = new PixelPos[gridWidth * gridHeight];
 
+        // centre of the first target pixel
+        final float xOffset = kernel.isIntegral() ? (int) (rangeLookFactor - 1) / 2 : (float) ((rangeLookFactor - 1) / 2.0);
+        final float yOffset = kernel.isIntegral() ? (int) (azimuthLookFactor - 1) / 2 : (float) ((azimuthLookFactor - 1) / 2.0);
+
         int k = 0;
         for (int j = 0; j < gridHeight; j++) {
-            final float y = (nAzLooks - 1) / 2 + Math.min(j * subSamplingY, targetImageHeight - 1) * nAzLooks;
+            final float y = yOffset + Math.min(j * subSamplingY, targetImageHeight - 1) * (float) azimuthLookFactor;
             for (int i = 0; i < gridWidth; i++) {
-                final float x = (nRgLooks - 1) / 2 + Math.min(i * subSamplingX, targetImageWidth - 1) * nRgLooks;
+                final float x = xOffset + Math.min(i * subSamplingX, targetImageWidth - 1) * (float) rangeLookFactor;
                 newTiePointPos[k] = new PixelPos();
                 newTiePointPos[k].x = x;
                 newTiePointPos[k].y = y;
@@ -368,22 +409,22 @@ public final class MultilookOp extends Operator {
 
         final MetadataElement absTgt = AbstractMetadata.getAbstractedMetadata(targetProduct);
         AbstractMetadata.setAttribute(absTgt, AbstractMetadata.multilook_flag, 1);
-        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.azimuth_looks, azimuthLooks * nAzLooks);
-        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.range_looks, rangeLooks * nRgLooks);
-        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.azimuth_spacing, azimuthSpacing * nAzLooks);
-        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.range_spacing, rangeSpacing * nRgLooks);
+        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.azimuth_looks, azimuthLooks * azimuthLookFactor);
+        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.range_looks, rangeLooks * rangeLookFactor);
+        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.azimuth_spacing, azimuthSpacing * azimuthLookFactor);
+        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.range_spacing, rangeSpacing * rangeLookFactor);
         AbstractMetadata.setAttribute(absTgt, AbstractMetadata.num_output_lines, targetImageHeight);
         AbstractMetadata.setAttribute(absTgt, AbstractMetadata.num_samples_per_line, targetImageWidth);
 
         final float oldLineTimeInterval = (float) absTgt.getAttributeDouble(AbstractMetadata.line_time_interval);
-        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.line_time_interval, oldLineTimeInterval * nAzLooks);
+        AbstractMetadata.setAttribute(absTgt, AbstractMetadata.line_time_interval, oldLineTimeInterval * azimuthLookFactor);
 
         final double oldNearEdgeSlantRange = absTgt.getAttributeDouble(AbstractMetadata.slant_range_to_first_pixel);
-        final double newNearEdgeSlantRange = oldNearEdgeSlantRange + rangeSpacing * (nRgLooks - 1) / 2.0;
+        final double newNearEdgeSlantRange = oldNearEdgeSlantRange + rangeSpacing * (rangeLookFactor - 1) / 2.0;
         AbstractMetadata.setAttribute(absTgt, AbstractMetadata.slant_range_to_first_pixel, newNearEdgeSlantRange);
 
         double oldFirstLineUTC = AbstractMetadata.parseUTC(absRoot.getAttributeString(AbstractMetadata.first_line_time)).getMJD(); // in days
-        double newFirstLineUTC = oldFirstLineUTC + oldLineTimeInterval * ((nAzLooks - 1) / 2.0) / Constants.secondsInDay;
+        double newFirstLineUTC = oldFirstLineUTC + oldLineTimeInterval * ((azimuthLookFactor - 1) / 2.0) / Constants.secondsInDay;
         AbstractMetadata.setAttribute(absTgt, AbstractMetadata.first_line_time, new ProductData.UTC(newFirstLineUTC));
 
         if(outputIntensity) {
@@ -392,61 +433,79 @@ public final class MultilookOp extends Operator {
     }
 
     /**
-     * Compute the mean value of pixels of the source image in the sliding window.
+     * Read consecutive samples of a data buffer.
      *
-     * @param tx       The x coordinate of a pixel in the current target tile.
-     * @param ty       The y coordinate of a pixel in the current target tile.
-     * @param srcData1 The product data for i band in case of complex product.
-     * @param srcData2 The product data for q band in case of complex product.
-     * @param nRgLooks number of range looks
-     * @param nAzLooks number of azimuth looks
-     * @return The mean value.
+     * @param data  the data buffer
+     * @param start the index of the first sample
+     * @param row   the samples (output)
      */
-    private static double getMeanValue(final int tx, final int ty,
-                                       final ProductData srcData1, final ProductData srcData2,
-                                       final TileIndex srcIndex,
-                                       final int nRgLooks, final int nAzLooks,
-                                       final boolean isdB, final boolean isComplex, final boolean isPolsar) {
-
-        final int xStart = tx * nRgLooks;
-        final int yStart = ty * nAzLooks;
-        final int xEnd = xStart + nRgLooks;
-        final int yEnd = yStart + nAzLooks;
-
-        double meanValue = 0.0;
-        int offset;
-        if (isdB) {
-            for (int y = yStart; y < yEnd; y++) {
-                offset = srcIndex.calculateStride(y);
-                for (int x = xStart; x < xEnd; x++) {
-                    meanValue += FastMath.pow(10, srcData1.getElemDoubleAt(x - offset) / 10.0); // dB to linear
+    private static void getRow(final ProductData data, final int start, final double[] row) {
+        final Object elems = data.getElems();
+        final int n = row.length;
+        switch (data.getType()) {
+            case ProductData.TYPE_FLOAT32: {
+                final float[] values = (float[]) elems;
+                for (int i = 0; i < n; ++i) {
+                    row[i] = values[start + i];
                 }
+                break;
             }
-
-            meanValue /= (nRgLooks * nAzLooks);
-            return 10.0 * Math.log10(meanValue); // linear to dB
-        } else if (isComplex && !isPolsar) { // COMPLEX
-            double i, q;
-            int index;
-            for (int y = yStart; y < yEnd; y++) {
-                offset = srcIndex.calculateStride(y);
-                for (int x = xStart; x < xEnd; x++) {
-                    index = x - offset;
-                    i = srcData1.getElemDoubleAt(index);
-                    q = srcData2.getElemDoubleAt(index);
-                    meanValue += i * i + q * q;
+            case ProductData.TYPE_FLOAT64:
+                System.arraycopy((double[]) elems, start, row, 0, n);
+                break;
+            case ProductData.TYPE_INT16: {
+                final short[] values = (short[]) elems;
+                for (int i = 0; i < n; ++i) {
+                    row[i] = values[start + i];
                 }
+                break;
             }
-        } else {
-            for (int y = yStart; y < yEnd; y++) {
-                offset = srcIndex.calculateStride(y);
-                for (int x = xStart; x < xEnd; x++) {
-                    meanValue += srcData1.getElemDoubleAt(x - offset);
+            case ProductData.TYPE_UINT16: {
+                final short[] values = (short[]) elems;
+                for (int i = 0; i < n; ++i) {
+                    row[i] = values[start + i] & 0xffff;
+                }
+                break;
+            }
+            case ProductData.TYPE_INT32: {
+                final int[] values = (int[]) elems;
+                for (int i = 0; i < n; ++i) {
+                    row[i] = values[start + i];
                 }
+                break;
             }
+            default:
+                for (int i = 0; i < n; ++i) {
+                    row[i] = data.getElemDoubleAt(start + i);
+                }
         }
+    }
 
-        return meanValue / (nRgLooks * nAzLooks);
+    /**
+     * Write consecutive samples of a data buffer.
+     *
+     * @param data  the data buffer
+     * @param start the index of the first sample
+     * @param row   the samples
+     */
+    private static void setRow(final ProductData data, final int start, final double[] row) {
+        final int n = row.length;
+        switch (data.getType()) {
+            case ProductData.TYPE_FLOAT32: {
+                final float[] values = (float[]) data.getElems();
+                for (int i = 0; i < n; ++i) {
+                    values[start + i] = (float) row[i];
+                }
+                break;
+            }
+            case ProductData.TYPE_FLOAT64:
+                System.arraycopy(row, 0, (double[]) data.getElems(), start, n);
+                break;
+            default:
+                for (int i = 0; i < n; ++i) {
+                    data.setElemDoubleAt(start + i, row[i]);
+                }
+        }
     }
 
     /**
@@ -481,8 +540,12 @@ public final class MultilookOp extends Operator {
         if (nAzLooks < 1.0) {
             param.nAzLooks = 1;
             param.nRgLooks = (int) Math.round(azimuthSpacing / groundRangeSpacing);
+            param.azimuthLookFactor = 1.0;
+            param.rangeLookFactor = azimuthSpacing / groundRangeSpacing;
         } else {
             param.nAzLooks = (int) Math.round(nAzLooks);
+            param.azimuthLookFactor = nAzLooks;
+            param.rangeLookFactor = param.nRgLooks;
         }
         param.meanGRSqaurePixel = (float) ((param.nRgLooks * groundRangeSpacing + param.nAzLooks * azimuthSpacing) * 0.5);
     }
@@ -509,6 +572,9 @@ public final class MultilookOp extends Operator {
         public int nAzLooks = 0;
         public int nRgLooks = 0;
         public float meanGRSqaurePixel = 0;
+        // exact looks for ground square pixels, used with area weighted looks
+        public double azimuthLookFactor = 0;
+        public double rangeLookFactor = 0;
     }
 
     /**
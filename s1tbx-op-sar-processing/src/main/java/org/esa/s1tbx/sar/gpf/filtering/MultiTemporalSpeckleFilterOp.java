@@ -32,6 +32,7 @@ import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.gpf.FilterWindow;
 import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
+import org.esa.snap.engine_utilities.gpf.TileIndex;
 
 import java.awt.*;
 import java.util.ArrayList;
@@ -324,56 +325,59 @@ public class MultiTemporalSpeckleFilterOp extends Operator {
 
         try {
             final Band[] targetBands = targetProduct.getBands();
-            final int numBands = targetBands.length;
 
-            final List<double[][]> filteredTileList = new ArrayList<>();;
-            double[][] sum = new double[h][w];
-            int[][] count = new int[h][w];
+            // running sum and count per pixel of the ratios I/E[I] over the dates
+            final double[] ratioSum = new double[w * h];
+            final int[] ratioCount = new int[w * h];
+
+            // each date is filtered once, its local mean E[I] is kept in its own target tile until the sum is known
             for (Band tgtBand : targetBands) {
                 final Band srcBand = sourceProduct.getBand(tgtBand.getName());
                 final Tile srcTile = getSourceTile(srcBand, targetRectangle);
                 final ProductData srcData = srcTile.getDataBuffer();
+                final TileIndex srcIndex = new TileIndex(srcTile);
                 final double bandNoDataValues = srcBand.getNoDataValue();
                 final String[] srcBandNames = {srcBand.getName()};
 
-                final double[][] filteredTile = speckleFilter.performFiltering(x0, y0, w, h, srcBandNames);
+                final Tile targetTile = targetTiles.get(tgtBand);
+                final ProductData targetData = targetTile.getDataBuffer();
+                final TileIndex tgtIndex = new TileIndex(targetTile);
 
-                filteredTileList.add(filteredTile);
+                final double[][] filteredTile = speckleFilter.performFiltering(x0, y0, w, h, srcBandNames);
 
-                for (int y = y0; y < yMax; ++y) {
-                    final int yy = y - y0;
-                    for (int x = x0; x < xMax; ++x) {
-                        final int xx = x - x0;
-                        if (filteredTile[yy][xx] != 0.0) {
-                            final int sourceIndex = srcTile.getDataBufferIndex(x, y);
-                            final double srcDataValue = srcData.getElemDoubleAt(sourceIndex);
+                for (int y = y0, k = 0; y < yMax; ++y) {
+                    final double[] filteredRow = filteredTile[y - y0];
+                    srcIndex.calculateStride(y);
+                    tgtIndex.calculateStride(y);
+                    for (int x = x0; x < xMax; ++x, ++k) {
+                        final double localMean = filteredRow[x - x0];
+                        targetData.setElemDoubleAt(tgtIndex.getIndex(x), localMean);
+                        if (localMean != 0.0) {
+                            final double srcDataValue = srcData.getElemDoubleAt(srcIndex.getIndex(x));
                             if (srcDataValue != bandNoDataValues) {
-                                sum[yy][xx] += srcDataValue / filteredTile[yy][xx];
-                                count[yy][xx]++;
+                                ratioSum[k] += srcDataValue / localMean;
+                                ratioCount[k]++;
                             }
                         }
                     }
                 }
             }
 
-            for (int yy = 0; yy < h; ++yy) {
-                for (int xx = 0; xx < w; ++xx) {
-                    if (count[yy][xx] > 0) {
-                        sum[yy][xx] /= count[yy][xx];
-                    }
+            for (int k = 0; k < ratioSum.length; ++k) {
+                if (ratioCount[k] > 0) {
+                    ratioSum[k] /= ratioCount[k];
                 }
             }
 
-            for (int i = 0; i < numBands; i++) {
-                Tile targetTile = targetTiles.get(targetBands[i]);
+            for (Band tgtBand : targetBands) {
+                final Tile targetTile = targetTiles.get(tgtBand);
                 final ProductData targetData = targetTile.getDataBuffer();
-                final double[][] filteredTile = filteredTileList.get(i);
-                for (int y = y0; y < yMax; y++) {
-                    final int yy = y - y0;
-                    for (int x = x0; x < xMax; x++) {
-                        final int xx = x - x0;
-                        final int targetIndex = targetTile.getDataBufferIndex(x, y);
-                        targetData.setElemDoubleAt(targetIndex, filteredTile[yy][xx] * sum[yy][xx]);
+                final TileIndex tgtIndex = new TileIndex(targetTile);
+                for (int y = y0, k = 0; y < yMax; ++y) {
+                    tgtIndex.calculateStride(y);
+                    for (int x = x0; x < xMax; ++x, ++k) {
+                        final int targetIndex = tgtIndex.getIndex(x);
+                        targetData.setElemDoubleAt(targetIndex, targetData.getElemDoubleAt(targetIndex) * ratioSum[k]);
                     }
                 }
             }
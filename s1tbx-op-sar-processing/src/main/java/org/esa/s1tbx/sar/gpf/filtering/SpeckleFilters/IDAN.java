@@ -26,9 +26,7 @@ import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.TileIndex;
 
 import java.awt.*;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -49,6 +47,50 @@ public class IDAN implements SpeckleFilter {
     private final double sigmaV;
     private final double sigmaVSqr;
 
+    private final ThreadLocal<Workspace> workspace;
+
+    /**
+     * Buffers of one thread for growing the adaptive neighbourhoods of a tile, reused from pixel to pixel and from
+     * tile to tile. Pixels are identified by their index in the source tile.
+     */
+    private static final class Workspace {
+        private double[] intensity = new double[0];
+        private int[] visited = new int[0]; // generation in which a pixel was last visited
+        private int generation = 0;
+
+        private final int[] anPixels; // pixels in the adaptive neighbourhood (AN), in the order they were added
+        private final int[] bgPixels; // pixels rejected in the 1st run of region growing
+        private final int[] front; // queue of AN pixels whose neighbours are examined
+        private final double[] seedSamples = new double[9];
+        private int numANPixels;
+        private int numBGPixels;
+        private double anSum; // sum of the intensities of the AN pixels, in the order they were added
+
+        Workspace(final int anSize) {
+            // the 1st run stops once AN exceeds anSize, so the neighbours of at most anSize + 1 pixels are examined
+            final int maxVisited = 8 * (anSize + 1) + 1;
+            anPixels = new int[maxVisited];
+            bgPixels = new int[maxVisited];
+            front = new int[maxVisited];
+        }
+
+        private void ensureCapacity(final int size) {
+            if (intensity.length < size) {
+                intensity = new double[size];
+                visited = new int[size];
+                generation = 0;
+            }
+        }
+
+        private void nextGeneration() {
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                generation = 0;
+            }
+            ++generation;
+        }
+    }
+
     public IDAN(final Operator op, final Product srcProduct, final Product trgProduct,
                 final Map<String, String[]> targetBandNameToSourceBandName, final String numLooksStr,
                 final int anSize) {
@@ -65,6 +107,8 @@ public class IDAN implements SpeckleFilter {
 
         sigmaV = 1.0 / Math.sqrt(Integer.parseInt(numLooksStr));
         sigmaVSqr = sigmaV * sigmaV;
+
+        workspace = ThreadLocal.withInitial(() -> new Workspace(anSize));
     }
 
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) {
@@ -134,8 +178,10 @@ public class IDAN implements SpeckleFilter {
         final int sw = sourceTileRectangle.width;
         final int sh = sourceTileRectangle.height;
 
-        final double[][] srcTileIntensity = getSourceTileIntensity(
-                sx0, sy0, sw, sh, sourceData1, sourceData2, srcIndex, noDataValue, bandUnit);
+        final Workspace ws = workspace.get();
+        ws.ensureCapacity(sw * sh);
+        getSourceTileIntensity(sx0, sy0, sw, sh, sourceData1, sourceData2, srcIndex, noDataValue, bandUnit,
+                               ws.intensity);
 
         final int xMax = x0 + w;
         final int yMax = y0 + h;
@@ -143,94 +189,89 @@ public class IDAN implements SpeckleFilter {
             final int yy = y - y0;
             for (int x = x0; x < xMax; ++x) {
                 final int xx = x - x0;
+                final int center = (y - sy0) * sw + x - sx0;
 
-                final double seed = getInitialSeed(x, y, sx0, sy0, sw, sh, srcTileIntensity, noDataValue);
+                final double seed = getInitialSeed(x - sx0, y - sy0, sw, sh, ws, noDataValue);
 
-                final Pix[] anPixelList = getIDANPixels(x, y, sx0, sy0, sw, sh, srcTileIntensity, noDataValue, seed);
+                getIDANPixels(center, sw, sh, ws, noDataValue, seed);
 
-                final double b = computeFilterScaleParam(sx0, sy0, anPixelList, srcTileIntensity);
+                final double b = computeFilterScaleParam(ws);
 
-                filteredTile[yy][xx] = getIDANFilteredValue(x, y, sx0, sy0, anPixelList, srcTileIntensity, bandUnit, b);
+                filteredTile[yy][xx] = getIDANFilteredValue(center, ws, bandUnit, b);
             }
         }
 
         return filteredTile;
     }
 
-    private static double[][] getSourceTileIntensity(
+    private static void getSourceTileIntensity(
             final int sx0, final int sy0, final int sw, final int sh, final ProductData srcData1,
-            final ProductData srcData2, final TileIndex srcIndex, final double noDataValue, final Unit.UnitType unit) {
+            final ProductData srcData2, final TileIndex srcIndex, final double noDataValue, final Unit.UnitType unit,
+            final double[] srcTileData) {
 
-        final double[][] srcTileData = new double[sh][sw];
         final int yMax = sy0 + sh;
         final int xMax = sx0 + sw;
 
         if (unit == Unit.UnitType.REAL || unit == Unit.UnitType.IMAGINARY) {
             for (int y = sy0; y < yMax; ++y) {
                 srcIndex.calculateStride(y);
-                final int yy = y - sy0;
+                final int offset = (y - sy0) * sw - sx0;
                 for (int x = sx0; x < xMax; ++x) {
                     final int idx = srcIndex.getIndex(x);
                     final double I = srcData1.getElemDoubleAt(idx);
                     final double Q = srcData2.getElemDoubleAt(idx);
                     if (Double.compare(I, noDataValue) != 0 && Double.compare(Q, noDataValue) != 0) {
-                        srcTileData[yy][x - sx0] = I * I + Q * Q;
+                        srcTileData[offset + x] = I * I + Q * Q;
                     } else {
-                        srcTileData[yy][x - sx0] = noDataValue;
+                        srcTileData[offset + x] = noDataValue;
                     }
                 }
             }
         } else if (unit == Unit.UnitType.AMPLITUDE) {
             for (int y = sy0; y < yMax; ++y) {
                 srcIndex.calculateStride(y);
-                final int yy = y - sy0;
+                final int offset = (y - sy0) * sw - sx0;
                 for (int x = sx0; x < xMax; ++x) {
                     final double v = srcData1.getElemDoubleAt(srcIndex.getIndex(x));
-                    srcTileData[yy][x - sx0] = v * v;
+                    srcTileData[offset + x] = v * v;
                 }
             }
         } else {
             for (int y = sy0; y < yMax; ++y) {
                 srcIndex.calculateStride(y);
-                final int yy = y - sy0;
+                final int offset = (y - sy0) * sw - sx0;
                 for (int x = sx0; x < xMax; ++x) {
-                    srcTileData[yy][x - sx0] = srcData1.getElemDoubleAt(srcIndex.getIndex(x));
+                    srcTileData[offset + x] = srcData1.getElemDoubleAt(srcIndex.getIndex(x));
                 }
             }
         }
-
-        return srcTileData;
     }
 
     /**
      * Compute the initial seed value for given pixel. The marginal median in a 3x3 neighborhood of the given pixel
      * is computed and used as the seed value.
      *
-     * @param tx               X coordinate of a given pixel.
-     * @param ty               Y coordinate of a given pixel.
-     * @param sx0              X coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sy0              Y coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sw               Width of the source rectangle
-     * @param sh               Height of the source rectangle
-     * @param srcTileIntensity Source tile intensity.
-     * @param noDataValue      Place holder for no data value.
-     * @return                 The computed initial seed value
+     * @param c           Column of the given pixel in the source tile
+     * @param r           Row of the given pixel in the source tile
+     * @param sw          Width of the source rectangle
+     * @param sh          Height of the source rectangle
+     * @param ws          The workspace holding the source tile intensity.
+     * @param noDataValue Place holder for no data value.
+     * @return The computed initial seed value
      */
-    private static double getInitialSeed(
-            final int tx, final int ty, final int sx0, final int sy0, final int sw, final int sh,
-            final double[][] srcTileIntensity, final double noDataValue) {
+    private static double getInitialSeed(final int c, final int r, final int sw, final int sh,
+                                         final Workspace ws, final double noDataValue) {
 
-        final int xMin = Math.max(tx - 1, sx0);
-        final int xMax = Math.min(tx + 1, sx0 + sw - 1);
-        final int yMin = Math.max(ty - 1, sy0);
-        final int yMax = Math.min(ty + 1, sy0 + sh - 1);
-        final double[] validSamples = new double[9];
+        final int cMin = Math.max(c - 1, 0);
+        final int cMax = Math.min(c + 1, sw - 1);
+        final int rMin = Math.max(r - 1, 0);
+        final int rMax = Math.min(r + 1, sh - 1);
+        final double[] validSamples = ws.seedSamples;
 
         int k = 0;
-        for (int y = yMin; y <= yMax; y++) {
-            final int yy = y - sy0;
-            for (int x = xMin; x <= xMax; x++) {
-                final double v = srcTileIntensity[yy][x - sx0];
+        for (int y = rMin; y <= rMax; y++) {
+            for (int x = cMin; x <= cMax; x++) {
+                final double v = ws.intensity[y * sw + x];
                 if (Double.compare(v, noDataValue) != 0) {
                     validSamples[k] = v;
                     k++;
@@ -238,229 +279,206 @@ public class IDAN implements SpeckleFilter {
             }
         }
 
+        if (k == 0) {
+            return 0.0;
+        }
+
         Arrays.sort(validSamples, 0, k);
 
         return validSamples[k / 2];
     }
 
     /**
-     * Find all pixels in the adaptive neighbourhood of a given pixel.
+     * Find all pixels in the adaptive neighbourhood of a given pixel. The AN pixels and the sum of their
+     * intensities are left in the workspace.
      *
-     * @param xc         X coordinate of the given pixel
-     * @param yc         Y coordinate of the given pixel
-     * @param sx0        X coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sy0        Y coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sw         Width of the source rectangle
-     * @param sh         Height of the source rectangle
-     * @param srcTileIntensity Source tile intensity.
-     * @param noDataValue      Place holder for no data value.
-     * @param seed       The initial seed value
-     * @return anPixelList List of pixels in the adaptive neighbourhood
+     * @param center      Index of the given pixel in the source tile
+     * @param sw          Width of the source rectangle
+     * @param sh          Height of the source rectangle
+     * @param ws          The workspace holding the source tile intensity.
+     * @param noDataValue Place holder for no data value.
+     * @param seed        The initial seed value
      */
-    private Pix[] getIDANPixels(final int xc, final int yc, final int sx0, final int sy0, final int sw, final int sh,
-                                final double[][] srcTileIntensity, final double noDataValue,
-                                final double seed) {
+    private void getIDANPixels(final int center, final int sw, final int sh, final Workspace ws,
+                               final double noDataValue, final double seed) {
 
-        // 1st run of region growing with IDAN50 threshold and initial seed, qualified pixel goes to anPixelList,
+        // 1st run of region growing with IDAN50 threshold and initial seed, qualified pixel goes to AN,
         // non-qualified pixel goes to "background pixels" list
         final double threshold50 = (2.0 / 3.0) * sigmaV;
-        final java.util.List<Pix> anPixelList = new ArrayList<>(anSize);
-        final Pix[] bgPixelList = regionGrowing(
-                xc, yc, sx0, sy0, sw, sh, srcTileIntensity, noDataValue, seed, threshold50, anPixelList);
+        regionGrowing(center, sw, sh, ws, noDataValue, seed, threshold50);
 
         // update seed with the pixels in AN
-        double newSeed = 0.0;
-        if (!anPixelList.isEmpty()) {
-            for (Pix pixel : anPixelList) {
-                newSeed += srcTileIntensity[pixel.y - sy0][pixel.x - sx0];
-            }
-            newSeed /= anPixelList.size();
-        } else {
-            newSeed = seed;
-        }
+        final double newSeed = ws.numANPixels > 0 ? ws.anSum / ws.numANPixels : seed;
 
         // 2nd run of region growing with IDAN95 threshold, the new seed and "background pixels" i.e. pixels rejected
         // in the 1st run of region growing are checked and added to AN
         final double threshold95 = 2.0 * sigmaV;
-        reExamBackgroundPixels(
-                sx0, sy0, srcTileIntensity, noDataValue, newSeed, threshold95, anPixelList, bgPixelList);
+        reExamBackgroundPixels(ws, newSeed, threshold95);
 
-        if (anPixelList.isEmpty()) {
-            return new Pix[]{new Pix(xc, yc)};
+        if (ws.numANPixels == 0) {
+            ws.anPixels[0] = center;
+            ws.numANPixels = 1;
+            ws.anSum = ws.intensity[center];
         }
-        return anPixelList.toArray(new Pix[anPixelList.size()]);
     }
 
     /**
-     * Find pixels in the adaptive neighbourhood (AN) of a given pixel using region growing method.
+     * Find pixels in the adaptive neighbourhood (AN) of a given pixel using region growing method. The front is
+     * a FIFO queue, so the pixels are examined ring by ring as before.
      *
-     * @param xc          X coordinate of the given pixel
-     * @param yc          Y coordinate of the given pixel
-     * @param sx0         X coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sy0         Y coordinate of the pixel at the upper left corner of the source rectangle
+     * @param center      Index of the given pixel in the source tile
      * @param sw          Width of the source rectangle
      * @param sh          Height of the source rectangle
-     * @param srcTileIntensity Source tile intensity.
-     * @param noDataValue      Place holder for no data value.
+     * @param ws          The workspace holding the source tile intensity.
+     * @param noDataValue Place holder for no data value.
      * @param seed        The initial seed value for AN
      * @param threshold   Threshold used in searching for pixels in AN
-     * @param anPixelList List of pixels in AN
-     * @return bgPixelList List of pixels rejected in searching for AN pixels
      */
-    private Pix[] regionGrowing(final int xc, final int yc, final int sx0, final int sy0, final int sw, final int sh,
-                                final double[][] srcTileIntensity, final double noDataValue,
-                                final double seed, final double threshold, final java.util.List<Pix> anPixelList) {
-
-        final int rc = yc - sy0;
-        final int cc = xc - sx0;
-        final Map<Integer, Boolean> visited = new HashMap<>(anSize + 8);
-        final java.util.List<Pix> bgPixelList = new ArrayList<>(anSize);
-
-        if (Double.compare(srcTileIntensity[rc][cc], noDataValue) != 0 &&
-                Math.abs((srcTileIntensity[rc][cc] - seed) / seed) < threshold) {
-            anPixelList.add(new Pix(xc, yc));
+    private void regionGrowing(final int center, final int sw, final int sh, final Workspace ws,
+                               final double noDataValue, final double seed, final double threshold) {
+
+        final double[] intensity = ws.intensity;
+        final int[] visited = ws.visited;
+        final int[] anPixels = ws.anPixels;
+        final int[] bgPixels = ws.bgPixels;
+        final int[] front = ws.front;
+        ws.nextGeneration();
+        final int generation = ws.generation;
+
+        int numAN = 0;
+        int numBG = 0;
+        double anSum = 0.0;
+
+        if (Double.compare(intensity[center], noDataValue) != 0 &&
+                Math.abs((intensity[center] - seed) / seed) < threshold) {
+            anPixels[numAN++] = center;
+            anSum += intensity[center];
         } else {
-            bgPixelList.add(new Pix(xc, yc));
+            bgPixels[numBG++] = center;
         }
-        visited.put(rc * sw + cc, true);
-
-        final java.util.List<Pix> front = new ArrayList<>(anSize);
-        front.add(new Pix(xc, yc));
-        final java.util.List<Pix> newfront = new ArrayList<>(anSize);
-
-        final int width = sx0 + sw;
-        final int height = sy0 + sh;
-        int r, c;
-        Integer index;
-
-        while (anPixelList.size() < anSize && !front.isEmpty()) {
-            newfront.clear();
-
-            for (final Pix p : front) {
-
-                final int[] x = {p.x - 1, p.x, p.x + 1, p.x - 1, p.x + 1, p.x - 1, p.x, p.x + 1};
-                final int[] y = {p.y - 1, p.y - 1, p.y - 1, p.y, p.y, p.y + 1, p.y + 1, p.y + 1};
-
-                for (int i = 0; i < 8; i++) {
-
-                    if (x[i] >= sx0 && x[i] < width && y[i] >= sy0 && y[i] < height) {
-                        r = y[i] - sy0;
-                        c = x[i] - sx0;
-                        index = r * sw + c;
-                        if (visited.get(index) == null) {
-                            visited.put(index, true);
-                            final Pix newPos = new Pix(x[i], y[i]);
-                            if (Double.compare(srcTileIntensity[r][c], noDataValue) != 0 &&
-                                    Math.abs((srcTileIntensity[r][c] - seed) / seed) < threshold) {
-                                anPixelList.add(newPos);
-                                newfront.add(newPos);
+        visited[center] = generation;
+
+        int head = 0;
+        int tail = 0;
+        front[tail++] = center;
+
+        growing:
+        while (numAN < anSize && head < tail) {
+            final int frontEnd = tail;
+            while (head < frontEnd) {
+                final int p = front[head++];
+                final int pr = p / sw;
+                final int pc = p - pr * sw;
+
+                for (int dr = -1; dr <= 1; dr++) {
+                    final int r = pr + dr;
+                    if (r < 0 || r >= sh) {
+                        continue;
+                    }
+                    for (int dc = -1; dc <= 1; dc++) {
+                        final int c = pc + dc;
+                        if ((dr == 0 && dc == 0) || c < 0 || c >= sw) {
+                            continue;
+                        }
+                        final int index = r * sw + c;
+                        if (visited[index] != generation) {
+                            visited[index] = generation;
+                            if (Double.compare(intensity[index], noDataValue) != 0 &&
+                                    Math.abs((intensity[index] - seed) / seed) < threshold) {
+                                anPixels[numAN++] = index;
+                                anSum += intensity[index];
+                                front[tail++] = index;
                             } else {
-                                bgPixelList.add(newPos);
+                                bgPixels[numBG++] = index;
                             }
                         }
                     }
                 }
-                if (anPixelList.size() > anSize) {
-                    break;
+                if (numAN > anSize) {
+                    break growing;
                 }
             }
-            front.clear();
-            front.addAll(newfront);
         }
-        return bgPixelList.toArray(new Pix[bgPixelList.size()]);
-    }
-
-    private final static class Pix {
-        final int x, y;
 
-        public Pix(final int xx, final int yy) {
-            x = xx;
-            y = yy;
-        }
+        ws.numANPixels = numAN;
+        ws.numBGPixels = numBG;
+        ws.anSum = anSum;
     }
 
     /**
      * Re-exam the pixels that are rejected in the region growing process and add them to AN if qualified.
      *
-     * @param sx0         X coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sy0         Y coordinate of the pixel at the upper left corner of the source rectangle
-     * @param srcTileIntensity  Source tile intensity
-     * @param noDataValue  No dat value
-     * @param seed        The seed value for AN
-     * @param threshold   Threshold used in searching for pixels in AN
-     * @param anPixelList List of pixels in AN
-     * @param bgPixelList List of pixels rejected in searching for AN pixels
+     * @param ws        The workspace holding the AN and background pixels.
+     * @param seed      The seed value for AN
+     * @param threshold Threshold used in searching for pixels in AN
      */
-    private static void reExamBackgroundPixels(
-            final int sx0, final int sy0, final double[][] srcTileIntensity, final double noDataValue,
-            final double seed, final double threshold, final java.util.List<Pix> anPixelList,
-            final Pix[] bgPixelList) {
-
-        int r, c;
-        for (final Pix pixel : bgPixelList) {
-            r = pixel.y - sy0;
-            c = pixel.x - sx0;
-            if (Math.abs((srcTileIntensity[r][c] - seed) / seed) < threshold) {
-                anPixelList.add(new Pix(pixel.x, pixel.y));
+    private static void reExamBackgroundPixels(final Workspace ws, final double seed, final double threshold) {
+
+        final double[] intensity = ws.intensity;
+        for (int i = 0; i < ws.numBGPixels; i++) {
+            final int pixel = ws.bgPixels[i];
+            if (Math.abs((intensity[pixel] - seed) / seed) < threshold) {
+                ws.anPixels[ws.numANPixels++] = pixel;
+                ws.anSum += intensity[pixel];
             }
         }
     }
 
     /**
-     * Compute scale parameter b for MMSE filter.
+     * Compute scale parameter b for MMSE filter from the AN pixels in the workspace.
      *
-     * @param sx0         X coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sy0         Y coordinate of the pixel at the upper left corner of the source rectangle
-     * @param anPixelList List of pixels in AN
-     * @param srcTileIntensity Source tile intensity
+     * @param ws The workspace holding the AN pixels.
      * @return The scale parameter b
      */
-    private double computeFilterScaleParam(
-            final int sx0, final int sy0, final Pix[] anPixelList, final double[][] srcTileIntensity) {
+    private double computeFilterScaleParam(final Workspace ws) {
 
-        final double[] anPixels = new double[anPixelList.length];
-        int k = 0;
-        for (Pix pixel : anPixelList) {
-            anPixels[k++] = srcTileIntensity[pixel.y - sy0][pixel.x - sx0];
+        final int n = ws.numANPixels;
+        final double meanY = ws.anSum / n;
+
+        double varY = 0.0;
+        if (n > 1) {
+            for (int i = 0; i < n; i++) {
+                final double diff = ws.intensity[ws.anPixels[i]] - meanY;
+                varY += diff * diff;
+            }
+            varY /= (n - 1);
+        }
+        if (varY == 0.0) {
+            return 0.0;
         }
 
-        return computeMMSEWeight(anPixels, sigmaVSqr);
+        double varX = (varY - meanY * meanY * sigmaVSqr) / (1 + sigmaVSqr);
+        if (varX < 0.0) {
+            varX = 0.0;
+        }
+        return varX / varY;
     }
 
     /**
      * Compute MMSE filtered value for given pixel.
      *
-     * @param x           X coordinate of the given pixel
-     * @param y           Y  coordinate of the given pixel
-     * @param sx0         X coordinate of the pixel at the upper left corner of the source rectangle
-     * @param sy0         Y coordinate of the pixel at the upper left corner of the source rectangle
-     * @param anPixelList List of pixels in AN
-     * @param srcTileIntensity Source tile intensity
-     * @param b           The scale parameter
+     * @param center   Index of the given pixel in the source tile
+     * @param ws       The workspace holding the AN pixels.
+     * @param bandUnit Unit of the source band
+     * @param b        The scale parameter
      * @return The filtered value
      */
-    private static double getIDANFilteredValue(
-            final int x, final int y, final int sx0, final int sy0, final Pix[] anPixelList,
-            final double[][] srcTileIntensity, final Unit.UnitType bandUnit, final double b) {
+    private static double getIDANFilteredValue(final int center, final Workspace ws, final Unit.UnitType bandUnit,
+                                               final double b) {
 
+        final int n = ws.numANPixels;
         if (bandUnit == Unit.UnitType.AMPLITUDE) {
             double mean = 0.0;
-
-            for (final Pix pixel : anPixelList) {
-                mean += Math.sqrt(srcTileIntensity[pixel.y - sy0][pixel.x - sx0]);
+            for (int i = 0; i < n; i++) {
+                mean += Math.sqrt(ws.intensity[ws.anPixels[i]]);
             }
-            mean /= anPixelList.length;
+            mean /= n;
 
-            return mean + b * (Math.sqrt(srcTileIntensity[y - sy0][x - sx0]) - mean);
+            return mean + b * (Math.sqrt(ws.intensity[center]) - mean);
         } else { // intensity
-            double mean = 0.0;
-
-            for (final Pix pixel : anPixelList) {
-                mean += srcTileIntensity[pixel.y - sy0][pixel.x - sx0];
-            }
-            mean /= anPixelList.length;
+            final double mean = ws.anSum / n;
 
-            return mean + b * (srcTileIntensity[y - sy0][x - sx0] - mean);
+            return mean + b * (ws.intensity[center] - mean);
         }
     }
 }
@@ -28,9 +28,7 @@ import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.TileIndex;
 
 import java.awt.*;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -68,6 +66,27 @@ public class LeeSigma implements SpeckleFilter {
     private int halfTargetWindowSize = 0;
     private int targetSize = 5;
 
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * Buffers of one thread, reused from tile to tile
+     */
+    private static final class Workspace {
+        private double[] pixels = new double[0];
+        private double[] sortedPixels = new double[0];
+        private double[] selectedPixels = new double[0];
+
+        private void ensureCapacity(final int size, final int windowSize) {
+            if (pixels.length < size) {
+                pixels = new double[size];
+                sortedPixels = new double[size];
+            }
+            if (selectedPixels.length < windowSize) {
+                selectedPixels = new double[windowSize];
+            }
+        }
+    }
+
     private static final String SIGMA_50_PERCENT = "0.5";
     private static final String SIGMA_60_PERCENT = "0.6";
     private static final String SIGMA_70_PERCENT = "0.7";
@@ -400,8 +419,42 @@ public class LeeSigma implements SpeckleFilter {
         final int sw = sourceTileRectangle.width;
         final int sh = sourceTileRectangle.height;
 
-        double sigmaVSqr, sigmaVPSqr, sigmaRangeLow, sigmaRangeHigh;
-        if (bandUnit == Unit.UnitType.AMPLITUDE) {
+        final Workspace ws = workspace.get();
+        final int maxWindowSize = Math.max(filterSize, targetWindowSize);
+        ws.ensureCapacity(sw * sh, maxWindowSize * maxWindowSize);
+        for (int y = sy0; y < sy0 + sh; ++y) {
+            srcIndex.calculateStride(y);
+            int k = (y - sy0) * sw;
+            for (int x = sx0; x < sx0 + sw; ++x) {
+                ws.pixels[k++] = getPixelValue(srcIndex.getIndex(x), noDataValue, bandUnit, sourceData1, sourceData2);
+            }
+        }
+
+        filterTile(ws, sw, sh, x0 - sx0, y0 - sy0, w, h, noDataValue, bandUnit == Unit.UnitType.AMPLITUDE,
+                   filteredTile);
+        return filteredTile;
+    }
+
+    /**
+     * Filter a tile held in the workspace.
+     *
+     * @param ws           The workspace holding the source pixels.
+     * @param sw           The source tile width.
+     * @param sh           The source tile height.
+     * @param ox           X offset of the target tile in the source tile.
+     * @param oy           Y offset of the target tile in the source tile.
+     * @param w            The target tile width.
+     * @param h            The target tile height.
+     * @param noDataValue  The place holder for no data.
+     * @param isAmplitude  True for amplitude, false for intensity.
+     * @param filteredTile The filtered pixel values.
+     */
+    private void filterTile(final Workspace ws, final int sw, final int sh, final int ox, final int oy,
+                            final int w, final int h, final double noDataValue, final boolean isAmplitude,
+                            final double[][] filteredTile) {
+
+        final double sigmaVSqr, sigmaVPSqr, sigmaRangeLow, sigmaRangeHigh;
+        if (isAmplitude) {
             sigmaVSqr = ASigmaVSqr;
             sigmaVPSqr = ASigmaVPSqr;
             sigmaRangeLow = A1;
@@ -413,97 +466,58 @@ public class LeeSigma implements SpeckleFilter {
             sigmaRangeHigh = I2;
         }
 
-        final double z98 = computeZ98Values(
-                srcIndex, sourceTileRectangle, noDataValue, bandUnit, sourceData1, sourceData2);
+        final double[] pixels = ws.pixels;
+        final double[] selected = ws.selectedPixels;
+        final double z98 = computeZ98Value(pixels, sw * sh, ws.sortedPixels);
 
         final boolean[][] isPointTarget = new boolean[h][w];
-        final double[][] targetWindow = new double[targetWindowSize][targetWindowSize];
-        final double[][] filterWindow = new double[filterSize][filterSize];
-        double[] pixelsSelected;
-
-        final int xMax = x0 + w;
-        final int yMax = y0 + h;
-        for (int y = y0; y < yMax; ++y) {
-            final int yy = y - y0;
-            srcIndex.calculateStride(y);
 
-            for (int x = x0; x < xMax; ++x) {
-                final int xx = x - x0;
-                final int srcIdx = srcIndex.getIndex(x);
+        for (int yy = 0; yy < h; ++yy) {
+            final int cy = oy + yy;
+            for (int xx = 0; xx < w; ++xx) {
+                final int cx = ox + xx;
 
-                final double v = getPixelValue(srcIdx, noDataValue, bandUnit, sourceData1, sourceData2);
+                final double v = pixels[cy * sw + cx];
 
                 if (isPointTarget[yy][xx]) {
                     filteredTile[yy][xx] = v;
                     continue;
                 }
 
-                if (y - halfSizeY < sy0 || y + halfSizeY > sy0 + sh - 1 ||
-                        x - halfSizeX < sx0 || x + halfSizeX > sx0 + sw - 1) {
-
-                    getWindowPixels(x, y, sx0, sy0, sw, sh, sourceTile1, noDataValue, bandUnit,
-                                    sourceData1, sourceData2, filterWindow);
+                if (cy - halfSizeY < 0 || cy + halfSizeY > sh - 1 || cx - halfSizeX < 0 || cx + halfSizeX > sw - 1) {
 
-                    pixelsSelected = getValidPixels(filterWindow, noDataValue);
-
-                    final double vEst = computeMMSEEstimate(v, pixelsSelected, sigmaVSqr, noDataValue);
-
-                    filteredTile[yy][xx] = vEst;
+                    final int numSelected = getValidPixels(pixels, sw, sh, cx, cy, halfSizeX, noDataValue, selected);
+                    filteredTile[yy][xx] = computeMMSEEstimate(v, selected, numSelected, sigmaVSqr, noDataValue);
                     continue;
                 }
 
-                getWindowPixels(x, y, sx0, sy0, sw, sh, sourceTile1, noDataValue, bandUnit,
-                                sourceData1, sourceData2, targetWindow);
-
-                if (checkPointTarget(x, y, z98, targetWindow, isPointTarget, x0, y0, w, h, noDataValue)) {
+                if (checkPointTarget(pixels, sw, sh, cx, cy, ox, oy, w, h, z98, isPointTarget, noDataValue)) {
                     filteredTile[yy][xx] = v;
                     continue;
                 }
 
-                pixelsSelected = getValidPixels(targetWindow, noDataValue);
-                final double meanEst = computeMMSEEstimate(v, pixelsSelected, sigmaVSqr, noDataValue);
-                double[] sigmaRange = {meanEst * sigmaRangeLow, meanEst * sigmaRangeHigh};
+                int numSelected = getValidPixels(pixels, sw, sh, cx, cy, halfTargetWindowSize, noDataValue, selected);
+                final double meanEst = computeMMSEEstimate(v, selected, numSelected, sigmaVSqr, noDataValue);
 
-                getWindowPixels(x, y, sx0, sy0, sw, sh, sourceTile1, noDataValue, bandUnit,
-                                sourceData1, sourceData2, filterWindow);
-
-                pixelsSelected = selectPixelsInSigmaRange(sigmaRange, filterWindow, noDataValue);
-                if (pixelsSelected.length == 0) {
+                numSelected = selectPixelsInSigmaRange(pixels, sw, sh, cx, cy, meanEst * sigmaRangeLow,
+                                                       meanEst * sigmaRangeHigh, noDataValue, selected);
+                if (numSelected == 0) {
                     filteredTile[yy][xx] = v;
                     continue;
                 }
 
-                final double vEst = computeMMSEEstimate(v, pixelsSelected, sigmaVPSqr, noDataValue);
-                filteredTile[yy][xx] = vEst;
+                filteredTile[yy][xx] = computeMMSEEstimate(v, selected, numSelected, sigmaVPSqr, noDataValue);
             }
         }
-
-        return filteredTile;
     }
 
-    private static double computeZ98Values(final TileIndex srcIndex, final Rectangle sourceRectangle,
-                                           final double noDataValue, final Unit.UnitType unit,
-                                           final ProductData srcData1, final ProductData srcData2) {
-
-        final int sx0 = sourceRectangle.x;
-        final int sy0 = sourceRectangle.y;
-        final int sw = sourceRectangle.width;
-        final int sh = sourceRectangle.height;
-        final int maxY = sy0 + sh;
-        final int maxX = sx0 + sw;
-        final int z98Index = (int) (sw * sh * 0.98) - 1;
-
-        double[] pixelValues = new double[sw * sh];
-        int k = 0;
-        for (int y = sy0; y < maxY; y++) {
-            srcIndex.calculateStride(y);
-            for (int x = sx0; x < maxX; x++) {
-                pixelValues[k++] = getPixelValue(srcIndex.getIndex(x), noDataValue, unit, srcData1, srcData2);
-            }
-        }
+    private static double computeZ98Value(final double[] pixels, final int numPixels, final double[] sortedPixels) {
+
+        final int z98Index = (int) (numPixels * 0.98) - 1;
 
-        Arrays.sort(pixelValues);
-        return pixelValues[z98Index];
+        System.arraycopy(pixels, 0, sortedPixels, 0, numPixels);
+        Arrays.sort(sortedPixels, 0, numPixels);
+        return sortedPixels[z98Index];
     }
 
     private static double getPixelValue(final int index, final double noDataValue, final Unit.UnitType unit,
@@ -522,54 +536,38 @@ public class LeeSigma implements SpeckleFilter {
         }
     }
 
-    private static void getWindowPixels(final int x, final int y, final int sx0, final int sy0, final int sw, final int sh,
-                                        final Tile sourceTile, final double noDataValue, final Unit.UnitType unit,
-                                        final ProductData srcData1, final ProductData srcData2, final double[][] windowPixel) {
-
-        final TileIndex srcIndex = new TileIndex(sourceTile);
-        final int windowSize = windowPixel.length;
-        final int halfWindowSize = windowSize / 2;
-
-        int yy, xx;
-        for (int j = 0; j < windowSize; j++) {
-            yy = y - halfWindowSize + j;
-            srcIndex.calculateStride(yy);
-            for (int i = 0; i < windowSize; i++) {
-                xx = x - halfWindowSize + i;
-                if (yy >= sy0 && yy <= sy0 + sh - 1 && xx >= sx0 && xx <= sx0 + sw - 1) {
-                    windowPixel[j][i] = getPixelValue(srcIndex.getIndex(xx), noDataValue, unit, srcData1, srcData2);
-                } else {
-                    windowPixel[j][i] = noDataValue;
-                }
-            }
-        }
-    }
-
-    private static double[] getValidPixels(final double[][] filterWindow, final double noDataValue) {
-
-        final List<Double> pixelsSelected = new ArrayList<>();
-        final int nCols = filterWindow[0].length;
-        for (double[] aFilterWindow : filterWindow) {
-            for (int i = 0; i < nCols; i++) {
-                if (Double.compare(aFilterWindow[i], noDataValue) != 0) {
-                    pixelsSelected.add(aFilterWindow[i]);
+    /**
+     * Select the valid pixels of the window centred at the given source tile pixel, row by row.
+     * Pixels outside the source tile are no data.
+     *
+     * @return The number of pixels selected.
+     */
+    private static int getValidPixels(final double[] pixels, final int sw, final int sh, final int cx, final int cy,
+                                      final int halfWindowSize, final double noDataValue, final double[] selected) {
+
+        final int xStart = Math.max(0, cx - halfWindowSize);
+        final int xEnd = Math.min(sw - 1, cx + halfWindowSize);
+        final int yStart = Math.max(0, cy - halfWindowSize);
+        final int yEnd = Math.min(sh - 1, cy + halfWindowSize);
+
+        int n = 0;
+        for (int y = yStart; y <= yEnd; y++) {
+            for (int k = y * sw + xStart, kEnd = y * sw + xEnd; k <= kEnd; k++) {
+                if (Double.compare(pixels[k], noDataValue) != 0) {
+                    selected[n++] = pixels[k];
                 }
             }
         }
-        final double[] result = new double[pixelsSelected.size()];
-        for(int i = 0; i < pixelsSelected.size(); ++i) {
-            result[i] = pixelsSelected.get(i);
-        }
-        return result;
+        return n;
     }
 
-    private boolean checkPointTarget(final int x, final int y, final double z98, final double[][] targetWindow,
-                                     final boolean[][] isPointTarget, final int x0, final int y0, final int w,
-                                     final int h, final double noDataValue) {
+    private boolean checkPointTarget(final double[] pixels, final int sw, final int sh, final int cx, final int cy,
+                                     final int ox, final int oy, final int w, final int h, final double z98,
+                                     final boolean[][] isPointTarget, final double noDataValue) {
 
-        if (targetWindow[halfTargetWindowSize][halfTargetWindowSize] > z98) {
-            if (getClusterSize(z98, targetWindow, noDataValue) > targetSize) {
-                markClusterPixels(x, y, isPointTarget, z98, targetWindow, x0, y0, w, h, noDataValue);
+        if (pixels[cy * sw + cx] > z98) {
+            if (getClusterSize(pixels, sw, sh, cx, cy, z98, noDataValue) > targetSize) {
+                markClusterPixels(pixels, sw, sh, cx, cy, ox, oy, w, h, z98, isPointTarget, noDataValue);
                 return true;
             }
         }
@@ -577,12 +575,18 @@ public class LeeSigma implements SpeckleFilter {
         return false;
     }
 
-    private int getClusterSize(final double threshold, final double[][] targetWindow, final double noDataValue) {
+    private int getClusterSize(final double[] pixels, final int sw, final int sh, final int cx, final int cy,
+                               final double threshold, final double noDataValue) {
+
+        final int xStart = Math.max(0, cx - halfTargetWindowSize);
+        final int xEnd = Math.min(sw - 1, cx + halfTargetWindowSize);
+        final int yStart = Math.max(0, cy - halfTargetWindowSize);
+        final int yEnd = Math.min(sh - 1, cy + halfTargetWindowSize);
 
         int clusterSize = 0;
-        for (int j = 0; j < targetWindowSize; j++) {
-            for (int i = 0; i < targetWindowSize; i++) {
-                if (Double.compare(targetWindow[j][i], noDataValue) != 0 && targetWindow[j][i] > threshold) {
+        for (int y = yStart; y <= yEnd; y++) {
+            for (int k = y * sw + xStart, kEnd = y * sw + xEnd; k <= kEnd; k++) {
+                if (Double.compare(pixels[k], noDataValue) != 0 && pixels[k] > threshold) {
                     clusterSize++;
                 }
             }
@@ -590,30 +594,39 @@ public class LeeSigma implements SpeckleFilter {
         return clusterSize;
     }
 
-    private void markClusterPixels(final int x, final int y,
-                                   boolean[][] isPointTarget, final double threshold, final double[][] targetWindow,
-                                   final int x0, final int y0, final int w, final int h, final double noDataValue) {
-
-        final int windowSize = targetWindow.length;
-        final int halfWindowSize = windowSize / 2;
-
-        int yy, xx;
-        for (int j = 0; j < targetWindowSize; j++) {
-            yy = y - halfWindowSize + j;
-            for (int i = 0; i < targetWindowSize; i++) {
-                xx = x - halfWindowSize + i;
-                if (Double.compare(targetWindow[j][i], noDataValue) != 0 && targetWindow[j][i] > threshold &&
-                        yy >= y0 && yy < y0 + h && xx >= x0 && xx < x0 + w) {
-                    isPointTarget[yy - y0][xx - x0] = true;
+    private void markClusterPixels(final double[] pixels, final int sw, final int sh, final int cx, final int cy,
+                                   final int ox, final int oy, final int w, final int h, final double threshold,
+                                   final boolean[][] isPointTarget, final double noDataValue) {
+
+        // the part of the target window inside both the source tile and the target tile
+        final int xStart = Math.max(Math.max(0, ox), cx - halfTargetWindowSize);
+        final int xEnd = Math.min(Math.min(sw, ox + w) - 1, cx + halfTargetWindowSize);
+        final int yStart = Math.max(Math.max(0, oy), cy - halfTargetWindowSize);
+        final int yEnd = Math.min(Math.min(sh, oy + h) - 1, cy + halfTargetWindowSize);
+
+        for (int y = yStart; y <= yEnd; y++) {
+            for (int x = xStart; x <= xEnd; x++) {
+                final double v = pixels[y * sw + x];
+                if (Double.compare(v, noDataValue) != 0 && v > threshold) {
+                    isPointTarget[y - oy][x - ox] = true;
                 }
             }
         }
     }
 
-    private double computeMMSEWeight(
-            final double[] dataArray, final double meanY, final double sigmaVSqr, final double noDataValue) {
+    private double computeMMSEWeight(final double[] dataArray, final int numSamples, final double meanY,
+                                     final double sigmaVSqr, final double noDataValue) {
 
-        final double varY = getVarianceValue(dataArray, dataArray.length, meanY, noDataValue);
+        double varY = 0.0;
+        if (numSamples > 1) {
+            for (int i = 0; i < numSamples; i++) {
+                if (dataArray[i] != noDataValue) {
+                    final double diff = dataArray[i] - meanY;
+                    varY += diff * diff;
+                }
+            }
+            varY /= (numSamples - 1);
+        }
         if (varY == 0.0) {
             return 0.0;
         }
@@ -626,31 +639,40 @@ public class LeeSigma implements SpeckleFilter {
         return varX / varY;
     }
 
-    private double[] selectPixelsInSigmaRange(
-            final double[] sigmaRange, final double[][] filterWindow, final double noDataValue) {
-
-        final List<Double> pixelsSelected = new ArrayList<>();
-        for (int j = 0; j < filterSize; j++) {
-            for (int i = 0; i < filterSize; i++) {
-                if (Double.compare(filterWindow[j][i], noDataValue) != 0 && filterWindow[j][i] >= sigmaRange[0] &&
-                        filterWindow[j][i] <= sigmaRange[1]) {
-                    pixelsSelected.add(filterWindow[j][i]);
+    /**
+     * Select the valid pixels of the filter window centred at the given source tile pixel that are within the
+     * sigma range, row by row. The filter window must be inside the source tile.
+     *
+     * @return The number of pixels selected.
+     */
+    private int selectPixelsInSigmaRange(final double[] pixels, final int sw, final int sh, final int cx,
+                                         final int cy, final double sigmaRangeLow, final double sigmaRangeHigh,
+                                         final double noDataValue, final double[] selected) {
+
+        int n = 0;
+        for (int y = cy - halfSizeY; y <= cy + halfSizeY; y++) {
+            for (int k = y * sw + cx - halfSizeX, kEnd = y * sw + cx + halfSizeX; k <= kEnd; k++) {
+                final double v = pixels[k];
+                if (Double.compare(v, noDataValue) != 0 && v >= sigmaRangeLow && v <= sigmaRangeHigh) {
+                    selected[n++] = v;
                 }
             }
         }
-        final double[] result = new double[pixelsSelected.size()];
-        for(int i = 0; i < pixelsSelected.size(); ++i) {
-            result[i] = pixelsSelected.get(i);
-        }
-        return result;
+        return n;
     }
 
-    private double computeMMSEEstimate(final double centerPixelValue, final double[] dataArray,
+    private double computeMMSEEstimate(final double centerPixelValue, final double[] dataArray, final int numSamples,
                                        final double sigmaVSqr, final double noDataValue) {
 
-        final double mean = getMeanValue(dataArray, dataArray.length, noDataValue);
+        double mean = 0.0;
+        for (int i = 0; i < numSamples; i++) {
+            if (dataArray[i] != noDataValue) {
+                mean += dataArray[i];
+            }
+        }
+        mean /= numSamples;
 
-        final double b = computeMMSEWeight(dataArray, mean, sigmaVSqr, noDataValue);
+        final double b = computeMMSEWeight(dataArray, numSamples, mean, sigmaVSqr, noDataValue);
 
         return (1 - b) * mean + b * centerPixelValue;
     }
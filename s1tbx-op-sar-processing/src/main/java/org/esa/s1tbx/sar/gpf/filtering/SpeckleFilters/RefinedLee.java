@@ -45,6 +45,40 @@ public class RefinedLee implements SpeckleFilter {
     private final int sourceImageHeight;
     private Map<String, String[]> targetBandNameToSourceBandName;
 
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    // first and last + 1 column of each row of the 7x7 window in the non-edge area of direction d
+    private static final int[][] NON_EDGE_AREA_START = {
+            {3, 3, 3, 3, 3, 3, 3}, {0, 1, 2, 3, 4, 5, 6}, {0, 0, 0, 0, 0, 0, 0}, {0, 0, 0, 0, 0, 0, 0},
+            {0, 0, 0, 0, 0, 0, 0}, {0, 0, 0, 0, 0, 0, 0}, {0, 0, 0, 0, 0, 0, 0}, {6, 5, 4, 3, 2, 1, 0}};
+    private static final int[][] NON_EDGE_AREA_END = {
+            {7, 7, 7, 7, 7, 7, 7}, {7, 7, 7, 7, 7, 7, 7}, {7, 7, 7, 7, 0, 0, 0}, {7, 6, 5, 4, 3, 2, 1},
+            {4, 4, 4, 4, 4, 4, 4}, {1, 2, 3, 4, 5, 6, 7}, {0, 0, 0, 7, 7, 7, 7}, {7, 7, 7, 7, 7, 7, 7}};
+    private static final int NON_EDGE_AREA_SIZE = 28;
+
+    /**
+     * Buffers of one thread, reused from tile to tile
+     */
+    private static final class Workspace {
+        private double[] pixels = new double[0];
+        private boolean[] isValid = new boolean[0];
+        private boolean[] isSubAreaValid = new boolean[0];
+        private double[] subAreaMeans = new double[0];
+        private double[] subAreaNoiseVariances = new double[0];
+        private final double[][] neighborPixelValues = new double[7][7];
+        private final double[] noiseVariances = new double[9];
+
+        private void ensureCapacity(final int size) {
+            if (pixels.length < size) {
+                pixels = new double[size];
+                isValid = new boolean[size];
+                isSubAreaValid = new boolean[size];
+                subAreaMeans = new double[size];
+                subAreaNoiseVariances = new double[size];
+            }
+        }
+    }
+
     public RefinedLee(final Operator op, final Product srcProduct, final Product trgProduct,
                       final Map<String, String[]> targetBandNameToSourceBandName) {
 
@@ -120,28 +154,255 @@ public class RefinedLee implements SpeckleFilter {
         final Unit.UnitType bandUnit = Unit.getUnitType(sourceBand1);
         final double noDataValue = sourceBand1.getNoDataValue();
         final TileIndex srcIndex = new TileIndex(sourceTile1);
-        final double[][] neighborPixelValues = new double[windowSizeX][windowSizeY];
-        final int xMax = x0 + w;
-        final int yMax = y0 + h;
 
-        for (int y = y0; y < yMax; ++y) {
-            final int yy = y - y0;
-            for (int x = x0; x < xMax; ++x) {
-                final int xx = x - x0;
+        final int sx0 = sourceTileRectangle.x;
+        final int sy0 = sourceTileRectangle.y;
+        final int sw = sourceTileRectangle.width;
+        final int sh = sourceTileRectangle.height;
+        final Workspace ws = workspace.get();
+        ws.ensureCapacity(sw * sh);
+
+        // pixel values as returned by getNeighborValuesWithoutBorderExt
+        final boolean isComplex = bandUnit == Unit.UnitType.REAL || bandUnit == Unit.UnitType.IMAGINARY;
+        for (int y = sy0; y < sy0 + sh; ++y) {
+            srcIndex.calculateStride(y);
+            int k = (y - sy0) * sw;
+            for (int x = sx0; x < sx0 + sw; ++x, ++k) {
+                final int idx = srcIndex.getIndex(x);
+                if (isComplex) {
+                    final double I = sourceData1.getElemDoubleAt(idx);
+                    final double Q = sourceData2.getElemDoubleAt(idx);
+                    ws.isValid[k] = I != noDataValue && Q != noDataValue;
+                    ws.pixels[k] = ws.isValid[k] ? I * I + Q * Q : noDataValue;
+                } else {
+                    ws.pixels[k] = sourceData1.getElemDoubleAt(idx);
+                    ws.isValid[k] = ws.pixels[k] != noDataValue;
+                }
+            }
+        }
 
-                final int numSamples = getNeighborValuesWithoutBorderExt(
-                        x, y, sourceData1, sourceData2, srcIndex, noDataValue, bandUnit, sourceTileRectangle,
-                        windowSizeX, windowSizeY, neighborPixelValues);
+        filterTile(ws, sw, sh, x0 - sx0, y0 - sy0, w, h, noDataValue, filteredTile);
+        return filteredTile;
+    }
+
+    /**
+     * Filter a tile held in the workspace. Where the 7x7 window holds valid pixels only, the filtered value is
+     * computed from the 3x3 sub-area means and noise variances, which are computed once for the whole tile.
+     * Otherwise the window is copied and filtered with getRefinedLeeValueUsingEdgeThreshold. Both give the same
+     * value.
+     *
+     * @param ws           The workspace holding the source pixels.
+     * @param sw           The source tile width.
+     * @param sh           The source tile height.
+     * @param ox           X offset of the target tile in the source tile.
+     * @param oy           Y offset of the target tile in the source tile.
+     * @param w            The target tile width.
+     * @param h            The target tile height.
+     * @param noDataValue  The place holder for no data.
+     * @param filteredTile The filtered pixel values.
+     */
+    private void filterTile(final Workspace ws, final int sw, final int sh, final int ox, final int oy,
+                            final int w, final int h, final double noDataValue, final double[][] filteredTile) {
+
+        computeSubAreaStatistics(ws, sw, sh, noDataValue);
 
+        for (int yy = 0; yy < h; ++yy) {
+            final int cy = oy + yy;
+            for (int xx = 0; xx < w; ++xx) {
+                final int cx = ox + xx;
+
+                if (cy >= halfWindowSizeY && cy + halfWindowSizeY < sh &&
+                        cx >= halfWindowSizeX && cx + halfWindowSizeX < sw &&
+                        isWindowValid(ws, (cy - halfWindowSizeY) * sw + cx - halfWindowSizeX, sw)) {
+
+                    filteredTile[yy][xx] = computePixelValueUsingSubAreas(
+                            ws, (cy - halfWindowSizeY) * sw + cx - halfWindowSizeX, sw, noDataValue);
+                    continue;
+                }
+
+                final int numSamples = getNeighborValues(ws, sw, sh, cx, cy, noDataValue);
                 if (numSamples > 0) {
                     filteredTile[yy][xx] = getRefinedLeeValueUsingEdgeThreshold(
-                            windowSizeX, windowSizeY, numSamples, noDataValue, neighborPixelValues);
+                            windowSizeX, windowSizeY, numSamples, noDataValue, ws.neighborPixelValues);
                 } else {
                     filteredTile[yy][xx] = noDataValue;
                 }
             }
         }
-        return filteredTile;
+    }
+
+    /**
+     * Copy the 7x7 window centred at the given source tile pixel, with no data outside the tile.
+     *
+     * @return The number of valid pixels.
+     */
+    private int getNeighborValues(final Workspace ws, final int sw, final int sh, final int cx, final int cy,
+                                  final double noDataValue) {
+
+        int numSamples = 0;
+        for (int j = 0; j < windowSizeY; ++j) {
+            final int yj = cy - halfWindowSizeY + j;
+            for (int i = 0; i < windowSizeX; ++i) {
+                final int xi = cx - halfWindowSizeX + i;
+                if (yj < 0 || yj >= sh || xi < 0 || xi >= sw) {
+                    ws.neighborPixelValues[j][i] = noDataValue;
+                } else {
+                    final int k = yj * sw + xi;
+                    ws.neighborPixelValues[j][i] = ws.pixels[k];
+                    if (ws.isValid[k]) {
+                        numSamples++;
+                    }
+                }
+            }
+        }
+        return numSamples;
+    }
+
+    /**
+     * Compute the mean and the normalised variance of the 3x3 sub-area starting at each pixel of the tile, for
+     * the sub-areas of valid pixels. Sums run in the same order as in computeSubAreaMeans and
+     * getLocalNoiseVarianceValue.
+     */
+    private static void computeSubAreaStatistics(final Workspace ws, final int sw, final int sh,
+                                                 final double noDataValue) {
+
+        final double[] pixels = ws.pixels;
+        for (int r = 0; r + 2 < sh; ++r) {
+            for (int c = 0, p = r * sw; c + 2 < sw; ++c, ++p) {
+
+                boolean valid = true;
+                double sum = 0.0;
+                for (int y = 0; y < 3 && valid; ++y) {
+                    for (int x = 0, k = p + y * sw; x < 3; ++x, ++k) {
+                        final double v = pixels[k];
+                        if (!ws.isValid[k] || v == noDataValue || Double.compare(v, noDataValue) == 0) {
+                            valid = false;
+                            break;
+                        }
+                        sum += v;
+                    }
+                }
+
+                ws.isSubAreaValid[p] = valid;
+                if (!valid) {
+                    continue;
+                }
+
+                final double mean = sum / 9;
+                ws.subAreaMeans[p] = mean;
+                if (mean > 0) {
+                    double var = 0.0;
+                    for (int y = 0; y < 3; ++y) {
+                        for (int x = 0, k = p + y * sw; x < 3; ++x, ++k) {
+                            final double diff = pixels[k] - mean;
+                            var += diff * diff;
+                        }
+                    }
+                    ws.subAreaNoiseVariances[p] = var / 8 / (mean * mean);
+                } else {
+                    ws.subAreaNoiseVariances[p] = 0.0;
+                }
+            }
+        }
+    }
+
+    private static boolean isWindowValid(final Workspace ws, final int p0, final int sw) {
+        for (int j = 0; j < 3; ++j) {
+            for (int i = 0; i < 3; ++i) {
+                if (!ws.isSubAreaValid[p0 + 2 * j * sw + 2 * i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compute filtered pixel value using refined Lee filter for a window of valid pixels, from the sub-area
+     * statistics of the tile.
+     *
+     * @param ws          The workspace.
+     * @param p0          Index of the upper left pixel of the 7x7 window.
+     * @param sw          The source tile width.
+     * @param noDataValue The place holder for no data.
+     * @return The filtered pixel value.
+     */
+    private static double computePixelValueUsingSubAreas(final Workspace ws, final int p0, final int sw,
+                                                         final double noDataValue) {
+
+        final double[] means = ws.subAreaMeans;
+        final int row1 = p0 + 2 * sw, row2 = p0 + 4 * sw;
+        final double m00 = means[p0], m01 = means[p0 + 2], m02 = means[p0 + 4];
+        final double m10 = means[row1], m11 = means[row1 + 2], m12 = means[row1 + 4];
+        final double m20 = means[row2], m21 = means[row2 + 2], m22 = means[row2 + 4];
+
+        final double[] gradients = {
+                Math.abs(m10 - m12), Math.abs(m02 - m20), Math.abs(m01 - m21), Math.abs(m00 - m22)};
+
+        int direction = 0;
+        double maxGradient = -Double.MAX_VALUE;
+        for (int i = 0; i < gradients.length; i++) {
+            if (maxGradient < gradients[i]) {
+                maxGradient = gradients[i];
+                direction = i;
+            }
+        }
+
+        final int d;
+        if (direction == 0) {
+            d = Math.abs(m10 - m11) < Math.abs(m11 - m12) ? 4 : 0;
+        } else if (direction == 1) {
+            d = Math.abs(m02 - m11) < Math.abs(m11 - m20) ? 1 : 5;
+        } else if (direction == 2) {
+            d = Math.abs(m01 - m11) < Math.abs(m11 - m21) ? 2 : 6;
+        } else {
+            d = Math.abs(m00 - m11) < Math.abs(m11 - m22) ? 3 : 7;
+        }
+
+        final double[] pixels = ws.pixels;
+        final int[] start = NON_EDGE_AREA_START[d];
+        final int[] end = NON_EDGE_AREA_END[d];
+
+        double meanY = 0.0;
+        for (int y = 0; y < 7; y++) {
+            for (int k = p0 + y * sw + start[y], kEnd = p0 + y * sw + end[y]; k < kEnd; k++) {
+                meanY += pixels[k];
+            }
+        }
+        meanY /= NON_EDGE_AREA_SIZE;
+
+        double varY = 0.0;
+        for (int y = 0; y < 7; y++) {
+            for (int k = p0 + y * sw + start[y], kEnd = p0 + y * sw + end[y]; k < kEnd; k++) {
+                final double diff = pixels[k] - meanY;
+                varY += diff * diff;
+            }
+        }
+        varY /= (NON_EDGE_AREA_SIZE - 1);
+        if (varY == 0.0) {
+            return 0.0;
+        }
+
+        // as in getLocalNoiseVarianceValue, which sorts all but the last of the nine sub-areas
+        final double[] noiseVariances = ws.noiseVariances;
+        for (int j = 0, n = 0; j < 3; j++) {
+            for (int i = 0; i < 3; i++) {
+                noiseVariances[n++] = ws.subAreaNoiseVariances[p0 + 2 * j * sw + 2 * i];
+            }
+        }
+        Arrays.sort(noiseVariances, 0, 8);
+        double sigmaV = 0.0;
+        for (int n = 0; n < 5; n++) {
+            sigmaV += noiseVariances[n];
+        }
+        sigmaV /= 5;
+
+        double varX = (varY - meanY * meanY * sigmaV) / (1 + sigmaV);
+        if (varX < 0) {
+            varX = 0.0;
+        }
+        final double b = varX / varY;
+        return meanY + b * (pixels[p0 + 3 * sw + 3] - meanY);
     }
 
     /**
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import java.util.Arrays;
+
+/**
+ * Solves the discrete Poisson equation
+ * <pre>
+ *     u(r-1,c) + u(r+1,c) + u(r,c-1) + u(r,c+1) - 4 u(r,c) = g(r,c)
+ * </pre>
+ * on the pixels flagged in a mask, with the values of all other pixels held fixed.
+ * <p>
+ * The solver uses conjugate gradients preconditioned by one multigrid V-cycle. The grid pyramid halves the
+ * resolution at each level, a coarse pixel being active when any of its four fine pixels is. Restriction sums
+ * the four fine residuals, prolongation copies the coarse correction to the fine pixels and the smoother is
+ * Gauss-Seidel, forward before and backward after the coarse correction, so the preconditioner is symmetric.
+ * The number of iterations hardly grows with the size of the region, unlike relaxation on the fine grid alone.
+ */
+final class MaskedPoissonSolver {
+
+    private static final int SMOOTHING_SWEEPS = 2;
+    private static final int COARSEST_SWEEPS = 20;
+    private static final int MIN_LEVEL_SIZE = 4;
+
+    private final int rows;
+    private final int cols;
+    private final int[] unknowns;
+    private final Level[] levels;
+
+    /**
+     * @param mask      the pixel mask
+     * @param maskValue the mask value of the pixels to solve for, which must not lie on the border of the mask
+     */
+    MaskedPoissonSolver(final byte[][] mask, final byte maskValue) {
+        rows = mask.length;
+        cols = mask[0].length;
+
+        final boolean[] active = new boolean[rows * cols];
+        int count = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (mask[r][c] == maskValue) {
+                    active[r * cols + c] = true;
+                    count++;
+                }
+            }
+        }
+        unknowns = new int[count];
+        for (int i = 0, n = 0; i < active.length; i++) {
+            if (active[i]) {
+                unknowns[n++] = i;
+            }
+        }
+
+        int numLevels = 1;
+        for (int w = cols, h = rows; w > MIN_LEVEL_SIZE && h > MIN_LEVEL_SIZE; w = (w + 1) / 2, h = (h + 1) / 2) {
+            numLevels++;
+        }
+        levels = new Level[numLevels];
+        levels[0] = new Level(cols, rows, active);
+        for (int k = 1; k < numLevels; k++) {
+            levels[k] = levels[k - 1].coarsen();
+        }
+    }
+
+    /**
+     * @return true if there are no pixels to solve for
+     */
+    boolean isEmpty() {
+        return unknowns.length == 0;
+    }
+
+    /**
+     * Solve in place, starting from the current values of the masked pixels
+     *
+     * @param gradient      the right hand side g
+     * @param values        the fixed values and the initial solution, replaced by the solution
+     * @param maxIterations the maximum number of iterations
+     * @param tolerance     stop when the largest residual divided by 4, the size of a Jacobi update, is below this
+     * @return the number of iterations
+     */
+    int solve(final double[][] gradient, final double[][] values, final int maxIterations, final double tolerance) {
+        if (isEmpty()) {
+            return 0;
+        }
+
+        // A u = b with A = -Laplacian over the unknowns and the fixed neighbours moved to b
+        final int n = rows * cols;
+        final double[] x = new double[n];
+        final double[] b = new double[n];
+        for (int i : unknowns) {
+            final int r = i / cols, c = i % cols;
+            x[i] = values[r][c];
+            double fixed = 0;
+            fixed += levels[0].active[i - cols] ? 0 : values[r - 1][c];
+            fixed += levels[0].active[i + cols] ? 0 : values[r + 1][c];
+            fixed += levels[0].active[i - 1] ? 0 : values[r][c - 1];
+            fixed += levels[0].active[i + 1] ? 0 : values[r][c + 1];
+            b[i] = fixed - gradient[r][c];
+        }
+
+        final double[] res = new double[n];
+        final double[] z = new double[n];
+        final double[] p = new double[n];
+        final double[] q = new double[n];
+
+        levels[0].apply(x, q);
+        for (int i : unknowns) {
+            res[i] = b[i] - q[i];
+        }
+
+        precondition(res, z);
+        double rz = 0;
+        for (int i : unknowns) {
+            p[i] = z[i];
+            rz += res[i] * z[i];
+        }
+
+        int it = 0;
+        while (it < maxIterations && maxAbs(res) / 4.0 >= tolerance) {
+            levels[0].apply(p, q);
+            double pq = 0;
+            for (int i : unknowns) {
+                pq += p[i] * q[i];
+            }
+            if (pq <= 0) {
+                break;
+            }
+
+            final double alpha = rz / pq;
+            for (int i : unknowns) {
+                x[i] += alpha * p[i];
+                res[i] -= alpha * q[i];
+            }
+
+            precondition(res, z);
+            double rzNew = 0;
+            for (int i : unknowns) {
+                rzNew += res[i] * z[i];
+            }
+            final double beta = rzNew / rz;
+            rz = rzNew;
+            for (int i : unknowns) {
+                p[i] = z[i] + beta * p[i];
+            }
+            ++it;
+        }
+
+        for (int i : unknowns) {
+            values[i / cols][i % cols] = x[i];
+        }
+        return it;
+    }
+
+    private double maxAbs(final double[] v) {
+        double max = 0;
+        for (int i : unknowns) {
+            max = Math.max(max, Math.abs(v[i]));
+        }
+        return max;
+    }
+
+    private void precondition(final double[] res, final double[] z) {
+        final Level fine = levels[0];
+        System.arraycopy(res, 0, fine.rhs, 0, res.length);
+        vCycle(0);
+        System.arraycopy(fine.solution, 0, z, 0, z.length);
+    }
+
+    private void vCycle(final int k) {
+        final Level level = levels[k];
+        Arrays.fill(level.solution, 0);
+
+        if (k == levels.length - 1) {
+            for (int s = 0; s < COARSEST_SWEEPS; s++) {
+                level.smoothForward();
+                level.smoothBackward();
+            }
+            return;
+        }
+
+        for (int s = 0; s < SMOOTHING_SWEEPS; s++) {
+            level.smoothForward();
+        }
+
+        level.apply(level.solution, level.residual);
+        for (int i = 0; i < level.residual.length; i++) {
+            level.residual[i] = level.active[i] ? level.rhs[i] - level.residual[i] : 0;
+        }
+
+        final Level coarse = levels[k + 1];
+        Arrays.fill(coarse.rhs, 0);
+        for (int r = 0; r < level.height; r++) {
+            final int coarseRow = (r / 2) * coarse.width;
+            for (int c = 0, i = r * level.width; c < level.width; c++, i++) {
+                coarse.rhs[coarseRow + c / 2] += level.residual[i];
+            }
+        }
+
+        vCycle(k + 1);
+
+        for (int r = 0; r < level.height; r++) {
+            final int coarseRow = (r / 2) * coarse.width;
+            for (int c = 0, i = r * level.width; c < level.width; c++, i++) {
+                if (level.active[i]) {
+                    level.solution[i] += coarse.solution[coarseRow + c / 2];
+                }
+            }
+        }
+
+        for (int s = 0; s < SMOOTHING_SWEEPS; s++) {
+            level.smoothBackward();
+        }
+    }
+
+    /**
+     * One grid of the pyramid, with homogeneous fixed values around its active pixels
+     */
+    private static final class Level {
+        final int width;
+        final int height;
+        final boolean[] active;
+        final double[] solution;
+        final double[] rhs;
+        final double[] residual;
+
+        Level(final int width, final int height, final boolean[] active) {
+            this.width = width;
+            this.height = height;
+            this.active = active;
+            this.solution = new double[width * height];
+            this.rhs = new double[width * height];
+            this.residual = new double[width * height];
+        }
+
+        Level coarsen() {
+            final int coarseWidth = (width + 1) / 2;
+            final int coarseHeight = (height + 1) / 2;
+            final boolean[] coarseActive = new boolean[coarseWidth * coarseHeight];
+            for (int r = 0; r < height; r++) {
+                for (int c = 0, i = r * width; c < width; c++, i++) {
+                    if (active[i]) {
+                        coarseActive[(r / 2) * coarseWidth + c / 2] = true;
+                    }
+                }
+            }
+            return new Level(coarseWidth, coarseHeight, coarseActive);
+        }
+
+        private double neighbourSum(final double[] v, final int i, final int r, final int c) {
+            double sum = 0;
+            if (r > 0 && active[i - width]) sum += v[i - width];
+            if (r < height - 1 && active[i + width]) sum += v[i + width];
+            if (c > 0 && active[i - 1]) sum += v[i - 1];
+            if (c < width - 1 && active[i + 1]) sum += v[i + 1];
+            return sum;
+        }
+
+        /**
+         * out = A v on the active pixels
+         */
+        void apply(final double[] v, final double[] out) {
+            for (int r = 0; r < height; r++) {
+                for (int c = 0, i = r * width; c < width; c++, i++) {
+                    if (active[i]) {
+                        out[i] = 4 * v[i] - neighbourSum(v, i, r, c);
+                    }
+                }
+            }
+        }
+
+        void smoothForward() {
+            for (int r = 0; r < height; r++) {
+                for (int c = 0, i = r * width; c < width; c++, i++) {
+                    if (active[i]) {
+                        solution[i] = (rhs[i] + neighbourSum(solution, i, r, c)) / 4.0;
+                    }
+                }
+            }
+        }
+
+        void smoothBackward() {
+            for (int r = height - 1; r >= 0; r--) {
+                for (int c = width - 1, i = r * width + c; c >= 0; c--, i--) {
+                    if (active[i]) {
+                        solution[i] = (rhs[i] + neighbourSum(solution, i, r, c)) / 4.0;
+                    }
+                }
+            }
+        }
+    }
+}
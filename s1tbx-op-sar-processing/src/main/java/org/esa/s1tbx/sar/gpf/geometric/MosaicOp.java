@@ -92,14 +92,17 @@ public class MosaicOp extends Operator {
     private int feather = 0;
     @Parameter(defaultValue = "5000", description = "Maximum number of iterations", label = "Maximum Iterations")
     private int maxIterations = 5000;
-    @Parameter(defaultValue = "1e-4", description = "Convergence threshold for Relaxed Gauss-Seidel method",
+    @Parameter(defaultValue = "1e-4", description = "Convergence threshold for the gradient domain Poisson solver",
             label = "Convergence Threshold")
     private double convergenceThreshold = 1e-4;
 
+    // the gradient domain mosaic of a tile is solved over the tile grown by this margin to avoid seams
+    private static final int GRADIENT_MOSAIC_MARGIN = 64;
+
     private final OperatorUtils.SceneProperties scnProp = new OperatorUtils.SceneProperties();
     private final Map<Integer, Band> bandIndexSet = new HashMap<>(20);
-    private final Map<Product, Rectangle> srcRectMap = new HashMap<>(10);
     private Product[] selectedProducts = null;
+    private SourceFootprintIndex footprintIndex = null;
 
     private boolean outputGradientBand = false;
 
@@ -193,12 +196,13 @@ public class MosaicOp extends Operator {
                 }
             }
 
-            for (Product srcProduct : selectedProducts) {
-                final Rectangle srcRect = getSrcRect(targetProduct.getSceneGeoCoding(),
-                        scnProp.srcCornerLatitudeMap.get(srcProduct),
-                        scnProp.srcCornerLongitudeMap.get(srcProduct));
-                srcRectMap.put(srcProduct, srcRect);
+            final Rectangle[] srcRects = new Rectangle[selectedProducts.length];
+            for (int i = 0; i < selectedProducts.length; ++i) {
+                srcRects[i] = getSrcRect(targetProduct.getSceneGeoCoding(),
+                        scnProp.srcCornerLatitudeMap.get(selectedProducts[i]),
+                        scnProp.srcCornerLongitudeMap.get(selectedProducts[i]));
             }
+            footprintIndex = new SourceFootprintIndex(srcRects);
 
             updateTargetProductMetadata();
 
@@ -347,10 +351,20 @@ public class MosaicOp extends Operator {
         geoPos.setLocation(srcLatMax, srcLonMin);
         pixelPos[3] = destGeoCoding.getPixelPos(geoPos, null);
 
-        return getBoundingBox(pixelPos, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, 4);
+        final double[] xs = new double[pixelPos.length];
+        final double[] ys = new double[pixelPos.length];
+        for (int i = 0; i < pixelPos.length; ++i) {
+            xs[i] = pixelPos[i] != null ? pixelPos[i].getX() : Double.NaN;
+            ys[i] = pixelPos[i] != null ? pixelPos[i].getY() : Double.NaN;
+        }
+        return getBoundingBox(xs, ys, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, 4);
     }
 
-    private static Rectangle getBoundingBox(final PixelPos[] pixelPositions,
+    /**
+     * @param xs the source pixel x coordinates, NaN where not covered
+     * @param ys the source pixel y coordinates
+     */
+    private static Rectangle getBoundingBox(final double[] xs, final double[] ys,
                                             final int minOffsetX, final int minOffsetY,
                                             final int maxWidth, final int maxHeight, final int margin) {
         int minX = Integer.MAX_VALUE;
@@ -358,10 +372,10 @@ public class MosaicOp extends Operator {
         int minY = Integer.MAX_VALUE;
         int maxY = -Integer.MAX_VALUE;
 
-        for (final PixelPos pixelsPos : pixelPositions) {
-            if (pixelsPos != null) {
-                final int x = (int) Math.floor(pixelsPos.getX());
-                final int y = (int) Math.floor(pixelsPos.getY());
+        for (int i = 0; i < xs.length; ++i) {
+            if (!Double.isNaN(xs[i])) {
+                final int x = (int) Math.floor(xs[i]);
+                final int y = (int) Math.floor(ys[i]);
 
                 if (x < minX) {
                     minX = x;
@@ -408,54 +422,45 @@ public class MosaicOp extends Operator {
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm) throws OperatorException {
 
         try {
-            final List<Product> validProducts = new ArrayList<>(sourceProduct.length);
-
-            for (final Product srcProduct : selectedProducts) {
-                final Rectangle srcRect = srcRectMap.get(srcProduct);
-                if (srcRect == null || !srcRect.intersects(targetRectangle)) {
-                    continue;
-                }
-                validProducts.add(srcProduct);
+            final Rectangle coordRectangle = gradientDomainMosaic ?
+                    getGradientMosaicRectangle(targetRectangle) : targetRectangle;
+            final int[] sourceIndices = footprintIndex.query(coordRectangle);
+            if (sourceIndices.length == 0) {
+                return;
             }
 
-            if (validProducts.isEmpty()) {
-                return;
+            final int numPixelPos = coordRectangle.width * coordRectangle.height;
+            final List<SourceCoordinates> sourceCoords = new ArrayList<>(sourceIndices.length);
+            for (int sourceIndex : sourceIndices) {
+                sourceCoords.add(new SourceCoordinates(selectedProducts[sourceIndex], numPixelPos));
             }
 
             final GeoPos geoPos = new GeoPos();
             final PixelPos pixelPos = new PixelPos();
-            final int minX = targetRectangle.x;
-            final int minY = targetRectangle.y;
-            final int maxX = targetRectangle.x + targetRectangle.width - 1;
-            final int maxY = targetRectangle.y + targetRectangle.height - 1;
+            final int minX = coordRectangle.x;
+            final int minY = coordRectangle.y;
+            final int maxX = coordRectangle.x + coordRectangle.width - 1;
+            final int maxY = coordRectangle.y + coordRectangle.height - 1;
 
             final TileGeoreferencing tileGeoRef = new TileGeoreferencing(targetProduct, minX, minY, maxX - minX + 1, maxY - minY + 1);
 
-            final List<PixelPos[]> srcPixelCoords = new ArrayList<>(validProducts.size());
-            final int numPixelPos = targetRectangle.width * targetRectangle.height;
-            for (Product validProduct : validProducts) {
-                srcPixelCoords.add(new PixelPos[numPixelPos]);
-            }
-
             int coordIndex = 0;
-            int prodIndex;
             for (int y = minY; y <= maxY; ++y) {
                 for (int x = minX; x <= maxX; ++x) {
                     tileGeoRef.getGeoPos(x, y, geoPos);
 
-                    prodIndex = 0;
-                    for (final Product srcProduct : validProducts) {
-                        srcProduct.getSceneGeoCoding().getPixelPos(geoPos, pixelPos);
+                    for (final SourceCoordinates coords : sourceCoords) {
+                        coords.geoCoding.getPixelPos(geoPos, pixelPos);
 
                         if (pixelPos.x >= feather && pixelPos.y >= feather &&
-                                pixelPos.x < srcProduct.getSceneRasterWidth() - feather &&
-                                pixelPos.y < srcProduct.getSceneRasterHeight() - feather) {
-
-                            srcPixelCoords.get(prodIndex)[coordIndex] = new PixelPos(pixelPos.x, pixelPos.y);
+                                pixelPos.x < coords.width - feather &&
+                                pixelPos.y < coords.height - feather) {
+                            coords.x[coordIndex] = pixelPos.x;
+                            coords.y[coordIndex] = pixelPos.y;
                         } else {
-                            srcPixelCoords.get(prodIndex)[coordIndex] = null;
+                            coords.x[coordIndex] = Double.NaN;
+                            coords.y[coordIndex] = Double.NaN;
                         }
-                        ++prodIndex;
                     }
                     ++coordIndex;
                 }
@@ -467,28 +472,24 @@ public class MosaicOp extends Operator {
             }
 
             if (gradientDomainMosaic) {
-                performGradientDomainMosaic(targetTiles, targetRectangle, srcPixelCoords, validProducts, resampling, pm);
+                performGradientDomainMosaic(targetTiles, targetRectangle, coordRectangle, sourceCoords, resampling, pm);
                 return;
             }
 
-            final List<SourceData> validSourceData = new ArrayList<>(validProducts.size());
+            final List<SourceData> validSourceData = new ArrayList<>(sourceCoords.size());
             for (final Map.Entry<Band, Tile> bandTileEntry : targetTiles.entrySet()) {
                 final String trgBandName = bandTileEntry.getKey().getName();
                 validSourceData.clear();
 
-                prodIndex = 0;
-                for (final Product srcProduct : validProducts) {
-                    final Band srcBand = srcProduct.getBand(trgBandName);
+                for (final SourceCoordinates coords : sourceCoords) {
+                    final Band srcBand = coords.product.getBand(trgBandName);
                     if (srcBand == null) {
                         continue;
                     }
 
-                    final PixelPos[] pixPos = srcPixelCoords.get(prodIndex);
-
                     final Rectangle sourceRectangle = getBoundingBox(
-                            pixPos, feather, feather,
-                            srcProduct.getSceneRasterWidth() - feather,
-                            srcProduct.getSceneRasterHeight() - feather, 4);
+                            coords.x, coords.y, feather, feather,
+                            coords.width - feather, coords.height - feather, 4);
 
                     if (sourceRectangle != null) {
                         double min = 0, max = 0, mean = 0, std = 0;
@@ -508,14 +509,13 @@ public class MosaicOp extends Operator {
                         try {
                             final Tile srcTile = getSourceTile(srcBand, sourceRectangle);
                             if (srcTile != null) {
-                                validSourceData.add(new SourceData(srcTile, pixPos, resampling, min, max, mean, std));
+                                validSourceData.add(new SourceData(srcTile, coords, resampling, min, max, mean, std));
                             }
                         } catch (Exception e) {
                             SystemUtils.LOG.severe("Mosaic getSourceTile failed "+e.getMessage());
                             //continue
                         }
                     }
-                    ++prodIndex;
                 }
 
                 if (!validSourceData.isEmpty()) {
@@ -529,94 +529,118 @@ public class MosaicOp extends Operator {
         }
     }
 
+    /**
+     * Blend the source samples of a band into the target tile a row at a time. For each row the sources are
+     * resampled one after the other into row arrays holding the last valid sample and, when averaging, the
+     * sums of the samples weighted by their distance from the source edges.
+     */
     private void collocateSourceBand(final List<SourceData> validSourceData, final Resampling resampling,
                                      final Tile targetTile) throws OperatorException {
         try {
             final Rectangle targetRectangle = targetTile.getRectangle();
             final ProductData trgBuffer = targetTile.getDataBuffer();
 
-            double sample;
+            final int width = targetRectangle.width;
             final int maxY = targetRectangle.y + targetRectangle.height;
-            final int maxX = targetRectangle.x + targetRectangle.width;
             final TileIndex trgIndex = new TileIndex(targetTile);
-            final double[] sampleList = new double[validSourceData.size()];
-            final int[] sampleDistanceList = new int[validSourceData.size()];
+            final double[] lastSample = new double[width];
+            final double[] weightedSum = new double[width];
+            final double[] weightSum = new double[width];
+            final int[] numSamples = new int[width];
+
+            for (int y = targetRectangle.y, rowOffset = 0; y < maxY; ++y, rowOffset += width) {
+                Arrays.fill(lastSample, 0);
+                Arrays.fill(weightedSum, 0);
+                Arrays.fill(weightSum, 0);
+                Arrays.fill(numSamples, 0);
+
+                for (final SourceData srcDat : validSourceData) {
+                    accumulateRow(srcDat, resampling, rowOffset, lastSample, weightedSum, weightSum, numSamples);
+                }
 
-            for (int y = targetRectangle.y, index = 0; y < maxY; ++y) {
                 trgIndex.calculateStride(y);
-                for (int x = targetRectangle.x; x < maxX; ++x, ++index) {
-
-                    double targetVal = 0;
-                    int numSamples = 0;
-                    for (final SourceData srcDat : validSourceData) {
-                        final PixelPos sourcePixelPos = srcDat.srcPixPos[index];
-                        if (sourcePixelPos == null) {
-                            continue;
-                        }
+                for (int i = 0; i < width; ++i) {
+                    if (lastSample[i] != 0) {
+                        final double targetVal = average && numSamples[i] > 1 ?
+                                weightedSum[i] / weightSum[i] : lastSample[i];
+                        trgBuffer.setElemDoubleAt(trgIndex.getIndex(targetRectangle.x + i), targetVal);
+                    }
+                }
+            }
 
-                        resampling.computeIndex(sourcePixelPos.x, sourcePixelPos.y,
-                                srcDat.srcRasterWidth - feather, srcDat.srcRasterHeight - feather, srcDat.resamplingIndex);
+        } catch (Throwable e) {
+            OperatorUtils.catchOperatorException(getId(), e);
+        }
+    }
 
-                        sample = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
+    private void accumulateRow(final SourceData srcDat, final Resampling resampling, final int rowOffset,
+                               final double[] lastSample, final double[] weightedSum, final double[] weightSum,
+                               final int[] numSamples) throws Exception {
+
+        final double[] srcX = srcDat.srcX;
+        final double[] srcY = srcDat.srcY;
+        final int width = lastSample.length;
+        for (int i = 0; i < width; ++i) {
+            final double sx = srcX[rowOffset + i];
+            if (Double.isNaN(sx)) {
+                continue;
+            }
+            final double sy = srcY[rowOffset + i];
 
-                        if (!Double.isNaN(sample) && sample != srcDat.nodataValue && !MathUtils.equalValues(sample, 0.0F, 1e-4F)) {
+            resampling.computeIndex(sx, sy, srcDat.srcRasterWidth - feather, srcDat.srcRasterHeight - feather,
+                    srcDat.resamplingIndex);
 
-                            if (normalizeByMean) {
-                                sample -= srcDat.srcMean;
-                                sample /= srcDat.srcStd;
-                            }
-                            targetVal = sample;
-
-                            if (average) {
-                                sampleList[numSamples] = sample;
-                                sampleDistanceList[numSamples] = (int) (Math.min(sourcePixelPos.x + 1,
-                                        srcDat.srcRasterWidth - sourcePixelPos.x) *
-                                        Math.min(sourcePixelPos.y + 1,
-                                                srcDat.srcRasterHeight - sourcePixelPos.y));
-                                numSamples++;
-                            }
-                        }
-                    }
+            double sample = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
 
-                    if (targetVal != 0) {
-                        if (average && numSamples > 1) {
-                            double sum = 0;
-                            int totalWeight = 0;
-                            for (int i = 0; i < numSamples; i++) {
-                                sum += sampleList[i] * sampleDistanceList[i];
-                                totalWeight += sampleDistanceList[i];
-                            }
-                            targetVal = sum / totalWeight;
-                        }
+            if (!Double.isNaN(sample) && sample != srcDat.nodataValue && !MathUtils.equalValues(sample, 0.0F, 1e-4F)) {
 
-                        trgBuffer.setElemDoubleAt(trgIndex.getIndex(x), targetVal);
-                    }
+                if (normalizeByMean) {
+                    sample -= srcDat.srcMean;
+                    sample /= srcDat.srcStd;
+                }
+                lastSample[i] = sample;
+
+                if (average) {
+                    final int weight = (int) (Math.min(sx + 1, srcDat.srcRasterWidth - sx) *
+                            Math.min(sy + 1, srcDat.srcRasterHeight - sy));
+                    weightedSum[i] += sample * weight;
+                    weightSum[i] += weight;
+                    numSamples[i]++;
                 }
             }
-
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException(getId(), e);
         }
     }
 
+    private Rectangle getGradientMosaicRectangle(final Rectangle targetRectangle) {
+        final Rectangle rectangle = new Rectangle(targetRectangle);
+        rectangle.grow(GRADIENT_MOSAIC_MARGIN, GRADIENT_MOSAIC_MARGIN);
+        return rectangle.intersection(
+                new Rectangle(0, 0, targetProduct.getSceneRasterWidth(), targetProduct.getSceneRasterHeight()));
+    }
+
+    /**
+     * Mosaic in the gradient domain over the solve rectangle, which contains the target rectangle with a margin
+     * so that the solutions of neighbouring tiles agree where they meet.
+     */
     private void performGradientDomainMosaic(final Map<Band, Tile> targetTiles, final Rectangle targetRectangle,
-                                             final List<PixelPos[]> srcPixelCoords, final List<Product> validProducts,
+                                             final Rectangle solveRectangle,
+                                             final List<SourceCoordinates> sourceCoords,
                                              final Resampling resampling, ProgressMonitor pm)
             throws OperatorException {
 
         try {
 
-            final int minX = targetRectangle.x;
-            final int minY = targetRectangle.y;
-            final int maxX = targetRectangle.x + targetRectangle.width - 1;
-            final int maxY = targetRectangle.y + targetRectangle.height - 1;
+            final int minX = solveRectangle.x;
+            final int minY = solveRectangle.y;
+            final int maxX = solveRectangle.x + solveRectangle.width - 1;
+            final int maxY = solveRectangle.y + solveRectangle.height - 1;
 
-            double[][] mosaicedTile = new double[targetRectangle.height][targetRectangle.width];
-            double[][] gradientTile = new double[targetRectangle.height][targetRectangle.width];
-            byte[][] mask = new byte[targetRectangle.height][targetRectangle.width];
+            double[][] mosaicedTile = new double[solveRectangle.height][solveRectangle.width];
+            double[][] gradientTile = new double[solveRectangle.height][solveRectangle.width];
+            byte[][] mask = new byte[solveRectangle.height][solveRectangle.width];
             // -1: no data, 0: used by existing product, 1: used by new product, 2: need mosaic
 
-            final List<SourceData> validSourceData = new ArrayList<>(validProducts.size());
+            final List<SourceData> validSourceData = new ArrayList<>(sourceCoords.size());
 
             // loop through all target bands
             for (final Map.Entry<Band, Tile> bandTileEntry : targetTiles.entrySet()) {
@@ -628,7 +652,7 @@ public class MosaicOp extends Operator {
                 final ProductData trgBuffer = trgTile.getDataBuffer();
 
                 // for each target band, get source data for all related source bands
-                getValidSourceData(validProducts, trgBandName, srcPixelCoords, resampling, validSourceData, pm);
+                getValidSourceData(sourceCoords, trgBandName, resampling, validSourceData, pm);
 
                 // for each target band, find all related source bands and use them in mosaic
                 // for now we assume that source products have been sorted according to time with the oldest first
@@ -647,10 +671,12 @@ public class MosaicOp extends Operator {
                 }
 
                 // save mosaiced image
+                final int trgMaxX = targetRectangle.x + targetRectangle.width;
+                final int trgMaxY = targetRectangle.y + targetRectangle.height;
                 final TileIndex trgIndex = new TileIndex(trgTile);
-                for (int y = minY; y <= maxY; y++) {
+                for (int y = targetRectangle.y; y < trgMaxY; y++) {
                     trgIndex.calculateStride(y);
-                    for (int x = minX; x <= maxX; x++) {
+                    for (int x = targetRectangle.x; x < trgMaxX; x++) {
                         trgBuffer.setElemDoubleAt(trgIndex.getIndex(x), mosaicedTile[y - minY][x - minX]);
                     }
                 }
@@ -659,9 +685,9 @@ public class MosaicOp extends Operator {
                 if (outputGradientBand) {
                     final Band gradientBand = targetProduct.getBand(trgBandName + "_gradient");
                     final ProductData gradientBuffer = targetTiles.get(gradientBand).getDataBuffer();
-                    for (int y = minY; y <= maxY; y++) {
+                    for (int y = targetRectangle.y; y < trgMaxY; y++) {
                         trgIndex.calculateStride(y);
-                        for (int x = minX; x <= maxX; x++) {
+                        for (int x = targetRectangle.x; x < trgMaxX; x++) {
                             gradientBuffer.setElemDoubleAt(trgIndex.getIndex(x), gradientTile[y - minY][x - minX]);
                         }
                     }
@@ -673,22 +699,20 @@ public class MosaicOp extends Operator {
         }
     }
 
-    private void getValidSourceData(final List<Product> validProducts, final String trgBandName,
-                                    final List<PixelPos[]> srcPixelCoords, final Resampling resampling,
+    private void getValidSourceData(final List<SourceCoordinates> sourceCoords, final String trgBandName,
+                                    final Resampling resampling,
                                     List<SourceData> validSourceData, ProgressMonitor pm) {
 
         try {
             validSourceData.clear();
-            int prodIndex = 0;
-            for (final Product srcProduct : validProducts) {
-                final Band srcBand = srcProduct.getBand(trgBandName);
+            for (final SourceCoordinates coords : sourceCoords) {
+                final Band srcBand = coords.product.getBand(trgBandName);
                 if (srcBand == null) {
                     continue;
                 }
 
-                final PixelPos[] pixPos = srcPixelCoords.get(prodIndex);
                 final Rectangle sourceRectangle = getBoundingBox(
-                        pixPos, 0, 0, srcProduct.getSceneRasterWidth(), srcProduct.getSceneRasterHeight(), feather);
+                        coords.x, coords.y, 0, 0, coords.width, coords.height, feather);
 
                 if (sourceRectangle != null) {
                     double mean = 0, min = 0, max = 0, std = 0;
@@ -708,14 +732,13 @@ public class MosaicOp extends Operator {
                     try {
                         final Tile srcTile = getSourceTile(srcBand, sourceRectangle);
                         if (srcTile != null) {
-                            validSourceData.add(new SourceData(srcTile, pixPos, resampling, min, max, mean, std));
+                            validSourceData.add(new SourceData(srcTile, coords, resampling, min, max, mean, std));
                         }
                     } catch (Exception e) {
                         SystemUtils.LOG.severe("Mosaic getSourceTile failed "+e.getMessage());
                         //continue
                     }
                 }
-                ++prodIndex;
             }
 
         } catch (Throwable e) {
@@ -736,14 +759,13 @@ public class MosaicOp extends Operator {
                 for (int x = minX; x <= maxX; ++x, ++index) {
                     xx = x - minX;
 
-                    final PixelPos sourcePixelPos = srcDat.srcPixPos[index];
-                    if (sourcePixelPos == null) {
+                    if (Double.isNaN(srcDat.srcX[index])) {
                         mosaicedTile[yy][xx] = srcDat.nodataValue;
                         mask[yy][xx] = -1;
                         continue;
                     }
 
-                    resampling.computeIndex(sourcePixelPos.x, sourcePixelPos.y,
+                    resampling.computeIndex(srcDat.srcX[index], srcDat.srcY[index],
                             srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                     sample = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
@@ -785,12 +807,11 @@ public class MosaicOp extends Operator {
                 for (int x = minX; x <= maxX; ++x, ++index) {
                     xx = x - minX;
 
-                    final PixelPos sourcePixelPos = srcDat.srcPixPos[index];
-                    if (sourcePixelPos == null) {
+                    if (Double.isNaN(srcDat.srcX[index])) {
                         continue;
                     }
 
-                    resampling.computeIndex(sourcePixelPos.x, sourcePixelPos.y,
+                    resampling.computeIndex(srcDat.srcX[index], srcDat.srcY[index],
                             srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                     sample = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
@@ -836,25 +857,25 @@ public class MosaicOp extends Operator {
 
             if (indexUp >= 0 && indexDown < targetTileWidth * targetTileHeight &&
                     index % targetTileWidth != 0 && (index + 1) % targetTileWidth != 0 &&
-                    srcDat.srcPixPos[indexUp] != null && srcDat.srcPixPos[indexDown] != null &&
-                    srcDat.srcPixPos[indexLeft] != null && srcDat.srcPixPos[indexRight] != null) {
+                    !Double.isNaN(srcDat.srcX[indexUp]) && !Double.isNaN(srcDat.srcX[indexDown]) &&
+                    !Double.isNaN(srcDat.srcX[indexLeft]) && !Double.isNaN(srcDat.srcX[indexRight])) {
 
-                resampling.computeIndex(srcDat.srcPixPos[indexUp].x, srcDat.srcPixPos[indexUp].y,
+                resampling.computeIndex(srcDat.srcX[indexUp], srcDat.srcY[indexUp],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s1 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
 
-                resampling.computeIndex(srcDat.srcPixPos[indexDown].x, srcDat.srcPixPos[indexDown].y,
+                resampling.computeIndex(srcDat.srcX[indexDown], srcDat.srcY[indexDown],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s2 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
 
-                resampling.computeIndex(srcDat.srcPixPos[indexLeft].x, srcDat.srcPixPos[indexLeft].y,
+                resampling.computeIndex(srcDat.srcX[indexLeft], srcDat.srcY[indexLeft],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s3 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
 
-                resampling.computeIndex(srcDat.srcPixPos[indexRight].x, srcDat.srcPixPos[indexRight].y,
+                resampling.computeIndex(srcDat.srcX[indexRight], srcDat.srcY[indexRight],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s4 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
@@ -922,35 +943,10 @@ public class MosaicOp extends Operator {
 
     private void performMosaic(final byte[][] mask, final double[][] gradientTile, double[][] mosaicedTile) {
 
-        final double w = 1.5;
-        final int rows = mask.length;
-        final int cols = mask[0].length;
-
-        double sigma, update, error = 0.0;
-        int it;
-        for (it = 0; it < maxIterations; it++) {
-            error = 0.0;
-            for (int r = 0; r < rows; r++) {
-                for (int c = 0; c < cols; c++) {
-                    if (mask[r][c] == 2) {
-
-                        sigma = gradientTile[r][c] - mosaicedTile[r - 1][c] - mosaicedTile[r + 1][c] -
-                                mosaicedTile[r][c - 1] - mosaicedTile[r][c + 1];
-
-                        update = (1 - w) * mosaicedTile[r][c] - w * sigma / 4.0;
-                        error = Math.max(error, Math.abs(mosaicedTile[r][c] - update));
-                        mosaicedTile[r][c] = update;
-                    }
-                }
-            }
-
-            if (error < convergenceThreshold) {
-                break;
-            }
+        final MaskedPoissonSolver solver = new MaskedPoissonSolver(mask, (byte) 2);
+        if (!solver.isEmpty()) {
+            solver.solve(gradientTile, mosaicedTile, maxIterations, convergenceThreshold);
         }
-
-        //if(error != 0)
-        //    System.out.println("it = " + it + ", error = " + error);
     }
 
     private static void cleanUpMask(byte[][] mask) {
@@ -1033,7 +1029,8 @@ public class MosaicOp extends Operator {
         final ResamplingRaster resamplingRaster;
         final Resampling.Index resamplingIndex;
         final double nodataValue;
-        final PixelPos[] srcPixPos;
+        final double[] srcX;
+        final double[] srcY;
         final int srcRasterHeight;
         final int srcRasterWidth;
         final double srcMean;
@@ -1042,13 +1039,14 @@ public class MosaicOp extends Operator {
         final double srcStd;
 
         public SourceData(final Tile tile,
-                          final PixelPos[] pixPos, final Resampling resampling,
+                          final SourceCoordinates coords, final Resampling resampling,
                           final double min, final double max, final double mean, final double std) {
             srcTile = tile;
             resamplingRaster = new ResamplingRaster(srcTile);
             resamplingIndex = resampling.createIndex();
             nodataValue = tile.getRasterDataNode().getNoDataValue();
-            srcPixPos = pixPos;
+            srcX = coords.x;
+            srcY = coords.y;
 
             final Product srcProduct = tile.getRasterDataNode().getProduct();
             srcRasterHeight = srcProduct.getSceneRasterHeight();
@@ -1060,6 +1058,27 @@ public class MosaicOp extends Operator {
         }
     }
 
+    /**
+     * Source pixel coordinates of the pixels of a target tile, NaN where the source does not cover the pixel
+     */
+    private static class SourceCoordinates {
+        final Product product;
+        final GeoCoding geoCoding;
+        final int width;
+        final int height;
+        final double[] x;
+        final double[] y;
+
+        SourceCoordinates(final Product product, final int numPixels) {
+            this.product = product;
+            this.geoCoding = product.getSceneGeoCoding();
+            this.width = product.getSceneRasterWidth();
+            this.height = product.getSceneRasterHeight();
+            this.x = new double[numPixels];
+            this.y = new double[numPixels];
+        }
+    }
+
     /**
      * Operator SPI.
      */
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.esa.snap.core.util.SystemUtils;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Radar geometry of a map grid for one track, kept in the cache folder.
+ * <p>
+ * The map grid is divided into square blocks on a lattice anchored at the map origin, so that two products
+ * of the same track on the same grid share the blocks they have in common even when their extents differ.
+ * A block holds, per map pixel, the DEM elevation, the zero Doppler time and the local incidence angles
+ * computed for the acquisition that created it. Elevation and incidence angles only depend on the track and
+ * are reused as they are. The zero Doppler time serves as a prediction for other acquisitions, which
+ * correct it for their own orbit.
+ * <p>
+ * Blocks not entirely seen by their acquisition are marked incomplete and are only reused by that acquisition.
+ */
+final class RadarGeometryCache {
+
+    static final int BLOCK_SIZE = 256;
+
+    private static final String CACHE_FOLDER = "s1tbx" + File.separator + "radar-geometry";
+    private static final String KEY_FILE = "track.txt";
+    private static final int MAGIC = 0x52474331;
+    private static final int HEADER_SIZE = 4 + 8 + 4;
+    private static final int PIXEL_SIZE = 4 + 8 + 4 + 4;
+
+    private final File folder;
+    private final int gridOffsetX;
+    private final int gridOffsetY;
+    private final double acquisitionTime;
+    private final ConcurrentHashMap<Long, Object> blockLocks = new ConcurrentHashMap<>();
+
+    private RadarGeometryCache(final File folder, final int gridOffsetX, final int gridOffsetY,
+                               final double acquisitionTime) {
+        this.folder = folder;
+        this.gridOffsetX = gridOffsetX;
+        this.gridOffsetY = gridOffsetY;
+        this.acquisitionTime = acquisitionTime;
+    }
+
+    /**
+     * Open the cache of a track
+     *
+     * @param trackKey        describes the track, the map grid and the DEM
+     * @param gridOffsetX     lattice column of the first image column
+     * @param gridOffsetY     lattice row of the first image row
+     * @param acquisitionTime identifies the acquisition using the cache, e.g. its first line time
+     * @return the cache
+     * @throws IOException if the cache folder cannot be created or belongs to another track
+     */
+    static RadarGeometryCache create(final String trackKey, final int gridOffsetX, final int gridOffsetY,
+                                     final double acquisitionTime) throws IOException {
+        return create(new File(SystemUtils.getCacheDir(), CACHE_FOLDER), trackKey, gridOffsetX, gridOffsetY,
+                      acquisitionTime);
+    }
+
+    /**
+     * Open the cache of a track kept under the given folder
+     *
+     * @param cacheFolder     the folder holding the caches of all tracks
+     * @param trackKey        describes the track, the map grid and the DEM
+     * @param gridOffsetX     lattice column of the first image column
+     * @param gridOffsetY     lattice row of the first image row
+     * @param acquisitionTime identifies the acquisition using the cache, e.g. its first line time
+     * @return the cache
+     * @throws IOException if the cache folder cannot be created or belongs to another track
+     */
+    static RadarGeometryCache create(final File cacheFolder, final String trackKey, final int gridOffsetX,
+                                     final int gridOffsetY, final double acquisitionTime) throws IOException {
+        final File folder = new File(cacheFolder, Integer.toHexString(trackKey.hashCode()) + '_' + trackKey.length());
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+
+        final File keyFile = new File(folder, KEY_FILE);
+        if (keyFile.exists()) {
+            final String existingKey = new String(Files.readAllBytes(keyFile.toPath()), StandardCharsets.UTF_8);
+            if (!existingKey.equals(trackKey)) {
+                throw new IOException(folder + " holds the radar geometry of another track");
+            }
+        } else {
+            Files.write(keyFile.toPath(), trackKey.getBytes(StandardCharsets.UTF_8));
+        }
+        return new RadarGeometryCache(folder, gridOffsetX, gridOffsetY, acquisitionTime);
+    }
+
+    int getBlockX(final int x) {
+        return Math.floorDiv(gridOffsetX + x, BLOCK_SIZE);
+    }
+
+    int getBlockY(final int y) {
+        return Math.floorDiv(gridOffsetY + y, BLOCK_SIZE);
+    }
+
+    /**
+     * @return the block area in image coordinates, possibly extending beyond the image
+     */
+    Rectangle getBlockRectangle(final int blockX, final int blockY) {
+        return new Rectangle(blockX * BLOCK_SIZE - gridOffsetX, blockY * BLOCK_SIZE - gridOffsetY,
+                             BLOCK_SIZE, BLOCK_SIZE);
+    }
+
+    /**
+     * @return an object to synchronize on while a block is looked up and created
+     */
+    Object getLock(final int blockX, final int blockY) {
+        return blockLocks.computeIfAbsent(((long) blockX << 32) | (blockY & 0xffffffffL), k -> new Object());
+    }
+
+    /**
+     * Read a block
+     *
+     * @return the block or null if it was not cached or is incomplete and from another acquisition
+     */
+    Block read(final int blockX, final int blockY) {
+        final File file = getBlockFile(blockX, blockY);
+        if (file.length() != HEADER_SIZE + (long) BLOCK_SIZE * BLOCK_SIZE * PIXEL_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) file.length());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            buffer.flip();
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            final double blockAcquisitionTime = buffer.getDouble();
+            final boolean complete = buffer.getInt() != 0;
+            if (!complete && blockAcquisitionTime != acquisitionTime) {
+                return null;
+            }
+
+            final Block block = new Block(blockX, blockY, getBlockRectangle(blockX, blockY), blockAcquisitionTime);
+            block.complete = complete;
+            buffer.asFloatBuffer().get(block.elevation);
+            buffer.position(buffer.position() + block.elevation.length * 4);
+            buffer.asDoubleBuffer().get(block.zeroDopplerTime);
+            buffer.position(buffer.position() + block.zeroDopplerTime.length * 8);
+            buffer.asFloatBuffer().get(block.localIncidenceAngle);
+            buffer.position(buffer.position() + block.localIncidenceAngle.length * 4);
+            buffer.asFloatBuffer().get(block.projectedLocalIncidenceAngle);
+            return block;
+        } catch (IOException e) {
+            SystemUtils.LOG.warning("Unable to read radar geometry " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store a block. It is written to a temporary file first, so that readers never see a partial block.
+     */
+    void write(final Block block) {
+        final File file = getBlockFile(block.blockX, block.blockY);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + BLOCK_SIZE * BLOCK_SIZE * PIXEL_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putDouble(block.acquisitionTime);
+        buffer.putInt(block.complete ? 1 : 0);
+        buffer.asFloatBuffer().put(block.elevation);
+        buffer.position(buffer.position() + block.elevation.length * 4);
+        buffer.asDoubleBuffer().put(block.zeroDopplerTime);
+        buffer.position(buffer.position() + block.zeroDopplerTime.length * 8);
+        buffer.asFloatBuffer().put(block.localIncidenceAngle);
+        buffer.position(buffer.position() + block.localIncidenceAngle.length * 4);
+        buffer.asFloatBuffer().put(block.projectedLocalIncidenceAngle);
+        buffer.rewind();
+
+        try {
+            final File tmpFile = File.createTempFile("block", ".tmp", folder);
+            try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            SystemUtils.LOG.warning("Unable to cache radar geometry " + file + ": " + e.getMessage());
+        }
+    }
+
+    private File getBlockFile(final int blockX, final int blockY) {
+        return new File(folder, "block_" + blockX + '_' + blockY + ".bin");
+    }
+
+    /**
+     * Radar geometry of one block, row major
+     */
+    static final class Block {
+
+        final int blockX;
+        final int blockY;
+        final Rectangle rectangle;
+        final double acquisitionTime;
+
+        /** DEM elevation, NaN where the DEM has no data */
+        final float[] elevation = new float[BLOCK_SIZE * BLOCK_SIZE];
+        /** zero Doppler time in days before bistatic correction, NaN where the point is not seen */
+        final double[] zeroDopplerTime = new double[BLOCK_SIZE * BLOCK_SIZE];
+        /** local incidence angle in degrees */
+        final float[] localIncidenceAngle = new float[BLOCK_SIZE * BLOCK_SIZE];
+        /** projected local incidence angle in degrees */
+        final float[] projectedLocalIncidenceAngle = new float[BLOCK_SIZE * BLOCK_SIZE];
+        /** false if some points with elevation were not seen by the acquisition */
+        boolean complete = true;
+
+        Block(final int blockX, final int blockY, final Rectangle rectangle, final double acquisitionTime) {
+            this.blockX = blockX;
+            this.blockY = blockY;
+            this.rectangle = rectangle;
+            this.acquisitionTime = acquisitionTime;
+            Arrays.fill(zeroDopplerTime, Double.NaN);
+        }
+    }
+}
@@ -50,8 +50,10 @@ import org.esa.snap.engine_utilities.eo.GeoUtils;
 import org.esa.snap.engine_utilities.eo.LocalGeometry;
 import org.esa.snap.engine_utilities.gpf.*;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.io.File;
 import java.util.*;
 import java.util.List;
@@ -160,6 +162,10 @@ public class RangeDopplerGeocodingOp extends Operator {
     @Parameter(defaultValue = "true", label = "Mask out areas with no elevation", description = "Mask the sea with no data value (faster)")
     private boolean nodataValueAtSea = true;
 
+    @Parameter(description = "Keep the radar geometry in the cache folder and reuse it for other acquisitions of the same track",
+            defaultValue = "false", label = "Reuse Cached Radar Geometry")
+    private boolean reuseRadarGeometry = false;
+
     @Parameter(defaultValue = "false", label = "Save DEM as band")
     private boolean saveDEM = false;
 
@@ -238,6 +244,17 @@ public class RangeDopplerGeocodingOp extends Operator {
     private double delLat = 0.0;
     private double delLon = 0.0;
     private OrbitStateVectors orbit = null;
+    private RadarGeometryCache geometryCache = null;
+
+    // decoded blocks most recently used by tiles, so that neighbouring tiles do not read them from disk again
+    private static final int MAX_GEOMETRY_BLOCKS = 16;
+    private final Map<Long, RadarGeometryCache.Block> geometryBlocks =
+            new LinkedHashMap<Long, RadarGeometryCache.Block>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Long, RadarGeometryCache.Block> eldest) {
+                    return size() > MAX_GEOMETRY_BLOCKS;
+                }
+            };
 
     private AbstractMetadata.SRGRCoefficientList[] srgrConvParams = null;
     private OrbitStateVector[] orbitStateVectors = null;
@@ -345,6 +362,10 @@ public class RangeDopplerGeocodingOp extends Operator {
 
             margin = getMargin();
 
+            if (reuseRadarGeometry && !useAvgSceneHeight) {
+                geometryCache = createGeometryCache();
+            }
+
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
         }
@@ -355,6 +376,9 @@ public class RangeDopplerGeocodingOp extends Operator {
         if (dem != null) {
             dem.dispose();
         }
+        synchronized (geometryBlocks) {
+            geometryBlocks.clear();
+        }
 
         if (!orthoDataProduced && processingStarted) {
             final String errMsg = getId() + " error: no valid output was produced. Please verify the DEM";
@@ -855,12 +879,19 @@ public class RangeDopplerGeocodingOp extends Operator {
             final TileGeoreferencing tileGeoRef = new TileGeoreferencing(targetProduct, x0 - 1, y0 - 1, w + 2, h + 2);
 
             double[][] localDEM = new double[h + 2][w + 2];
+            TileGeometry tileGeometry = null;
             if (useAvgSceneHeight) {
                 DEMFactory.fillDEM(localDEM, avgSceneHeight);
             } else {
-                final boolean valid = DEMFactory.getLocalDEM(
-                        dem, demNoDataValue, demResamplingMethod, tileGeoRef, x0, y0, w, h, sourceProduct,
-                        nodataValueAtSea, localDEM);
+                final boolean valid;
+                if (geometryCache != null) {
+                    tileGeometry = getTileGeometry(targetRectangle, localDEM);
+                    valid = tileGeometry.hasElevation;
+                } else {
+                    valid = DEMFactory.getLocalDEM(
+                            dem, demNoDataValue, demResamplingMethod, tileGeoRef, x0, y0, w, h, sourceProduct,
+                            nodataValueAtSea, localDEM);
+                }
                 if (!valid && nodataValueAtSea) {
                     for (Band targetBand : targetTiles.keySet()) {
                         ProductData data = targetTiles.get(targetBand).getRawSamples();
@@ -981,7 +1012,9 @@ public class RangeDopplerGeocodingOp extends Operator {
                         alt = (double) egm.getEGM(lat, lon);
                     }
 
-                    if (!getPosition(lat, lon, alt, posData)) {
+                    final boolean positionFound = tileGeometry == null ? getPosition(lat, lon, alt, posData) :
+                            getPosition(lat, lon, alt, tileGeometry.zeroDopplerTime[(yy - 1) * w + x - x0], posData);
+                    if (!positionFound) {
                         saveNoDataValueToTarget(index, tgtTiles, demBuffer);
                         continue;
                     }
@@ -996,12 +1029,18 @@ public class RangeDopplerGeocodingOp extends Operator {
 
                         if (saveLocalIncidenceAngle || saveProjectedLocalIncidenceAngle || saveSigmaNought) {
 
-                            final LocalGeometry localGeometry = new LocalGeometry(
-                                    x, y, tileGeoRef, posData.earthPoint, posData.sensorPos);
-
-                            SARGeocoding.computeLocalIncidenceAngle(
-                                    localGeometry, demNoDataValue, saveLocalIncidenceAngle, saveProjectedLocalIncidenceAngle,
-                                    saveSigmaNought, x0, y0, x, y, localDEM, localIncidenceAngles); // in degrees
+                            if (tileGeometry != null) {
+                                final int k = (yy - 1) * w + x - x0;
+                                localIncidenceAngles[0] = tileGeometry.localIncidenceAngle[k];
+                                localIncidenceAngles[1] = tileGeometry.projectedLocalIncidenceAngle[k];
+                            } else {
+                                final LocalGeometry localGeometry = new LocalGeometry(
+                                        x, y, tileGeoRef, posData.earthPoint, posData.sensorPos);
+
+                                SARGeocoding.computeLocalIncidenceAngle(
+                                        localGeometry, demNoDataValue, saveLocalIncidenceAngle, saveProjectedLocalIncidenceAngle,
+                                        saveSigmaNought, x0, y0, x, y, localDEM, localIncidenceAngles); // in degrees
+                            }
 
                             if (saveLocalIncidenceAngle && localIncidenceAngles[0] != SARGeocoding.NonValidIncidenceAngle) {
                                 localIncidenceAngleBuffer.setElemDoubleAt(index, localIncidenceAngles[0]);
@@ -1207,12 +1246,254 @@ public class RangeDopplerGeocodingOp extends Operator {
         }
     }
 
+    /**
+     * Open the radar geometry cache of the track. The target grid is placed on a lattice of its own pixel size
+     * anchored at the map origin, so products of the same track share the geometry where their grids overlap.
+     * Grids only match if they have the same pixel phase, as with alignToStandardGrid.
+     */
+    private RadarGeometryCache createGeometryCache() {
+
+        final MathTransform imageToMap = targetGeoCoding.getImageToMapTransform();
+        if (!(imageToMap instanceof AffineTransform) ||
+                ((AffineTransform) imageToMap).getShearX() != 0.0 || ((AffineTransform) imageToMap).getShearY() != 0.0) {
+            SystemUtils.LOG.warning(getId() + ": the radar geometry can only be cached for north up map grids");
+            return null;
+        }
+
+        final AffineTransform transform = (AffineTransform) imageToMap;
+        final double originX = transform.getTranslateX() / transform.getScaleX();
+        final double originY = transform.getTranslateY() / transform.getScaleY();
+        final long gridOffsetX = Math.round(originX);
+        final long gridOffsetY = Math.round(originY);
+        if (Math.abs(gridOffsetX) > Integer.MAX_VALUE / 2 || Math.abs(gridOffsetY) > Integer.MAX_VALUE / 2) {
+            SystemUtils.LOG.warning(getId() + ": the map grid is too large for caching the radar geometry");
+            return null;
+        }
+
+        final String trackKey = getMissionType(absRoot) + '|' +
+                absRoot.getAttributeInt(AbstractMetadata.REL_ORBIT, 0) + '|' +
+                absRoot.getAttributeString(AbstractMetadata.PASS, "") + '|' +
+                absRoot.getAttributeString(AbstractMetadata.ACQUISITION_MODE, "") + '|' +
+                targetCRS.toString() + '|' + transform.getScaleX() + '|' + transform.getScaleY() + '|' +
+                Math.round(1000 * (originX - gridOffsetX)) + '|' + Math.round(1000 * (originY - gridOffsetY)) + '|' +
+                demName + '|' + demResamplingMethod + '|' + externalDEMFile + '|' + externalDEMNoDataValue + '|' +
+                externalDEMApplyEGM + '|' + nodataValueAtSea;
+
+        try {
+            return RadarGeometryCache.create(trackKey, (int) gridOffsetX, (int) gridOffsetY, firstLineUTC);
+        } catch (Exception e) {
+            SystemUtils.LOG.warning(getId() + ": the radar geometry will not be cached: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Assemble the radar geometry of a target tile from the cached blocks.
+     * The zero Doppler times are corrected by the timing difference to the acquisition that computed each block.
+     *
+     * @param rect     the target tile
+     * @param localDEM the DEM of the tile with a one pixel border (output). The border is not filled.
+     * @return the geometry of the tile
+     */
+    private TileGeometry getTileGeometry(final Rectangle rect, final double[][] localDEM) throws Exception {
+
+        for (double[] row : localDEM) {
+            Arrays.fill(row, demNoDataValue);
+        }
+
+        final TileGeometry tileGeometry = new TileGeometry(rect.width * rect.height);
+        final int blockSize = RadarGeometryCache.BLOCK_SIZE;
+        final int maxBlockX = geometryCache.getBlockX(rect.x + rect.width - 1);
+        final int maxBlockY = geometryCache.getBlockY(rect.y + rect.height - 1);
+        for (int blockY = geometryCache.getBlockY(rect.y); blockY <= maxBlockY; ++blockY) {
+            for (int blockX = geometryCache.getBlockX(rect.x); blockX <= maxBlockX; ++blockX) {
+
+                final RadarGeometryCache.Block block = getGeometryBlock(blockX, blockY);
+                final Rectangle common = block.rectangle.intersection(rect);
+                final double timeOffset = getTimeOffset(block, common);
+
+                for (int y = common.y; y < common.y + common.height; ++y) {
+                    final double[] demRow = localDEM[y - rect.y + 1];
+                    int b = (y - block.rectangle.y) * blockSize + common.x - block.rectangle.x;
+                    int k = (y - rect.y) * rect.width + common.x - rect.x;
+                    for (int x = common.x; x < common.x + common.width; ++x, ++b, ++k) {
+                        final float elevation = block.elevation[b];
+                        if (!Float.isNaN(elevation)) {
+                            demRow[x - rect.x + 1] = elevation;
+                            tileGeometry.hasElevation = true;
+                        }
+                        tileGeometry.zeroDopplerTime[k] = block.zeroDopplerTime[b] + timeOffset;
+                        tileGeometry.localIncidenceAngle[k] = block.localIncidenceAngle[b];
+                        tileGeometry.projectedLocalIncidenceAngle[k] = block.projectedLocalIncidenceAngle[b];
+                    }
+                }
+            }
+        }
+        return tileGeometry;
+    }
+
+    private RadarGeometryCache.Block getGeometryBlock(final int blockX, final int blockY) throws Exception {
+        final Long key = ((long) blockY << 32) | (blockX & 0xFFFFFFFFL);
+        RadarGeometryCache.Block block;
+        synchronized (geometryBlocks) {
+            block = geometryBlocks.get(key);
+        }
+        if (block != null) {
+            return block;
+        }
+
+        synchronized (geometryCache.getLock(blockX, blockY)) {
+            // another tile may have loaded the block while waiting for the lock
+            synchronized (geometryBlocks) {
+                block = geometryBlocks.get(key);
+            }
+            if (block == null) {
+                block = geometryCache.read(blockX, blockY);
+                if (block == null) {
+                    block = computeGeometryBlock(blockX, blockY);
+                    geometryCache.write(block);
+                }
+                synchronized (geometryBlocks) {
+                    geometryBlocks.put(key, block);
+                }
+            }
+            return block;
+        }
+    }
+
+    /**
+     * Compute the radar geometry of a cache block for this acquisition
+     */
+    private RadarGeometryCache.Block computeGeometryBlock(final int blockX, final int blockY) throws Exception {
+
+        final Rectangle rect = geometryCache.getBlockRectangle(blockX, blockY);
+        final RadarGeometryCache.Block block = new RadarGeometryCache.Block(blockX, blockY, rect, firstLineUTC);
+
+        final TileGeoreferencing tileGeoRef = new TileGeoreferencing(
+                targetProduct, rect.x - 1, rect.y - 1, rect.width + 2, rect.height + 2);
+        final double[][] localDEM = new double[rect.height + 2][rect.width + 2];
+        DEMFactory.getLocalDEM(dem, demNoDataValue, demResamplingMethod, tileGeoRef, rect.x, rect.y,
+                               rect.width, rect.height, sourceProduct, nodataValueAtSea, localDEM);
+
+        final EarthGravitationalModel96 egm = EarthGravitationalModel96.instance();
+        final GeoPos geoPos = new GeoPos();
+        final PositionData posData = new PositionData();
+        final double[] localIncidenceAngles = new double[2];
+        int k = 0;
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            for (int x = rect.x; x < rect.x + rect.width; ++x, ++k) {
+
+                double alt = localDEM[y - rect.y + 1][x - rect.x + 1];
+                final boolean noElevation = alt == demNoDataValue;
+                block.elevation[k] = noElevation ? Float.NaN : (float) alt;
+                if (noElevation && nodataValueAtSea) {
+                    continue;
+                }
+
+                tileGeoRef.getGeoPos(x, y, geoPos);
+                final double lat = geoPos.lat;
+                double lon = geoPos.lon;
+                if (lon >= 180.0) {
+                    lon -= 360.0;
+                }
+                if (noElevation) {
+                    alt = (double) egm.getEGM(lat, lon);
+                }
+
+                GeoUtils.geo2xyzWGS84(lat, lon, alt, posData.earthPoint);
+                final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(firstLineUTC,
+                        lineTimeInterval, wavelength, posData.earthPoint, orbit.sensorPosition, orbit.sensorVelocity);
+                if (Double.compare(zeroDopplerTime, SARGeocoding.NonValidZeroDopplerTime) == 0) {
+                    block.complete = false;
+                    continue;
+                }
+                block.zeroDopplerTime[k] = zeroDopplerTime;
+                computePosition(zeroDopplerTime, posData);
+
+                localIncidenceAngles[0] = SARGeocoding.NonValidIncidenceAngle;
+                localIncidenceAngles[1] = SARGeocoding.NonValidIncidenceAngle;
+                final LocalGeometry localGeometry = new LocalGeometry(
+                        x, y, tileGeoRef, posData.earthPoint, posData.sensorPos);
+                SARGeocoding.computeLocalIncidenceAngle(
+                        localGeometry, demNoDataValue, true, true, true, rect.x, rect.y, x, y, localDEM,
+                        localIncidenceAngles);
+                block.localIncidenceAngle[k] = (float) localIncidenceAngles[0];
+                block.projectedLocalIncidenceAngle[k] = (float) localIncidenceAngles[1];
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Timing difference between this acquisition and the one that computed a block, measured at the first
+     * sampled point of the given area that both acquisitions see.
+     */
+    private double getTimeOffset(final RadarGeometryCache.Block block, final Rectangle area) {
+
+        if (block.acquisitionTime == firstLineUTC) {
+            return 0.0;
+        }
+
+        final EarthGravitationalModel96 egm = EarthGravitationalModel96.instance();
+        final GeoPos geoPos = new GeoPos();
+        final PosVector earthPoint = new PosVector();
+        final int step = 16;
+        for (int y = area.y; y < area.y + area.height; y += step) {
+            for (int x = area.x; x < area.x + area.width; x += step) {
+                final int b = (y - block.rectangle.y) * RadarGeometryCache.BLOCK_SIZE + x - block.rectangle.x;
+                final double referenceTime = block.zeroDopplerTime[b];
+                if (Double.isNaN(referenceTime)) {
+                    continue;
+                }
+
+                targetGeoCoding.getGeoPos(new PixelPos(x + 0.5, y + 0.5), geoPos);
+                final double lat = geoPos.lat;
+                double lon = geoPos.lon;
+                if (lon >= 180.0) {
+                    lon -= 360.0;
+                }
+                final float elevation = block.elevation[b];
+                final double alt = Float.isNaN(elevation) ? egm.getEGM(lat, lon) : elevation;
+
+                GeoUtils.geo2xyzWGS84(lat, lon, alt, earthPoint);
+                final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(firstLineUTC,
+                        lineTimeInterval, wavelength, earthPoint, orbit.sensorPosition, orbit.sensorVelocity);
+                if (Double.compare(zeroDopplerTime, SARGeocoding.NonValidZeroDopplerTime) != 0) {
+                    return zeroDopplerTime - referenceTime;
+                }
+            }
+        }
+        return 0.0;
+    }
+
     private boolean getPosition(final double lat, final double lon, final double alt, final PositionData data) {
 
         GeoUtils.geo2xyzWGS84(lat, lon, alt, data.earthPoint);
 
-        double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(firstLineUTC,
-                                                                           lineTimeInterval, wavelength, data.earthPoint, orbit.sensorPosition, orbit.sensorVelocity);
+        final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(firstLineUTC,
+                                                                                 lineTimeInterval, wavelength, data.earthPoint, orbit.sensorPosition, orbit.sensorVelocity);
+        return computePosition(zeroDopplerTime, data);
+    }
+
+    /**
+     * Get the position of a point whose zero Doppler time is predicted, e.g. by the cached radar geometry.
+     */
+    private boolean getPosition(final double lat, final double lon, final double alt, final double predictedTime,
+                                final PositionData data) {
+
+        if (Double.isNaN(predictedTime)) {
+            return false;
+        }
+
+        GeoUtils.geo2xyzWGS84(lat, lon, alt, data.earthPoint);
+
+        final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(firstLineUTC,
+                                                                                 lineTimeInterval, wavelength, data.earthPoint, orbit.sensorPosition, orbit.sensorVelocity,
+                                                                                 (predictedTime - firstLineUTC) / lineTimeInterval);
+        return computePosition(zeroDopplerTime, data);
+    }
+
+    private boolean computePosition(double zeroDopplerTime, final PositionData data) {
 
         if (Double.compare(zeroDopplerTime, SARGeocoding.NonValidZeroDopplerTime) == 0) {
             return false;
@@ -1545,6 +1826,22 @@ public class RangeDopplerGeocodingOp extends Operator {
         log.info("---------------------------------");
     }
 
+    /**
+     * Radar geometry of a target tile, row major
+     */
+    private static class TileGeometry {
+        final double[] zeroDopplerTime;
+        final double[] localIncidenceAngle;
+        final double[] projectedLocalIncidenceAngle;
+        boolean hasElevation = false;
+
+        TileGeometry(final int size) {
+            zeroDopplerTime = new double[size];
+            localIncidenceAngle = new double[size];
+            projectedLocalIncidenceAngle = new double[size];
+        }
+    }
+
     private static class PositionData {
         final PosVector earthPoint = new PosVector();
         final PosVector sensorPos = new PosVector();
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.esa.snap.core.util.SystemUtils;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Scene sized grids of simulated reference areas, one layer per area type, held in a memory mapped file.
+ * <p>
+ * The grid is mapped in horizontal strips. Each block of a strip is written once by a single thread
+ * and afterwards only read. Being mapped, the data lives outside the Java heap and is paged out
+ * to the file by the operating system when memory is short.
+ * <p>
+ * A grid may be kept in the cache folder under a key describing the acquisition and the simulation
+ * parameters, so that processing the same scene again reads the areas instead of simulating them.
+ * The file is named after the SHA-256 digest of the key and starts with a header holding the digest
+ * and the dimensions, which is checked before the file is reused. A persisted file is copied to a
+ * temporary file and moved into place, so a partially written grid is never found under a key.
+ */
+final class ReferenceAreaGrid {
+
+    private static final String CACHE_FOLDER = "s1tbx" + File.separator + "terrain-flattening";
+
+    private static final int MAGIC = 0x52414752; // RAGR
+    private static final int VERSION = 1;
+    private static final int DIGEST_LENGTH = 32;
+    private static final int HEADER_SIZE = 64; // magic, version, width, height, layers, digest, padding
+
+    private final int width;
+    private final int height;
+    private final int stripHeight;
+    private final int numLayers;
+    private final File file;
+    private final File persistentFile;
+    private final byte[] digest;
+    private final MappedByteBuffer[][] mappedStrips;
+    private final FloatBuffer[][] strips;
+    private final boolean complete;
+
+    private ReferenceAreaGrid(final File file, final File persistentFile, final byte[] digest, final boolean complete,
+                              final int width, final int height, final int stripHeight, final int numLayers)
+            throws IOException {
+        this.width = width;
+        this.height = height;
+        this.stripHeight = stripHeight;
+        this.numLayers = numLayers;
+        this.file = file;
+        this.persistentFile = persistentFile;
+        this.digest = digest;
+        this.complete = complete;
+
+        final int numStrips = (height + stripHeight - 1) / stripHeight;
+        mappedStrips = new MappedByteBuffer[numLayers][numStrips];
+        strips = new FloatBuffer[numLayers][numStrips];
+        final long layerSize = (long) width * height * 4L;
+        try (RandomAccessFile raf = new RandomAccessFile(file, complete ? "r" : "rw")) {
+            if (!complete) {
+                raf.setLength(HEADER_SIZE + layerSize * numLayers);
+            }
+            final FileChannel channel = raf.getChannel();
+            final FileChannel.MapMode mode = complete ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+            for (int layer = 0; layer < numLayers; ++layer) {
+                for (int s = 0; s < numStrips; ++s) {
+                    final int y0 = s * stripHeight;
+                    final int h = Math.min(stripHeight, height - y0);
+                    final MappedByteBuffer buffer = channel.map(mode, HEADER_SIZE + layer * layerSize + (long) y0 * width * 4L,
+                                                                (long) h * width * 4L);
+                    buffer.order(ByteOrder.nativeOrder());
+                    mappedStrips[layer][s] = buffer;
+                    strips[layer][s] = buffer.asFloatBuffer();
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a grid. If a cache key is given and a grid was stored under it, that grid is returned complete.
+     * Otherwise the new grid is stored under the key once {@link #persist()} is called.
+     *
+     * @param cacheKey    key of the persisted grid or null for a temporary grid
+     * @param width       scene width
+     * @param height      scene height
+     * @param stripHeight number of lines per strip
+     * @param numLayers   number of grids
+     * @return the grid
+     * @throws IOException if the file cannot be created
+     */
+    static ReferenceAreaGrid create(final String cacheKey, final int width, final int height,
+                                    final int stripHeight, final int numLayers) throws IOException {
+        final File folder = new File(SystemUtils.getCacheDir(), CACHE_FOLDER);
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+
+        File persistentFile = null;
+        byte[] digest = null;
+        if (cacheKey != null) {
+            digest = getDigest(cacheKey);
+            final StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            persistentFile = new File(folder, name.append(".grid").toString());
+            if (isValid(persistentFile, digest, width, height, numLayers)) {
+                SystemUtils.LOG.info("TerrainFlattening: reusing reference area " + persistentFile);
+                return new ReferenceAreaGrid(persistentFile, null, digest, true, width, height, stripHeight, numLayers);
+            }
+        }
+
+        final File tmpFile = File.createTempFile("referenceArea", ".tmp", folder);
+        tmpFile.deleteOnExit();
+        return new ReferenceAreaGrid(tmpFile, persistentFile, digest, false, width, height, stripHeight, numLayers);
+    }
+
+    private static byte[] getDigest(final String cacheKey) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(cacheKey.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * A persisted grid is reused only if its header holds the digest of the key and the expected dimensions
+     */
+    private static boolean isValid(final File file, final byte[] digest, final int width, final int height,
+                                   final int numLayers) {
+        if (file.length() != HEADER_SIZE + (long) width * height * 4L * numLayers) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final byte[] fileDigest = new byte[DIGEST_LENGTH];
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION || raf.readInt() != width ||
+                    raf.readInt() != height || raf.readInt() != numLayers) {
+                return false;
+            }
+            raf.readFully(fileDigest);
+            return Arrays.equals(fileDigest, digest);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Store the areas of a rectangle
+     *
+     * @param layer the grid
+     * @param rect  the rectangle
+     * @param area  the areas of the rectangle
+     */
+    void write(final int layer, final Rectangle rect, final double[][] area) {
+        final float[] row = new float[rect.width];
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            final double[] line = area[y - rect.y];
+            for (int x = 0; x < rect.width; ++x) {
+                row[x] = (float) line[x];
+            }
+            final FloatBuffer buffer = strips[layer][y / stripHeight].duplicate();
+            buffer.position((y % stripHeight) * width + rect.x);
+            buffer.put(row);
+        }
+    }
+
+    /**
+     * Read the areas of a rectangle
+     *
+     * @param layer the grid
+     * @param rect  the rectangle
+     * @param area  the areas (output)
+     */
+    void read(final int layer, final Rectangle rect, final double[][] area) {
+        final float[] row = new float[rect.width];
+        for (int y = rect.y; y < rect.y + rect.height; ++y) {
+            final FloatBuffer buffer = strips[layer][y / stripHeight].duplicate();
+            buffer.position((y % stripHeight) * width + rect.x);
+            buffer.get(row);
+            final double[] line = area[y - rect.y];
+            for (int x = 0; x < rect.width; ++x) {
+                line[x] = row[x];
+            }
+        }
+    }
+
+    /**
+     * Keep a completely written grid under its cache key
+     */
+    void persist() {
+        if (persistentFile == null) {
+            return;
+        }
+        for (MappedByteBuffer[] layer : mappedStrips) {
+            for (MappedByteBuffer strip : layer) {
+                strip.force();
+            }
+        }
+        File tmpFile = null;
+        try {
+            // the working file stays mapped, so it is copied rather than moved
+            tmpFile = File.createTempFile("referenceArea", ".grid.tmp", persistentFile.getParentFile());
+            Files.copy(file.toPath(), tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeInt(width);
+                raf.writeInt(height);
+                raf.writeInt(numLayers);
+                raf.write(digest);
+                raf.getFD().sync();
+            }
+            try {
+                Files.move(tmpFile.toPath(), persistentFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), persistentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            SystemUtils.LOG.warning("Unable to cache reference area " + persistentFile + ": " + e.getMessage());
+            if (tmpFile != null && !tmpFile.delete()) {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Release the grid. A temporary file is deleted when the mapping is garbage collected or at exit.
+     */
+    void dispose() {
+        for (int layer = 0; layer < numLayers; ++layer) {
+            Arrays.fill(mappedStrips[layer], null);
+            Arrays.fill(strips[layer], null);
+        }
+        if (!complete && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
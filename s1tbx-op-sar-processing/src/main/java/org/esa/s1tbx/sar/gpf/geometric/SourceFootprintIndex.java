@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Uniform grid index of the footprints of source products in target pixel coordinates.
+ * <p>
+ * Each cell of the grid lists the footprints that intersect it, so the footprints intersecting a target tile
+ * are found from the few cells the tile covers, independent of the total number of footprints.
+ */
+final class SourceFootprintIndex {
+
+    static final int MAX_CELLS_PER_AXIS = 64;
+    static final int MIN_CELL_SIZE = 256;
+
+    private static final int[] NONE = new int[0];
+
+    private final Rectangle[] footprints;
+    private final int originX;
+    private final int originY;
+    private final int cellSize;
+    private final int numCellsX;
+    private final int numCellsY;
+    private final int[][] cells;
+
+    /**
+     * @param footprints the footprint of each source, null if the source does not cover the target
+     */
+    SourceFootprintIndex(final Rectangle[] footprints) {
+        this.footprints = footprints;
+
+        Rectangle bounds = null;
+        for (Rectangle footprint : footprints) {
+            if (footprint != null && !footprint.isEmpty()) {
+                bounds = bounds == null ? new Rectangle(footprint) : bounds.union(footprint);
+            }
+        }
+        if (bounds == null) {
+            originX = originY = 0;
+            cellSize = MIN_CELL_SIZE;
+            numCellsX = numCellsY = 0;
+            cells = new int[0][];
+            return;
+        }
+
+        originX = bounds.x;
+        originY = bounds.y;
+        cellSize = Math.max(MIN_CELL_SIZE,
+                (Math.max(bounds.width, bounds.height) + MAX_CELLS_PER_AXIS - 1) / MAX_CELLS_PER_AXIS);
+        numCellsX = (bounds.width + cellSize - 1) / cellSize;
+        numCellsY = (bounds.height + cellSize - 1) / cellSize;
+
+        // count, then fill the footprints of each cell in ascending order
+        final int[] counts = new int[numCellsX * numCellsY];
+        for (Rectangle footprint : footprints) {
+            if (footprint != null && !footprint.isEmpty()) {
+                forEachCell(footprint, cell -> counts[cell]++);
+            }
+        }
+        cells = new int[counts.length][];
+        for (int cell = 0; cell < counts.length; ++cell) {
+            cells[cell] = counts[cell] == 0 ? NONE : new int[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int i = 0; i < footprints.length; ++i) {
+            final Rectangle footprint = footprints[i];
+            if (footprint != null && !footprint.isEmpty()) {
+                final int index = i;
+                forEachCell(footprint, cell -> cells[cell][counts[cell]++] = index);
+            }
+        }
+    }
+
+    private interface CellConsumer {
+        void accept(int cell);
+    }
+
+    private void forEachCell(final Rectangle rectangle, final CellConsumer consumer) {
+        final int cx0 = Math.max(0, Math.floorDiv(rectangle.x - originX, cellSize));
+        final int cy0 = Math.max(0, Math.floorDiv(rectangle.y - originY, cellSize));
+        final int cx1 = Math.min(numCellsX - 1, Math.floorDiv(rectangle.x + rectangle.width - 1 - originX, cellSize));
+        final int cy1 = Math.min(numCellsY - 1, Math.floorDiv(rectangle.y + rectangle.height - 1 - originY, cellSize));
+        for (int cy = cy0; cy <= cy1; ++cy) {
+            for (int cx = cx0; cx <= cx1; ++cx) {
+                consumer.accept(cy * numCellsX + cx);
+            }
+        }
+    }
+
+    /**
+     * @return the indices of the footprints that intersect the rectangle, in ascending order
+     */
+    int[] query(final Rectangle rectangle) {
+        if (cells.length == 0 || rectangle.isEmpty()) {
+            return NONE;
+        }
+
+        final IndexList found = new IndexList();
+        forEachCell(rectangle, cell -> {
+            for (int index : cells[cell]) {
+                if (footprints[index].intersects(rectangle)) {
+                    found.add(index);
+                }
+            }
+        });
+        return found.toSortedUniqueArray();
+    }
+
+    private static final class IndexList {
+        private int[] indices = new int[8];
+        private int size = 0;
+
+        void add(final int index) {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, 2 * size);
+            }
+            indices[size++] = index;
+        }
+
+        // footprints covering several cells are found more than once
+        int[] toSortedUniqueArray() {
+            Arrays.sort(indices, 0, size);
+            int n = 0;
+            for (int i = 0; i < size; ++i) {
+                if (n == 0 || indices[i] != indices[n - 1]) {
+                    indices[n++] = indices[i];
+                }
+            }
+            return Arrays.copyOf(indices, n);
+        }
+    }
+}
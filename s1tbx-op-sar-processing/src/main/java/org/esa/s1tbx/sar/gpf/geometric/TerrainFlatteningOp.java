@@ -36,6 +36,8 @@ import org.esa.snap.core.gpf.annotations.SourceProduct;
 import org.esa.snap.core.gpf.annotations.TargetProduct;
 import org.esa.snap.core.util.ProductUtils;
 import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.core.util.ThreadExecutor;
+import org.esa.snap.core.util.ThreadRunnable;
 import org.esa.snap.dem.dataio.DEMFactory;
 import org.esa.snap.dem.dataio.FileElevationModel;
 import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
@@ -49,8 +51,14 @@ import org.esa.snap.engine_utilities.util.Maths;
 
 import java.awt.*;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This operator implements the terrain flattening algorithm proposed by
@@ -104,6 +112,10 @@ public final class TerrainFlatteningOp extends Operator {
             defaultValue = "1.0")
     private Double oversamplingMultiple = 1.0;
 
+    @Parameter(description = "Keep the simulated reference area and reuse it when the same scene is processed again",
+            defaultValue = "false", label = "Reuse Cached Reference Area")
+    private Boolean reuseReferenceArea = false;
+
     private Product newSourceProduct = null;
     private ElevationModel dem = null;
     private FileElevationModel fileElevationModel = null;
@@ -143,6 +155,11 @@ public final class TerrainFlatteningOp extends Operator {
     private boolean detectShadow = false;
     private double threshold = 0.05;
     private boolean invalidSource = false;
+    private ReferenceAreaGrid referenceAreaGrid = null;
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int LATTICE_SPACING = 20;
+    private static final double MAX_BLOCK_OVERLAP = 1.0;
 
     private static final String PRODUCT_SUFFIX = "_TF";
 
@@ -206,6 +223,9 @@ public final class TerrainFlatteningOp extends Operator {
             if(oversamplingMultiple == null) {
                 oversamplingMultiple = 1.0;
             }
+            if(reuseReferenceArea == null) {
+                reuseReferenceArea = false;
+            }
 
             getMetadata();
 
@@ -234,6 +254,10 @@ public final class TerrainFlatteningOp extends Operator {
 
     @Override
     public synchronized void dispose() {
+        if (referenceAreaGrid != null) {
+            referenceAreaGrid.dispose();
+            referenceAreaGrid = null;
+        }
         if (dem != null) {
             dem.dispose();
             dem = null;
@@ -478,22 +502,17 @@ public final class TerrainFlatteningOp extends Operator {
             final int h = targetRectangle.height;
             //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
 
-            final OverlapPercentage tileOverlapPercentage = computeTileOverlapPercentage(x0, y0, w, h, pm);
-            if(tileOverlapPercentage == null) {
+            final ReferenceAreaGrid grid = getReferenceAreaGrid(pm);
+            if (grid == null) {
                 return;
             }
 
             final double[][] gamma0ReferenceArea = new double[h][w];
+            grid.read(0, targetRectangle, gamma0ReferenceArea);
             double[][] sigma0ReferenceArea = null;
             if (outputSigma0) {
                 sigma0ReferenceArea = new double[h][w];
-            }
-
-            final boolean validSimulation = generateSimulatedImage(
-                    x0, y0, w, h, tileOverlapPercentage, gamma0ReferenceArea, sigma0ReferenceArea, pm);
-
-            if (!validSimulation) {
-                return;
+                grid.read(1, targetRectangle, sigma0ReferenceArea);
             }
 
             if (isPolSar) {
@@ -514,6 +533,205 @@ public final class TerrainFlatteningOp extends Operator {
         }
     }
 
+    /**
+     * The reference area is simulated once for the whole scene, the first tile computed builds it.
+     *
+     * @return the grid, or null if the simulation was cancelled
+     */
+    private synchronized ReferenceAreaGrid getReferenceAreaGrid(final ProgressMonitor pm) throws Exception {
+        if (referenceAreaGrid == null) {
+            final ReferenceAreaGrid grid = ReferenceAreaGrid.create(reuseReferenceArea ? getCacheKey() : null,
+                    sourceImageWidth, sourceImageHeight, BLOCK_SIZE, outputSigma0 ? 2 : 1);
+            if (!grid.isComplete()) {
+                if (!simulateReferenceArea(grid, pm)) {
+                    grid.dispose();
+                    return null;
+                }
+                if (reuseReferenceArea) {
+                    grid.persist();
+                }
+            }
+            referenceAreaGrid = grid;
+        }
+        return referenceAreaGrid;
+    }
+
+    /**
+     * Simulate the reference area of the scene in blocks of BLOCK_SIZE x BLOCK_SIZE pixels.
+     * The overlap of each block is found from the displacements on a lattice over the whole scene,
+     * computed once instead of once per tile, and is bounded to the block size. The blocks are
+     * simulated by at most one thread per processor, so the memory held by the simulation does not
+     * depend on the scene width.
+     *
+     * @param grid The grid receiving the simulated areas.
+     * @param pm   A progress monitor which should be used to determine computation cancelation requests.
+     * @return false if the simulation was cancelled.
+     * @throws Exception The exceptions.
+     */
+    private boolean simulateReferenceArea(final ReferenceAreaGrid grid, final ProgressMonitor pm) throws Exception {
+
+        final GeoCoding sourceGeoCoding = newSourceProduct.getSceneGeoCoding();
+        final int numBlockRows = (sourceImageHeight + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int numBlockCols = (sourceImageWidth + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int numLatticeRows = (sourceImageHeight + LATTICE_SPACING - 1) / LATTICE_SPACING;
+        final int numLatticeCols = (sourceImageWidth + LATTICE_SPACING - 1) / LATTICE_SPACING;
+
+        // largest displacements of each lattice row over the neighbourhood of each block column
+        final double[][] displacementUp = new double[numLatticeRows][numBlockCols];
+        final double[][] displacementDown = new double[numLatticeRows][numBlockCols];
+        final double[][] displacementLeft = new double[numLatticeRows][numBlockCols];
+        final double[][] displacementRight = new double[numLatticeRows][numBlockCols];
+        final Throwable[] error = new Throwable[1];
+
+        final ThreadExecutor latticeExecutor = new ThreadExecutor();
+        for (int r = 0; r < numLatticeRows; ++r) {
+            final int row = r;
+            latticeExecutor.execute(new ThreadRunnable() {
+                @Override
+                public void process() {
+                    try {
+                        final PixelPos pixPos = new PixelPos();
+                        final double[] up = new double[numLatticeCols];
+                        final double[] down = new double[numLatticeCols];
+                        final double[] left = new double[numLatticeCols];
+                        final double[] right = new double[numLatticeCols];
+                        final int y = row * LATTICE_SPACING;
+                        for (int k = 0; k < numLatticeCols; ++k) {
+                            final int x = k * LATTICE_SPACING;
+                            if (getTruePixelPos(x, y, pixPos, sourceGeoCoding)) {
+                                up[k] = Math.max(y - pixPos.y, 0.0);
+                                down[k] = Math.max(pixPos.y - y, 0.0);
+                                left[k] = Math.max(x - pixPos.x, 0.0);
+                                right[k] = Math.max(pixPos.x - x, 0.0);
+                            }
+                        }
+
+                        // same neighbourhood as used for the overlap of a tile: half the width on either side
+                        for (int c = 0; c < numBlockCols; ++c) {
+                            final int x0 = c * BLOCK_SIZE;
+                            final int w = Math.min(BLOCK_SIZE, sourceImageWidth - x0);
+                            final int kMin = (Math.max(x0 - w / 2, 0) + LATTICE_SPACING - 1) / LATTICE_SPACING;
+                            final int kMax = Math.min((x0 + w + w / 2 - 1) / LATTICE_SPACING, numLatticeCols - 1);
+                            for (int k = kMin; k <= kMax; ++k) {
+                                displacementUp[row][c] = Math.max(up[k], displacementUp[row][c]);
+                                displacementDown[row][c] = Math.max(down[k], displacementDown[row][c]);
+                                displacementLeft[row][c] = Math.max(left[k], displacementLeft[row][c]);
+                                displacementRight[row][c] = Math.max(right[k], displacementRight[row][c]);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (error) {
+                            error[0] = e;
+                        }
+                    }
+                }
+            });
+        }
+        latticeExecutor.complete();
+        rethrow(error);
+
+        final int numThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                                                    numBlockRows * numBlockCols));
+        final ExecutorService blockExecutor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>(numBlockRows * numBlockCols);
+            for (int b = 0; b < numBlockRows; ++b) {
+                for (int c = 0; c < numBlockCols; ++c) {
+                    final int blockRow = b, blockCol = c;
+                    futures.add(blockExecutor.submit(() -> {
+                        final int x0 = blockCol * BLOCK_SIZE;
+                        final int y0 = blockRow * BLOCK_SIZE;
+                        final int w = Math.min(BLOCK_SIZE, sourceImageWidth - x0);
+                        final int h = Math.min(BLOCK_SIZE, sourceImageHeight - y0);
+
+                        // same neighbourhood as used for the overlap of a tile: half the height on either side
+                        double up = 0.0, down = 0.0, left = 0.0, right = 0.0;
+                        final int rMin = Math.max(y0 - h / 2, 0) / LATTICE_SPACING;
+                        final int rMax = Math.min((y0 + h + h / 2 - 1) / LATTICE_SPACING, numLatticeRows - 1);
+                        for (int r = rMin; r <= rMax; ++r) {
+                            up = Math.max(displacementUp[r][blockCol], up);
+                            down = Math.max(displacementDown[r][blockCol], down);
+                            left = Math.max(displacementLeft[r][blockCol], left);
+                            right = Math.max(displacementRight[r][blockCol], right);
+                        }
+                        final OverlapPercentage overlap = new OverlapPercentage(
+                                Math.min(up / h + additionalOverlap, MAX_BLOCK_OVERLAP),
+                                Math.min(down / h + additionalOverlap, MAX_BLOCK_OVERLAP),
+                                Math.min(left / w + additionalOverlap, MAX_BLOCK_OVERLAP),
+                                Math.min(right / w + additionalOverlap, MAX_BLOCK_OVERLAP));
+
+                        final double[][] gamma0ReferenceArea = new double[h][w];
+                        final double[][] sigma0ReferenceArea = outputSigma0 ? new double[h][w] : null;
+                        if (!generateSimulatedImage(x0, y0, w, h, overlap,
+                                                    gamma0ReferenceArea, sigma0ReferenceArea, pm)) {
+                            return false;
+                        }
+
+                        final Rectangle block = new Rectangle(x0, y0, w, h);
+                        grid.write(0, block, gamma0ReferenceArea);
+                        if (outputSigma0) {
+                            grid.write(1, block, sigma0ReferenceArea);
+                        }
+                        return true;
+                    }));
+                }
+            }
+
+            for (Future<Boolean> future : futures) {
+                if (!future.get()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (ExecutionException e) {
+            error[0] = e.getCause();
+            rethrow(error);
+            throw e;
+        } finally {
+            blockExecutor.shutdownNow();
+        }
+    }
+
+    private static void rethrow(final Throwable[] error) throws Exception {
+        synchronized (error) {
+            if (error[0] instanceof Exception) {
+                throw (Exception) error[0];
+            } else if (error[0] != null) {
+                throw new OperatorException(error[0]);
+            }
+        }
+    }
+
+    /**
+     * The cache key of the reference area: the acquisition geometry, the DEM and the simulation parameters.
+     */
+    private String getCacheKey() {
+        final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(newSourceProduct);
+        final StringBuilder key = new StringBuilder();
+        key.append(absRoot.getAttributeString(AbstractMetadata.MISSION, "")).append('|')
+                .append(absRoot.getAttributeString(AbstractMetadata.first_line_time, "")).append('|')
+                .append(absRoot.getAttributeString(AbstractMetadata.last_line_time, "")).append('|')
+                .append(sourceImageWidth).append('x').append(sourceImageHeight).append('|')
+                .append(rangeSpacing).append(',').append(azimuthSpacing).append(',')
+                .append(nearEdgeSlantRange).append(',').append(srgrFlag).append(',').append(nearRangeOnLeft).append('|');
+        if (orbitStateVectors != null && orbitStateVectors.length > 0) {
+            final OrbitStateVector first = orbitStateVectors[0];
+            final OrbitStateVector last = orbitStateVectors[orbitStateVectors.length - 1];
+            key.append(orbitStateVectors.length).append(',')
+                    .append(first.time_mjd).append(',').append(first.x_pos).append(',')
+                    .append(last.time_mjd).append(',').append(last.x_pos).append('|');
+        }
+        if (externalDEMFile != null) {
+            key.append(externalDEMFile.getAbsolutePath()).append(',').append(externalDEMFile.lastModified()).append(',')
+                    .append(externalDEMNoDataValue).append(',').append(externalDEMApplyEGM);
+        } else {
+            key.append(demName);
+        }
+        key.append('|').append(demResamplingMethod).append(',').append(additionalOverlap).append(',')
+                .append(oversamplingMultiple).append(',').append(outputSigma0).append(',').append(detectShadow);
+        return key.toString();
+    }
+
     /**
      * Generate simulated image for normalization.
      *
@@ -954,40 +1172,6 @@ public final class TerrainFlatteningOp extends Operator {
         isElevationModelAvailable = true;
     }
 
-    private OverlapPercentage computeTileOverlapPercentage(final int x0, final int y0, final int w, final int h,
-                                                           final ProgressMonitor pm) throws Exception {
-
-        final PixelPos pixPos = new PixelPos();
-        final GeoCoding sourceGeoCoding = newSourceProduct.getSceneGeoCoding();
-
-        final int xMin = Math.max(x0 - w/2, 0);
-        final int xMax = Math.min(x0 + w + w/2, sourceImageWidth);
-        final int yMin = Math.max(y0 - h/2, 0);
-        final int yMax = Math.min(y0 + h + h/2, sourceImageHeight);
-
-        double tileOverlapUp = 0.0, tileOverlapDown = 0.0, tileOverlapLeft = 0.0, tileOverlapRight = 0.0;
-        for (int y = yMin; y < yMax; y += 20) {
-            if(pm.isCanceled()) {
-                return null;
-            }
-            for (int x = xMin; x < xMax; x += 20) {
-                if (getTruePixelPos(x, y, pixPos, sourceGeoCoding)) {
-                    tileOverlapUp = Math.max((y - pixPos.y) / h, tileOverlapUp);
-                    tileOverlapDown = Math.max((pixPos.y - y) / h, tileOverlapDown);
-                    tileOverlapLeft = Math.max((x - pixPos.x) / w, tileOverlapLeft);
-                    tileOverlapRight = Math.max((pixPos.x - x) / w, tileOverlapRight);
-                }
-            }
-        }
-
-        tileOverlapUp += additionalOverlap;
-        tileOverlapDown += additionalOverlap;
-        tileOverlapLeft += additionalOverlap;
-        tileOverlapRight += additionalOverlap;
-
-        return new OverlapPercentage(tileOverlapUp, tileOverlapDown, tileOverlapLeft, tileOverlapRight);
-    }
-
     private boolean getTruePixelPos(
             final double x0, final double y0, final PixelPos pixelPos, final GeoCoding srcGeoCoding)
             throws Exception {
@@ -0,0 +1,116 @@
+package org.esa.s1tbx.sar.gpf;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMultilookKernel {
+
+    private static double[][] createImage(final int w, final int h) {
+        final double[][] image = new double[h][w];
+        for (int y = 0; y < h; ++y) {
+            for (int x = 0; x < w; ++x) {
+                image[y][x] = (x * 7 + y * 13) % 17 + 0.25 * x;
+            }
+        }
+        return image;
+    }
+
+    private static double[][] multilook(final MultilookKernel kernel, final double[][] image,
+                                        final Rectangle targetRect) {
+        final Rectangle srcRect = kernel.getSourceRectangle(targetRect);
+        final double[][] target = new double[targetRect.height][];
+        final double[] row = new double[srcRect.width];
+        for (int ty = targetRect.y; ty < targetRect.y + targetRect.height; ++ty) {
+            final double[] colSum = new double[targetRect.width];
+            for (int y = kernel.getFirstSourceLine(ty); y <= kernel.getLastSourceLine(ty); ++y) {
+                System.arraycopy(image[y], srcRect.x, row, 0, row.length);
+                kernel.accumulateRow(row, srcRect.x, targetRect.x, colSum, kernel.getLineWeight(ty, y));
+            }
+            kernel.normalise(colSum);
+            target[ty - targetRect.y] = colSum;
+        }
+        return target;
+    }
+
+    @Test
+    public void testIntegralLooks() {
+        final double[][] image = createImage(40, 30);
+        final MultilookKernel kernel = new MultilookKernel(4, 2);
+        assertTrue(kernel.isIntegral());
+        assertEquals(10, kernel.getTargetWidth(40));
+        assertEquals(15, kernel.getTargetHeight(30));
+        assertEquals(new Rectangle(8, 6, 16, 6), kernel.getSourceRectangle(new Rectangle(2, 3, 4, 3)));
+
+        final Rectangle targetRect = new Rectangle(2, 3, 5, 7);
+        final double[][] target = multilook(kernel, image, targetRect);
+        for (int ty = 0; ty < targetRect.height; ++ty) {
+            for (int tx = 0; tx < targetRect.width; ++tx) {
+                double sum = 0;
+                for (int y = (targetRect.y + ty) * 2; y < (targetRect.y + ty + 1) * 2; ++y) {
+                    for (int x = (targetRect.x + tx) * 4; x < (targetRect.x + tx + 1) * 4; ++x) {
+                        sum += image[y][x];
+                    }
+                }
+                assertEquals(sum / 8, target[ty][tx], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testConstantImage() {
+        final double[][] image = new double[50][50];
+        for (double[] row : image) {
+            Arrays.fill(row, 3.5);
+        }
+        final MultilookKernel kernel = new MultilookKernel(1.7, 2.3);
+        assertFalse(kernel.isIntegral());
+
+        final Rectangle targetRect = new Rectangle(0, 0, kernel.getTargetWidth(50), kernel.getTargetHeight(50));
+        final Rectangle srcRect = kernel.getSourceRectangle(targetRect);
+        assertTrue(srcRect.x + srcRect.width <= 50);
+        assertTrue(srcRect.y + srcRect.height <= 50);
+
+        final double[][] target = multilook(kernel, image, targetRect);
+        for (double[] row : target) {
+            for (double value : row) {
+                assertEquals(3.5, value, 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testFractionalLooks() {
+        // with 1.5 looks every other source pixel is shared by two target pixels and counts half for each
+        final double[][] image = new double[3][10];
+        for (double[] row : image) {
+            for (int x = 0; x < row.length; ++x) {
+                row[x] = x + 0.5;
+            }
+        }
+        final MultilookKernel kernel = new MultilookKernel(1.5, 1.5);
+        assertEquals(6, kernel.getTargetWidth(10));
+        assertEquals(2, kernel.getTargetHeight(3));
+        assertEquals(1.0, kernel.getLineWeight(0, 0), 0.0);
+        assertEquals(0.5, kernel.getLineWeight(0, 1), 0.0);
+        assertEquals(0.5, kernel.getLineWeight(1, 1), 0.0);
+
+        final double[] expected = {
+                (0.5 * 1.5 + 2.5) / 1.5,
+                (3.5 + 0.5 * 4.5) / 1.5,
+                (0.5 * 4.5 + 5.5) / 1.5,
+                (6.5 + 0.5 * 7.5) / 1.5,
+                (0.5 * 7.5 + 8.5) / 1.5};
+        final double[][] target = multilook(kernel, image, new Rectangle(1, 0, 5, 2));
+        for (double[] row : target) {
+            for (int k = 0; k < row.length; ++k) {
+                assertEquals(expected[k], row[k], 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2020 by SkyWatch Space Applications Inc. http://www.skywatch.com
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.filtering;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s1tbx.sar.gpf.filtering.SpeckleFilters.RefinedLee;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.engine_utilities.datamodel.Unit;
+import org.esa.snap.engine_utilities.util.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the tile based Refined Lee, Lee Sigma and IDAN filters with the pixel by pixel computation they replace,
+ * on a speckled scene with edges, point targets and no data.
+ */
+public class TestSpeckleFilterParity {
+
+    static {
+        TestUtils.initTestEnvironment();
+    }
+
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+    private static final double NO_DATA = 0.0;
+
+    // Lee Sigma parameters for 1 look, sigma 0.9, 7x7 window and 3x3 target window
+    private static final int HALF_SIZE = 3;
+    private static final int HALF_TARGET_SIZE = 1;
+    private static final int TARGET_SIZE = 5;
+    private static final double SIGMA_V_SQR = 1.0;
+    private static final double SIGMA_VP_SQR = 0.8191 * 0.8191;
+    private static final double SIGMA_RANGE_LOW = 0.084;
+    private static final double SIGMA_RANGE_HIGH = 3.941;
+
+    // IDAN parameters for 1 look and an adaptive neighbourhood of 50 pixels
+    private static final int AN_SIZE = 50;
+    private static final double SIGMA_V = 1.0;
+
+    private static float[] createImage() {
+        final Random random = new Random(7);
+        final float[] image = new float[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                final double mean = (x + y < 100 ? 50 : 200) + (x > 70 ? 100 : 0);
+                image[y * WIDTH + x] = (float) (-mean * Math.log(1.0 - random.nextDouble()));
+            }
+        }
+        for (int i = 0; i < 40; ++i) {
+            final int x = random.nextInt(WIDTH - 2), y = random.nextInt(HEIGHT - 2);
+            for (int k = 0; k < 9; ++k) {
+                image[(y + k / 3) * WIDTH + x + k % 3] = i % 2 == 0 ? 50000.0f : (float) NO_DATA;
+            }
+        }
+        return image;
+    }
+
+    private static Product createProduct(final float[] image) {
+        final Product product = TestUtils.createProduct("type", WIDTH, HEIGHT);
+        final Band band = product.addBand("Intensity", ProductData.TYPE_FLOAT32);
+        band.setData(ProductData.createInstance(image));
+        band.setUnit(Unit.INTENSITY);
+        band.setNoDataValue(NO_DATA);
+        return product;
+    }
+
+    private static float[] filter(final Product sourceProduct, final String filter) throws Exception {
+        final SpeckleFilterOp op = new SpeckleFilterOp();
+        op.setSourceProduct(sourceProduct);
+        op.SetFilter(filter);
+        final Product targetProduct = op.getTargetProduct();
+
+        final float[] values = new float[WIDTH * HEIGHT];
+        targetProduct.getBandAt(0).readPixels(0, 0, WIDTH, HEIGHT, values, ProgressMonitor.NULL);
+        return values;
+    }
+
+    private static double getPixel(final float[] image, final int x, final int y) {
+        return x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT ? NO_DATA : image[y * WIDTH + x];
+    }
+
+    @Test
+    public void testRefinedLee() throws Exception {
+        final float[] image = createImage();
+        final Product sourceProduct = createProduct(image);
+        final float[] values = filter(sourceProduct, "Refined Lee");
+
+        final RefinedLee refinedLee = new RefinedLee(null, sourceProduct, null, new HashMap<>());
+        final double[][] window = new double[7][7];
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                int numSamples = 0;
+                for (int j = 0; j < 7; ++j) {
+                    for (int i = 0; i < 7; ++i) {
+                        window[j][i] = getPixel(image, x - 3 + i, y - 3 + j);
+                        if (window[j][i] != NO_DATA) {
+                            numSamples++;
+                        }
+                    }
+                }
+                final double expected = numSamples > 0 ?
+                        refinedLee.getRefinedLeeValueUsingEdgeThreshold(7, 7, numSamples, NO_DATA, window) : NO_DATA;
+                assertEquals("pixel " + x + ", " + y, (float) expected, values[y * WIDTH + x], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testLeeSigma() throws Exception {
+        final float[] image = createImage();
+        final float[] values = filter(createProduct(image), "Lee Sigma");
+
+        final double[] expected = leeSigma(image);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals("pixel " + i % WIDTH + ", " + i / WIDTH, (float) expected[i], values[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void testIDAN() throws Exception {
+        final float[] image = createImage();
+        final float[] values = filter(createProduct(image), "IDAN");
+
+        final double[] expected = idan(image);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals("pixel " + i % WIDTH + ", " + i / WIDTH, (float) expected[i], values[i], 0.0f);
+        }
+    }
+
+    /**
+     * Lee Sigma filter of the scene as one tile, computed pixel by pixel
+     */
+    private static double[] leeSigma(final float[] image) {
+
+        final double[] sorted = new double[image.length];
+        for (int i = 0; i < image.length; ++i) {
+            sorted[i] = image[i];
+        }
+        Arrays.sort(sorted);
+        final double z98 = sorted[(int) (image.length * 0.98) - 1];
+
+        final double[] filtered = new double[image.length];
+        final boolean[] isPointTarget = new boolean[image.length];
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                final int idx = y * WIDTH + x;
+                final double v = image[idx];
+                if (isPointTarget[idx]) {
+                    filtered[idx] = v;
+                    continue;
+                }
+
+                if (y < HALF_SIZE || y >= HEIGHT - HALF_SIZE || x < HALF_SIZE || x >= WIDTH - HALF_SIZE) {
+                    filtered[idx] = computeMMSEEstimate(
+                            v, selectPixels(image, x, y, HALF_SIZE, -Double.MAX_VALUE, Double.MAX_VALUE), SIGMA_V_SQR);
+                    continue;
+                }
+
+                if (v > z98 && selectPixels(image, x, y, HALF_TARGET_SIZE, z98, Double.MAX_VALUE).stream()
+                        .filter(p -> p > z98).count() > TARGET_SIZE) {
+                    for (int j = -HALF_TARGET_SIZE; j <= HALF_TARGET_SIZE; ++j) {
+                        for (int i = -HALF_TARGET_SIZE; i <= HALF_TARGET_SIZE; ++i) {
+                            if (getPixel(image, x + i, y + j) > z98) {
+                                isPointTarget[(y + j) * WIDTH + x + i] = true;
+                            }
+                        }
+                    }
+                    filtered[idx] = v;
+                    continue;
+                }
+
+                final double meanEst = computeMMSEEstimate(
+                        v, selectPixels(image, x, y, HALF_TARGET_SIZE, -Double.MAX_VALUE, Double.MAX_VALUE),
+                        SIGMA_V_SQR);
+                final List<Double> selected = selectPixels(
+                        image, x, y, HALF_SIZE, meanEst * SIGMA_RANGE_LOW, meanEst * SIGMA_RANGE_HIGH);
+                filtered[idx] = selected.isEmpty() ? v : computeMMSEEstimate(v, selected, SIGMA_VP_SQR);
+            }
+        }
+        return filtered;
+    }
+
+    private static List<Double> selectPixels(final float[] image, final int x, final int y, final int halfSize,
+                                             final double low, final double high) {
+        final List<Double> selected = new ArrayList<>();
+        for (int j = -halfSize; j <= halfSize; ++j) {
+            for (int i = -halfSize; i <= halfSize; ++i) {
+                final double v = getPixel(image, x + i, y + j);
+                if (v != NO_DATA && v >= low && v <= high) {
+                    selected.add(v);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static double computeMMSEEstimate(final double center, final List<Double> pixels, final double sigmaVSqr) {
+        double mean = 0.0;
+        for (double v : pixels) {
+            mean += v;
+        }
+        mean /= pixels.size();
+
+        double varY = 0.0;
+        if (pixels.size() > 1) {
+            for (double v : pixels) {
+                varY += (v - mean) * (v - mean);
+            }
+            varY /= (pixels.size() - 1);
+        }
+
+        double b = 0.0;
+        if (varY != 0.0) {
+            final double varX = Math.max(0.0, (varY - mean * mean * sigmaVSqr) / (1 + sigmaVSqr));
+            b = varX / varY;
+        }
+        return (1 - b) * mean + b * center;
+    }
+
+    /**
+     * IDAN filter of the scene as one tile, growing each neighbourhood with lists and a visited set
+     */
+    private static double[] idan(final float[] image) {
+
+        final double[] filtered = new double[image.length];
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                final int center = y * WIDTH + x;
+
+                final List<Double> samples = new ArrayList<>();
+                for (int j = Math.max(y - 1, 0); j <= Math.min(y + 1, HEIGHT - 1); ++j) {
+                    for (int i = Math.max(x - 1, 0); i <= Math.min(x + 1, WIDTH - 1); ++i) {
+                        if (image[j * WIDTH + i] != NO_DATA) {
+                            samples.add((double) image[j * WIDTH + i]);
+                        }
+                    }
+                }
+                Collections.sort(samples);
+                final double seed = samples.isEmpty() ? 0.0 : samples.get(samples.size() / 2);
+
+                final List<Integer> an = new ArrayList<>();
+                final List<Integer> bg = new ArrayList<>();
+                growRegion(image, center, seed, (2.0 / 3.0) * SIGMA_V, an, bg);
+
+                double newSeed = seed;
+                if (!an.isEmpty()) {
+                    newSeed = 0.0;
+                    for (int p : an) {
+                        newSeed += image[p];
+                    }
+                    newSeed /= an.size();
+                }
+                for (int p : bg) {
+                    if (Math.abs((image[p] - newSeed) / newSeed) < 2.0 * SIGMA_V) {
+                        an.add(p);
+                    }
+                }
+                if (an.isEmpty()) {
+                    an.add(center);
+                }
+
+                double mean = 0.0;
+                for (int p : an) {
+                    mean += image[p];
+                }
+                mean /= an.size();
+                double varY = 0.0;
+                if (an.size() > 1) {
+                    for (int p : an) {
+                        varY += (image[p] - mean) * (image[p] - mean);
+                    }
+                    varY /= (an.size() - 1);
+                }
+                double b = 0.0;
+                if (varY != 0.0) {
+                    b = Math.max(0.0, (varY - mean * mean * SIGMA_V * SIGMA_V) / (1 + SIGMA_V * SIGMA_V)) / varY;
+                }
+                filtered[center] = mean + b * (image[center] - mean);
+            }
+        }
+        return filtered;
+    }
+
+    private static void growRegion(final float[] image, final int center, final double seed, final double threshold,
+                                   final List<Integer> an, final List<Integer> bg) {
+
+        final HashSet<Integer> visited = new HashSet<>();
+        visited.add(center);
+        if (image[center] != NO_DATA && Math.abs((image[center] - seed) / seed) < threshold) {
+            an.add(center);
+        } else {
+            bg.add(center);
+        }
+
+        List<Integer> front = Collections.singletonList(center);
+        while (an.size() < AN_SIZE && !front.isEmpty()) {
+            final List<Integer> newFront = new ArrayList<>();
+            for (int p : front) {
+                for (int j = -1; j <= 1; ++j) {
+                    for (int i = -1; i <= 1; ++i) {
+                        final int x = p % WIDTH + i, y = p / WIDTH + j;
+                        if ((i == 0 && j == 0) || x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT ||
+                                !visited.add(y * WIDTH + x)) {
+                            continue;
+                        }
+                        final int q = y * WIDTH + x;
+                        if (image[q] != NO_DATA && Math.abs((image[q] - seed) / seed) < threshold) {
+                            an.add(q);
+                            newFront.add(q);
+                        } else {
+                            bg.add(q);
+                        }
+                    }
+                }
+                if (an.size() > AN_SIZE) {
+                    return;
+                }
+            }
+            front = newFront;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the multigrid preconditioned solver against known solutions and Gauss-Seidel relaxation
+ */
+public class TestMaskedPoissonSolver {
+
+    private static final byte SOLVE = 2;
+
+    // circular region with a notch, away from the border
+    private static byte[][] createMask(final int size) {
+        final byte[][] mask = new byte[size][size];
+        final double centre = size / 2.0, radius = size / 2.0 - 3;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                final double dr = r - centre, dc = c - centre;
+                final boolean inNotch = dc > 0 && Math.abs(dr) < size / 10.0;
+                if (dr * dr + dc * dc < radius * radius && !inNotch) {
+                    mask[r][c] = SOLVE;
+                }
+            }
+        }
+        return mask;
+    }
+
+    @Test
+    public void testQuadratic() {
+        final int size = 100;
+        final byte[][] mask = createMask(size);
+        final double[][] gradient = new double[size][size];
+        final double[][] values = new double[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                gradient[r][c] = 4.0;
+                values[r][c] = mask[r][c] == SOLVE ? 0.0 : r * r + c * c;
+            }
+        }
+
+        final MaskedPoissonSolver solver = new MaskedPoissonSolver(mask, SOLVE);
+        final int iterations = solver.solve(gradient, values, 1000, 1e-9);
+
+        assertTrue("iterations " + iterations, iterations < 50);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                assertEquals(r * r + c * c, values[r][c], 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testRelaxation() {
+        final int size = 64;
+        final Random random = new Random(3);
+        final byte[][] mask = createMask(size);
+        final double[][] gradient = new double[size][size];
+        final double[][] values = new double[size][size];
+        final double[][] relaxed = new double[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                gradient[r][c] = random.nextGaussian();
+                values[r][c] = relaxed[r][c] = 10 * random.nextDouble();
+            }
+        }
+
+        // Gauss-Seidel relaxation of the same equations until converged
+        for (int it = 0; it < 100000; it++) {
+            double error = 0;
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    if (mask[r][c] == SOLVE) {
+                        final double update = (relaxed[r - 1][c] + relaxed[r + 1][c] + relaxed[r][c - 1] +
+                                relaxed[r][c + 1] - gradient[r][c]) / 4.0;
+                        error = Math.max(error, Math.abs(update - relaxed[r][c]));
+                        relaxed[r][c] = update;
+                    }
+                }
+            }
+            if (error < 1e-12) {
+                break;
+            }
+        }
+
+        new MaskedPoissonSolver(mask, SOLVE).solve(gradient, values, 1000, 1e-12);
+
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                assertEquals(relaxed[r][c], values[r][c], 1e-8);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        final byte[][] mask = new byte[8][8];
+        final double[][] values = new double[8][8];
+        final MaskedPoissonSolver solver = new MaskedPoissonSolver(mask, SOLVE);
+        assertTrue(solver.isEmpty());
+        assertEquals(0, solver.solve(new double[8][8], values, 100, 1e-4));
+    }
+}
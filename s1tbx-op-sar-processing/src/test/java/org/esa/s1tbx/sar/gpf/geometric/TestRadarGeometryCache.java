@@ -0,0 +1,100 @@
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.esa.snap.core.util.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRadarGeometryCache {
+
+    private static final int SIZE = RadarGeometryCache.BLOCK_SIZE;
+
+    private static final String TRACK_KEY = "S1A|IW|track 42|UTM 32N 10m|SRTM 3Sec";
+
+    private File cacheFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFolder = Files.createTempDirectory("radarGeometry").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteTree(cacheFolder);
+    }
+
+    private static RadarGeometryCache.Block createBlock(final RadarGeometryCache cache, final int blockX,
+                                                        final int blockY, final double acquisitionTime) {
+        final RadarGeometryCache.Block block = new RadarGeometryCache.Block(
+                blockX, blockY, cache.getBlockRectangle(blockX, blockY), acquisitionTime);
+        for (int i = 0; i < SIZE * SIZE; ++i) {
+            block.elevation[i] = i % 7 == 0 ? Float.NaN : i * 0.5f;
+            block.zeroDopplerTime[i] = acquisitionTime + i * 1e-9;
+            block.localIncidenceAngle[i] = 30.0f + i % 11;
+            block.projectedLocalIncidenceAngle[i] = 40.0f - i % 13;
+        }
+        return block;
+    }
+
+    @Test
+    public void testBlockLattice() throws Exception {
+        final RadarGeometryCache cache = RadarGeometryCache.create(cacheFolder, TRACK_KEY, 1000, -300, 0.0);
+
+        // image column 0 is lattice column 1000 in block 3
+        assertEquals(3, cache.getBlockX(0));
+        assertEquals(3, cache.getBlockX(23));
+        assertEquals(4, cache.getBlockX(24));
+        assertEquals(-2, cache.getBlockY(0));
+        assertEquals(-1, cache.getBlockY(300 - SIZE));
+        assertEquals(new Rectangle(-232, 44, SIZE, SIZE), cache.getBlockRectangle(3, -1));
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        final RadarGeometryCache cache = RadarGeometryCache.create(cacheFolder, TRACK_KEY, 0, 0, 100.0);
+        assertNull(cache.read(1, 2));
+
+        final RadarGeometryCache.Block block = createBlock(cache, 1, 2, 100.0);
+        cache.write(block);
+
+        // another acquisition of the same track
+        final RadarGeometryCache otherCache = RadarGeometryCache.create(cacheFolder, TRACK_KEY, 0, 0, 112.0);
+        final RadarGeometryCache.Block read = otherCache.read(1, 2);
+        assertNotNull(read);
+        assertTrue(read.complete);
+        assertEquals(100.0, read.acquisitionTime, 0.0);
+        assertEquals(block.rectangle, read.rectangle);
+        for (int i = 0; i < SIZE * SIZE; ++i) {
+            assertEquals(block.elevation[i], read.elevation[i], 0.0f);
+            assertEquals(block.zeroDopplerTime[i], read.zeroDopplerTime[i], 0.0);
+            assertEquals(block.localIncidenceAngle[i], read.localIncidenceAngle[i], 0.0f);
+            assertEquals(block.projectedLocalIncidenceAngle[i], read.projectedLocalIncidenceAngle[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void testIncompleteBlock() throws Exception {
+        final RadarGeometryCache cache = RadarGeometryCache.create(cacheFolder, TRACK_KEY, 0, 0, 100.0);
+        final RadarGeometryCache.Block block = createBlock(cache, 0, 0, 100.0);
+        block.complete = false;
+        cache.write(block);
+
+        final RadarGeometryCache.Block read = cache.read(0, 0);
+        assertNotNull(read);
+        assertFalse(read.complete);
+
+        // only the acquisition that computed it may use it
+        assertNull(RadarGeometryCache.create(cacheFolder, TRACK_KEY, 0, 0, 112.0).read(0, 0));
+    }
+}
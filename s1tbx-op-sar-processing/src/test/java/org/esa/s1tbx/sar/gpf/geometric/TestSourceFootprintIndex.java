@@ -0,0 +1,65 @@
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the footprint index with testing every footprint
+ */
+public class TestSourceFootprintIndex {
+
+    private static int[] queryAll(final Rectangle[] footprints, final Rectangle rectangle) {
+        final List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < footprints.length; ++i) {
+            if (footprints[i] != null && footprints[i].intersects(rectangle)) {
+                found.add(i);
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void testQuery() {
+        final Random random = new Random(42);
+        final Rectangle[] footprints = new Rectangle[300];
+        for (int i = 0; i < footprints.length; ++i) {
+            if (i % 17 == 0) {
+                continue; // source outside the target
+            }
+            footprints[i] = new Rectangle(random.nextInt(60000), random.nextInt(40000),
+                    1 + random.nextInt(8000), 1 + random.nextInt(8000));
+        }
+        final SourceFootprintIndex index = new SourceFootprintIndex(footprints);
+
+        for (int i = 0; i < 1000; ++i) {
+            final Rectangle tile = new Rectangle(random.nextInt(70000) - 2000, random.nextInt(50000) - 2000,
+                    1 + random.nextInt(600), 1 + random.nextInt(600));
+            assertArrayEquals(queryAll(footprints, tile), index.query(tile));
+        }
+    }
+
+    @Test
+    public void testEdges() {
+        final Rectangle[] footprints = {new Rectangle(0, 0, 1000, 1000), new Rectangle(999, 999, 10, 10)};
+        final SourceFootprintIndex index = new SourceFootprintIndex(footprints);
+
+        assertArrayEquals(new int[]{0}, index.query(new Rectangle(998, 0, 1, 999)));
+        assertArrayEquals(new int[]{0, 1}, index.query(new Rectangle(999, 999, 1, 1)));
+        assertArrayEquals(new int[]{1}, index.query(new Rectangle(1000, 1000, 512, 512)));
+        assertEquals(0, index.query(new Rectangle(1009, 0, 512, 512)).length);
+        assertEquals(0, index.query(new Rectangle(-600, -600, 512, 512)).length);
+    }
+
+    @Test
+    public void testNoFootprints() {
+        final SourceFootprintIndex index = new SourceFootprintIndex(new Rectangle[]{null, null});
+        assertEquals(0, index.query(new Rectangle(0, 0, 512, 512)).length);
+    }
+}
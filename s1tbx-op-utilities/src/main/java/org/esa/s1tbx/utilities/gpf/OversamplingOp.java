@@ -37,6 +37,7 @@ import org.esa.snap.engine_utilities.gpf.ReaderUtils;
 
 import java.awt.*;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -104,6 +105,9 @@ public class OversamplingOp extends Operator {
     private static final String OTHER = "OTHER";
 
     private static final String PRODUCT_SUFFIX = "_Ovr";
+    private static final int COLUMN_BLOCK = 16;
+
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
 
     /**
      * Initializes this operator and sets the one and only target product.
@@ -539,46 +543,31 @@ public class OversamplingOp extends Operator {
         final int overSampledSourceTileWidth = (int) (widthRatio * sourceTileWidth + 0.5);
         final int overSampledSourceTileHeight = (int) (heightRatio * sourceTileHeight + 0.5);
 
-        final double[][] tmpI = new double[overSampledSourceTileHeight][sourceTileWidth];
-        final double[][] tmpQ = new double[overSampledSourceTileHeight][sourceTileWidth];
+        final Workspace ws = workspace.get();
+        final double[] spectrum = ws.getSpectrum(overSampledSourceTileHeight, sourceTileWidth);
 
         final Band srcBand = sourceProduct.getBand(targetBandName);
         final Tile srcRaster = getSourceTile(srcBand, sourceTileRectangle);
         final ProductData srcData = srcRaster.getDataBuffer();
 
-        final double[] rowArray = new double[sourceTileWidth * 2];
-
-        // perform 1-D FFT on each row
-        final DoubleFFT_1D src_row_fft = new DoubleFFT_1D(sourceTileWidth);
         for (int y = 0; y < sourceTileHeight; y++) {
-            getRowData(sy0 + y, sx0, sourceTileWidth, srcData, srcRaster, rowArray);
-            src_row_fft.complexForward(rowArray);
+            int index = srcRaster.getDataBufferIndex(sx0, sy0 + y);
+            int k = 2 * y * sourceTileWidth;
             for (int x = 0; x < sourceTileWidth; x++) {
-                tmpI[y][x] = rowArray[2 * x];
-                tmpQ[y][x] = rowArray[2 * x + 1];
+                spectrum[k++] = srcData.getElemDoubleAt(index++);
+                spectrum[k++] = 0.0;
             }
         }
 
         final int d = (int) (sourceTileHeight / 2 + 0.5);
+        final int[] colShift = ws.getColShift(sourceTileWidth);
+        Arrays.fill(colShift, 0, sourceTileWidth, d);
 
-        final double[] colArray = new double[2 * sourceTileHeight];
-        final double[] zeroPaddedColSpec = new double[2 * overSampledSourceTileHeight];
-
-        // perform 1-D FFT, zero padding and IFFT on each column
-        final DoubleFFT_1D src_col_fft = new DoubleFFT_1D(sourceTileHeight);
-        final DoubleFFT_1D tgt_col_fft = new DoubleFFT_1D(overSampledSourceTileHeight);
-        for (int x = 0; x < sourceTileWidth; x++) {
-            getColData(x, sourceTileHeight, colArray, tmpI, tmpQ);
-            src_col_fft.complexForward(colArray);
-            paddingZeros(colArray, sourceTileHeight, overSampledSourceTileHeight, d, zeroPaddedColSpec);
-            tgt_col_fft.complexInverse(zeroPaddedColSpec, true);
-            saveOverSampledCol(zeroPaddedColSpec, x, overSampledSourceTileHeight, tmpI, tmpQ);
-        }
-
-        final double[] tgtRow = new double[overSampledSourceTileWidth * 2];
+        overSampleColumns(ws, spectrum, sourceTileWidth, sourceTileHeight, overSampledSourceTileHeight, colShift);
 
         // perform 1-D IFFT on each row
-        final DoubleFFT_1D tgt_row_fft = new DoubleFFT_1D(overSampledSourceTileWidth);
+        final DoubleFFT_1D tgt_row_fft = ws.getPlan(overSampledSourceTileWidth);
+        final double[] tgtRow = ws.getRow(overSampledSourceTileWidth);
         int ySt = 0;
         if (overlapInfo.topOverlapped) {
             ySt = (int) (heightRatio * overlapInfo.numOfLinesOnTop);
@@ -589,7 +578,7 @@ public class OversamplingOp extends Operator {
         }
 
         for (int y = 0; y < targetTileHeight; y++) {
-            getRowData(y + ySt, sourceTileWidth, overSampledSourceTileWidth, tgtRow, tmpI, tmpQ);
+            getRowData(y + ySt, sourceTileWidth, overSampledSourceTileWidth, tgtRow, spectrum);
             tgt_row_fft.complexInverse(tgtRow, true);
             saveOverSampledComplexImage(tgtRow, ty0 + y, tx0, targetTileWidth, xSt,
                     widthRatioByHeightRatio, tgtData, targetTile);
@@ -674,8 +663,8 @@ public class OversamplingOp extends Operator {
         final int overSampledSourceTileWidth = (int) (widthRatio * sourceTileWidth + 0.5);
         final int overSampledSourceTileHeight = (int) (heightRatio * sourceTileHeight + 0.5);
 
-        final double[][] tmpI = new double[overSampledSourceTileHeight][sourceTileWidth];
-        final double[][] tmpQ = new double[overSampledSourceTileHeight][sourceTileWidth];
+        final Workspace ws = workspace.get();
+        final double[] spectrum = ws.getSpectrum(overSampledSourceTileHeight, sourceTileWidth);
 
         final Band iBand = sourceProduct.getBand(iBandName);
         final Band qBand = sourceProduct.getBand(qBandName);
@@ -686,44 +675,28 @@ public class OversamplingOp extends Operator {
         final ProductData iSrcData = iRaster.getDataBuffer();
         final ProductData qSrcData = qRaster.getDataBuffer();
 
-        final double[] rowArray = new double[sourceTileWidth * 2];
-
-        // perform 1-D FFT on each row
-        final DoubleFFT_1D src_row_fft = new DoubleFFT_1D(sourceTileWidth);
         for (int y = 0; y < sourceTileHeight; y++) {
-            getRowData(sy0 + y, sx0, sourceTileWidth, iSrcData, qSrcData, iRaster, rowArray);
-            src_row_fft.complexForward(rowArray);
-            for (int x = 0; x < sourceTileWidth; x++) {
-                tmpI[y][x] = rowArray[2 * x];
-                tmpQ[y][x] = rowArray[2 * x + 1];
+            int index = iRaster.getDataBufferIndex(sx0, sy0 + y);
+            int k = 2 * y * sourceTileWidth;
+            for (int x = 0; x < sourceTileWidth; x++, index++) {
+                spectrum[k++] = iSrcData.getElemDoubleAt(index);
+                spectrum[k++] = qSrcData.getElemDoubleAt(index);
             }
         }
 
-        final double[] colArray = new double[2 * sourceTileHeight];
-        final double[] zeroPaddedColSpec = new double[2 * overSampledSourceTileHeight];
-
         final int halfHeight = sourceTileHeight / 2;
         final double heightByPRF = sourceTileHeight / prf;
-
-        // perform 1-D FFT, zero padding and IFFT on each column
-        final DoubleFFT_1D src_col_fft = new DoubleFFT_1D(sourceTileHeight);
-        final DoubleFFT_1D tgt_col_fft = new DoubleFFT_1D(overSampledSourceTileHeight);
+        final int[] colShift = ws.getColShift(sourceTileWidth);
         for (int x = 0; x < sourceTileWidth; x++) {
-            getColData(x, sourceTileHeight, colArray, tmpI, tmpQ);
-            src_col_fft.complexForward(colArray);
-
             final int idxFdc = (int) (dopplerCentroidFreq[sx0 + x] * heightByPRF + 0.5);
-            final int d = (idxFdc + halfHeight) % sourceTileHeight;
-
-            paddingZeros(colArray, sourceTileHeight, overSampledSourceTileHeight, d, zeroPaddedColSpec);
-            tgt_col_fft.complexInverse(zeroPaddedColSpec, true);
-            saveOverSampledCol(zeroPaddedColSpec, x, overSampledSourceTileHeight, tmpI, tmpQ);
+            colShift[x] = (idxFdc + halfHeight) % sourceTileHeight;
         }
 
-        final double[] tgtRow = new double[overSampledSourceTileWidth * 2];
+        overSampleColumns(ws, spectrum, sourceTileWidth, sourceTileHeight, overSampledSourceTileHeight, colShift);
 
         // zero padding and perform 1-D IFFT on each row
-        final DoubleFFT_1D tgt_row_fft = new DoubleFFT_1D(overSampledSourceTileWidth);
+        final DoubleFFT_1D tgt_row_fft = ws.getPlan(overSampledSourceTileWidth);
+        final double[] tgtRow = ws.getRow(overSampledSourceTileWidth);
         int ySt = 0;
         if (overlapInfo.topOverlapped) {
             ySt = (int) (heightRatio * overlapInfo.numOfLinesOnTop);
@@ -734,89 +707,89 @@ public class OversamplingOp extends Operator {
         }
 
         for (int y = 0; y < targetTileHeight; y++) {
-            getRowData(y + ySt, sourceTileWidth, overSampledSourceTileWidth, tgtRow, tmpI, tmpQ);
+            getRowData(y + ySt, sourceTileWidth, overSampledSourceTileWidth, tgtRow, spectrum);
             tgt_row_fft.complexInverse(tgtRow, true);
             saveOverSampledComplexImage(tgtRow, ty0 + y, tx0, targetTileWidth, xSt, widthRatioByHeightRatio,
                     iTgtData, qTgtData, iTargetTile);
         }
     }
 
-    private static void getRowData(final int sy, final int sx0, final int sw,
-                                   final ProductData srcData, final Tile srcRaster,
-                                   final double[] array) {
+    /**
+     * Oversample the columns of the source rows held in the first sourceTileHeight rows of the spectrum: 1-D FFT of
+     * each row, then 1-D FFT, zero padding and IFFT of each column. Columns are transformed in blocks gathered into
+     * contiguous buffers so that the spectrum is read and written row by row.
+     *
+     * @param spectrum interleaved complex rows of sourceTileWidth samples, overSampledSourceTileHeight rows
+     * @param colShift the number of spectrum samples of each column kept before the zeros
+     */
+    private static void overSampleColumns(final Workspace ws, final double[] spectrum,
+                                          final int sourceTileWidth, final int sourceTileHeight,
+                                          final int overSampledSourceTileHeight, final int[] colShift) {
 
-        int k = 0;
-        final int length = sx0 + sw;
-        for (int sx = sx0; sx < length; ++sx) {
-            array[k++] = srcData.getElemDoubleAt(srcRaster.getDataBufferIndex(sx, sy));
-            array[k++] = 0.0;
+        // perform 1-D FFT on each row
+        final DoubleFFT_1D src_row_fft = ws.getPlan(sourceTileWidth);
+        for (int y = 0; y < sourceTileHeight; y++) {
+            src_row_fft.complexForward(spectrum, 2 * y * sourceTileWidth);
         }
-    }
 
-    private static void getRowData(final int sy, final int sx0, final int sw,
-                                   final ProductData iData, final ProductData qData,
-                                   final Tile iRaster, final double[] array) {
-
-        int index;
-        int k = 0;
-        final int length = sx0 + sw;
-        for (int sx = sx0; sx < length; ++sx) {
-            index = iRaster.getDataBufferIndex(sx, sy);
-            array[k++] = iData.getElemDoubleAt(index);
-            array[k++] = qData.getElemDoubleAt(index);
-        }
-    }
+        // perform 1-D FFT, zero padding and IFFT on each column
+        final DoubleFFT_1D src_col_fft = ws.getPlan(sourceTileHeight);
+        final DoubleFFT_1D tgt_col_fft = ws.getPlan(overSampledSourceTileHeight);
+        final int colLength = 2 * overSampledSourceTileHeight;
+        final double[] cols = ws.getColumns(overSampledSourceTileHeight);
+
+        for (int bx = 0; bx < sourceTileWidth; bx += COLUMN_BLOCK) {
+            final int numCols = Math.min(COLUMN_BLOCK, sourceTileWidth - bx);
+
+            for (int y = 0; y < sourceTileHeight; y++) {
+                int k = 2 * (y * sourceTileWidth + bx);
+                for (int c = 0, j = 2 * y; c < numCols; c++, j += colLength) {
+                    cols[j] = spectrum[k++];
+                    cols[j + 1] = spectrum[k++];
+                }
+            }
 
-    private static void getColData(final int x, final int sourceTileHeight, final double[] array,
-                                   final double[][] tmpI, final double[][] tmpQ) {
+            for (int c = 0; c < numCols; c++) {
+                final int offset = c * colLength;
+                src_col_fft.complexForward(cols, offset);
+                paddingZeros(cols, offset, sourceTileHeight, overSampledSourceTileHeight, colShift[bx + c]);
+                tgt_col_fft.complexInverse(cols, offset, true);
+            }
 
-        int k = 0;
-        for (int y = 0; y < sourceTileHeight; ++y) {
-            array[k++] = tmpI[y][x];
-            array[k++] = tmpQ[y][x];
+            for (int y = 0; y < overSampledSourceTileHeight; y++) {
+                int k = 2 * (y * sourceTileWidth + bx);
+                for (int c = 0, j = 2 * y; c < numCols; c++, j += colLength) {
+                    spectrum[k++] = cols[j];
+                    spectrum[k++] = cols[j + 1];
+                }
+            }
         }
     }
 
-    private static void paddingZeros(final double[] colSpec, final int sourceTileHeight, final int targetTileHeight,
-                                     final int d, final double[] array) {
-
-        Arrays.fill(array, 0.0);
-        final int s1 = 0;
-        final int s2 = d * 2;
-        final int S1 = 0;
-        final int S2 = 2 * (targetTileHeight - sourceTileHeight + d);
-        System.arraycopy(colSpec, s1, array, S1, s2);
-        System.arraycopy(colSpec, s2, array, S2, (sourceTileHeight - d) * 2);
-    }
-
-    private static void saveOverSampledCol(final double[] overSampledCol, final int x, final int targetTileHeight,
-                                           final double[][] tmpI, final double[][] tmpQ) {
+    /**
+     * Move the spectrum samples from d on to the end of the column and fill the gap with zeros
+     */
+    private static void paddingZeros(final double[] col, final int offset, final int sourceTileHeight,
+                                     final int targetTileHeight, final int d) {
 
-        int k = 0;
-        for (int y = 0; y < targetTileHeight; ++y) {
-            tmpI[y][x] = overSampledCol[k++];
-            tmpQ[y][x] = overSampledCol[k++];
-        }
+        final int s2 = offset + d * 2;
+        final int S2 = offset + 2 * (targetTileHeight - sourceTileHeight + d);
+        System.arraycopy(col, s2, col, S2, (sourceTileHeight - d) * 2);
+        Arrays.fill(col, s2, S2, 0.0);
     }
 
-    private static void getRowData(final int y, final int sourceTileWidth, final int targetTileWidth, final double[] array,
-                                   final double[][] tmpI, final double[][] tmpQ) {
+    private static void getRowData(final int y, final int sourceTileWidth, final int targetTileWidth,
+                                   final double[] array, final double[] spectrum) {
 
         Arrays.fill(array, 0.0);
 
+        final int rowOffset = 2 * y * sourceTileWidth;
         final int firstHalfSourceTileWidth = (int) (sourceTileWidth / 2 + 0.5);
-        int k = 0;
-        for (int x = 0; x < firstHalfSourceTileWidth; ++x) {
-            array[k++] = tmpI[y][x];
-            array[k++] = tmpQ[y][x];
-        }
+        System.arraycopy(spectrum, rowOffset, array, 0, 2 * firstHalfSourceTileWidth);
 
         final int secondHalfSourceTileWidth = sourceTileWidth - firstHalfSourceTileWidth;
-        k = 2 * (targetTileWidth - secondHalfSourceTileWidth);
-        for (int x = firstHalfSourceTileWidth; x < sourceTileWidth; ++x) {
-            array[k++] = tmpI[y][x];
-            array[k++] = tmpQ[y][x];
-        }
+        System.arraycopy(spectrum, rowOffset + 2 * firstHalfSourceTileWidth,
+                array, 2 * (targetTileWidth - secondHalfSourceTileWidth), 2 * secondHalfSourceTileWidth);
     }
 
     private static void saveOverSampledComplexImage(final double[] overSampledRow, final int ty, final int tx0,
@@ -824,11 +797,11 @@ public class OversamplingOp extends Operator {
                                                     final ProductData tgtData, final Tile targetTile) {
 
         int k = xSt * 2;
+        int index = targetTile.getDataBufferIndex(tx0, ty);
         for (int tx = tx0; tx < tx0 + tw; ++tx) {
             final double i = overSampledRow[k++];
             final double q = overSampledRow[k++];
-            tgtData.setElemDoubleAt(targetTile.getDataBufferIndex(tx, ty),
-                    widthRatioByHeightRatio * Math.sqrt(i * i + q * q));
+            tgtData.setElemDoubleAt(index++, widthRatioByHeightRatio * Math.sqrt(i * i + q * q));
         }
     }
 
@@ -837,13 +810,57 @@ public class OversamplingOp extends Operator {
                                                     final ProductData iData, final ProductData qData, final Tile iTargetTile) {
 
         int k = xSt * 2;
-        for (int tx = tx0; tx < tx0 + tw; ++tx) {
-            final int index = iTargetTile.getDataBufferIndex(tx, ty);
+        int index = iTargetTile.getDataBufferIndex(tx0, ty);
+        for (int tx = tx0; tx < tx0 + tw; ++tx, ++index) {
             iData.setElemDoubleAt(index, widthRatioByHeightRatio * overSampledRow[k++]);
             qData.setElemDoubleAt(index, widthRatioByHeightRatio * overSampledRow[k++]);
         }
     }
 
+    /**
+     * FFT plans by length and the spectrum buffers of a thread
+     */
+    private static final class Workspace {
+
+        private final Map<Integer, DoubleFFT_1D> plans = new HashMap<>();
+        private double[] spectrum = new double[0];
+        private double[] columns = new double[0];
+        private double[] row = new double[0];
+        private int[] colShift = new int[0];
+
+        DoubleFFT_1D getPlan(final int length) {
+            return plans.computeIfAbsent(length, DoubleFFT_1D::new);
+        }
+
+        double[] getSpectrum(final int rows, final int cols) {
+            if (spectrum.length < 2 * rows * cols) {
+                spectrum = new double[2 * rows * cols];
+            }
+            return spectrum;
+        }
+
+        double[] getColumns(final int length) {
+            if (columns.length < 2 * length * COLUMN_BLOCK) {
+                columns = new double[2 * length * COLUMN_BLOCK];
+            }
+            return columns;
+        }
+
+        double[] getRow(final int length) {
+            if (row.length != 2 * length) {
+                row = new double[2 * length];
+            }
+            return row;
+        }
+
+        int[] getColShift(final int length) {
+            if (colShift.length < length) {
+                colShift = new int[length];
+            }
+            return colShift;
+        }
+    }
+
     private static class OverlapInfo {
         public boolean topOverlapped;
         public boolean bottomOverlapped;
@@ -16,7 +16,7 @@
 package org.esa.s1tbx.utilities.gpf;
 
 import com.bc.ceres.core.ProgressMonitor;
-import com.bc.ceres.glevel.MultiLevelImage;
+import org.esa.s1tbx.commons.io.ProductFanOutWriter;
 import org.esa.snap.core.dataio.ProductIO;
 import org.esa.snap.core.dataio.ProductSubsetBuilder;
 import org.esa.snap.core.dataio.ProductSubsetDef;
@@ -39,10 +39,9 @@ import org.esa.snap.core.util.io.FileUtils;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Split a product into several tiles
@@ -86,9 +85,7 @@ public class TileWriterOp extends Operator {
     @Parameter(description = "Tile overlap", label = "Overlap", defaultValue = "0")
     private int overlap = 0;
 
-    private final Map<MultiLevelImage, List<Point>> todoLists = new HashMap<>();
-
-    private boolean productFileWritten;
+    private final ProductFanOutWriter fanOutWriter = new ProductFanOutWriter();
 
     private SubsetInfo[] subsetInfo = null;
 
@@ -141,6 +138,12 @@ public class TileWriterOp extends Operator {
                     subsetInfo[n].productWriter.setIncrementalMode(false);
                     subsetInfo[n].productWriter.setFormatName(formatName);
                     subsetInfo[n].product.setProductWriter(subsetInfo[n].productWriter);
+                    subsetInfo[n].output = fanOutWriter.addOutput(subsetInfo[n].file.getName(),
+                                                                  subsetInfo[n].productWriter);
+
+                    // the header is queued ahead of any band data of this output
+                    final SubsetInfo info = subsetInfo[n];
+                    info.output.execute(productWriter -> productWriter.writeProductNodes(info.product, info.file));
 
                     final Band[] bands = subsetInfo[n].product.getBands();
                     for (Band b : bands) {
@@ -162,23 +165,14 @@ public class TileWriterOp extends Operator {
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         try {
-            synchronized (this) {
-                if (!productFileWritten) {
-                    for (SubsetInfo info : subsetInfo) {
-                        info.productWriter.writeProductNodes(info.product, info.file);
-                    }
-                    productFileWritten = true;
-                }
-            }
             final Rectangle rect = targetTile.getRectangle();
 
             for (SubsetInfo info : subsetInfo) {
                 final Rectangle trgRect = info.subsetBuilder.getSubsetDef().getRegion();
                 if (rect.intersects(trgRect)) {
-                    writeTile(info, targetBand.getName(), trgRect);
+                    writeTile(info, targetBand.getName(), rect, trgRect);
                 }
             }
-            markTileDone(targetBand, targetTile);
         } catch (Exception e) {
             if (e instanceof OperatorException) {
                 throw (OperatorException) e;
@@ -188,76 +182,55 @@ public class TileWriterOp extends Operator {
         }
     }
 
-    private synchronized void writeTile(final SubsetInfo info, final String bandName, final Rectangle trgRect)
-            throws IOException {
-
-        final Tile sourceTile = getSourceTile(sourceProduct.getBand(bandName), trgRect);
-        final ProductData rawSamples = sourceTile.getRawSamples();
+    /**
+     * Queues the part of the target tile falling into an output tile on the writer of that output.
+     * Only the overlapping region is read and written so each source pixel is written once per output.
+     * The samples are copied since the source tile may be reused before the write happens. The output is
+     * flushed once the last part of a band has been queued so that write errors fail the computation.
+     */
+    private void writeTile(final SubsetInfo info, final String bandName, final Rectangle tileRect,
+                           final Rectangle trgRect) throws IOException {
 
         final Band trgBand = info.product.getBand(bandName);
-        info.productWriter.writeBandRasterData(trgBand,
-                0, 0, trgBand.getRasterWidth(), trgBand.getRasterHeight(), rawSamples, ProgressMonitor.NULL);
-    }
-
-    private void markTileDone(Band targetBand, Tile targetTile) throws IOException {
-        boolean done;
-        synchronized (todoLists) {
-            MultiLevelImage sourceImage = targetBand.getSourceImage();
-
-            final List<Point> currentTodoList = getTodoList(sourceImage);
-            currentTodoList.remove(new Point(sourceImage.XToTileX(targetTile.getMinX()),
-                    sourceImage.YToTileY(targetTile.getMinY())));
-
-            done = isDone();
+        final Rectangle outputRect = new Rectangle(trgRect.x, trgRect.y,
+                                                   trgBand.getRasterWidth(), trgBand.getRasterHeight());
+        final Rectangle rect = tileRect.intersection(outputRect);
+        if (rect.isEmpty()) {
+            return;
         }
-        if (done) {
-            // If we get here all tiles are written
-            for (SubsetInfo info : subsetInfo) {
-                if (info.productWriter instanceof DimapProductWriter) {
-                    // if we can update the header (only DIMAP) rewrite it!
-                    synchronized (info.productWriter) {
-                        info.productWriter.writeProductNodes(info.product, info.file);
-                    }
-                }
-            }
-        }
-    }
 
-    private boolean isDone() {
-        for (List<Point> todoList : todoLists.values()) {
-            if (!todoList.isEmpty()) {
-                return false;
-            }
-        }
-        return true;
-    }
+        final Tile sourceTile = getSourceTile(sourceProduct.getBand(bandName), rect);
+        final ProductData rawSamples = sourceTile.getRawSamples();
+        final ProductData samples = ProductData.createInstance(rawSamples.getType(), rawSamples.getNumElems());
+        System.arraycopy(rawSamples.getElems(), 0, samples.getElems(), 0, rawSamples.getNumElems());
 
-    private List<Point> getTodoList(MultiLevelImage sourceImage) {
-        List<Point> todoList = todoLists.get(sourceImage);
-        if (todoList == null) {
-            final int numXTiles = sourceImage.getNumXTiles();
-            final int numYTiles = sourceImage.getNumYTiles();
-            todoList = new ArrayList<>(numXTiles * numYTiles);
-            for (int y = 0; y < numYTiles; y++) {
-                for (int x = 0; x < numXTiles; x++) {
-                    todoList.add(new Point(x, y));
-                }
-            }
-            todoLists.put(sourceImage, todoList);
+        info.output.writeBandRasterData(trgBand, rect.x - trgRect.x, rect.y - trgRect.y,
+                                        rect.width, rect.height, samples);
+
+        final AtomicLong remaining = info.remainingPixels.computeIfAbsent(bandName,
+                k -> new AtomicLong((long) outputRect.width * outputRect.height));
+        if (remaining.addAndGet(-(long) rect.width * rect.height) == 0) {
+            info.output.flush();
         }
-        return todoList;
     }
 
     @Override
     public void dispose() {
         try {
-            for (SubsetInfo info : subsetInfo) {
-                info.productWriter.close();
+            if (subsetInfo != null) {
+                for (SubsetInfo info : subsetInfo) {
+                    if (info.productWriter instanceof DimapProductWriter) {
+                        // queued after all tiles, if we can update the header (only DIMAP) rewrite it!
+                        info.output.execute(productWriter -> productWriter.writeProductNodes(info.product, info.file));
+                    }
+                }
             }
-        } catch (IOException ignore) {
+            fanOutWriter.close();
+        } catch (IOException e) {
+            throw new OperatorException("Unable to write tiles: " + e.getMessage(), e);
+        } finally {
+            super.dispose();
         }
-        todoLists.clear();
-        super.dispose();
     }
 
     private static class SubsetInfo {
@@ -265,6 +238,8 @@ public class TileWriterOp extends Operator {
         ProductSubsetBuilder subsetBuilder;
         File file;
         ProductWriter productWriter;
+        ProductFanOutWriter.Output output;
+        final Map<String, AtomicLong> remainingPixels = new ConcurrentHashMap<>();
     }
 
     public static class Spi extends OperatorSpi {
@@ -3,6 +3,7 @@ package com.iceye.esa.snap.dataio;
 import com.bc.ceres.core.ProgressMonitor;
 import com.iceye.esa.snap.dataio.util.IceyeXConstants;
 import org.esa.s1tbx.commons.io.SARReader;
+import org.esa.s1tbx.io.netcdf.NetCDFFilePool;
 import org.esa.s1tbx.io.netcdf.NetCDFReader;
 import org.esa.s1tbx.io.netcdf.NetCDFUtils;
 import org.esa.s1tbx.io.netcdf.NetcdfConstants;
@@ -36,6 +37,7 @@ public class IceyeSLCProductReader extends SARReader {
     private final Map<Band, Variable> bandMap = new HashMap<>(10);
     private final DateFormat standardDateFormat = ProductData.UTC.createDateFormat("yyyy-MM-dd'T'HH:mm:ss");
     private NetcdfFile netcdfFile = null;
+    private NetCDFFilePool filePool = null;
     private Product product = null;
     private boolean isComplex = false;
 
@@ -164,6 +166,7 @@ public class IceyeSLCProductReader extends SARReader {
     private void initReader() {
         product = null;
         netcdfFile = null;
+        filePool = null;
     }
 
     /**
@@ -192,6 +195,7 @@ public class IceyeSLCProductReader extends SARReader {
                         "be interpreted as remote sensing bands.");  /*I18N*/
             }
             this.netcdfFile = tempNetcdfFile;
+            this.filePool = new NetCDFFilePool(tempNetcdfFile);
 
             final String productType = this.netcdfFile.getRootGroup().findVariable(IceyeXConstants.PRODUCT_TYPE).readScalarString();
             final int rasterWidth = this.netcdfFile.getRootGroup().findVariable(IceyeXConstants.NUM_SAMPLES_PER_LINE).readScalarInt();
@@ -232,6 +236,8 @@ public class IceyeSLCProductReader extends SARReader {
     public void close() throws IOException {
         if (product != null) {
             product = null;
+            filePool.close();
+            filePool = null;
             netcdfFile.close();
             netcdfFile = null;
         }
@@ -643,16 +649,13 @@ public class IceyeSLCProductReader extends SARReader {
         sourceWidth = Math.min(sourceWidth, sceneWidth - sourceOffsetX);
         destWidth = Math.min(destWidth, sceneWidth - destOffsetX);
         final int[] origin = {sourceOffsetY, sourceOffsetX};
-        final int[] shape = {1, sourceWidth};
+        final int[] shape = {destHeight, sourceWidth};
         pm.beginTask("Reading util from band " + destBand.getName(), destHeight);
         try {
+            final Array array = filePool.read(variable, origin, shape);
+            final Object storage = array.getStorage();
             for (int y = 0; y < destHeight; y++) {
-                origin[0] = sourceOffsetY + y;
-                final Array array;
-                synchronized (netcdfFile) {
-                    array = variable.read(origin, shape);
-                }
-                System.arraycopy(array.getStorage(), 0, destBuffer.getElems(), y * destWidth, destWidth);
+                System.arraycopy(storage, y * sourceWidth, destBuffer.getElems(), y * destWidth, destWidth);
                 pm.worked(1);
             }
         } catch (Exception e) {